@@ -0,0 +1,210 @@
+package com.example.android.miwok;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.content.res.Resources;
+import android.util.Log;
+import android.util.SparseIntArray;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * {@link AudioBundle} reads the bundle built by the packAudioBundle task of audio.gradle,
+ * which holds all the sound files of the app in one uncompressed file.
+ * The bundle is opened once, and each clip is then served as an offset and a length
+ * inside the same {@link FileDescriptor}, so playing a clip doesn't open any resource.
+ * The index also tells how much silence the build found at the start and at the end of
+ * each clip, so a clip can be played from its first audible sound.
+ * The index itself is read by {@link AudioBundleIndex}, which doesn't depend on Android.
+ * See audio.gradle for the format of the bundle.
+ */
+
+public class AudioBundle implements Closeable {
+
+    /** Name of the bundle in the assets of the app */
+    public static final String ASSET_NAME = "audio.pack";
+
+    private static final String LOG_TAG = AudioBundle.class.getSimpleName();
+
+    /** Bundle of the app shared by all the sinks, null if it is not available */
+    private static AudioBundle sShared;
+
+    /** Whether opening the shared bundle was already attempted */
+    private static boolean sSharedOpened;
+
+    /** File the clips are read from */
+    private final FileDescriptor mFileDescriptor;
+
+    /** Resources to close with the bundle */
+    private final Closeable mCloseable;
+
+    /** Index of the clips in the file */
+    private final AudioBundleIndex mIndex;
+
+    /** Index of the clips by audio resource ID, -1 if not in the bundle */
+    private final SparseIntArray mResourceIndexes = new SparseIntArray();
+
+    private AudioBundle(FileDescriptor fd, Closeable closeable, AudioBundleIndex index) {
+        mFileDescriptor = fd;
+        mCloseable = closeable;
+        mIndex = index;
+    }
+
+    /**
+     * Return the bundle of the app, opening it the first time, or null if it is not
+     * available. The bundle stays open for the whole life of the app.
+     *
+     * @param context is the context of the app
+     */
+    public static synchronized AudioBundle getShared(Context context) {
+        if (!sSharedOpened) {
+            sSharedOpened = true;
+            try {
+                sShared = openAsset(context.getApplicationContext().getAssets());
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Audio bundle not available, using the raw resources", e);
+            }
+        }
+        return sShared;
+    }
+
+    /**
+     * Open the bundle from the assets of the app.
+     *
+     * @param assets is the asset manager of the app
+     */
+    public static AudioBundle openAsset(AssetManager assets) throws IOException {
+        AssetFileDescriptor afd = assets.openFd(ASSET_NAME);
+        FileInputStream in = afd.createInputStream();
+        try {
+            AudioBundleIndex index = AudioBundleIndex.read(in.getChannel(),
+                    afd.getStartOffset(), afd.getLength());
+            return new AudioBundle(afd.getFileDescriptor(), afd, index);
+        } catch (IOException | RuntimeException e) {
+            afd.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open a bundle file, for instance one generated by the build.
+     *
+     * @param file is the bundle file
+     */
+    public static AudioBundle open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            AudioBundleIndex index = AudioBundleIndex.read(raf.getChannel(), 0, raf.length());
+            return new AudioBundle(raf.getFD(), raf, index);
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Return the index of the clip with the given name, or -1 if there is no such clip.
+     *
+     * @param name is the name of the raw resource of the clip, without extension
+     */
+    public int indexOf(String name) {
+        return mIndex.indexOf(name);
+    }
+
+    /**
+     * Return the index of the clip of an audio resource, or -1 if the bundle doesn't hold it.
+     * The index is looked up by resource name only once per clip.
+     *
+     * @param resources are the resources of the app
+     * @param audioResourceId is the resource ID for the audio file
+     */
+    public synchronized int indexOfResource(Resources resources, int audioResourceId) {
+        int index = mResourceIndexes.get(audioResourceId, Integer.MIN_VALUE);
+        if (index == Integer.MIN_VALUE) {
+            index = mIndex.indexOf(resources.getResourceEntryName(audioResourceId));
+            mResourceIndexes.put(audioResourceId, index);
+        }
+        return index;
+    }
+
+    /**
+     * Return the index of the clips, their names, places in the file and silences.
+     */
+    public AudioBundleIndex getIndex() {
+        return mIndex;
+    }
+
+    /**
+     * Return the number of clips in the bundle.
+     */
+    public int getClipCount() {
+        return mIndex.getClipCount();
+    }
+
+    /**
+     * Return the name of the clip at the given index.
+     */
+    public String getName(int index) {
+        return mIndex.getName(index);
+    }
+
+    /**
+     * Return the file the clips are read from.
+     */
+    public FileDescriptor getFileDescriptor() {
+        return mFileDescriptor;
+    }
+
+    /**
+     * Return the offset of the clip in the file returned by {@link #getFileDescriptor()}.
+     */
+    public long getOffset(int index) {
+        return mIndex.getOffset(index);
+    }
+
+    /**
+     * Return the length of the clip in bytes.
+     */
+    public int getLength(int index) {
+        return mIndex.getLength(index);
+    }
+
+    /**
+     * Return the duration of the clip in milliseconds.
+     */
+    public int getDurationMs(int index) {
+        return mIndex.getDurationMs(index);
+    }
+
+    /**
+     * Return the silence at the start of the clip in milliseconds, where playing starts.
+     */
+    public int getTrimStartMs(int index) {
+        return mIndex.getTrimStartMs(index);
+    }
+
+    /**
+     * Return the silence at the end of the clip in milliseconds.
+     */
+    public int getTrimEndMs(int index) {
+        return mIndex.getTrimEndMs(index);
+    }
+
+    /**
+     * Return the peak level of the clip, from 0 to 32767, or 0 if it was not analyzed.
+     */
+    public int getPeak(int index) {
+        return mIndex.getPeak(index);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mCloseable.close();
+    }
+}
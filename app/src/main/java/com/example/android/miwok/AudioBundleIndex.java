@@ -0,0 +1,215 @@
+package com.example.android.miwok;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * {@link AudioBundleIndex} is the index of the bundle built by the packAudioBundle task of
+ * audio.gradle: the name, the place in the file, the duration, the silences and the peak
+ * level of each clip. See audio.gradle for the format of the bundle.
+ *
+ * It is read from a {@link FileChannel} and doesn't use any Android API, so a bundle can be
+ * checked on the JVM. {@link AudioBundle} opens the bundle from the assets of the app and
+ * serves the clips from it.
+ */
+
+public class AudioBundleIndex {
+
+    /** Magic number at the start of the bundle ("MWKA") */
+    static final int MAGIC = 0x4D574B41;
+
+    /** Version of the bundle format read by this class */
+    static final int VERSION = 2;
+
+    /** Size of the fixed part of the header: magic, version and number of clips */
+    static final int HEADER_SIZE = 12;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Names of the clips, sorted */
+    private final String[] mNames;
+
+    /** Absolute offsets of the clips in the file */
+    private final long[] mOffsets;
+
+    /** Lengths of the clips in bytes */
+    private final int[] mLengths;
+
+    /** Durations of the clips in milliseconds */
+    private final int[] mDurations;
+
+    /** Silence at the start and at the end of the clips in milliseconds */
+    private final int[] mTrimStarts;
+    private final int[] mTrimEnds;
+
+    /** Peak levels of the clips, from 0 to 32767 */
+    private final int[] mPeaks;
+
+    private AudioBundleIndex(String[] names, long[] offsets, int[] lengths, int[] durations,
+                             int[] trimStarts, int[] trimEnds, int[] peaks) {
+        mNames = names;
+        mOffsets = offsets;
+        mLengths = lengths;
+        mDurations = durations;
+        mTrimStarts = trimStarts;
+        mTrimEnds = trimEnds;
+        mPeaks = peaks;
+    }
+
+    /**
+     * Read the index of a bundle stored at the given offset of a file.
+     *
+     * @param channel is the file holding the bundle
+     * @param start is the offset of the bundle in the file
+     * @param length is the length of the bundle in bytes
+     */
+    public static AudioBundleIndex read(FileChannel channel, long start, long length)
+            throws IOException {
+        ByteBuffer header = readFully(channel, start, HEADER_SIZE);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not an audio bundle");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported audio bundle version " + version);
+        }
+        int count = header.getInt();
+        if (count < 0) {
+            throw new IOException("Corrupted audio bundle, clip count " + count);
+        }
+
+        // The index is small, so read it with one call and parse it from memory. Names have
+        // no fixed size, so read more if the first guess was too short.
+        long remaining = length - HEADER_SIZE;
+        int indexSize = (int) Math.min(remaining, Math.max(4096, count * 64L));
+        while (true) {
+            ByteBuffer index = readFully(channel, start + HEADER_SIZE, indexSize);
+            try {
+                return parseIndex(index, count, start, length);
+            } catch (BufferUnderflowException e) {
+                if (indexSize >= remaining) {
+                    throw new IOException("Truncated audio bundle index");
+                }
+                indexSize = (int) Math.min(remaining, indexSize * 2L);
+            }
+        }
+    }
+
+    private static AudioBundleIndex parseIndex(ByteBuffer index, int count, long start,
+                                               long length) throws IOException {
+        String[] names = new String[count];
+        long[] offsets = new long[count];
+        int[] lengths = new int[count];
+        int[] durations = new int[count];
+        int[] trimStarts = new int[count];
+        int[] trimEnds = new int[count];
+        int[] peaks = new int[count];
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[index.getShort() & 0xffff];
+            index.get(name);
+            names[i] = new String(name, UTF_8);
+            int offset = index.getInt();
+            lengths[i] = index.getInt();
+            durations[i] = index.getInt();
+            trimStarts[i] = index.getInt();
+            trimEnds[i] = index.getInt();
+            peaks[i] = index.getInt();
+            if (offset < 0 || lengths[i] < 0 || (long) offset + lengths[i] > length) {
+                throw new IOException("Corrupted audio bundle, clip " + names[i] + " out of range");
+            }
+            if (trimStarts[i] < 0 || trimEnds[i] < 0 ||
+                    (long) trimStarts[i] + trimEnds[i] > durations[i]) {
+                throw new IOException("Corrupted audio bundle, clip " + names[i] +
+                        " trimmed beyond its duration");
+            }
+            offsets[i] = start + offset;
+        }
+        return new AudioBundleIndex(names, offsets, lengths, durations, trimStarts, trimEnds,
+                peaks);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int size)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        if (buffer.hasRemaining()) {
+            throw new IOException("Truncated audio bundle");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Return the index of the clip with the given name, or -1 if there is no such clip.
+     *
+     * @param name is the name of the raw resource of the clip, without extension
+     */
+    public int indexOf(String name) {
+        int index = Arrays.binarySearch(mNames, name);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * Return the number of clips in the bundle.
+     */
+    public int getClipCount() {
+        return mNames.length;
+    }
+
+    /**
+     * Return the name of the clip at the given index.
+     */
+    public String getName(int index) {
+        return mNames[index];
+    }
+
+    /**
+     * Return the offset of the clip in the file the bundle was read from.
+     */
+    public long getOffset(int index) {
+        return mOffsets[index];
+    }
+
+    /**
+     * Return the length of the clip in bytes.
+     */
+    public int getLength(int index) {
+        return mLengths[index];
+    }
+
+    /**
+     * Return the duration of the clip in milliseconds.
+     */
+    public int getDurationMs(int index) {
+        return mDurations[index];
+    }
+
+    /**
+     * Return the silence at the start of the clip in milliseconds, where playing starts.
+     */
+    public int getTrimStartMs(int index) {
+        return mTrimStarts[index];
+    }
+
+    /**
+     * Return the silence at the end of the clip in milliseconds.
+     */
+    public int getTrimEndMs(int index) {
+        return mTrimEnds[index];
+    }
+
+    /**
+     * Return the peak level of the clip, from 0 to 32767, or 0 if it was not analyzed.
+     */
+    public int getPeak(int index) {
+        return mPeaks[index];
+    }
+}
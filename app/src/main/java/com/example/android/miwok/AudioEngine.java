@@ -0,0 +1,426 @@
+package com.example.android.miwok;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * {@link AudioEngine} plays the sound files of the words for the whole app.
+ * Loaded clips are kept in a bounded least recently used cache, so tapping a word that
+ * was played (or loaded) before doesn't have to open and decode its audio file again.
+ * The engine doesn't handle the audio focus, the {@link PlaybackController} that drives it
+ * does.
+ */
+
+public class AudioEngine {
+
+    private static final String LOG_TAG = AudioEngine.class.getSimpleName();
+
+    /** Default number of clips kept loaded in the cache */
+    static final int DEFAULT_MAX_CLIPS = 12;
+
+    /** Engine shared by all the categories of the app */
+    private static AudioEngine sInstance;
+
+    /**
+     * Listener triggered when a sound played by the engine has finished
+     */
+    public interface OnPlaybackCompletedListener {
+        void onPlaybackCompleted();
+    }
+
+    /**
+     * Listener triggered when the sound set with {@link #setNextClip(int)} has taken over
+     */
+    public interface OnNextClipStartedListener {
+        /**
+         * @param gapNanos is the estimated silence between the two sounds, in nanoseconds
+         */
+        void onNextClipStarted(long gapNanos);
+    }
+
+    /**
+     * Listener triggered when the sound started with {@link #play(int)} is first heard
+     */
+    public interface OnFirstAudioListener {
+        /**
+         * @param renderNanos is when the first audio was rendered, from
+         *                    {@link System#nanoTime()}
+         */
+        void onFirstAudio(long renderNanos);
+    }
+
+    /** Output used to load and play the clips */
+    private final AudioSink mSink;
+
+    /** Loaded clip handles by audio resource ID, in least recently used order */
+    private final LinkedHashMap<Integer, Integer> mClips;
+
+    /** Handle of the clip currently playing or paused, or {@link AudioSink#NO_CLIP} */
+    private int mCurrentHandle = AudioSink.NO_CLIP;
+
+    /** Handle of the clip started when the current one finishes, or {@link AudioSink#NO_CLIP} */
+    private int mNextHandle = AudioSink.NO_CLIP;
+
+    /** Maximum number of clips kept loaded at the same time */
+    private final int mMaxClips;
+
+    /** Number of plays that found their clip already loaded */
+    private long mHitCount;
+
+    /** Number of plays that had to load their clip first */
+    private long mMissCount;
+
+    /** Listener triggered when the current sound has finished, or null */
+    private volatile OnPlaybackCompletedListener mOnPlaybackCompletedListener;
+
+    /** Listener triggered when the next sound has taken over, or null */
+    private volatile OnNextClipStartedListener mOnNextClipStartedListener;
+
+    /** Listener triggered when the current sound is first heard, or null */
+    private volatile OnFirstAudioListener mOnFirstAudioListener;
+
+    /**
+     * Return the {@link AudioEngine} shared by the whole app, creating it if needed.
+     *
+     * @param context is the context of the app
+     */
+    public static synchronized AudioEngine getInstance(Context context) {
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            sInstance = new AudioEngine(createSink(appContext), DEFAULT_MAX_CLIPS);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Return the sink playing the clips: the PCM cache when it is enabled in the resources
+     * and supported by the device, otherwise one {@link android.media.MediaPlayer} per clip.
+     */
+    private static AudioSink createSink(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN &&
+                context.getResources().getBoolean(R.bool.pcm_cache_enabled)) {
+            try {
+                PcmCache cache = new PcmCache(new File(context.getCacheDir(), "pcm"),
+                        PcmSink.DEFAULT_CACHE_SIZE);
+                return new PcmSink(context, cache);
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "PCM cache not available, decoding the clips on each load", e);
+            }
+        }
+        return new MediaPlayerSink(context);
+    }
+
+    /**
+     * Create a new {@link AudioEngine} object
+     *
+     * @param sink is the output used to load and play the clips
+     * @param maxClips is the maximum number of clips kept loaded at the same time
+     */
+    AudioEngine(AudioSink sink, int maxClips) {
+        if (maxClips < 1) {
+            throw new IllegalArgumentException("maxClips must be at least 1: " + maxClips);
+        }
+        mSink = sink;
+        mMaxClips = maxClips;
+        mClips = new LinkedHashMap<>(16, 0.75f, true);
+        mSink.setOnCompletionListener(new AudioSink.OnCompletionListener() {
+            @Override
+            public void onCompletion(int clipHandle) {
+                onClipCompleted(clipHandle);
+            }
+        });
+        mSink.setOnHandoffListener(new AudioSink.OnHandoffListener() {
+            @Override
+            public void onHandoff(int clipHandle, int nextClipHandle, long gapNanos) {
+                onClipHandoff(clipHandle, nextClipHandle, gapNanos);
+            }
+        });
+        mSink.setOnFirstAudioListener(new AudioSink.OnFirstAudioListener() {
+            @Override
+            public void onFirstAudio(int clipHandle, long renderNanos) {
+                onClipFirstAudio(clipHandle, renderNanos);
+            }
+        });
+    }
+
+    /**
+     * Set the listener triggered when the current sound has finished playing.
+     * The listener is called while the engine is locked, so it must not call back into
+     * the engine, only hand the event over (for instance by posting it to a thread).
+     */
+    public void setOnPlaybackCompletedListener(OnPlaybackCompletedListener listener) {
+        mOnPlaybackCompletedListener = listener;
+    }
+
+    /**
+     * Set the listener triggered when the sound set with {@link #setNextClip(int)} has
+     * taken over. Like the completion listener, it is called while the engine is locked.
+     */
+    public void setOnNextClipStartedListener(OnNextClipStartedListener listener) {
+        mOnNextClipStartedListener = listener;
+    }
+
+    /**
+     * Set the listener triggered when the sound started with {@link #play(int)} has
+     * rendered its first audio. Like the completion listener, it is called while the engine
+     * is locked.
+     */
+    public void setOnFirstAudioListener(OnFirstAudioListener listener) {
+        mOnFirstAudioListener = listener;
+    }
+
+    /**
+     * Return whether the audio file is loaded in the cache.
+     */
+    public synchronized boolean isLoaded(int audioResourceId) {
+        return mClips.containsKey(audioResourceId);
+    }
+
+    /**
+     * Play the audio file, stopping any other sound played by the engine.
+     *
+     * @param audioResourceId is the resource ID for the audio file
+     * @return true if the sound started playing
+     */
+    public synchronized boolean play(int audioResourceId) {
+        // Stop the current sound because we are about to play a different sound file
+        stopCurrent();
+
+        Integer cachedHandle = mClips.get(audioResourceId);
+        int handle;
+        if (cachedHandle != null) {
+            mHitCount++;
+            handle = cachedHandle;
+        } else {
+            mMissCount++;
+            handle = loadClip(audioResourceId);
+        }
+        if (handle == AudioSink.NO_CLIP) {
+            return false;
+        }
+        mCurrentHandle = handle;
+        // Make room once the new clip is protected as the current one
+        trimCache();
+        mSink.play(handle);
+        return true;
+    }
+
+    /**
+     * Set the audio file played right after the current sound, without any gap. The file
+     * should already be loaded with {@link #preload(int)}, it is loaded here otherwise.
+     * The next sound is forgotten when the current sound is stopped.
+     *
+     * @param audioResourceId is the resource ID for the audio file
+     * @return true if the sound will be played after the current one
+     */
+    public synchronized boolean setNextClip(int audioResourceId) {
+        if (mCurrentHandle == AudioSink.NO_CLIP) {
+            return false;
+        }
+        Integer cachedHandle = mClips.get(audioResourceId);
+        int handle;
+        if (cachedHandle != null) {
+            mHitCount++;
+            handle = cachedHandle;
+        } else {
+            mMissCount++;
+            handle = loadClip(audioResourceId);
+        }
+        // A clip can't follow itself, it has only one player
+        if (handle == AudioSink.NO_CLIP || handle == mCurrentHandle) {
+            return false;
+        }
+        mNextHandle = handle;
+        trimCache();
+        mSink.setNextClip(mCurrentHandle, handle);
+        return true;
+    }
+
+    /**
+     * Load the audio file into the cache without playing it, so a later
+     * {@link #play(int)} starts right away. The file is loaded without holding the
+     * engine lock, so this can be called from a background thread while sounds are played.
+     *
+     * @param audioResourceId is the resource ID for the audio file
+     */
+    public void preload(int audioResourceId) {
+        synchronized (this) {
+            if (mClips.containsKey(audioResourceId)) {
+                return;
+            }
+        }
+        int handle = mSink.load(audioResourceId);
+        if (handle == AudioSink.NO_CLIP) {
+            return;
+        }
+        synchronized (this) {
+            if (mClips.containsKey(audioResourceId)) {
+                // The clip was loaded by a tap in the meantime, so drop our copy
+                mSink.unload(handle);
+            } else {
+                mClips.put(audioResourceId, handle);
+                trimCache();
+            }
+        }
+    }
+
+    /**
+     * Stop the sound currently playing, if any.
+     */
+    public synchronized void stop() {
+        stopCurrent();
+    }
+
+    /**
+     * Stop playing and unload all the cached clips to free their resources.
+     */
+    public synchronized void releaseAll() {
+        stop();
+        for (int handle : mClips.values()) {
+            mSink.unload(handle);
+        }
+        mClips.clear();
+    }
+
+    /**
+     * Return the number of clips currently loaded in the cache.
+     */
+    public synchronized int getLoadedClipCount() {
+        return mClips.size();
+    }
+
+    /**
+     * Return the maximum number of clips kept loaded in the cache.
+     */
+    public int getMaxClips() {
+        return mMaxClips;
+    }
+
+    /**
+     * Return the number of plays that found their clip already loaded.
+     */
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * Return the number of plays that had to load their clip first.
+     */
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Pause the current sound, for instance when the audio focus is lost for a short time.
+     */
+    public synchronized void pause() {
+        if (mCurrentHandle != AudioSink.NO_CLIP) {
+            mSink.pause(mCurrentHandle);
+        }
+    }
+
+    /**
+     * Resume the current sound once the audio focus is gained back.
+     */
+    public synchronized void resume() {
+        if (mCurrentHandle != AudioSink.NO_CLIP) {
+            mSink.resume(mCurrentHandle);
+        }
+    }
+
+    /**
+     * The clip has finished playing. It stays in the cache so it can be played again.
+     */
+    private synchronized void onClipCompleted(int clipHandle) {
+        if (clipHandle != mCurrentHandle) {
+            return;
+        }
+        mCurrentHandle = AudioSink.NO_CLIP;
+        // The sink could not start the next clip, for instance because of its format
+        mNextHandle = AudioSink.NO_CLIP;
+        trimCache();
+        // Called with the lock held, so no other sound can start before the listener
+        // is told this one has finished
+        OnPlaybackCompletedListener listener = mOnPlaybackCompletedListener;
+        if (listener != null) {
+            listener.onPlaybackCompleted();
+        }
+    }
+
+    /**
+     * The next clip has taken over from the current one.
+     */
+    private synchronized void onClipHandoff(int clipHandle, int nextClipHandle,
+                                            long gapNanos) {
+        if (clipHandle != mCurrentHandle || nextClipHandle != mNextHandle) {
+            return;
+        }
+        mCurrentHandle = nextClipHandle;
+        mNextHandle = AudioSink.NO_CLIP;
+        OnNextClipStartedListener listener = mOnNextClipStartedListener;
+        if (listener != null) {
+            listener.onNextClipStarted(gapNanos);
+        }
+    }
+
+    /**
+     * The clip has rendered its first audio, only reported if it is still the current one.
+     */
+    private synchronized void onClipFirstAudio(int clipHandle, long renderNanos) {
+        if (clipHandle != mCurrentHandle) {
+            return;
+        }
+        OnFirstAudioListener listener = mOnFirstAudioListener;
+        if (listener != null) {
+            listener.onFirstAudio(renderNanos);
+        }
+    }
+
+    /**
+     * Load the clip into the cache and return its handle. The caller trims the cache once
+     * it knows whether the clip is the current or the next one.
+     */
+    private int loadClip(int audioResourceId) {
+        int newHandle = mSink.load(audioResourceId);
+        if (newHandle != AudioSink.NO_CLIP) {
+            mClips.put(audioResourceId, newHandle);
+        }
+        return newHandle;
+    }
+
+    /**
+     * Unload the least recently used clips until the cache holds at most the maximum
+     * number of clips. The clip that is playing and the one that follows it are never
+     * unloaded, so the cache can stay over the maximum while they are the oldest ones,
+     * until they are stopped.
+     */
+    private void trimCache() {
+        Iterator<Integer> handles = mClips.values().iterator();
+        while (mClips.size() > mMaxClips && handles.hasNext()) {
+            int handle = handles.next();
+            if (handle != mCurrentHandle && handle != mNextHandle) {
+                mSink.unload(handle);
+                handles.remove();
+            }
+        }
+    }
+
+    private void stopCurrent() {
+        if (mNextHandle != AudioSink.NO_CLIP) {
+            mSink.setNextClip(mCurrentHandle, AudioSink.NO_CLIP);
+            mNextHandle = AudioSink.NO_CLIP;
+        }
+        if (mCurrentHandle != AudioSink.NO_CLIP) {
+            mSink.stop(mCurrentHandle);
+            mCurrentHandle = AudioSink.NO_CLIP;
+            // The stopped clips may have kept the cache over its maximum
+            trimCache();
+        }
+    }
+}
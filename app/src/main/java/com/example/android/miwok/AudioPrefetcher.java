@@ -0,0 +1,180 @@
+package com.example.android.miwok;
+
+import android.os.Process;
+import android.util.SparseArray;
+import android.widget.AbsListView;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * {@link AudioPrefetcher} is an {@link AbsListView.OnScrollListener} that loads the audio
+ * files of the words shown on screen, plus a few rows below them, before the user taps them.
+ * Loading happens on a background thread, and rows that scroll away before their audio
+ * file was loaded are cancelled. Nothing is loaded while the list is flinging.
+ */
+
+public class AudioPrefetcher implements AbsListView.OnScrollListener {
+
+    /** Default number of rows below the last visible row to prefetch */
+    public static final int DEFAULT_LOOK_AHEAD = 3;
+
+    /** Single background thread shared by all the lists to load the audio files */
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, "AudioPrefetcher");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** Engine the audio files are loaded into */
+    private final AudioEngine mAudioEngine;
+
+    /** Number of rows below the last visible row to prefetch */
+    private int mLookAhead;
+
+    /** Pending prefetches, by list position */
+    private final SparseArray<Future<?>> mPending = new SparseArray<>();
+
+    /** Current scroll state of the list */
+    private int mScrollState = SCROLL_STATE_IDLE;
+
+    /** First and last positions of the current prefetch window, -1 if there is none */
+    private int mWindowStart = -1;
+    private int mWindowEnd = -1;
+
+    /** Number of prefetches submitted to the background thread */
+    private int mRequestedCount;
+
+    /** Number of prefetches cancelled because their row scrolled away */
+    private int mCancelledCount;
+
+    /**
+     * Create a new {@link AudioPrefetcher} object
+     *
+     * @param audioEngine is the engine the audio files are loaded into
+     * @param lookAhead is the number of rows below the last visible row to prefetch
+     */
+    public AudioPrefetcher(AudioEngine audioEngine, int lookAhead) {
+        mAudioEngine = audioEngine;
+        setLookAhead(lookAhead);
+    }
+
+    /**
+     * Set the number of rows below the last visible row to prefetch.
+     */
+    public void setLookAhead(int lookAhead) {
+        if (lookAhead < 0) {
+            throw new IllegalArgumentException("lookAhead must not be negative: " + lookAhead);
+        }
+        mLookAhead = lookAhead;
+    }
+
+    /**
+     * Return the number of prefetches submitted to the background thread.
+     */
+    public int getRequestedCount() {
+        return mRequestedCount;
+    }
+
+    /**
+     * Return the number of prefetches cancelled because their row scrolled away.
+     */
+    public int getCancelledCount() {
+        return mCancelledCount;
+    }
+
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+        mScrollState = scrollState;
+        if (scrollState != SCROLL_STATE_FLING) {
+            updateWindow(view, view.getFirstVisiblePosition(),
+                    view.getLastVisiblePosition() - view.getFirstVisiblePosition() + 1);
+        }
+    }
+
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                         int totalItemCount) {
+        // Rows fly by while flinging, so wait for the list to settle
+        if (mScrollState != SCROLL_STATE_FLING) {
+            updateWindow(view, firstVisibleItem, visibleItemCount);
+        }
+    }
+
+    /**
+     * Cancel all the pending prefetches, for instance when the list is destroyed.
+     */
+    public void cancelAll() {
+        for (int i = 0; i < mPending.size(); i++) {
+            if (mPending.valueAt(i).cancel(false)) {
+                mCancelledCount++;
+            }
+        }
+        mPending.clear();
+        mWindowStart = -1;
+        mWindowEnd = -1;
+    }
+
+    /**
+     * Move the prefetch window over the visible rows and the look ahead rows.
+     */
+    private void updateWindow(AbsListView view, int firstVisibleItem, int visibleItemCount) {
+        if (view.getAdapter() == null || visibleItemCount <= 0) {
+            return;
+        }
+        int count = view.getAdapter().getCount();
+        // Don't prefetch more rows than the engine can keep, or the clips evict each other
+        int windowSize = Math.min(visibleItemCount + mLookAhead, mAudioEngine.getMaxClips());
+        int start = firstVisibleItem;
+        int end = Math.min(firstVisibleItem + windowSize, count) - 1;
+        if (start == mWindowStart && end == mWindowEnd) {
+            return;
+        }
+        mWindowStart = start;
+        mWindowEnd = end;
+
+        // Cancel the rows that are not in the window anymore
+        for (int i = mPending.size() - 1; i >= 0; i--) {
+            int position = mPending.keyAt(i);
+            Future<?> future = mPending.valueAt(i);
+            if (future.isDone()) {
+                mPending.remove(position);
+            } else if (position < start || position > end) {
+                future.cancel(false);
+                mCancelledCount++;
+                mPending.remove(position);
+            }
+        }
+
+        // Submit the rows of the window that are not pending yet
+        for (int position = start; position <= end; position++) {
+            if (mPending.get(position) != null) {
+                continue;
+            }
+            Object item = view.getAdapter().getItem(position);
+            if (!(item instanceof Word)) {
+                continue;
+            }
+            final int audioResourceId = ((Word) item).getAudioResourceID();
+            mPending.put(position, sExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    mAudioEngine.preload(audioResourceId);
+                }
+            }));
+            mRequestedCount++;
+        }
+    }
+}
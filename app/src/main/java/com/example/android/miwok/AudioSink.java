@@ -0,0 +1,101 @@
+package com.example.android.miwok;
+
+/**
+ * {@link AudioSink} is the low level output used by the {@link AudioEngine}.
+ * It knows how to load a sound file into a playable clip and how to play it, but it
+ * doesn't know anything about caching or audio focus.
+ * Clips are referred to by an int handle returned from {@link #load(int)}, so a fake
+ * implementation can be used to test the engine without any Android audio APIs.
+ */
+
+public interface AudioSink {
+
+    /** Handle value that represents a clip that could not be loaded */
+    int NO_CLIP = -1;
+
+    /**
+     * Callback invoked when a clip has finished playing
+     */
+    interface OnCompletionListener {
+        void onCompletion(int clipHandle);
+    }
+
+    /**
+     * Callback invoked when the clip set with {@link #setNextClip(int, int)} has taken over
+     * from the clip that finished. It is invoked before the completion of the finished clip.
+     */
+    interface OnHandoffListener {
+        /**
+         * @param gapNanos is the estimated silence between the end of the finished clip
+         *                 and the start of the next one, in nanoseconds
+         */
+        void onHandoff(int clipHandle, int nextClipHandle, long gapNanos);
+    }
+
+    /**
+     * Callback invoked when a clip started with {@link #play(int)} has rendered its first
+     * audio, so the time until the sound is heard can be measured. It is invoked at most once
+     * per play, and not at all if the clip is stopped first or the output can't tell.
+     */
+    interface OnFirstAudioListener {
+        /**
+         * @param renderNanos is when the first audio was rendered, from
+         *                    {@link System#nanoTime()}
+         */
+        void onFirstAudio(int clipHandle, long renderNanos);
+    }
+
+    /**
+     * Load (open and decode) the audio file so it is ready to be played.
+     *
+     * @param audioResourceId is the resource ID for the audio file
+     * @return the handle of the loaded clip, or {@link #NO_CLIP} if it could not be loaded
+     */
+    int load(int audioResourceId);
+
+    /**
+     * Play the clip from its beginning.
+     */
+    void play(int clipHandle);
+
+    /**
+     * Pause the clip, keeping its current position.
+     */
+    void pause(int clipHandle);
+
+    /**
+     * Resume a clip that was paused.
+     */
+    void resume(int clipHandle);
+
+    /**
+     * Stop the clip and rewind it so it can be played again.
+     */
+    void stop(int clipHandle);
+
+    /**
+     * Free the resources of the clip. The handle must not be used anymore.
+     */
+    void unload(int clipHandle);
+
+    /**
+     * Set the clip started right when the given clip finishes, so there is no gap between
+     * them, or {@link #NO_CLIP} to not start any clip.
+     */
+    void setNextClip(int clipHandle, int nextClipHandle);
+
+    /**
+     * Set the listener that is triggered when any clip has completed playing.
+     */
+    void setOnCompletionListener(OnCompletionListener listener);
+
+    /**
+     * Set the listener that is triggered when a next clip has taken over.
+     */
+    void setOnHandoffListener(OnHandoffListener listener);
+
+    /**
+     * Set the listener that is triggered when a played clip has rendered its first audio.
+     */
+    void setOnFirstAudioListener(OnFirstAudioListener listener);
+}
@@ -0,0 +1,40 @@
+package com.example.android.miwok;
+
+/**
+ * {@link Categories} is the list of the categories of the app, in the order of their pages.
+ * Adding a category only needs a new entry here and its words in the {@link Vocabulary}.
+ */
+
+public final class Categories {
+
+    /** IDs of the categories, also the positions of their pages */
+    public static final int COLORS = 0;
+    public static final int FAMILY = 1;
+    public static final int NUMBERS = 2;
+    public static final int PHRASES = 3;
+
+    /** All the categories, the category at index i has the ID i */
+    private static final Category[] CATEGORIES = {
+            new Category(COLORS, R.string.category_colors, R.color.category_colors),
+            new Category(FAMILY, R.string.category_family, R.color.category_family),
+            new Category(NUMBERS, R.string.category_numbers, R.color.category_numbers),
+            new Category(PHRASES, R.string.category_phrases, R.color.category_phrases),
+    };
+
+    private Categories() {
+    }
+
+    /**
+     * Return the number of categories.
+     */
+    public static int getCount() {
+        return CATEGORIES.length;
+    }
+
+    /**
+     * Return the category with the given ID.
+     */
+    public static Category get(int id) {
+        return CATEGORIES[id];
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.android.miwok;
+
+/**
+ * {@link Category} describes a page of the app: its title, the color of its words and
+ * the ID used to load its words from the {@link Vocabulary}. It holds no word itself, so
+ * describing all the categories costs nothing until a page is displayed.
+ */
+
+public class Category {
+
+    /** ID of the category, also the position of its page */
+    private final int mId;
+
+    /** String resource ID of the title of the page */
+    private final int mTitleResourceId;
+
+    /** Color resource ID of the background of the words */
+    private final int mColorResourceId;
+
+    /**
+     * Create a new {@link Category} object
+     *
+     * @param id is the ID of the category, also the position of its page
+     * @param titleResourceId is the string resource ID of the title of the page
+     * @param colorResourceId is the color resource ID of the background of the words
+     */
+    public Category(int id, int titleResourceId, int colorResourceId) {
+        mId = id;
+        mTitleResourceId = titleResourceId;
+        mColorResourceId = colorResourceId;
+    }
+
+    /**
+     * Return the ID of the category.
+     */
+    public int getId() {
+        return mId;
+    }
+
+    /**
+     * Return the string resource ID of the title of the page.
+     */
+    public int getTitleResourceId() {
+        return mTitleResourceId;
+    }
+
+    /**
+     * Return the color resource ID of the background of the words.
+     */
+    public int getColorResourceId() {
+        return mColorResourceId;
+    }
+
+    @Override
+    public String toString() {
+        return "Category{" +
+                "mId=" + mId +
+                ", mTitleResourceId=" + mTitleResourceId +
+                ", mColorResourceId=" + mColorResourceId +
+                '}';
+    }
+}
@@ -32,7 +32,7 @@ public class CategoryAdapter extends FragmentPagerAdapter{
 
     @Override
     public int getCount() {
-        return 4;
+        return Categories.getCount();
     }
 
     /**
@@ -41,31 +41,15 @@ public class CategoryAdapter extends FragmentPagerAdapter{
 
     @Override
     public Fragment getItem(int position) {
-        if (position == 0) {
-            return new ColorsFragment();
-        }else if (position == 1) {
-            return new FamilyFragment();
-        }else if (position == 2) {
-            return new NumbersFragment();
-        }else {
-            return new PhrasesFragment();
-        }
+        return CategoryFragment.newInstance(Categories.get(position).getId());
     }
 
     /**
-     * Return {@link TabFragment} that should be displayed for the given page number.
+     * Return the title of the page for the given page number.
      */
 
     @Override
     public CharSequence getPageTitle(int position) {
-        if (position == 0) {
-            return mContext.getString(R.string.category_colors);
-        } else if (position == 1) {
-            return mContext.getString(R.string.category_family);
-        } else if (position == 2) {
-            return mContext.getString(R.string.category_numbers);
-        } else {
-            return mContext.getString(R.string.category_phrases);
-        }
+        return mContext.getString(Categories.get(position).getTitleResourceId());
     }
 }
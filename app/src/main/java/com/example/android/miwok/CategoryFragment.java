@@ -0,0 +1,293 @@
+package com.example.android.miwok;
+
+
+import android.os.Bundle;
+import android.support.v4.app.Fragment;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.ListView;
+
+/**
+ * {@link CategoryFragment} displays the words of one {@link Category}.
+ * The ViewPager also creates the pages next to the displayed one, so the words are only
+ * loaded when the page is displayed for the user, and they are released again when the
+ * page goes off screen. A page that is not displayed holds no word.
+ * The options menu of the page plays all its words one after the other.
+ * The words are shown by a ListView, or by a RecyclerView when the recycler_word_lists
+ * resource is set.
+ */
+public class CategoryFragment extends Fragment {
+
+    /** Argument holding the ID of the category */
+    private static final String ARG_CATEGORY_ID = "category_id";
+
+    /** Category of the words displayed by this fragment */
+    private Category mCategory;
+
+    /** List showing the words, null when the view isn't created or is a RecyclerView */
+    private ListView mListView;
+
+    /** RecyclerView showing the words, null when the view isn't created or is a ListView */
+    private RecyclerView mRecyclerView;
+
+    /** Lays out the rows of the RecyclerView */
+    private LinearLayoutManager mLayoutManager;
+
+    /** Adapter of the RecyclerView, kept with the view so new words are applied as a diff */
+    private WordRecyclerAdapter mRecyclerAdapter;
+
+    /** Words displayed by the list, null when the page isn't displayed */
+    private VocabularyStore mWords;
+
+    /** First visible word when the words were released, restored when they are loaded again */
+    private int mFirstVisiblePosition;
+
+    /**
+     * Keeps the sound files of the words loaded
+     */
+    private AudioEngine mAudioEngine;
+
+    /**
+     * Plays the sound files on the audio thread, so a tap never blocks the UI
+     */
+    private PlaybackController mPlaybackController;
+
+    /**
+     * Loads the sound files of the words shown on screen before they are tapped
+     */
+    private AudioPrefetcher mAudioPrefetcher;
+
+    /**
+     * Times the frames and the rows of the list, and passes its scroll events on to the
+     * {@link AudioPrefetcher}
+     */
+    private ScrollFrameMonitor mFrameMonitor;
+
+    public CategoryFragment() {
+        // Required empty public constructor
+    }
+
+    /**
+     * Create a new {@link CategoryFragment} displaying the words of a category.
+     *
+     * @param categoryId is the ID of the category in {@link Categories}
+     */
+    public static CategoryFragment newInstance(int categoryId) {
+        Bundle args = new Bundle();
+        args.putInt(ARG_CATEGORY_ID, categoryId);
+        CategoryFragment fragment = new CategoryFragment();
+        fragment.setArguments(args);
+        return fragment;
+    }
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mCategory = Categories.get(getArguments().getInt(ARG_CATEGORY_ID));
+        // The ViewPager only shows the menu of the displayed page
+        setHasOptionsMenu(true);
+    }
+
+    @Override
+    public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
+        inflater.inflate(R.menu.category, menu);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.play_all) {
+            playAllWords();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    @Override
+    public View onCreateView(LayoutInflater inflater, ViewGroup container,
+                             Bundle savedInstanceState) {
+        // Get the {@link AudioEngine} shared by all the categories
+        mAudioEngine = AudioEngine.getInstance(getActivity());
+        mPlaybackController = PlaybackController.getInstance(getActivity());
+        if (getResources().getBoolean(R.bool.recycler_word_lists)) {
+            return createRecyclerView(inflater, container);
+        }
+
+        View rootView = inflater.inflate(R.layout.word_list, container, false);
+
+        // Find the {@link ListView} object in the view hierarchy of the {@link Activity}.
+        // There should be a {@link ListView} with the view ID called list, which is declared in the
+        // word_list.xml file.
+        mListView = (ListView) rootView.findViewById(R.id.list);
+
+        // Load the sound files of the visible words in the background, so a tap
+        // doesn't have to wait for its sound file to be opened and decoded
+        mAudioPrefetcher = new AudioPrefetcher(mAudioEngine, AudioPrefetcher.DEFAULT_LOOK_AHEAD);
+        mFrameMonitor = new ScrollFrameMonitor(FrameStats.getInstance(), mCategory.getId(),
+                mAudioPrefetcher);
+        mFrameMonitor.attach(mListView);
+
+        // Bind the abstract method to the ListView and gives parameters to its interface
+        mListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                // Read the word at the given position the user clicked on from the store
+                Log.v("CategoryFragment", "Current word: " +
+                        mWords.getMiwokTranslation(position));
+
+                // Play the audio file associated with the current word. The controller
+                // stops any other sound and takes care of the audio focus.
+                mPlaybackController.play(mWords.getAudioResourceId(position), mCategory.getId());
+            }
+        });
+
+        // The page may already be the displayed one, for instance the first page
+        if (getUserVisibleHint()) {
+            loadWords();
+        }
+        return rootView;
+    }
+
+    /**
+     * Create the view of the page as a RecyclerView bound by a {@link WordRecyclerAdapter}.
+     * The adapter starts empty and gets the words of the category when the page is displayed.
+     */
+    private View createRecyclerView(LayoutInflater inflater, ViewGroup container) {
+        mRecyclerView = (RecyclerView) inflater.inflate(R.layout.word_recycler_list, container,
+                false);
+        mLayoutManager = new LinearLayoutManager(getActivity());
+        mRecyclerView.setLayoutManager(mLayoutManager);
+        mRecyclerView.setHasFixedSize(true);
+        mFrameMonitor = new ScrollFrameMonitor(FrameStats.getInstance(), mCategory.getId(),
+                null);
+        mRecyclerAdapter = new WordRecyclerAdapter(getActivity(), VocabularyStore.EMPTY,
+                mCategory.getColorResourceId());
+        mRecyclerAdapter.setOnBindListener(mFrameMonitor);
+        mRecyclerAdapter.setOnWordClickListener(new WordRecyclerAdapter.OnWordClickListener() {
+            @Override
+            public void onWordClick(VocabularyStore words, int position) {
+                mPlaybackController.play(words.getAudioResourceId(position), mCategory.getId());
+            }
+        });
+        mRecyclerView.setAdapter(mRecyclerAdapter);
+
+        if (getUserVisibleHint()) {
+            loadWords();
+        }
+        return mRecyclerView;
+    }
+
+    @Override
+    public void setUserVisibleHint(boolean isVisibleToUser) {
+        super.setUserVisibleHint(isVisibleToUser);
+        // This is called before the view is created for the pages the ViewPager keeps
+        // around, the words are then loaded by onCreateView
+        if (mListView == null && mRecyclerView == null) {
+            return;
+        }
+        if (isVisibleToUser) {
+            loadWords();
+        } else {
+            releaseWords();
+        }
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        // When the activity is stopped, stop the sound because
+        // we don't play anymore sounds
+        if (mPlaybackController != null) {
+            mPlaybackController.stop();
+        }
+        if (mAudioPrefetcher != null) {
+            mAudioPrefetcher.cancelAll();
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        releaseWords();
+        mFrameMonitor.detach();
+        mListView = null;
+        mRecyclerView = null;
+        mLayoutManager = null;
+        mRecyclerAdapter = null;
+    }
+
+    /**
+     * Load the words of the category into the list, unless they are already loaded.
+     */
+    private void loadWords() {
+        if (mWords != null) {
+            return;
+        }
+        // The first list loaded is part of the cold start
+        StartupTrace trace = StartupTrace.getInstance();
+        trace.beginPhase(StartupTrace.PHASE_FIRST_WORD_LIST);
+
+        // Get the words of the category, they are shared by all the views of the category
+        mWords = Vocabulary.getWords(mCategory.getId());
+
+        if (mRecyclerAdapter != null) {
+            // Only the rows that differ from the displayed words are bound
+            mRecyclerAdapter.setWords(mWords);
+            mLayoutManager.scrollToPosition(mFirstVisiblePosition);
+            trace.endPhase(StartupTrace.PHASE_FIRST_WORD_LIST);
+            return;
+        }
+
+        // Create a {@link WordAdapter}, whose data source is the store of the words. The
+        // adapter knows how to create layouts for each item in the list, flat or inflated
+        // depending on the resources
+        WordAdapter adapter = new WordAdapter(getActivity(), mWords,
+                mCategory.getColorResourceId(),
+                getResources().getBoolean(R.bool.flat_word_rows));
+        adapter.setOnBindListener(mFrameMonitor);
+
+        // Make the {@link ListView} use the {@link WordAdapter} we created above, so that the
+        // {@link ListView} will display list items for each word in the list of words.
+        mListView.setAdapter(adapter);
+        mListView.setSelection(mFirstVisiblePosition);
+        trace.endPhase(StartupTrace.PHASE_FIRST_WORD_LIST);
+    }
+
+    /**
+     * Play the sound files of all the words of the category, in the order of the list.
+     */
+    private void playAllWords() {
+        VocabularyStore words = Vocabulary.getWords(mCategory.getId());
+        int[] audioResourceIds = new int[words.size()];
+        for (int i = 0; i < audioResourceIds.length; i++) {
+            audioResourceIds[i] = words.getAudioResourceId(i);
+        }
+        mPlaybackController.playAll(audioResourceIds);
+    }
+
+    /**
+     * Remove the words from the list, so a page that isn't displayed holds no word.
+     */
+    private void releaseWords() {
+        if (mWords == null) {
+            return;
+        }
+        mWords = null;
+        if (mRecyclerAdapter != null) {
+            // There is no visible position when the list wasn't laid out
+            mFirstVisiblePosition = Math.max(0, mLayoutManager.findFirstVisibleItemPosition());
+            mRecyclerAdapter.setWords(VocabularyStore.EMPTY);
+            return;
+        }
+        mFirstVisiblePosition = mListView.getFirstVisiblePosition();
+        mAudioPrefetcher.cancelAll();
+        mListView.setAdapter(null);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.android.miwok;
+
+/**
+ * {@link Dtw} measures how far two recordings are from each other with dynamic time
+ * warping: the frames of one recording are aligned with the frames of the other so that
+ * the total distance is the smallest, which makes the measure insensitive to speaking a
+ * bit faster or slower.
+ *
+ * The alignment is kept within a band around the diagonal (a Sakoe-Chiba band), so it
+ * can't match a whole word with a single frame, and so only a strip of the cost matrix is
+ * computed. Only two rows of the matrix are kept, and they are reused between calls.
+ * An instance is not thread safe.
+ */
+
+class Dtw {
+
+    /** Width of the band on each side of the diagonal, as a part of the longest recording */
+    private final float mBandFraction;
+
+    /** Previous and current rows of the cost matrix */
+    private float[] mPrevious = new float[0];
+    private float[] mCurrent = new float[0];
+
+    /**
+     * Create a new {@link Dtw} object
+     *
+     * @param bandFraction is the width of the band on each side of the diagonal, as a part
+     *                     of the number of frames of the longest recording, from 0 to 1
+     */
+    Dtw(float bandFraction) {
+        if (bandFraction <= 0 || bandFraction > 1) {
+            throw new IllegalArgumentException("bandFraction must be in (0, 1]: " + bandFraction);
+        }
+        mBandFraction = bandFraction;
+    }
+
+    /**
+     * Return the distance between two recordings: the cost of the best alignment divided by
+     * the number of frames of both, or {@link Float#POSITIVE_INFINITY} if one is empty.
+     */
+    float distance(Mfcc.Features a, Mfcc.Features b) {
+        int n = a.getFrameCount();
+        int m = b.getFrameCount();
+        if (n == 0 || m == 0) {
+            return Float.POSITIVE_INFINITY;
+        }
+        if (mPrevious.length < m) {
+            mPrevious = new float[m];
+            mCurrent = new float[m];
+        }
+        float[] previous = mPrevious;
+        float[] current = mCurrent;
+        float[] dataA = a.getData();
+        float[] dataB = b.getData();
+        int band = Math.max(1, (int) Math.ceil(mBandFraction * Math.max(n, m)));
+
+        // Cells outside of the band of their row are never written, they count as infinite
+        int previousFrom = 0;
+        int previousTo = -1;
+        for (int i = 0; i < n; i++) {
+            // The band follows the diagonal from the first frames to the last ones
+            int center = n == 1 ? 0 : (int) ((long) i * (m - 1) / (n - 1));
+            int from = Math.max(0, center - band);
+            int to = Math.min(m - 1, center + band);
+            // When one recording is much longer than the other, the bands of two rows may
+            // not overlap anymore, so each row starts at most one cell after the end of the
+            // previous one, and the last row goes to the last cell, to keep a path from the
+            // first cell to the last
+            if (i > 0 && from > previousTo + 1) {
+                from = previousTo + 1;
+            }
+            if (i == n - 1) {
+                to = m - 1;
+            }
+            for (int j = from; j <= to; j++) {
+                float best;
+                if (i == 0 && j == 0) {
+                    best = 0;
+                } else {
+                    float up = j >= previousFrom && j <= previousTo
+                            ? previous[j] : Float.POSITIVE_INFINITY;
+                    float diagonal = j > previousFrom && j - 1 <= previousTo
+                            ? previous[j - 1] : Float.POSITIVE_INFINITY;
+                    float left = j > from ? current[j - 1] : Float.POSITIVE_INFINITY;
+                    best = Math.min(up, Math.min(diagonal, left));
+                }
+                current[j] = best + frameDistance(dataA, i, dataB, j);
+            }
+            float[] swap = previous;
+            previous = current;
+            current = swap;
+            previousFrom = from;
+            previousTo = to;
+        }
+        return previous[m - 1] / (n + m);
+    }
+
+    /**
+     * Return the Euclidean distance between the frame i of a and the frame j of b.
+     */
+    private static float frameDistance(float[] a, int i, float[] b, int j) {
+        int baseA = i * Mfcc.COEFFICIENT_COUNT;
+        int baseB = j * Mfcc.COEFFICIENT_COUNT;
+        float sum = 0;
+        for (int c = 0; c < Mfcc.COEFFICIENT_COUNT; c++) {
+            float difference = a[baseA + c] - b[baseB + c];
+            sum += difference * difference;
+        }
+        return (float) Math.sqrt(sum);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.android.miwok;
+
+/**
+ * {@link Fft} computes the fast Fourier transform of blocks of a fixed power of two size.
+ * The twiddle factors and the bit reversal permutation are computed once in the constructor,
+ * and the transform works in place on the arrays it is given, so it doesn't allocate.
+ * An instance is not thread safe, each thread needs its own.
+ */
+
+class Fft {
+
+    /** Number of points of the transform */
+    private final int mSize;
+
+    /** Cosines and sines of the twiddle factors, for the first half of the circle */
+    private final float[] mCos;
+    private final float[] mSin;
+
+    /** Position of each index after the bit reversal permutation */
+    private final int[] mReversed;
+
+    /**
+     * Create a new {@link Fft} object
+     *
+     * @param size is the number of points of the transform, a power of two
+     */
+    Fft(int size) {
+        if (size < 2 || (size & (size - 1)) != 0) {
+            throw new IllegalArgumentException("size must be a power of two: " + size);
+        }
+        mSize = size;
+        mCos = new float[size / 2];
+        mSin = new float[size / 2];
+        for (int i = 0; i < size / 2; i++) {
+            double angle = -2 * Math.PI * i / size;
+            mCos[i] = (float) Math.cos(angle);
+            mSin[i] = (float) Math.sin(angle);
+        }
+        mReversed = new int[size];
+        int bits = Integer.numberOfTrailingZeros(size);
+        for (int i = 0; i < size; i++) {
+            mReversed[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+    }
+
+    /**
+     * Return the number of points of the transform.
+     */
+    int getSize() {
+        return mSize;
+    }
+
+    /**
+     * Compute the forward transform in place.
+     *
+     * @param real holds the real parts, replaced by the real parts of the result
+     * @param imaginary holds the imaginary parts, replaced by the imaginary parts of the result
+     */
+    void transform(float[] real, float[] imaginary) {
+        int n = mSize;
+        for (int i = 0; i < n; i++) {
+            int j = mReversed[i];
+            if (j > i) {
+                float tmp = real[i];
+                real[i] = real[j];
+                real[j] = tmp;
+                tmp = imaginary[i];
+                imaginary[i] = imaginary[j];
+                imaginary[j] = tmp;
+            }
+        }
+        // Butterflies, doubling the size of the transformed blocks at each pass
+        for (int half = 1; half < n; half <<= 1) {
+            int step = n / (half << 1);
+            for (int start = 0; start < n; start += half << 1) {
+                for (int k = 0; k < half; k++) {
+                    float cos = mCos[k * step];
+                    float sin = mSin[k * step];
+                    int a = start + k;
+                    int b = a + half;
+                    float re = real[b] * cos - imaginary[b] * sin;
+                    float im = real[b] * sin + imaginary[b] * cos;
+                    real[b] = real[a] - re;
+                    imaginary[b] = imaginary[a] - im;
+                    real[a] += re;
+                    imaginary[a] += im;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute the power spectrum of real samples.
+     *
+     * @param samples holds the samples, it is used as scratch space and overwritten
+     * @param scratch is scratch space of the same size
+     * @param power receives the power of the first size / 2 + 1 frequency bins
+     */
+    void powerSpectrum(float[] samples, float[] scratch, float[] power) {
+        for (int i = 0; i < mSize; i++) {
+            scratch[i] = 0;
+        }
+        transform(samples, scratch);
+        for (int i = 0; i <= mSize / 2; i++) {
+            power[i] = samples[i] * samples[i] + scratch[i] * scratch[i];
+        }
+    }
+}
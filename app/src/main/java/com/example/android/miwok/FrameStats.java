@@ -0,0 +1,297 @@
+package com.example.android.miwok;
+
+import java.util.Arrays;
+
+/**
+ * {@link FrameStats} collects how long the frames of the category lists take while they
+ * scroll, and how long the adapters take to bind a row, so dropped frames can be counted
+ * and traced back to the rows.
+ *
+ * The times are sorted by category and by how fast the list scrolls, in rows per second:
+ * {@link #VELOCITY_STILL}, {@link #VELOCITY_SLOW} or {@link #VELOCITY_FAST}. Each of them
+ * goes into a histogram with 8 buckets per power of two microseconds, so the percentiles
+ * are known within 12.5% and the histograms have a fixed size whatever the number of
+ * frames. {@link #getReport(int, int)} returns the percentiles of a category.
+ *
+ * The times are recorded by {@link ScrollFrameMonitor}, but the stats don't use any
+ * Android API, so they can also be fed directly by a test. They must only be used on the
+ * main thread, where the frames are drawn and the rows are bound.
+ */
+
+public class FrameStats {
+
+    /** Bands of scroll velocity */
+    public static final int VELOCITY_STILL = 0;
+    public static final int VELOCITY_SLOW = 1;
+    public static final int VELOCITY_FAST = 2;
+    public static final int VELOCITY_BAND_COUNT = 3;
+
+    /** Stands for all the velocity bands in {@link #getReport(int, int)} */
+    public static final int ANY_VELOCITY = -1;
+
+    /** Velocity under which the list is still, in rows per second */
+    static final float STILL_ROWS_PER_SECOND = 0.5f;
+
+    /** Velocity from which the list scrolls fast, in rows per second */
+    static final float FAST_ROWS_PER_SECOND = 10f;
+
+    /** Frames longer than this missed at least one vsync at 60 Hz, in microseconds */
+    public static final long JANK_THRESHOLD_MICROS = 25000;
+
+    /** Buckets per power of two, as a number of bits */
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** Longest time kept apart, longer ones go in the last bucket (about 36 minutes) */
+    private static final long MAX_MICROS = (1L << 31) - 1;
+
+    /** Number of buckets of a histogram */
+    static final int BUCKET_COUNT = bucketOf(MAX_MICROS) + 1;
+
+    /** Stats shared by all the category lists */
+    private static FrameStats sInstance;
+
+    private final int mCategoryCount;
+
+    /** Histograms by category then velocity band, one after the other */
+    private final long[] mFrameBuckets;
+    private final long[] mBindBuckets;
+    private final long[] mJankCounts;
+
+    /**
+     * Return the {@link FrameStats} shared by the lists of all the categories.
+     */
+    public static FrameStats getInstance() {
+        if (sInstance == null) {
+            sInstance = new FrameStats(Categories.getCount());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Create a new {@link FrameStats} object
+     *
+     * @param categoryCount is the number of categories, their IDs go from 0 to
+     *                      categoryCount - 1
+     */
+    public FrameStats(int categoryCount) {
+        if (categoryCount <= 0) {
+            throw new IllegalArgumentException("categoryCount must be positive: " +
+                    categoryCount);
+        }
+        mCategoryCount = categoryCount;
+        int histogramCount = categoryCount * VELOCITY_BAND_COUNT;
+        mFrameBuckets = new long[histogramCount * BUCKET_COUNT];
+        mBindBuckets = new long[histogramCount * BUCKET_COUNT];
+        mJankCounts = new long[histogramCount];
+    }
+
+    /**
+     * Return the velocity band of a scroll velocity.
+     *
+     * @param rowsPerSecond is the velocity, in rows per second in either direction
+     */
+    public static int velocityBand(float rowsPerSecond) {
+        float speed = Math.abs(rowsPerSecond);
+        if (speed < STILL_ROWS_PER_SECOND) {
+            return VELOCITY_STILL;
+        }
+        return speed < FAST_ROWS_PER_SECOND ? VELOCITY_SLOW : VELOCITY_FAST;
+    }
+
+    /**
+     * Record the duration of a frame.
+     *
+     * @param category is the ID of the category of the list
+     * @param velocityBand is the velocity band of the list during the frame
+     * @param durationNanos is the time since the previous frame, in nanoseconds
+     */
+    public void recordFrame(int category, int velocityBand, long durationNanos) {
+        int histogram = histogram(category, velocityBand);
+        long micros = durationNanos / 1000;
+        mFrameBuckets[histogram * BUCKET_COUNT + bucketOf(micros)]++;
+        if (micros > JANK_THRESHOLD_MICROS) {
+            mJankCounts[histogram]++;
+        }
+    }
+
+    /**
+     * Record the time taken by the adapter to bind a row.
+     *
+     * @param category is the ID of the category of the list
+     * @param velocityBand is the velocity band of the list when the row was bound
+     * @param durationNanos is the time taken by getView, in nanoseconds
+     */
+    public void recordBind(int category, int velocityBand, long durationNanos) {
+        int histogram = histogram(category, velocityBand);
+        mBindBuckets[histogram * BUCKET_COUNT + bucketOf(durationNanos / 1000)]++;
+    }
+
+    /**
+     * Return the percentiles of the frames and binds of a category.
+     *
+     * @param category is the ID of the category
+     * @param velocityBand is a velocity band, or {@link #ANY_VELOCITY} for all of them
+     */
+    public Report getReport(int category, int velocityBand) {
+        int first = velocityBand == ANY_VELOCITY ? 0 : velocityBand;
+        int last = velocityBand == ANY_VELOCITY ? VELOCITY_BAND_COUNT - 1 : velocityBand;
+
+        long[] frames = new long[BUCKET_COUNT];
+        long[] binds = new long[BUCKET_COUNT];
+        long jankCount = 0;
+        for (int band = first; band <= last; band++) {
+            int histogram = histogram(category, band);
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                frames[bucket] += mFrameBuckets[histogram * BUCKET_COUNT + bucket];
+                binds[bucket] += mBindBuckets[histogram * BUCKET_COUNT + bucket];
+            }
+            jankCount += mJankCounts[histogram];
+        }
+        return new Report(frames, binds, jankCount);
+    }
+
+    /**
+     * Forget all the recorded times.
+     */
+    public void reset() {
+        Arrays.fill(mFrameBuckets, 0);
+        Arrays.fill(mBindBuckets, 0);
+        Arrays.fill(mJankCounts, 0);
+    }
+
+    private int histogram(int category, int velocityBand) {
+        if (category < 0 || category >= mCategoryCount) {
+            throw new IllegalArgumentException("Unknown category: " + category);
+        }
+        if (velocityBand < 0 || velocityBand >= VELOCITY_BAND_COUNT) {
+            throw new IllegalArgumentException("Unknown velocity band: " + velocityBand);
+        }
+        return category * VELOCITY_BAND_COUNT + velocityBand;
+    }
+
+    /**
+     * Return the bucket of a time: the times under {@link #SUB_BUCKET_COUNT} microseconds
+     * have a bucket each, then each power of two is split in {@link #SUB_BUCKET_COUNT}.
+     */
+    static int bucketOf(long micros) {
+        long value = Math.max(0, Math.min(micros, MAX_MICROS));
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Return the smallest time of a bucket, in microseconds.
+     */
+    static long bucketStart(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKET_COUNT;
+        return (long) (SUB_BUCKET_COUNT + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * {@link Report} holds the percentiles of the frames and binds of a category, copied
+     * when the report was made.
+     */
+    public static class Report {
+
+        private final long[] mFrameBuckets;
+        private final long[] mBindBuckets;
+        private final long mFrameCount;
+        private final long mBindCount;
+        private final long mJankCount;
+
+        Report(long[] frameBuckets, long[] bindBuckets, long jankCount) {
+            mFrameBuckets = frameBuckets;
+            mBindBuckets = bindBuckets;
+            mFrameCount = sum(frameBuckets);
+            mBindCount = sum(bindBuckets);
+            mJankCount = jankCount;
+        }
+
+        public long getFrameCount() {
+            return mFrameCount;
+        }
+
+        /**
+         * Return the number of frames longer than {@link #JANK_THRESHOLD_MICROS}.
+         */
+        public long getJankCount() {
+            return mJankCount;
+        }
+
+        public long getBindCount() {
+            return mBindCount;
+        }
+
+        public long getFrameP50Micros() {
+            return percentile(mFrameBuckets, mFrameCount, 50);
+        }
+
+        public long getFrameP95Micros() {
+            return percentile(mFrameBuckets, mFrameCount, 95);
+        }
+
+        public long getFrameP99Micros() {
+            return percentile(mFrameBuckets, mFrameCount, 99);
+        }
+
+        public long getBindP50Micros() {
+            return percentile(mBindBuckets, mBindCount, 50);
+        }
+
+        public long getBindP95Micros() {
+            return percentile(mBindBuckets, mBindCount, 95);
+        }
+
+        public long getBindP99Micros() {
+            return percentile(mBindBuckets, mBindCount, 99);
+        }
+
+        /**
+         * @return a one line summary of the report
+         */
+        @Override
+        public String toString() {
+            return "frames=" + mFrameCount + " (jank " + mJankCount + ") p50/p95/p99=" +
+                    getFrameP50Micros() + "/" + getFrameP95Micros() + "/" +
+                    getFrameP99Micros() + "us, binds=" + mBindCount + " p50/p95/p99=" +
+                    getBindP50Micros() + "/" + getBindP95Micros() + "/" +
+                    getBindP99Micros() + "us";
+        }
+
+        private static long sum(long[] buckets) {
+            long sum = 0;
+            for (long count : buckets) {
+                sum += count;
+            }
+            return sum;
+        }
+
+        /**
+         * Return a percentile as the end of its bucket, in microseconds, or 0 if nothing
+         * was recorded.
+         */
+        private static long percentile(long[] buckets, long count, int percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (count * percentile + 99) / 100);
+            long seen = 0;
+            for (int bucket = 0; bucket < buckets.length; bucket++) {
+                seen += buckets[bucket];
+                if (seen >= rank) {
+                    return bucket + 1 < BUCKET_COUNT ? bucketStart(bucket + 1) : MAX_MICROS;
+                }
+            }
+            return MAX_MICROS;
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package com.example.android.miwok;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link FuzzyMatcher} finds the words whose translation is close to what the user typed,
+ * even with typos or without the special Miwok letters. The translations are folded with a
+ * {@link TextFolder}, and each folded term is indexed by its bigrams and their positions.
+ *
+ * A query is cut into maxDistance + 1 pieces: a term within maxDistance edits of the query
+ * holds one of the pieces unchanged, near the same place, so only the terms sharing the
+ * first bigram of a piece are compared with the query, and the edit (Levenshtein) distance
+ * is only computed near the diagonal. The queries too short to be cut are compared with the
+ * terms of a close length, which are stored together.
+ */
+
+public class FuzzyMatcher {
+
+    /** Default maximum edit distance of a match */
+    public static final int DEFAULT_MAX_DISTANCE = 2;
+
+    /** Length of the n-grams indexed */
+    private static final int GRAM_LENGTH = 2;
+
+    /** Bits of an occurrence holding the position of the bigram in its term */
+    private static final int POSITION_BITS = 6;
+    private static final int MAX_POSITION = (1 << POSITION_BITS) - 1;
+
+    /**
+     * {@link Match} is a word found by a query.
+     */
+    public static class Match {
+
+        /** Category of the word */
+        public final int category;
+
+        /** Position of the word in the words of its category */
+        public final int position;
+
+        /**
+         * Field that matched, {@link SearchIndex#FIELD_DEFAULT} or
+         * {@link SearchIndex#FIELD_MIWOK}
+         */
+        public final int field;
+
+        /** Edit distance between the folded query and the folded translation */
+        public final int distance;
+
+        Match(int category, int position, int field, int distance) {
+            this.category = category;
+            this.position = position;
+            this.field = field;
+            this.distance = distance;
+        }
+
+        @Override
+        public String toString() {
+            return "Match{category=" + category + ", position=" + position +
+                    ", field=" + field + ", distance=" + distance + '}';
+        }
+    }
+
+    /** Rules used to fold the queries, the same as for the translations */
+    private final TextFolder mQueryFolder;
+
+    /** Folded terms, ordered by length, stored one after the other */
+    private final char[] mTermText;
+
+    /** Start of each term in {@link #mTermText}, and the end of the last one */
+    private final int[] mTermStarts;
+
+    /** First term of each length, the terms of length n are the ones from mLengthStarts[n] */
+    private final int[] mLengthStarts;
+
+    /** First posting (word having the term) of each term */
+    private final int[] mFirstPosting;
+
+    /** Category, position, field and next posting of each posting */
+    private final int[] mPostingCategory;
+    private final int[] mPostingPosition;
+    private final int[] mPostingField;
+    private final int[] mPostingNext;
+
+    /** Index of each bigram (pair of folded characters) in {@link #mGramStarts} */
+    private final LongIntMap mGrams;
+
+    /** Start of the occurrences of each bigram in {@link #mGramOccurrences} */
+    private final int[] mGramStarts;
+
+    /** Term and position of each occurrence of a bigram, packed by {@link #occurrence} */
+    private final int[] mGramOccurrences;
+
+    /** Query in which each term was last compared, so it is only compared once per query */
+    private final int[] mTermStamps;
+    private int mQueryStamp;
+
+    /** Rows of the edit distance computation, reused between queries */
+    private int[] mPreviousRow = new int[32];
+    private int[] mCurrentRow = new int[32];
+
+    private FuzzyMatcher(Builder builder, TextFolder queryFolder) {
+        mQueryFolder = queryFolder;
+        int termCount = builder.mTerms.size();
+
+        // Order the terms by length, so the terms of a range of lengths are contiguous
+        int maxLength = 0;
+        for (String term : builder.mTerms) {
+            maxLength = Math.max(maxLength, term.length());
+        }
+        mLengthStarts = new int[maxLength + 2];
+        for (String term : builder.mTerms) {
+            mLengthStarts[term.length() + 1]++;
+        }
+        int textLength = 0;
+        for (int length = 1; length <= maxLength + 1; length++) {
+            textLength += mLengthStarts[length] * (length - 1);
+            mLengthStarts[length] += mLengthStarts[length - 1];
+        }
+        int[] next = Arrays.copyOf(mLengthStarts, maxLength + 1);
+        int[] order = new int[termCount];
+        for (int node = 0; node < termCount; node++) {
+            order[next[builder.mTerms.get(node).length()]++] = node;
+        }
+
+        mTermText = new char[textLength];
+        mTermStarts = new int[termCount + 1];
+        mFirstPosting = new int[termCount];
+        int offset = 0;
+        for (int term = 0; term < termCount; term++) {
+            String text = builder.mTerms.get(order[term]);
+            text.getChars(0, text.length(), mTermText, offset);
+            mTermStarts[term] = offset;
+            offset += text.length();
+            mFirstPosting[term] = builder.mFirstPosting[order[term]];
+        }
+        mTermStarts[termCount] = offset;
+        int postingCount = builder.mPostingCount;
+        mPostingCategory = Arrays.copyOf(builder.mPostingCategory, postingCount);
+        mPostingPosition = Arrays.copyOf(builder.mPostingPosition, postingCount);
+        mPostingField = Arrays.copyOf(builder.mPostingField, postingCount);
+        mPostingNext = Arrays.copyOf(builder.mPostingNext, postingCount);
+
+        // Index the bigrams of the terms in two passes: count them, then place them
+        mGrams = new LongIntMap(1024);
+        int[] counts = new int[1024];
+        for (int term = 0; term < termCount; term++) {
+            for (int i = mTermStarts[term]; i + 1 < mTermStarts[term + 1]; i++) {
+                long gram = gram(mTermText, i);
+                int index = mGrams.get(gram);
+                if (index == LongIntMap.NO_VALUE) {
+                    index = mGrams.size();
+                    mGrams.put(gram, index);
+                    if (index == counts.length) {
+                        counts = Arrays.copyOf(counts, index * 2);
+                    }
+                }
+                counts[index]++;
+            }
+        }
+        int gramCount = mGrams.size();
+        mGramStarts = new int[gramCount + 1];
+        for (int index = 0; index < gramCount; index++) {
+            mGramStarts[index + 1] = mGramStarts[index] + counts[index];
+        }
+        mGramOccurrences = new int[mGramStarts[gramCount]];
+        System.arraycopy(mGramStarts, 0, counts, 0, gramCount);
+        for (int term = 0; term < termCount; term++) {
+            int start = mTermStarts[term];
+            for (int i = start; i + 1 < mTermStarts[term + 1]; i++) {
+                int index = mGrams.get(gram(mTermText, i));
+                mGramOccurrences[counts[index]++] = occurrence(term, i - start);
+            }
+        }
+        mTermStamps = new int[termCount];
+    }
+
+    /**
+     * Return the words whose folded translation is within the maximum edit distance of the
+     * folded query, closest first.
+     *
+     * @param query is the text typed by the user
+     * @param maxDistance is the maximum edit distance of a match
+     * @param maxMatches is the maximum number of matches to return
+     */
+    public synchronized List<Match> find(String query, int maxDistance, int maxMatches) {
+        List<Match> matches = new ArrayList<>();
+        String key = mQueryFolder.fold(query);
+        if (mTermStamps.length == 0 || key.isEmpty() || maxMatches <= 0 || maxDistance < 0) {
+            return matches;
+        }
+        if (++mQueryStamp == 0) {
+            Arrays.fill(mTermStamps, 0);
+            mQueryStamp = 1;
+        }
+        char[] keyChars = key.toCharArray();
+        int m = keyChars.length;
+        if (mPreviousRow.length <= m) {
+            mPreviousRow = new int[m + 1];
+            mCurrentRow = new int[m + 1];
+        }
+
+        int pieces = maxDistance + 1;
+        if (m >= pieces * GRAM_LENGTH) {
+            // Cut the query into maxDistance + 1 pieces. Each edit changes at most one piece,
+            // so a match holds one of them unchanged, moved by at most maxDistance. Only the
+            // terms holding the first bigram of a piece near its place are compared.
+            for (int piece = 0; piece < pieces; piece++) {
+                int place = piece * m / pieces;
+                int index = mGrams.get(gram(keyChars, place));
+                if (index == LongIntMap.NO_VALUE) {
+                    continue;
+                }
+                for (int o = mGramStarts[index]; o < mGramStarts[index + 1]; o++) {
+                    int occurrence = mGramOccurrences[o];
+                    int position = occurrence & MAX_POSITION;
+                    if (Math.abs(position - place) > maxDistance &&
+                            (position < MAX_POSITION || place + maxDistance < MAX_POSITION)) {
+                        continue;
+                    }
+                    compare(keyChars, occurrence >>> POSITION_BITS, maxDistance, matches);
+                }
+            }
+        } else {
+            // The query is too short to be cut, compare it with the terms of a close length
+            int from = mLengthStarts[Math.max(0, Math.min(m - maxDistance,
+                    mLengthStarts.length - 1))];
+            int to = mLengthStarts[Math.min(m + maxDistance + 1, mLengthStarts.length - 1)];
+            for (int term = from; term < to; term++) {
+                compare(keyChars, term, maxDistance, matches);
+            }
+        }
+
+        Collections.sort(matches, new Comparator<Match>() {
+            @Override
+            public int compare(Match a, Match b) {
+                if (a.distance != b.distance) {
+                    return a.distance - b.distance;
+                }
+                if (a.category != b.category) {
+                    return a.category - b.category;
+                }
+                if (a.position != b.position) {
+                    return a.position - b.position;
+                }
+                return a.field - b.field;
+            }
+        });
+        return matches.size() > maxMatches ? matches.subList(0, maxMatches) : matches;
+    }
+
+    /**
+     * Compare the key with a term, unless it was already compared in this query, and add
+     * the words having the term to the matches if it is within the maximum distance.
+     */
+    private void compare(char[] key, int term, int maxDistance, List<Match> matches) {
+        if (mTermStamps[term] == mQueryStamp) {
+            return;
+        }
+        mTermStamps[term] = mQueryStamp;
+        int distance = boundedDistance(key, mTermText, mTermStarts[term],
+                mTermStarts[term + 1] - mTermStarts[term], maxDistance, mPreviousRow,
+                mCurrentRow);
+        if (distance <= maxDistance) {
+            for (int p = mFirstPosting[term]; p != -1; p = mPostingNext[p]) {
+                matches.add(new Match(mPostingCategory[p], mPostingPosition[p],
+                        mPostingField[p], distance));
+            }
+        }
+    }
+
+    /**
+     * Return the edit distance between the key and the n characters of text from start, or
+     * limit + 1 if it is above limit. Only the cells within limit of the diagonal are
+     * computed, the others can't lead to a distance within limit. The rows must hold at
+     * least key.length + 1 values.
+     */
+    private static int boundedDistance(char[] key, char[] text, int start, int n, int limit,
+                                       int[] previous, int[] current) {
+        int m = key.length;
+        if (Math.abs(m - n) > limit) {
+            return limit + 1;
+        }
+        int outside = limit + 1;
+        // The rows run over the key, so their size doesn't depend on the terms
+        for (int i = 0; i <= m; i++) {
+            previous[i] = i <= limit ? i : outside;
+        }
+        for (int j = 1; j <= n; j++) {
+            int from = Math.max(1, j - limit);
+            int to = Math.min(m, j + limit);
+            current[from - 1] = from == 1 && j <= limit ? j : outside;
+            int rowMin = current[from - 1];
+            char c = text[start + j - 1];
+            for (int i = from; i <= to; i++) {
+                int cost = key[i - 1] == c ? 0 : 1;
+                int value = Math.min(Math.min(current[i - 1] + 1, previous[i] + 1),
+                        previous[i - 1] + cost);
+                current[i] = value;
+                if (value < rowMin) {
+                    rowMin = value;
+                }
+            }
+            if (to < m) {
+                current[to + 1] = outside;
+            }
+            if (rowMin > limit) {
+                return outside;
+            }
+            int[] tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+        return Math.min(previous[m], outside);
+    }
+
+    /**
+     * Return the bigram starting at the given index of the text.
+     */
+    private static long gram(char[] text, int index) {
+        return ((long) text[index] << 16) | text[index + 1];
+    }
+
+    /**
+     * Pack a term and the position of a bigram in the term. The positions past
+     * {@link #MAX_POSITION} are stored as MAX_POSITION.
+     */
+    private static int occurrence(int term, int position) {
+        return (term << POSITION_BITS) | Math.min(position, MAX_POSITION);
+    }
+
+    /**
+     * Return the edit distance between a and b using the given rows, which must hold at
+     * least b.length() + 1 values, or a value above limit as soon as the distance is known
+     * to be above limit.
+     */
+    static int levenshtein(CharSequence a, CharSequence b, int limit, int[] previous, int[] current) {
+        int m = a.length();
+        int n = b.length();
+        if (Math.abs(m - n) > limit) {
+            return limit + 1;
+        }
+        for (int j = 0; j <= n; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= m; i++) {
+            current[0] = i;
+            int rowMin = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= n; j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1),
+                        previous[j - 1] + cost);
+                current[j] = value;
+                if (value < rowMin) {
+                    rowMin = value;
+                }
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+        return previous[n];
+    }
+
+    /**
+     * {@link Builder} collects the words of a {@link FuzzyMatcher}.
+     */
+    public static class Builder {
+
+        private TextFolder mDefaultFolder = TextFolder.DEFAULT;
+        private TextFolder mMiwokFolder = TextFolder.MIWOK;
+
+        private final List<String> mTerms = new ArrayList<>();
+        private final Map<String, Integer> mNodesByTerm = new HashMap<>();
+        private int[] mFirstPosting = new int[64];
+
+        private int mPostingCount;
+        private int[] mPostingCategory = new int[64];
+        private int[] mPostingPosition = new int[64];
+        private int[] mPostingField = new int[64];
+        private int[] mPostingNext = new int[64];
+
+        /**
+         * Set the rules used to fold the default translations. They must be set before
+         * adding words.
+         */
+        public Builder setDefaultFolder(TextFolder folder) {
+            mDefaultFolder = folder;
+            return this;
+        }
+
+        /**
+         * Set the rules used to fold the Miwok translations and the queries. They must be
+         * set before adding words.
+         */
+        public Builder setMiwokFolder(TextFolder folder) {
+            mMiwokFolder = folder;
+            return this;
+        }
+
+        /**
+         * Add the words of a category.
+         *
+         * @param category is the category of the words, returned in the matches
+         * @param words are the words of the category
+         */
+        public Builder addCategory(int category, VocabularyStore words) {
+            for (int i = 0; i < words.size(); i++) {
+                add(mDefaultFolder.fold(words.getDefaultTranslation(i)), category, i,
+                        SearchIndex.FIELD_DEFAULT);
+                add(mMiwokFolder.fold(words.getMiwokTranslation(i)), category, i,
+                        SearchIndex.FIELD_MIWOK);
+            }
+            return this;
+        }
+
+        public FuzzyMatcher build() {
+            return new FuzzyMatcher(this, mMiwokFolder);
+        }
+
+        private void add(String term, int category, int position, int field) {
+            if (term.isEmpty()) {
+                return;
+            }
+            Integer node = mNodesByTerm.get(term);
+            if (node == null) {
+                node = insert(term);
+                mNodesByTerm.put(term, node);
+            }
+            if (mPostingCount == mPostingNext.length) {
+                int capacity = mPostingCount * 2;
+                mPostingCategory = Arrays.copyOf(mPostingCategory, capacity);
+                mPostingPosition = Arrays.copyOf(mPostingPosition, capacity);
+                mPostingField = Arrays.copyOf(mPostingField, capacity);
+                mPostingNext = Arrays.copyOf(mPostingNext, capacity);
+            }
+            int posting = mPostingCount++;
+            mPostingCategory[posting] = category;
+            mPostingPosition[posting] = position;
+            mPostingField[posting] = field;
+            mPostingNext[posting] = mFirstPosting[node];
+            mFirstPosting[node] = posting;
+        }
+
+        /**
+         * Add a new term and return its index.
+         */
+        private int insert(String term) {
+            int node = mTerms.size();
+            if (node == mFirstPosting.length) {
+                mFirstPosting = Arrays.copyOf(mFirstPosting, node * 2);
+            }
+            mTerms.add(term);
+            mFirstPosting[node] = -1;
+            return node;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.android.miwok;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.LruCache;
+import android.view.View;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link IconCache} decodes the icons of the words at the size they are displayed at, on a
+ * background thread, and keeps them in a cache bounded by a number of bytes.
+ * The drawables are decoded once at exactly the list_item_height size instead of at their
+ * full density each time a row is recycled. The pending request of each view is kept in
+ * the view, and dropped or replaced when the view is bound again, so a recycled row never
+ * gets the icon of its old word, and a fast scroll doesn't queue the decodes of every row
+ * it went past.
+ */
+
+public class IconCache {
+
+    /** Fraction of the maximum heap used by the cache */
+    private static final int HEAP_FRACTION = 16;
+
+    /** Cache shared by all the lists of the app */
+    private static IconCache sInstance;
+
+    /**
+     * Callback receiving a decoded icon on the main thread
+     */
+    public interface Callback {
+        void onIconReady(Bitmap icon);
+    }
+
+    private final Resources mResources;
+
+    /** Width and height of the decoded icons, in pixels */
+    private final int mIconSize;
+
+    /** Decoded icons by resource ID and size */
+    private final LruCache<Long, Bitmap> mCache;
+
+    /** Background thread decoding the icons, its queue lets the dropped requests be removed */
+    private final ThreadPoolExecutor mExecutor;
+
+    /** Used to deliver the decoded icons on the main thread */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private final AtomicLong mCancelCount = new AtomicLong();
+    private final AtomicLong mDecodeCount = new AtomicLong();
+    private final AtomicLong mDecodeTimeMs = new AtomicLong();
+
+    /**
+     * Return the {@link IconCache} shared by the whole app, creating it if needed.
+     *
+     * @param context is the context of the app
+     */
+    public static synchronized IconCache getInstance(Context context) {
+        if (sInstance == null) {
+            Resources resources = context.getApplicationContext().getResources();
+            int maxBytes = (int) (Runtime.getRuntime().maxMemory() / HEAP_FRACTION);
+            sInstance = new IconCache(resources,
+                    resources.getDimensionPixelSize(R.dimen.list_item_height), maxBytes);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Create a new {@link IconCache} object
+     *
+     * @param resources are the resources the icons are decoded from
+     * @param iconSize is the width and height of the decoded icons, in pixels
+     * @param maxBytes is the maximum number of bytes of all the cached icons
+     */
+    IconCache(Resources resources, int iconSize, int maxBytes) {
+        mResources = resources;
+        mIconSize = iconSize;
+        mCache = new LruCache<Long, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+        mExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }
+                }, "IconCache");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Deliver the icon to the callback. If the icon is cached, the callback is called right
+     * away, otherwise the icon is decoded in the background and the callback is called on
+     * the main thread. Each view waits for one icon at most: the request of the icon it
+     * showed before is dropped, so the decodes of the rows scrolled past don't delay the
+     * rows on screen. It must be called on the main thread.
+     *
+     * @param view is the view the icon is for, it keeps its pending request
+     * @param imageResourceId is the drawable resource ID of the icon
+     * @param callback receives the icon
+     * @return true if the icon was cached and already delivered
+     */
+    public boolean load(View view, int imageResourceId, Callback callback) {
+        Request pending = (Request) view.getTag(R.id.icon_request);
+        Long key = key(imageResourceId);
+        Bitmap cached = mCache.get(key);
+        if (cached != null) {
+            if (pending != null) {
+                pending.cancel();
+                view.setTag(R.id.icon_request, null);
+            }
+            mHitCount.incrementAndGet();
+            callback.onIconReady(cached);
+            return true;
+        }
+        mMissCount.incrementAndGet();
+        if (pending != null) {
+            if (pending.mImageResourceId == imageResourceId && pending.mCallback == callback) {
+                // The row was bound again to the same word, its request is still good
+                return false;
+            }
+            pending.cancel();
+        }
+        Request request = new Request(view, imageResourceId, key, callback);
+        view.setTag(R.id.icon_request, request);
+        mExecutor.execute(request);
+        return false;
+    }
+
+    /**
+     * Drop the request of the icon a view was waiting for, for instance when its word has
+     * no icon. It must be called on the main thread.
+     */
+    public void cancel(View view) {
+        Request pending = (Request) view.getTag(R.id.icon_request);
+        if (pending != null) {
+            pending.cancel();
+            view.setTag(R.id.icon_request, null);
+        }
+    }
+
+    /**
+     * Remove all the icons from the cache.
+     */
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    /**
+     * Return the number of requests served from the cache.
+     */
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * Return the number of requests that had to wait for a decode.
+     */
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * Return the number of requests dropped before their icon was delivered.
+     */
+    public long getCancelCount() {
+        return mCancelCount.get();
+    }
+
+    /**
+     * Return the number of icons decoded.
+     */
+    public long getDecodeCount() {
+        return mDecodeCount.get();
+    }
+
+    /**
+     * Return the total time spent decoding icons, in milliseconds.
+     */
+    public long getDecodeTimeMs() {
+        return mDecodeTimeMs.get();
+    }
+
+    /**
+     * Return the number of bytes used by the cached icons.
+     */
+    public int getSizeBytes() {
+        return mCache.size();
+    }
+
+    private Long key(int imageResourceId) {
+        return ((long) imageResourceId << 32) | mIconSize;
+    }
+
+    /**
+     * Decode the drawable at exactly the icon size.
+     */
+    private Bitmap decode(int imageResourceId) {
+        long start = SystemClock.uptimeMillis();
+
+        // Read the size of the image, without the density scaling of the drawable folder
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        options.inScaled = false;
+        BitmapFactory.decodeResource(mResources, imageResourceId, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        // Subsample by the largest power of 2 that keeps the image at least as big as the icon
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= mIconSize &&
+                options.outHeight / (sampleSize * 2) >= mIconSize) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap sampled = BitmapFactory.decodeResource(mResources, imageResourceId, options);
+        if (sampled == null) {
+            return null;
+        }
+
+        Bitmap icon = sampled;
+        if (sampled.getWidth() != mIconSize || sampled.getHeight() != mIconSize) {
+            icon = Bitmap.createScaledBitmap(sampled, mIconSize, mIconSize, true);
+            if (icon != sampled) {
+                sampled.recycle();
+            }
+        }
+        mDecodeCount.incrementAndGet();
+        mDecodeTimeMs.addAndGet(SystemClock.uptimeMillis() - start);
+        return icon;
+    }
+
+    /**
+     * {@link Request} decodes the icon a view waits for, unless it is dropped first.
+     */
+    private class Request implements Runnable {
+
+        final View mView;
+        final int mImageResourceId;
+        final Long mKey;
+        final Callback mCallback;
+
+        /** Set on the main thread when the view no longer waits for the icon */
+        volatile boolean mCancelled;
+
+        Request(View view, int imageResourceId, Long key, Callback callback) {
+            mView = view;
+            mImageResourceId = imageResourceId;
+            mKey = key;
+            mCallback = callback;
+        }
+
+        /**
+         * Drop the request: remove it from the queue if it is still waiting, and don't
+         * deliver its icon if it is being decoded.
+         */
+        void cancel() {
+            mCancelled = true;
+            mExecutor.remove(this);
+            mCancelCount.incrementAndGet();
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled) {
+                return;
+            }
+            // Another request may have decoded it while this one was waiting
+            Bitmap icon = mCache.get(mKey);
+            if (icon == null) {
+                icon = decode(mImageResourceId);
+                if (icon == null) {
+                    return;
+                }
+                mCache.put(mKey, icon);
+            }
+            final Bitmap result = icon;
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    // Only deliver to a view still waiting for this request
+                    if (!mCancelled && mView.getTag(R.id.icon_request) == Request.this) {
+                        mView.setTag(R.id.icon_request, null);
+                        mCallback.onIconReady(result);
+                    }
+                }
+            });
+        }
+    }
+}
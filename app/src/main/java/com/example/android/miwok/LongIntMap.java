@@ -0,0 +1,176 @@
+package com.example.android.miwok;
+
+import java.util.Arrays;
+
+/**
+ * {@link LongIntMap} maps long keys, such as the stable IDs of the words, to int values.
+ * The keys and values are stored in two primitive arrays with open addressing, so a
+ * million entries take a few megabytes instead of a million boxed objects.
+ */
+
+class LongIntMap {
+
+    /** Value returned by {@link #get(long)} for a missing key */
+    static final int NO_VALUE = -1;
+
+    /** Marks a free slot, the key 0 is stored apart */
+    private static final long FREE = 0;
+
+    private long[] mKeys;
+    private int[] mValues;
+
+    /** Number of keys stored in the arrays, not counting the key 0 */
+    private int mSize;
+
+    private boolean mHasZeroKey;
+    private int mZeroValue;
+
+    /**
+     * Create a new {@link LongIntMap} object
+     *
+     * @param expectedSize is the number of keys expected, used to size the arrays
+     */
+    LongIntMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        mKeys = new long[capacity];
+        mValues = new int[capacity];
+    }
+
+    /**
+     * Return the number of keys in the map.
+     */
+    int size() {
+        return mSize + (mHasZeroKey ? 1 : 0);
+    }
+
+    /**
+     * Return whether the map holds the key.
+     */
+    boolean containsKey(long key) {
+        if (key == FREE) {
+            return mHasZeroKey;
+        }
+        return mKeys[slot(key)] == key;
+    }
+
+    /**
+     * Return the value of the key, or {@link #NO_VALUE} if the map doesn't hold it.
+     */
+    int get(long key) {
+        if (key == FREE) {
+            return mHasZeroKey ? mZeroValue : NO_VALUE;
+        }
+        int slot = slot(key);
+        return mKeys[slot] == key ? mValues[slot] : NO_VALUE;
+    }
+
+    /**
+     * Set the value of the key.
+     *
+     * @return the previous value of the key, or {@link #NO_VALUE} if it was not in the map
+     */
+    int put(long key, int value) {
+        if (key == FREE) {
+            int previous = mHasZeroKey ? mZeroValue : NO_VALUE;
+            mHasZeroKey = true;
+            mZeroValue = value;
+            return previous;
+        }
+        int slot = slot(key);
+        if (mKeys[slot] == key) {
+            int previous = mValues[slot];
+            mValues[slot] = value;
+            return previous;
+        }
+        mKeys[slot] = key;
+        mValues[slot] = value;
+        // Keep at least half of the slots free, so the probe sequences stay short
+        if (++mSize * 2 > mKeys.length) {
+            grow();
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Remove the key from the map.
+     *
+     * @return the value of the key, or {@link #NO_VALUE} if it was not in the map
+     */
+    int remove(long key) {
+        if (key == FREE) {
+            int previous = mHasZeroKey ? mZeroValue : NO_VALUE;
+            mHasZeroKey = false;
+            return previous;
+        }
+        int slot = slot(key);
+        if (mKeys[slot] != key) {
+            return NO_VALUE;
+        }
+        int previous = mValues[slot];
+        mKeys[slot] = FREE;
+        mSize--;
+
+        // Move back the keys that follow in the same probe sequence, so none is lost
+        int mask = mKeys.length - 1;
+        int free = slot;
+        int next = (slot + 1) & mask;
+        while (mKeys[next] != FREE) {
+            int home = mix(mKeys[next]) & mask;
+            // The key can move to the free slot if its home isn't between the two slots
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                mKeys[free] = mKeys[next];
+                mValues[free] = mValues[next];
+                mKeys[next] = FREE;
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        return previous;
+    }
+
+    /**
+     * Remove all the keys.
+     */
+    void clear() {
+        Arrays.fill(mKeys, FREE);
+        mSize = 0;
+        mHasZeroKey = false;
+    }
+
+    /**
+     * Return the slot holding the key, or the free slot where it would be stored.
+     */
+    private int slot(long key) {
+        int mask = mKeys.length - 1;
+        int slot = mix(key) & mask;
+        while (mKeys[slot] != FREE && mKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] keys = mKeys;
+        int[] values = mValues;
+        mKeys = new long[keys.length * 2];
+        mValues = new int[keys.length * 2];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                int slot = slot(keys[i]);
+                mKeys[slot] = keys[i];
+                mValues[slot] = values[i];
+            }
+        }
+    }
+
+    /**
+     * Spread the bits of the key, the low bits of similar keys would collide.
+     */
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
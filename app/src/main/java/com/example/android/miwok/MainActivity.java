@@ -25,18 +25,27 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // Time each phase of the start, only the first activity of the process is recorded
+        StartupTrace trace = StartupTrace.getInstance();
 
         // Set the content of the activity to use the activity_main.xml layout file
+        trace.beginPhase(StartupTrace.PHASE_CONTENT_VIEW);
         setContentView(R.layout.activity_main);
+        trace.endPhase(StartupTrace.PHASE_CONTENT_VIEW);
+
         // Find the view pager that will allow the user to swipe between fragments
         ViewPager vp = (ViewPager) findViewById(R.id.viewpager);
         // Create an adapter that knows which fragment should be shown on each page
+        trace.beginPhase(StartupTrace.PHASE_CATEGORY_ADAPTER);
         CategoryAdapter adapter = new CategoryAdapter(this, getSupportFragmentManager());
         // Set the adapter onto the view pager
         vp.setAdapter(adapter);
+        trace.endPhase(StartupTrace.PHASE_CATEGORY_ADAPTER);
 
         // Find the tab layout that shows the tabs
+        trace.beginPhase(StartupTrace.PHASE_TABS);
         TabLayout tabLayout = (TabLayout) findViewById(R.id.sliding_tabs);
         tabLayout.setupWithViewPager(vp);
+        trace.endPhase(StartupTrace.PHASE_TABS);
     }
 }
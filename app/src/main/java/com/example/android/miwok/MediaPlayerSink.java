@@ -0,0 +1,348 @@
+package com.example.android.miwok;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.AudioManager;
+import android.media.MediaPlayer;
+import android.os.Build;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+/**
+ * {@link MediaPlayerSink} is an {@link AudioSink} that keeps one prepared {@link MediaPlayer}
+ * per loaded clip. Playing a loaded clip again only rewinds and starts the player, and
+ * players of unloaded clips are reset and reused instead of being created again.
+ * Clips are read from the {@link AudioBundle} when it holds them, so loading a clip doesn't
+ * open any resource, and they start after the leading silence the bundle found in them.
+ * A next clip is chained with {@link MediaPlayer#setNextMediaPlayer}, or started from the
+ * completion callback on versions that don't support it.
+ * The first audio of a played clip is reported when its player sends the audio rendering
+ * start info, on the versions and devices that send it.
+ * All the methods can be called from any thread.
+ */
+
+public class MediaPlayerSink implements AudioSink {
+
+    private static final String LOG_TAG = MediaPlayerSink.class.getSimpleName();
+
+    /**
+     * Info sent by the player when it has pushed its first audio frame for rendering. It is
+     * hidden in the SDK, and only sent by some versions of the platform.
+     */
+    private static final int MEDIA_INFO_AUDIO_RENDERING_START = 4;
+
+    /** Maximum number of released players kept around for reuse */
+    private static final int MAX_SPARE_PLAYERS = 2;
+
+    /** Context of the app, used to open the audio resources */
+    private final Context mContext;
+
+    /** Prepared players for the loaded clips, by clip handle */
+    private final SparseArray<MediaPlayer> mPlayers = new SparseArray<>();
+
+    /** Players of unloaded clips that can be reset and reused */
+    private final ArrayDeque<MediaPlayer> mSparePlayers = new ArrayDeque<>();
+
+    /** Handle given to the next loaded clip */
+    private int mNextHandle = 0;
+
+    /** Position each clip starts from in milliseconds, after its silence, by clip handle */
+    private final SparseIntArray mStartPositions = new SparseIntArray();
+
+    /** Next clip of each clip that has one, by clip handle */
+    private final SparseIntArray mNextClips = new SparseIntArray();
+
+    /** Clip started last, used to measure the gap when the next clip takes over */
+    private int mStartedHandle = NO_CLIP;
+
+    /** Time the started clip would have begun if it was never paused, in nanoseconds */
+    private long mStartedAtNanos;
+
+    /** Gap measured when the last next clip started */
+    private long mHandoffGapNanos;
+
+    /** Clip played that didn't render its first audio yet, or {@link #NO_CLIP} */
+    private int mFirstAudioHandle = NO_CLIP;
+
+    /** Listener triggered when a clip has completed playing */
+    private volatile OnCompletionListener mOnCompletionListener;
+
+    /** Listener triggered when a next clip has taken over */
+    private volatile OnHandoffListener mOnHandoffListener;
+
+    /** Listener triggered when a played clip has rendered its first audio */
+    private volatile OnFirstAudioListener mOnFirstAudioListener;
+
+    /**
+     * Create a new {@link MediaPlayerSink} object
+     *
+     * @param context is the context of the app
+     */
+    public MediaPlayerSink(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Load the clip. The audio file is prepared outside of the lock, so a clip can be
+     * loaded on a background thread while other clips are played.
+     */
+    @Override
+    public int load(int audioResourceId) {
+        MediaPlayer player;
+        synchronized (this) {
+            player = mSparePlayers.poll();
+        }
+        if (player == null) {
+            player = new MediaPlayer();
+        }
+        int startPosition = 0;
+        try {
+            AudioBundle bundle = AudioBundle.getShared(mContext);
+            int bundleIndex = bundle != null
+                    ? bundle.indexOfResource(mContext.getResources(), audioResourceId) : -1;
+            if (bundleIndex >= 0) {
+                // Play the clip from its slice of the bundle
+                player.setDataSource(bundle.getFileDescriptor(), bundle.getOffset(bundleIndex),
+                        bundle.getLength(bundleIndex));
+                startPosition = bundle.getTrimStartMs(bundleIndex);
+            } else {
+                AssetFileDescriptor afd =
+                        mContext.getResources().openRawResourceFd(audioResourceId);
+                try {
+                    player.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(),
+                            afd.getLength());
+                } finally {
+                    afd.close();
+                }
+            }
+            player.setAudioStreamType(AudioManager.STREAM_MUSIC);
+            player.prepare();
+        } catch (IOException | RuntimeException e) {
+            Log.e(LOG_TAG, "Unable to load audio resource " + audioResourceId, e);
+            player.release();
+            return NO_CLIP;
+        }
+
+        synchronized (this) {
+            final int handle = mNextHandle++;
+            player.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
+                @Override
+                public void onCompletion(MediaPlayer mp) {
+                    onClipCompleted(handle);
+                }
+            });
+            player.setOnInfoListener(new MediaPlayer.OnInfoListener() {
+                @Override
+                public boolean onInfo(MediaPlayer mp, int what, int extra) {
+                    if (what == MediaPlayer.MEDIA_INFO_STARTED_AS_NEXT) {
+                        onStartedAsNext(handle);
+                        return true;
+                    }
+                    if (what == MEDIA_INFO_AUDIO_RENDERING_START) {
+                        onFirstAudio(handle);
+                        return true;
+                    }
+                    return false;
+                }
+            });
+            mPlayers.put(handle, player);
+            mStartPositions.put(handle, startPosition);
+            return handle;
+        }
+    }
+
+    @Override
+    public synchronized void play(int clipHandle) {
+        MediaPlayer player = mPlayers.get(clipHandle);
+        if (player != null) {
+            // Skip the silence at the start of the clip
+            int startPosition = mStartPositions.get(clipHandle, 0);
+            player.seekTo(startPosition);
+            player.start();
+            markStarted(clipHandle, startPosition);
+            mFirstAudioHandle = clipHandle;
+        }
+    }
+
+    @Override
+    public synchronized void pause(int clipHandle) {
+        MediaPlayer player = mPlayers.get(clipHandle);
+        if (player != null && player.isPlaying()) {
+            player.pause();
+        }
+    }
+
+    @Override
+    public synchronized void resume(int clipHandle) {
+        MediaPlayer player = mPlayers.get(clipHandle);
+        if (player != null) {
+            player.start();
+            markStarted(clipHandle, player.getCurrentPosition());
+        }
+    }
+
+    @Override
+    public synchronized void stop(int clipHandle) {
+        MediaPlayer player = mPlayers.get(clipHandle);
+        if (player != null) {
+            if (player.isPlaying()) {
+                player.pause();
+            }
+            player.seekTo(mStartPositions.get(clipHandle, 0));
+        }
+        if (clipHandle == mStartedHandle) {
+            mStartedHandle = NO_CLIP;
+        }
+        if (clipHandle == mFirstAudioHandle) {
+            mFirstAudioHandle = NO_CLIP;
+        }
+    }
+
+    @Override
+    public synchronized void unload(int clipHandle) {
+        MediaPlayer player = mPlayers.get(clipHandle);
+        if (player == null) {
+            return;
+        }
+        mPlayers.remove(clipHandle);
+        mNextClips.delete(clipHandle);
+        mStartPositions.delete(clipHandle);
+        if (clipHandle == mStartedHandle) {
+            mStartedHandle = NO_CLIP;
+        }
+        if (clipHandle == mFirstAudioHandle) {
+            mFirstAudioHandle = NO_CLIP;
+        }
+        player.setOnCompletionListener(null);
+        player.setOnInfoListener(null);
+        if (mSparePlayers.size() < MAX_SPARE_PLAYERS) {
+            // Keep the player so the next load doesn't have to create a new one
+            player.reset();
+            mSparePlayers.add(player);
+        } else {
+            player.release();
+        }
+    }
+
+    @Override
+    public synchronized void setNextClip(int clipHandle, int nextClipHandle) {
+        MediaPlayer player = mPlayers.get(clipHandle);
+        if (player == null) {
+            return;
+        }
+        MediaPlayer nextPlayer = mPlayers.get(nextClipHandle);
+        if (nextPlayer != null) {
+            // The next player starts from where it is, so move it to its start now
+            nextPlayer.seekTo(mStartPositions.get(nextClipHandle, 0));
+            mNextClips.put(clipHandle, nextClipHandle);
+        } else {
+            mNextClips.delete(clipHandle);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            player.setNextMediaPlayer(nextPlayer);
+        }
+    }
+
+    @Override
+    public synchronized void setOnCompletionListener(OnCompletionListener listener) {
+        mOnCompletionListener = listener;
+    }
+
+    @Override
+    public synchronized void setOnHandoffListener(OnHandoffListener listener) {
+        mOnHandoffListener = listener;
+    }
+
+    @Override
+    public synchronized void setOnFirstAudioListener(OnFirstAudioListener listener) {
+        mOnFirstAudioListener = listener;
+    }
+
+    /**
+     * The clip has finished playing. Its next clip, if any, is started (or was already
+     * started by the player) and reported before the completion itself.
+     */
+    private void onClipCompleted(int clipHandle) {
+        int nextClipHandle;
+        long gapNanos = 0;
+        synchronized (this) {
+            nextClipHandle = mNextClips.get(clipHandle, NO_CLIP);
+            mNextClips.delete(clipHandle);
+            MediaPlayer nextPlayer = mPlayers.get(nextClipHandle);
+            if (nextPlayer == null) {
+                nextClipHandle = NO_CLIP;
+                if (clipHandle == mStartedHandle) {
+                    mStartedHandle = NO_CLIP;
+                }
+            } else {
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+                    nextPlayer.start();
+                }
+                // The started info of the next player usually comes first, but not always
+                if (mStartedHandle != nextClipHandle) {
+                    onStartedAsNext(nextClipHandle);
+                }
+                gapNanos = mHandoffGapNanos;
+            }
+        }
+        // The listeners are called without the lock, they may call back into the sink
+        OnHandoffListener handoffListener = mOnHandoffListener;
+        if (nextClipHandle != NO_CLIP && handoffListener != null) {
+            handoffListener.onHandoff(clipHandle, nextClipHandle, gapNanos);
+        }
+        OnCompletionListener listener = mOnCompletionListener;
+        if (listener != null) {
+            listener.onCompletion(clipHandle);
+        }
+    }
+
+    /**
+     * The player of the clip has pushed its first audio for rendering. Only the first one
+     * after {@link #play(int)} is reported.
+     */
+    private void onFirstAudio(int clipHandle) {
+        long renderNanos = System.nanoTime();
+        synchronized (this) {
+            if (clipHandle != mFirstAudioHandle) {
+                return;
+            }
+            mFirstAudioHandle = NO_CLIP;
+        }
+        // Called without the lock, like the other listeners
+        OnFirstAudioListener listener = mOnFirstAudioListener;
+        if (listener != null) {
+            listener.onFirstAudio(clipHandle, renderNanos);
+        }
+    }
+
+    /**
+     * The next clip has started, measure the gap since the end of the clip before it.
+     * The end is estimated from the time the clip started and its duration.
+     */
+    private synchronized void onStartedAsNext(int clipHandle) {
+        if (clipHandle == mStartedHandle) {
+            return;
+        }
+        long now = System.nanoTime();
+        long gapNanos = 0;
+        MediaPlayer previousPlayer = mPlayers.get(mStartedHandle);
+        if (mStartedHandle != NO_CLIP && previousPlayer != null) {
+            long endNanos = mStartedAtNanos + previousPlayer.getDuration() * 1000000L;
+            gapNanos = Math.max(0, now - endNanos);
+        }
+        mHandoffGapNanos = gapNanos;
+        markStarted(clipHandle, mStartPositions.get(clipHandle, 0));
+    }
+
+    /**
+     * Remember when the clip started, as if it had played from its beginning without pause.
+     */
+    private void markStarted(int clipHandle, int positionMillis) {
+        mStartedHandle = clipHandle;
+        mStartedAtNanos = System.nanoTime() - positionMillis * 1000000L;
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.android.miwok;
+
+/**
+ * {@link Mfcc} turns speech samples into mel frequency cepstral coefficients, one vector of
+ * coefficients per short frame of audio. These vectors describe the shape of the spectrum
+ * heard in each frame, and are what {@link Dtw} compares between two recordings.
+ *
+ * Each frame goes through pre-emphasis, a Hamming window, a power spectrum, a bank of
+ * triangular mel filters, a logarithm and a discrete cosine transform. The window, the
+ * filters and the cosine table are computed once, and all the work buffers are allocated
+ * in the constructor, so extracting the coefficients doesn't allocate once the output
+ * {@link Features} is large enough. An instance is not thread safe.
+ */
+
+class Mfcc {
+
+    /** Length of a frame, in milliseconds */
+    static final int FRAME_MS = 25;
+
+    /** Time between the starts of two frames, in milliseconds */
+    static final int HOP_MS = 10;
+
+    /** Number of mel filters */
+    static final int FILTER_COUNT = 26;
+
+    /** Number of coefficients kept per frame, the first one (the energy) is dropped */
+    static final int COEFFICIENT_COUNT = 12;
+
+    /** Frequencies covered by the filters, where most of the speech is */
+    private static final float LOW_HZ = 100;
+    private static final float HIGH_HZ = 4000;
+
+    private static final float PRE_EMPHASIS = 0.97f;
+
+    /** Lowest filter energy, so silence doesn't give the logarithm of zero */
+    private static final float MIN_ENERGY = 1e-10f;
+
+    /**
+     * {@link Features} holds the coefficients of the frames of a recording, one frame after
+     * the other in a single array. It grows when needed and is meant to be reused.
+     */
+    static class Features {
+
+        private float[] mData = new float[0];
+        private int mFrameCount;
+
+        /**
+         * Return the number of frames.
+         */
+        int getFrameCount() {
+            return mFrameCount;
+        }
+
+        /**
+         * Return the coefficients, the frame i starts at i * {@link #COEFFICIENT_COUNT}.
+         */
+        float[] getData() {
+            return mData;
+        }
+
+        void reset(int frameCount) {
+            int size = frameCount * COEFFICIENT_COUNT;
+            if (mData.length < size) {
+                mData = new float[size];
+            }
+            mFrameCount = frameCount;
+        }
+
+        /**
+         * Subtract the mean of each coefficient over all the frames. This removes most of the
+         * differences due to the microphone and the room, which are constant over a recording.
+         */
+        void normalizeMean() {
+            if (mFrameCount == 0) {
+                return;
+            }
+            for (int c = 0; c < COEFFICIENT_COUNT; c++) {
+                float sum = 0;
+                for (int f = 0; f < mFrameCount; f++) {
+                    sum += mData[f * COEFFICIENT_COUNT + c];
+                }
+                float mean = sum / mFrameCount;
+                for (int f = 0; f < mFrameCount; f++) {
+                    mData[f * COEFFICIENT_COUNT + c] -= mean;
+                }
+            }
+        }
+    }
+
+    private final int mSampleRate;
+    private final int mFrameLength;
+    private final int mHop;
+    private final Fft mFft;
+
+    private final float[] mWindow;
+
+    /** Triangular filters, as a first FFT bin and the weights of the following bins */
+    private final int[] mFilterStarts;
+    private final float[][] mFilterWeights;
+
+    /** Cosine table of the DCT, by coefficient then filter */
+    private final float[][] mDct;
+
+    /** Work buffers */
+    private final float[] mFrame;
+    private final float[] mScratch;
+    private final float[] mPower;
+    private final float[] mEnergies;
+
+    /**
+     * Create a new {@link Mfcc} object
+     *
+     * @param sampleRate is the sample rate of the samples to analyze, in Hz
+     */
+    Mfcc(int sampleRate) {
+        if (sampleRate < 2 * HIGH_HZ) {
+            throw new IllegalArgumentException("Sample rate too low: " + sampleRate);
+        }
+        mSampleRate = sampleRate;
+        mFrameLength = sampleRate * FRAME_MS / 1000;
+        mHop = sampleRate * HOP_MS / 1000;
+        int fftSize = Integer.highestOneBit(mFrameLength);
+        if (fftSize < mFrameLength) {
+            fftSize <<= 1;
+        }
+        mFft = new Fft(fftSize);
+
+        mWindow = new float[mFrameLength];
+        for (int i = 0; i < mFrameLength; i++) {
+            mWindow[i] = (float) (0.54 - 0.46 * Math.cos(2 * Math.PI * i / (mFrameLength - 1)));
+        }
+
+        // Filters equally spaced on the mel scale, each one spanning its two neighbours
+        mFilterStarts = new int[FILTER_COUNT];
+        mFilterWeights = new float[FILTER_COUNT][];
+        double lowMel = toMel(LOW_HZ);
+        double highMel = toMel(HIGH_HZ);
+        double[] edges = new double[FILTER_COUNT + 2];
+        for (int i = 0; i < edges.length; i++) {
+            double hz = toHz(lowMel + (highMel - lowMel) * i / (FILTER_COUNT + 1));
+            edges[i] = hz * fftSize / sampleRate;
+        }
+        for (int f = 0; f < FILTER_COUNT; f++) {
+            int start = (int) Math.ceil(edges[f]);
+            int end = (int) Math.floor(edges[f + 2]);
+            mFilterStarts[f] = start;
+            mFilterWeights[f] = new float[Math.max(0, end - start + 1)];
+            for (int bin = start; bin <= end; bin++) {
+                double weight = bin <= edges[f + 1]
+                        ? (bin - edges[f]) / (edges[f + 1] - edges[f])
+                        : (edges[f + 2] - bin) / (edges[f + 2] - edges[f + 1]);
+                mFilterWeights[f][bin - start] = (float) Math.max(0, weight);
+            }
+        }
+
+        mDct = new float[COEFFICIENT_COUNT][FILTER_COUNT];
+        for (int c = 0; c < COEFFICIENT_COUNT; c++) {
+            for (int f = 0; f < FILTER_COUNT; f++) {
+                // Coefficient c + 1, the coefficient 0 is only the overall energy
+                mDct[c][f] = (float) Math.cos(Math.PI * (c + 1) * (f + 0.5) / FILTER_COUNT);
+            }
+        }
+
+        mFrame = new float[fftSize];
+        mScratch = new float[fftSize];
+        mPower = new float[fftSize / 2 + 1];
+        mEnergies = new float[FILTER_COUNT];
+    }
+
+    /**
+     * Return the sample rate the coefficients are extracted at, in Hz.
+     */
+    int getSampleRate() {
+        return mSampleRate;
+    }
+
+    /**
+     * Return the number of frames extracted from the given number of samples.
+     */
+    int getFrameCount(int sampleCount) {
+        return sampleCount < mFrameLength ? 0 : 1 + (sampleCount - mFrameLength) / mHop;
+    }
+
+    /**
+     * Extract the coefficients of mono 16 bit samples.
+     *
+     * @param samples holds the samples
+     * @param offset is the index of the first sample
+     * @param length is the number of samples
+     * @param features receives the coefficients of each frame
+     */
+    void extract(short[] samples, int offset, int length, Features features) {
+        int frameCount = getFrameCount(length);
+        features.reset(frameCount);
+        float[] out = features.getData();
+        for (int frame = 0; frame < frameCount; frame++) {
+            int start = offset + frame * mHop;
+            // Pre-emphasis boosts the high frequencies, then the window smooths the edges
+            float previous = start > offset ? samples[start - 1] : samples[start];
+            for (int i = 0; i < mFrameLength; i++) {
+                float sample = samples[start + i];
+                mFrame[i] = (sample - PRE_EMPHASIS * previous) * mWindow[i] / 32768f;
+                previous = sample;
+            }
+            for (int i = mFrameLength; i < mFrame.length; i++) {
+                mFrame[i] = 0;
+            }
+            mFft.powerSpectrum(mFrame, mScratch, mPower);
+
+            for (int f = 0; f < FILTER_COUNT; f++) {
+                float[] weights = mFilterWeights[f];
+                int first = mFilterStarts[f];
+                float energy = 0;
+                for (int i = 0; i < weights.length; i++) {
+                    energy += weights[i] * mPower[first + i];
+                }
+                mEnergies[f] = (float) Math.log(Math.max(energy, MIN_ENERGY));
+            }
+
+            int base = frame * COEFFICIENT_COUNT;
+            for (int c = 0; c < COEFFICIENT_COUNT; c++) {
+                float[] cosines = mDct[c];
+                float sum = 0;
+                for (int f = 0; f < FILTER_COUNT; f++) {
+                    sum += cosines[f] * mEnergies[f];
+                }
+                out[base + c] = sum;
+            }
+        }
+    }
+
+    private static double toMel(double hz) {
+        return 2595 * Math.log10(1 + hz / 700);
+    }
+
+    private static double toHz(double mel) {
+        return 700 * (Math.pow(10, mel / 2595) - 1);
+    }
+}
@@ -0,0 +1,415 @@
+package com.example.android.miwok;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * {@link PcmCache} keeps decoded clips as raw PCM files in a private directory, so a clip is
+ * decoded only once and then played straight from a memory-mapped buffer.
+ * The files are kept under a total size, the least recently used ones being deleted first.
+ * The last use of a file is its modification time, so the order survives a restart.
+ *
+ * The cache only deals with files and buffers, it doesn't use any Android API, so it can be
+ * tested on a plain JVM.
+ *
+ * Format of a cache file (little endian, like the PCM data):
+ *   int    magic ("MWKP")
+ *   int    version of the format
+ *   int    sample rate in Hz
+ *   int    number of channels
+ *   int    number of frames
+ *   16 bit samples, interleaved if there are several channels
+ */
+
+public class PcmCache {
+
+    /** Magic number at the start of a cache file ("MWKP") */
+    static final int MAGIC = 0x4D574B50;
+
+    /** Version of the file format */
+    static final int VERSION = 1;
+
+    /** Size of the header of a cache file */
+    static final int HEADER_SIZE = 20;
+
+    /** Bytes per sample, the clips are stored as 16 bit PCM */
+    static final int BYTES_PER_SAMPLE = 2;
+
+    private static final String EXTENSION = ".pcm";
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    /** Keys are used as file names, so only simple characters are allowed */
+    private static final Pattern KEY_PATTERN = Pattern.compile("[a-zA-Z0-9_.-]+");
+
+    /**
+     * {@link Clip} is a cached clip, mapped in memory.
+     */
+    public static class Clip {
+
+        private final String mKey;
+        private final int mSampleRate;
+        private final int mChannelCount;
+        private final int mFrameCount;
+        private final ByteBuffer mData;
+
+        Clip(String key, int sampleRate, int channelCount, int frameCount, ByteBuffer data) {
+            mKey = key;
+            mSampleRate = sampleRate;
+            mChannelCount = channelCount;
+            mFrameCount = frameCount;
+            mData = data;
+        }
+
+        public String getKey() {
+            return mKey;
+        }
+
+        public int getSampleRate() {
+            return mSampleRate;
+        }
+
+        public int getChannelCount() {
+            return mChannelCount;
+        }
+
+        public int getFrameCount() {
+            return mFrameCount;
+        }
+
+        /**
+         * Return the number of bytes of one frame, one sample per channel.
+         */
+        public int getFrameSize() {
+            return mChannelCount * BYTES_PER_SAMPLE;
+        }
+
+        public int getDurationMs() {
+            return (int) (mFrameCount * 1000L / mSampleRate);
+        }
+
+        /**
+         * Return the samples of the clip, as a new read only little endian buffer.
+         */
+        public ByteBuffer getData() {
+            return mData.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * {@link Editor} writes a new clip into the cache. The clip is only visible once
+     * {@link #commit(int, int)} is called. Each editor writes its own temporary file, so
+     * several threads can decode the same clip at once: each gets its own clip, and the
+     * last one committed stays in the cache.
+     */
+    public class Editor {
+
+        private final String mKey;
+        private final File mTempFile;
+        private final RandomAccessFile mFile;
+        private long mDataSize;
+        private boolean mDone;
+
+        private Editor(String key) throws IOException {
+            mKey = key;
+            // The prefix of a temporary file must be at least 3 characters long
+            mTempFile = File.createTempFile(key + ".edit", TEMP_EXTENSION, mDirectory);
+            mFile = new RandomAccessFile(mTempFile, "rw");
+            // The header is written on commit, once the number of frames is known
+            mFile.seek(HEADER_SIZE);
+        }
+
+        /**
+         * Append the remaining samples of the buffer, which must be 16 bit little endian.
+         */
+        public void write(ByteBuffer samples) throws IOException {
+            FileChannel channel = mFile.getChannel();
+            while (samples.hasRemaining()) {
+                mDataSize += channel.write(samples);
+            }
+        }
+
+        /**
+         * Return the number of bytes of samples written so far.
+         */
+        public long getDataSize() {
+            return mDataSize;
+        }
+
+        /**
+         * Finish writing the clip, add it to the cache and return it mapped in memory.
+         *
+         * @param sampleRate is the sample rate of the samples in Hz
+         * @param channelCount is the number of channels of the samples
+         */
+        public Clip commit(int sampleRate, int channelCount) throws IOException {
+            if (sampleRate <= 0 || channelCount <= 0) {
+                abort();
+                throw new IllegalArgumentException("Invalid format: " + sampleRate + " Hz, " +
+                        channelCount + " channels");
+            }
+            long frameCount = mDataSize / (channelCount * BYTES_PER_SAMPLE);
+            if (frameCount > Integer.MAX_VALUE) {
+                abort();
+                throw new IOException("Clip too long: " + frameCount + " frames");
+            }
+            try {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(sampleRate).putInt(channelCount)
+                        .putInt((int) frameCount);
+                header.flip();
+                // Drop a trailing partial frame, if any
+                mFile.setLength(HEADER_SIZE + frameCount * channelCount * BYTES_PER_SAMPLE);
+                mFile.getChannel().write(header, 0);
+            } finally {
+                mDone = true;
+                mFile.close();
+            }
+            return add(mKey, mTempFile);
+        }
+
+        /**
+         * Drop the clip, for instance when it could not be decoded.
+         */
+        public void abort() {
+            if (mDone) {
+                return;
+            }
+            mDone = true;
+            try {
+                mFile.close();
+            } catch (IOException e) {
+                // The file is deleted anyway
+            }
+            mTempFile.delete();
+        }
+    }
+
+    /** Directory holding the cache files */
+    private final File mDirectory;
+
+    /** Maximum total size of the cache files in bytes */
+    private final long mMaxSize;
+
+    /** Size of the cache files by key, in least recently used order */
+    private final LinkedHashMap<String, Long> mSizes =
+            new LinkedHashMap<String, Long>(16, 0.75f, true);
+
+    /** Total size of the cache files in bytes */
+    private long mSize;
+
+    private int mHitCount;
+    private int mMissCount;
+    private int mEvictionCount;
+
+    /**
+     * Create a new {@link PcmCache} object, taking over the files already in the directory.
+     *
+     * @param directory is the directory holding the cache files, created if needed
+     * @param maxSize is the maximum total size of the cache files in bytes
+     */
+    public PcmCache(File directory, long maxSize) throws IOException {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the cache directory " + directory);
+        }
+        mDirectory = directory;
+        mMaxSize = maxSize;
+
+        // Oldest files first, so the LRU order is restored
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Unable to list the cache directory " + directory);
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(EXTENSION)) {
+                String key = name.substring(0, name.length() - EXTENSION.length());
+                mSizes.put(key, file.length());
+                mSize += file.length();
+            } else if (name.endsWith(TEMP_EXTENSION)) {
+                // Left by a write that didn't finish
+                file.delete();
+            }
+        }
+        trimToSize(null);
+    }
+
+    /**
+     * Return the cached clip with the given key, or null if it is not in the cache.
+     */
+    public synchronized Clip get(String key) {
+        checkKey(key);
+        if (mSizes.get(key) == null) {
+            mMissCount++;
+            return null;
+        }
+        File file = fileFor(key);
+        try {
+            Clip clip = map(key, file);
+            mHitCount++;
+            // Remember the use across restarts
+            file.setLastModified(System.currentTimeMillis());
+            return clip;
+        } catch (IOException e) {
+            // The file is corrupted or was deleted, forget it
+            remove(key);
+            mMissCount++;
+            return null;
+        }
+    }
+
+    /**
+     * Start writing a new clip with the given key. A clip already cached with the same key
+     * is replaced on commit.
+     */
+    public Editor edit(String key) throws IOException {
+        checkKey(key);
+        return new Editor(key);
+    }
+
+    /**
+     * Remove the clip with the given key from the cache. A clip already mapped stays
+     * readable until it isn't used anymore.
+     */
+    public synchronized void remove(String key) {
+        Long size = mSizes.remove(key);
+        if (size != null) {
+            mSize -= size;
+        }
+        fileFor(key).delete();
+    }
+
+    /**
+     * Return the total size of the cache files in bytes.
+     */
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    /**
+     * Return the maximum total size of the cache files in bytes.
+     */
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Return the number of clips in the cache.
+     */
+    public synchronized int getClipCount() {
+        return mSizes.size();
+    }
+
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * Move a committed file into place, evict old clips and return the new one mapped.
+     */
+    private synchronized Clip add(String key, File tempFile) throws IOException {
+        File file = fileFor(key);
+        Long previousSize = mSizes.remove(key);
+        if (previousSize != null) {
+            mSize -= previousSize;
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Unable to move " + tempFile + " to " + file);
+        }
+        // Map before evicting, the mapping stays valid even if the file gets deleted
+        Clip clip = map(key, file);
+        mSizes.put(key, file.length());
+        mSize += file.length();
+        trimToSize(key);
+        return clip;
+    }
+
+    /**
+     * Delete the least recently used files until the cache fits its maximum size.
+     *
+     * @param keep is the key of a clip to delete last, or null
+     */
+    private synchronized void trimToSize(String keep) {
+        Iterator<Map.Entry<String, Long>> iterator = mSizes.entrySet().iterator();
+        while (mSize > mMaxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            if (eldest.getKey().equals(keep) && mSizes.size() > 1) {
+                continue;
+            }
+            iterator.remove();
+            mSize -= eldest.getValue();
+            fileFor(eldest.getKey()).delete();
+            mEvictionCount++;
+        }
+    }
+
+    /**
+     * Map a cache file in memory, checking its header.
+     */
+    private static Clip map(String key, File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            if (length < HEADER_SIZE) {
+                throw new IOException("Truncated PCM cache file " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a PCM cache file " + file);
+            }
+            int sampleRate = buffer.getInt();
+            int channelCount = buffer.getInt();
+            int frameCount = buffer.getInt();
+            if (sampleRate <= 0 || channelCount <= 0 || frameCount < 0 ||
+                    length != HEADER_SIZE + (long) frameCount * channelCount * BYTES_PER_SAMPLE) {
+                throw new IOException("Corrupted PCM cache file " + file);
+            }
+            ByteBuffer data = buffer.slice();
+            return new Clip(key, sampleRate, channelCount, frameCount, data.asReadOnlyBuffer());
+        } finally {
+            // The mapping stays valid after the file is closed
+            raf.close();
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(mDirectory, key + EXTENSION);
+    }
+
+    private static void checkKey(String key) {
+        if (!KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid cache key: " + key);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.android.miwok;
+
+import android.annotation.TargetApi;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.os.Build;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link PcmDecoder} decodes a compressed sound file to 16 bit PCM with {@link MediaCodec}
+ * and writes it into a {@link PcmCache}. The silence found by the build at the start and at
+ * the end of the clip is dropped while decoding, so it is never stored nor played.
+ */
+
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+class PcmDecoder {
+
+    /** How long to wait for a decoder buffer, in microseconds */
+    private static final long TIMEOUT_US = 10000;
+
+    private PcmDecoder() {
+    }
+
+    /**
+     * Decode a sound file into the cache.
+     *
+     * @param cache is the cache the decoded clip is written to
+     * @param key is the key of the clip in the cache
+     * @param fd is the file holding the sound file
+     * @param offset is the offset of the sound file in the file
+     * @param length is the length of the sound file in bytes
+     * @param trimStartMs is the silence to drop at the start of the clip
+     * @param keepMs is the length of the clip to keep after the silence, or 0 to keep it all
+     * @return the decoded clip
+     */
+    static PcmCache.Clip decode(PcmCache cache, String key, FileDescriptor fd, long offset,
+                                long length, int trimStartMs, int keepMs) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        boolean started = false;
+        PcmCache.Editor editor = cache.edit(key);
+        try {
+            extractor.setDataSource(fd, offset, length);
+            MediaFormat format = selectAudioTrack(extractor);
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+            started = true;
+
+            int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            int channelCount = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+            // Position of the next decoded byte in the whole clip, to drop the silence
+            long position = 0;
+
+            ByteBuffer[] inputBuffers = codec.getInputBuffers();
+            ByteBuffer[] outputBuffers = codec.getOutputBuffers();
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            boolean inputDone = false;
+            boolean outputDone = false;
+            while (!outputDone) {
+                if (!inputDone) {
+                    int inputIndex = codec.dequeueInputBuffer(TIMEOUT_US);
+                    if (inputIndex >= 0) {
+                        int size = extractor.readSampleData(inputBuffers[inputIndex], 0);
+                        if (size < 0) {
+                            codec.queueInputBuffer(inputIndex, 0, 0, 0,
+                                    MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            codec.queueInputBuffer(inputIndex, 0, size,
+                                    extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                int outputIndex = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+                if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    // The decoded format is the one that counts, it may differ from the file
+                    MediaFormat outputFormat = codec.getOutputFormat();
+                    sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    channelCount = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                } else if (outputIndex == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                    outputBuffers = codec.getOutputBuffers();
+                } else if (outputIndex >= 0) {
+                    int frameSize = channelCount * PcmCache.BYTES_PER_SAMPLE;
+                    long start = (long) trimStartMs * sampleRate / 1000 * frameSize;
+                    long end = keepMs > 0
+                            ? start + (long) keepMs * sampleRate / 1000 * frameSize
+                            : Long.MAX_VALUE;
+
+                    // Only keep the part of the buffer between the start and the end
+                    ByteBuffer output = outputBuffers[outputIndex];
+                    long from = Math.max(position, start);
+                    long to = Math.min(position + info.size, end);
+                    if (from < to) {
+                        output.limit(info.offset + (int) (to - position));
+                        output.position(info.offset + (int) (from - position));
+                        editor.write(output);
+                    }
+                    position += info.size;
+                    codec.releaseOutputBuffer(outputIndex, false);
+                    outputDone = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0 ||
+                            position >= end;
+                }
+            }
+            return editor.commit(sampleRate, channelCount);
+        } catch (IOException | RuntimeException e) {
+            editor.abort();
+            throw e;
+        } finally {
+            if (codec != null) {
+                if (started) {
+                    codec.stop();
+                }
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+
+    /**
+     * Select the first audio track of the file and return its format.
+     */
+    private static MediaFormat selectAudioTrack(MediaExtractor extractor) throws IOException {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            MediaFormat format = extractor.getTrackFormat(i);
+            String mime = format.getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) {
+                extractor.selectTrack(i);
+                return format;
+            }
+        }
+        throw new IOException("No audio track found");
+    }
+}
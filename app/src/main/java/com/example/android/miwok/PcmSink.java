@@ -0,0 +1,584 @@
+package com.example.android.miwok;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link PcmSink} is an {@link AudioSink} that plays clips decoded once to PCM and kept in a
+ * {@link PcmCache}. Loading a clip maps its cache file, decoding it first only if it isn't
+ * cached yet, and playing it streams the mapped samples into an {@link AudioTrack}, so no
+ * clip is decoded again when it is played.
+ *
+ * A single writer thread owns the {@link AudioTrack}. The other methods only change the
+ * requested state and wake the writer up, so they never block on the track. A next clip
+ * with the same format is written right after the current one in the same track, so there
+ * is no gap between them, unless the writer falls behind. The handoff is reported once the
+ * playback head has reached the next clip, with the silence between the clips estimated
+ * from the positions of the head, see {@link GapMeter}. The first audio of a played clip is
+ * reported at the first write after the playback head of the track has moved.
+ */
+
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class PcmSink implements AudioSink {
+
+    private static final String LOG_TAG = PcmSink.class.getSimpleName();
+
+    /** Default maximum size of the cache files in bytes */
+    public static final long DEFAULT_CACHE_SIZE = 16 * 1024 * 1024;
+
+    /** Number of frames written to the track at a time */
+    private static final int CHUNK_FRAMES = 512;
+
+    /** How long to wait between two checks of the end of a clip, in milliseconds */
+    private static final long DRAIN_POLL_MS = 5;
+
+    /** Context of the app, used to open the audio resources */
+    private final Context mContext;
+
+    /** Cache of the decoded clips */
+    private final PcmCache mCache;
+
+    /** Mapped clips by clip handle */
+    private final SparseArray<PcmCache.Clip> mClips = new SparseArray<>();
+
+    /** Handle given to the next loaded clip */
+    private int mNextHandle = 0;
+
+    /** Clip played or paused, or {@link #NO_CLIP} */
+    private int mCurrentHandle = NO_CLIP;
+
+    /** Clip written after the current one, or {@link #NO_CLIP} */
+    private int mQueuedHandle = NO_CLIP;
+
+    /** Next frame of the current clip to write */
+    private int mPosition;
+
+    /** Whether the current clip is paused */
+    private boolean mPaused;
+
+    /** Incremented each time a clip is played or stopped, so the writer flushes the track */
+    private int mGeneration;
+
+    /** Whether the sink was released and the writer must stop */
+    private boolean mReleased;
+
+    /** Listener triggered when a clip has completed playing */
+    private volatile OnCompletionListener mOnCompletionListener;
+
+    /** Listener triggered when a next clip has taken over */
+    private volatile OnHandoffListener mOnHandoffListener;
+
+    /** Listener triggered when a played clip has rendered its first audio */
+    private volatile OnFirstAudioListener mOnFirstAudioListener;
+
+    /**
+     * Create a new {@link PcmSink} object and start its writer thread.
+     *
+     * @param context is the context of the app
+     * @param cache is the cache the decoded clips are kept in
+     */
+    public PcmSink(Context context, PcmCache cache) {
+        mContext = context.getApplicationContext();
+        mCache = cache;
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_AUDIO);
+                new Writer().run();
+            }
+        }, "PcmSink");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Load the clip from the cache, decoding it into the cache first if needed. Decoding is
+     * done outside of the lock, so it doesn't delay the clip being played.
+     */
+    @Override
+    public int load(int audioResourceId) {
+        PcmCache.Clip clip;
+        try {
+            clip = loadClip(audioResourceId);
+        } catch (IOException | RuntimeException e) {
+            Log.e(LOG_TAG, "Unable to load audio resource " + audioResourceId, e);
+            return NO_CLIP;
+        }
+        if (clip.getChannelCount() > 2) {
+            Log.e(LOG_TAG, "Unsupported channel count " + clip.getChannelCount() +
+                    " for audio resource " + audioResourceId);
+            return NO_CLIP;
+        }
+        synchronized (this) {
+            int handle = mNextHandle++;
+            mClips.put(handle, clip);
+            return handle;
+        }
+    }
+
+    /**
+     * Return the decoded clip from the cache, decoding it if it isn't there.
+     */
+    private PcmCache.Clip loadClip(int audioResourceId) throws IOException {
+        AudioBundle bundle = AudioBundle.getShared(mContext);
+        int index = bundle != null
+                ? bundle.indexOfResource(mContext.getResources(), audioResourceId) : -1;
+        if (index < 0) {
+            throw new IOException("Audio resource " + audioResourceId + " is not in the bundle");
+        }
+        // The key changes with the content and the trims, so an updated clip is decoded again
+        int keepMs = bundle.getDurationMs(index) - bundle.getTrimStartMs(index) -
+                bundle.getTrimEndMs(index);
+        String key = bundle.getName(index) + '_' + bundle.getLength(index) + '_' +
+                bundle.getTrimStartMs(index) + '_' + keepMs;
+        PcmCache.Clip clip = mCache.get(key);
+        if (clip == null) {
+            clip = PcmDecoder.decode(mCache, key, bundle.getFileDescriptor(),
+                    bundle.getOffset(index), bundle.getLength(index),
+                    bundle.getTrimStartMs(index), Math.max(keepMs, 0));
+        }
+        return clip;
+    }
+
+    @Override
+    public synchronized void play(int clipHandle) {
+        if (mClips.get(clipHandle) == null) {
+            return;
+        }
+        mCurrentHandle = clipHandle;
+        mQueuedHandle = NO_CLIP;
+        mPosition = 0;
+        mPaused = false;
+        mGeneration++;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void pause(int clipHandle) {
+        if (clipHandle == mCurrentHandle) {
+            mPaused = true;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public synchronized void resume(int clipHandle) {
+        if (clipHandle == mCurrentHandle) {
+            mPaused = false;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public synchronized void stop(int clipHandle) {
+        if (clipHandle == mCurrentHandle) {
+            stopCurrent();
+        }
+    }
+
+    @Override
+    public synchronized void unload(int clipHandle) {
+        if (clipHandle == mCurrentHandle) {
+            stopCurrent();
+        }
+        if (clipHandle == mQueuedHandle) {
+            mQueuedHandle = NO_CLIP;
+        }
+        // The mapping is freed once the clip isn't referenced anymore
+        mClips.remove(clipHandle);
+    }
+
+    @Override
+    public synchronized void setNextClip(int clipHandle, int nextClipHandle) {
+        if (clipHandle == mCurrentHandle) {
+            mQueuedHandle = mClips.get(nextClipHandle) != null ? nextClipHandle : NO_CLIP;
+        }
+    }
+
+    @Override
+    public void setOnCompletionListener(OnCompletionListener listener) {
+        mOnCompletionListener = listener;
+    }
+
+    @Override
+    public void setOnHandoffListener(OnHandoffListener listener) {
+        mOnHandoffListener = listener;
+    }
+
+    @Override
+    public void setOnFirstAudioListener(OnFirstAudioListener listener) {
+        mOnFirstAudioListener = listener;
+    }
+
+    /**
+     * Stop the writer thread and release the track. The sink can't be used anymore.
+     */
+    public synchronized void release() {
+        mReleased = true;
+        notifyAll();
+    }
+
+    /**
+     * {@link GapMeter} estimates the silence at the handoff between two clips written one
+     * after the other in the same track, from the positions of the playback head sampled by
+     * the writer. Each sample projects when the frames written so far run out; the last
+     * projection before the handoff is when the finished clip was last heard. Once the head
+     * is past the first frame of the next clip, the time that frame was rendered is
+     * projected back from the sample, and the gap is the time between the two, or 0 if the
+     * track played on without running out.
+     */
+    static class GapMeter {
+
+        /** Sample rate of the track, in frames per second */
+        private int mSampleRate;
+
+        /** When the frames written so far are projected to run out, or 0 if unknown */
+        private long mEndNanos;
+
+        /** Frame the next clip starts at, or -1 if no handoff is waiting for the head */
+        private long mHandoffFrame = -1;
+
+        /** When the finished clip was projected to run out, or 0 if unknown */
+        private long mHandoffEndNanos;
+
+        /**
+         * Forget the samples and the waiting handoff, when the track is flushed or paused.
+         */
+        void reset(int sampleRate) {
+            mSampleRate = sampleRate;
+            mEndNanos = 0;
+            mHandoffFrame = -1;
+        }
+
+        /**
+         * The next clip is written from the given frame on.
+         */
+        void startHandoff(long frame) {
+            mHandoffFrame = frame;
+            mHandoffEndNanos = mEndNanos;
+        }
+
+        boolean isHandoffPending() {
+            return mHandoffFrame >= 0;
+        }
+
+        /**
+         * Stop waiting for the head, for instance because another handoff comes first.
+         */
+        void cancelHandoff() {
+            mHandoffFrame = -1;
+        }
+
+        /**
+         * Sample the playback head.
+         *
+         * @param played is the number of frames played since the track was flushed
+         * @param written is the number of frames written since the track was flushed
+         * @return the gap of the waiting handoff in nanoseconds, once the head is past it,
+         *         or -1
+         */
+        long onHead(long played, long written, long nowNanos) {
+            if (played < written) {
+                mEndNanos = nowNanos + framesToNanos(written - played);
+            }
+            if (mHandoffFrame < 0 || played <= mHandoffFrame) {
+                return -1;
+            }
+            long startNanos = nowNanos - framesToNanos(played - mHandoffFrame);
+            long gap = mHandoffEndNanos != 0 ? Math.max(0, startNanos - mHandoffEndNanos) : 0;
+            mHandoffFrame = -1;
+            return gap;
+        }
+
+        private long framesToNanos(long frames) {
+            return frames * 1000000000L / mSampleRate;
+        }
+    }
+
+    private void stopCurrent() {
+        mCurrentHandle = NO_CLIP;
+        mQueuedHandle = NO_CLIP;
+        mPaused = false;
+        mGeneration++;
+        notifyAll();
+    }
+
+    /**
+     * {@link Writer} runs on the writer thread. It is the only code using the track, and it
+     * only touches the shared state while holding the lock of the sink.
+     */
+    private class Writer {
+
+        private AudioTrack mTrack;
+        private int mTrackSampleRate;
+        private int mTrackChannelCount;
+
+        /** Whether the track is paused (or not started) */
+        private boolean mTrackPaused = true;
+
+        /** Generation the track was last flushed for */
+        private int mAppliedGeneration;
+
+        /** Frames written since the track was flushed */
+        private long mFramesWritten;
+
+        /** Playback head position right after the track was flushed */
+        private long mHeadBase;
+
+        /** Clip played that didn't render its first audio yet, or {@link #NO_CLIP} */
+        private int mFirstAudioHandle = NO_CLIP;
+
+        /** Clips of the handoff waiting for the playback head, see {@link #mGapMeter} */
+        private int mHandoffFrom = NO_CLIP;
+        private int mHandoffTo = NO_CLIP;
+
+        private final GapMeter mGapMeter = new GapMeter();
+
+        private byte[] mChunk = new byte[0];
+
+        /** Clip whose samples are read, and its buffer, read from chunk to chunk */
+        private PcmCache.Clip mDataClip;
+        private ByteBuffer mData;
+
+        void run() {
+            try {
+                while (step()) {
+                    // Keep writing
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (mTrack != null) {
+                    mTrack.release();
+                }
+            }
+        }
+
+        /**
+         * Do one unit of work: apply the requested state, then write a chunk, hand over to
+         * the next clip, or check whether the current clip has finished playing.
+         *
+         * @return false once the sink is released
+         */
+        private boolean step() throws InterruptedException {
+            boolean flush;
+            boolean paused;
+            PcmCache.Clip clip;
+            int handle;
+            int generation;
+            int bytes = 0;
+            int handoffFrom = NO_CLIP;
+            synchronized (PcmSink.this) {
+                while (!mReleased && mGeneration == mAppliedGeneration &&
+                        (mCurrentHandle == NO_CLIP || (mPaused && mTrackPaused))) {
+                    PcmSink.this.wait();
+                }
+                if (mReleased) {
+                    return false;
+                }
+                flush = mGeneration != mAppliedGeneration;
+                mAppliedGeneration = mGeneration;
+                generation = mGeneration;
+                paused = mPaused;
+                handle = mCurrentHandle;
+                clip = mClips.get(handle);
+                if (clip != null && !paused) {
+                    PcmCache.Clip next = mClips.get(mQueuedHandle);
+                    if (mPosition < clip.getFrameCount()) {
+                        bytes = copyChunk(clip, mPosition);
+                        mPosition += bytes / clip.getFrameSize();
+                    } else if (next != null && sameFormat(clip, next)) {
+                        // Keep writing in the same track, the next clip follows without a gap
+                        handoffFrom = handle;
+                        handle = mQueuedHandle;
+                        mCurrentHandle = handle;
+                        mQueuedHandle = NO_CLIP;
+                        mPosition = 0;
+                    }
+                }
+            }
+
+            if (flush) {
+                if (mTrack != null) {
+                    mTrack.pause();
+                    mTrack.flush();
+                    mTrackPaused = true;
+                }
+                if (clip != null) {
+                    prepareTrack(clip);
+                }
+                // A new generation is a clip played from its start, or stopped
+                mFirstAudioHandle = clip != null ? handle : NO_CLIP;
+                mHandoffFrom = NO_CLIP;
+            }
+            if (mTrack != null && clip != null && paused != mTrackPaused) {
+                if (paused) {
+                    mTrack.pause();
+                } else {
+                    mTrack.play();
+                }
+                mTrackPaused = paused;
+                // A pause is not a gap, the handoff waiting for the head is told without one
+                mGapMeter.reset(mTrackSampleRate);
+                if (mHandoffFrom != NO_CLIP) {
+                    reportHandoff(0);
+                }
+            }
+            if (clip == null) {
+                // Let the mapping of an unloaded clip go
+                mDataClip = null;
+                mData = null;
+                return true;
+            }
+            if (paused) {
+                return true;
+            }
+
+            if (bytes > 0) {
+                // Blocks while the buffer of the track is full
+                mTrack.write(mChunk, 0, bytes);
+                mFramesWritten += bytes / clip.getFrameSize();
+                checkHead();
+            } else if (handoffFrom != NO_CLIP) {
+                // A next clip shorter than the buffer of the track can be handed over before
+                // the head reached it, its own handoff is then told without a gap
+                if (mHandoffFrom != NO_CLIP) {
+                    mGapMeter.cancelHandoff();
+                    reportHandoff(0);
+                }
+                mHandoffFrom = handoffFrom;
+                mHandoffTo = handle;
+                mGapMeter.startHandoff(mFramesWritten);
+            } else {
+                checkCompleted(handle, generation);
+            }
+            return true;
+        }
+
+        /**
+         * Everything was written, report the completion once the track has played it all.
+         */
+        private void checkCompleted(int handle, int generation) throws InterruptedException {
+            // A short clip can be written in full before the track starts playing it
+            long played = checkHead();
+            if (played < mFramesWritten) {
+                Thread.sleep(DRAIN_POLL_MS);
+                return;
+            }
+            if (mHandoffFrom != NO_CLIP) {
+                // The next clip was empty, so the head never got past its start
+                reportHandoff(0);
+            }
+            synchronized (PcmSink.this) {
+                if (generation != mGeneration || handle != mCurrentHandle) {
+                    return;
+                }
+                mCurrentHandle = NO_CLIP;
+                mQueuedHandle = NO_CLIP;
+            }
+            OnCompletionListener listener = mOnCompletionListener;
+            if (listener != null) {
+                listener.onCompletion(handle);
+            }
+        }
+
+        /**
+         * Sample the playback head, and report the first audio of the played clip once the
+         * head has moved and the waiting handoff once the head has reached the next clip.
+         * The writes block while the buffer of the track is full, so it is checked about once
+         * per buffer period.
+         *
+         * @return the number of frames played since the track was flushed
+         */
+        private long checkHead() {
+            long now = System.nanoTime();
+            long played = (mTrack.getPlaybackHeadPosition() & 0xffffffffL) - mHeadBase;
+            long gapNanos = mGapMeter.onHead(played, mFramesWritten, now);
+            if (gapNanos >= 0 && mHandoffFrom != NO_CLIP) {
+                reportHandoff(gapNanos);
+            }
+            if (mFirstAudioHandle != NO_CLIP && played > 0) {
+                reportFirstAudio(now);
+            }
+            return played;
+        }
+
+        private void reportHandoff(long gapNanos) {
+            int from = mHandoffFrom;
+            mHandoffFrom = NO_CLIP;
+            OnHandoffListener listener = mOnHandoffListener;
+            if (listener != null) {
+                listener.onHandoff(from, mHandoffTo, gapNanos);
+            }
+        }
+
+        private void reportFirstAudio(long renderNanos) {
+            int handle = mFirstAudioHandle;
+            mFirstAudioHandle = NO_CLIP;
+            OnFirstAudioListener listener = mOnFirstAudioListener;
+            if (listener != null) {
+                listener.onFirstAudio(handle, renderNanos);
+            }
+        }
+
+        /**
+         * Copy the next chunk of the clip into {@link #mChunk} and return its size in bytes.
+         */
+        private int copyChunk(PcmCache.Clip clip, int position) {
+            int frames = Math.min(CHUNK_FRAMES, clip.getFrameCount() - position);
+            int bytes = frames * clip.getFrameSize();
+            if (mChunk.length < bytes) {
+                mChunk = new byte[CHUNK_FRAMES * clip.getFrameSize()];
+            }
+            // One buffer per clip, rather than a new one for each chunk
+            if (clip != mDataClip) {
+                mDataClip = clip;
+                mData = clip.getData();
+            }
+            mData.position(position * clip.getFrameSize());
+            mData.get(mChunk, 0, bytes);
+            return bytes;
+        }
+
+        /**
+         * Make sure the track has the format of the clip, and reset the frame counters.
+         */
+        private void prepareTrack(PcmCache.Clip clip) {
+            if (mTrack == null || mTrackSampleRate != clip.getSampleRate() ||
+                    mTrackChannelCount != clip.getChannelCount()) {
+                if (mTrack != null) {
+                    mTrack.release();
+                }
+                int channelConfig = clip.getChannelCount() == 1
+                        ? AudioFormat.CHANNEL_OUT_MONO : AudioFormat.CHANNEL_OUT_STEREO;
+                int bufferSize = Math.max(AudioTrack.getMinBufferSize(clip.getSampleRate(),
+                        channelConfig, AudioFormat.ENCODING_PCM_16BIT),
+                        2 * CHUNK_FRAMES * clip.getFrameSize());
+                mTrack = new AudioTrack(AudioManager.STREAM_MUSIC, clip.getSampleRate(),
+                        channelConfig, AudioFormat.ENCODING_PCM_16BIT, bufferSize,
+                        AudioTrack.MODE_STREAM);
+                mTrackSampleRate = clip.getSampleRate();
+                mTrackChannelCount = clip.getChannelCount();
+                mTrackPaused = true;
+            }
+            mFramesWritten = 0;
+            mHeadBase = mTrack.getPlaybackHeadPosition() & 0xffffffffL;
+            mGapMeter.reset(mTrackSampleRate);
+        }
+
+        private boolean sameFormat(PcmCache.Clip a, PcmCache.Clip b) {
+            return a.getSampleRate() == b.getSampleRate() &&
+                    a.getChannelCount() == b.getChannelCount();
+        }
+    }
+}
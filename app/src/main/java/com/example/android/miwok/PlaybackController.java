@@ -0,0 +1,753 @@
+package com.example.android.miwok;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link PlaybackController} drives the {@link AudioEngine} from its own audio thread.
+ * The UI only puts commands (play, pause, resume, stop) in a queue and returns right away,
+ * so a tap never waits for a sound file to be opened, prepared or released.
+ *
+ * The commands run one after the other on the audio thread and move the controller between
+ * the states {@link State#IDLE}, {@link State#PREPARING}, {@link State#PLAYING},
+ * {@link State#PAUSED} and {@link State#RELEASED}. The audio focus changes are queued the
+ * same way, so they can't race with a tap.
+ *
+ * {@link #playAll(int[])} plays a whole list of sounds in order. The next sound is loaded
+ * while the current one plays and handed to the engine, which starts it without a gap.
+ * The gaps between the sounds are measured and logged at the end of the list.
+ *
+ * The time from each tap to the audio focus, the prepared sound file and the first audio,
+ * and the audio focus requests, are recorded in the {@link PlaybackMetrics} returned by
+ * {@link #getMetrics()}. The first audio is the time the sink reports the sound rendered,
+ * not the time it was asked to play.
+ */
+
+public class PlaybackController {
+
+    /**
+     * States of the controller
+     */
+    public enum State {
+        /** Nothing is playing */
+        IDLE,
+        /** The sound file is being loaded before playing it */
+        PREPARING,
+        /** A sound is playing */
+        PLAYING,
+        /** A sound is paused, by the user or because the audio focus was lost for a while */
+        PAUSED,
+        /** The controller was released and ignores all the commands */
+        RELEASED
+    }
+
+    /**
+     * Requests and abandons the audio focus for the controller. The app asks the
+     * {@link AudioManager}, the tests grant the focus and take it back themselves.
+     */
+    interface AudioFocus {
+        /**
+         * @return true if the focus was granted
+         */
+        boolean request(AudioManager.OnAudioFocusChangeListener listener);
+
+        void abandon(AudioManager.OnAudioFocusChangeListener listener);
+    }
+
+    /**
+     * Listener triggered on the audio thread each time the state of the controller changes
+     */
+    public interface OnStateChangeListener {
+        void onStateChanged(State state);
+    }
+
+    private static final String LOG_TAG = PlaybackController.class.getSimpleName();
+
+    /** Longest gap between two sounds of a list that is still heard as continuous */
+    static final long GAP_TARGET_MILLIS = 20;
+
+    /** Controller shared by all the categories of the app */
+    private static PlaybackController sInstance;
+
+    /** Engine playing the sound files */
+    private final AudioEngine mEngine;
+
+    /** Handles audio focus when playing a sound file, or null to not request any focus */
+    private final AudioFocus mAudioFocus;
+
+    /** Runs the commands one after the other, on the audio thread */
+    private final Executor mCommandExecutor;
+
+    /** Audio thread owned by the controller, or null if the executor was given */
+    private final HandlerThread mAudioThread;
+
+    /**
+     * Incremented by each play, stop and release command. A play command that finds a
+     * greater value when it runs was overtaken by a later command and is skipped.
+     */
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    /** Generation of the play command whose sound is playing or paused */
+    private volatile int mPlayingGeneration;
+
+    /** Current state, only changed on the audio thread */
+    private volatile State mState = State.IDLE;
+
+    /** Whether the audio focus is held, only used on the audio thread */
+    private boolean mHasFocus;
+
+    /** Whether the sound was paused because the audio focus was lost for a short time */
+    private boolean mPausedForFocus;
+
+    /**
+     * Whether the audio focus was lost for a short time and not gained back yet, only used
+     * on the audio thread. The sounds started meanwhile wait for the focus, paused.
+     */
+    private boolean mFocusLostTransiently;
+
+    /**
+     * Tap, category and sound file of the play whose first audio wasn't heard yet, only used
+     * on the audio thread. The tap time is 0 when no play waits for its first audio.
+     */
+    private long mFirstAudioTapNanos;
+    private int mFirstAudioCategoryId;
+    private int mFirstAudioResourceId;
+
+    /**
+     * First audio reported by the engine and not handled yet, guarded by
+     * {@link #mFirstAudioTask}. The same task is posted for every report, so reporting
+     * doesn't allocate, and a report arriving while the task is queued replaces the older
+     * one of a previous play, or is dropped if it is for the same play.
+     */
+    private boolean mFirstAudioPosted;
+    private int mFirstAudioGeneration;
+    private long mFirstAudioRenderNanos;
+
+    private final Runnable mFirstAudioTask = new Runnable() {
+        @Override
+        public void run() {
+            int generation;
+            long renderNanos;
+            synchronized (this) {
+                mFirstAudioPosted = false;
+                generation = mFirstAudioGeneration;
+                renderNanos = mFirstAudioRenderNanos;
+            }
+            handleFirstAudio(generation, renderNanos);
+        }
+    };
+
+    /** Number of play commands skipped because a later command overtook them */
+    private volatile long mSkippedPlayCount;
+
+    /** Number of sounds that started playing */
+    private volatile long mStartedPlayCount;
+
+    /** Sounds of the list being played, or null when a single sound is played */
+    private int[] mPlaylist;
+
+    /** Position of the current sound in the list */
+    private int mPlaylistIndex;
+
+    /** Number of handoffs between two sounds of the last list */
+    private volatile int mHandoffCount;
+
+    /** Sum and maximum of the gaps between two sounds of the last list, in nanoseconds */
+    private volatile long mTotalGapNanos;
+    private volatile long mMaxGapNanos;
+
+    private volatile OnStateChangeListener mOnStateChangeListener;
+
+    /** Latency histograms and audio focus counters */
+    private final PlaybackMetrics mMetrics =
+            new PlaybackMetrics(Categories.getCount(), PlaybackMetrics.DEFAULT_CLIP_CAPACITY);
+
+    /**
+     * This listener gets triggered whenever the audio focus changes
+     * (i.e. we gain or lose audio focus because of another app or device).
+     * The change is handled on the audio thread, after the commands already queued.
+     */
+    private final AudioManager.OnAudioFocusChangeListener mOnAudioFocusChangeListener =
+            new AudioManager.OnAudioFocusChangeListener() {
+        @Override
+        public void onAudioFocusChange(final int focusChange) {
+            mCommandExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    handleFocusChange(focusChange);
+                }
+            });
+        }
+    };
+
+    /**
+     * Return the {@link PlaybackController} shared by the whole app, creating it and its
+     * audio thread if needed.
+     *
+     * @param context is the context of the app
+     */
+    public static synchronized PlaybackController getInstance(Context context) {
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            HandlerThread audioThread =
+                    new HandlerThread("Playback", Process.THREAD_PRIORITY_AUDIO);
+            audioThread.start();
+            final Handler handler = new Handler(audioThread.getLooper());
+            Executor executor = new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    handler.post(command);
+                }
+            };
+            AudioManager audioManager =
+                    (AudioManager) appContext.getSystemService(Context.AUDIO_SERVICE);
+            sInstance = new PlaybackController(AudioEngine.getInstance(appContext),
+                    new ManagerFocus(audioManager), executor, audioThread);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Create a new {@link PlaybackController} object
+     *
+     * @param engine is the engine playing the sound files, it must not request the audio
+     *               focus itself
+     * @param audioFocus is used to request the audio focus, or null to play without focus
+     * @param commandExecutor runs the commands one after the other, in the order they
+     *                        were given
+     */
+    PlaybackController(AudioEngine engine, AudioFocus audioFocus, Executor commandExecutor) {
+        this(engine, audioFocus, commandExecutor, null);
+    }
+
+    private PlaybackController(AudioEngine engine, AudioFocus audioFocus,
+                               Executor commandExecutor, HandlerThread audioThread) {
+        mEngine = engine;
+        mAudioFocus = audioFocus;
+        mCommandExecutor = commandExecutor;
+        mAudioThread = audioThread;
+        mEngine.setOnPlaybackCompletedListener(new AudioEngine.OnPlaybackCompletedListener() {
+            @Override
+            public void onPlaybackCompleted() {
+                // The engine is locked here, so the sound that finished is still the one
+                // of the last play command that started
+                final int generation = mPlayingGeneration;
+                final long completedAtNanos = System.nanoTime();
+                mCommandExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handleCompleted(generation, completedAtNanos);
+                    }
+                });
+            }
+        });
+        mEngine.setOnNextClipStartedListener(new AudioEngine.OnNextClipStartedListener() {
+            @Override
+            public void onNextClipStarted(final long gapNanos) {
+                final int generation = mPlayingGeneration;
+                mCommandExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handleNextClipStarted(generation, gapNanos);
+                    }
+                });
+            }
+        });
+        mEngine.setOnFirstAudioListener(new AudioEngine.OnFirstAudioListener() {
+            @Override
+            public void onFirstAudio(long renderNanos) {
+                int generation = mPlayingGeneration;
+                synchronized (mFirstAudioTask) {
+                    if (mFirstAudioPosted) {
+                        if (generation != mFirstAudioGeneration) {
+                            mFirstAudioGeneration = generation;
+                            mFirstAudioRenderNanos = renderNanos;
+                        }
+                        return;
+                    }
+                    mFirstAudioPosted = true;
+                    mFirstAudioGeneration = generation;
+                    mFirstAudioRenderNanos = renderNanos;
+                }
+                mCommandExecutor.execute(mFirstAudioTask);
+            }
+        });
+    }
+
+    /**
+     * Play the audio file, stopping any other sound. When several words are tapped quickly,
+     * only the last one is played.
+     *
+     * @param audioResourceId is the resource ID for the audio file
+     */
+    public void play(int audioResourceId) {
+        play(audioResourceId, PlaybackMetrics.NO_CATEGORY);
+    }
+
+    /**
+     * Play the audio file of a word tapped in a category, stopping any other sound. When
+     * several words are tapped quickly, only the last one is played.
+     *
+     * @param audioResourceId is the resource ID for the audio file
+     * @param categoryId is the ID of the category in {@link Categories}, used to sort the
+     *                   latency metrics
+     */
+    public void play(final int audioResourceId, final int categoryId) {
+        final long tapNanos = System.nanoTime();
+        final int generation = mGeneration.incrementAndGet();
+        mCommandExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                handlePlay(audioResourceId, generation, categoryId, tapNanos);
+            }
+        });
+    }
+
+    /**
+     * Play the audio files one after the other, stopping any other sound. Each file is
+     * loaded while the one before it plays, so they follow each other without a gap.
+     *
+     * @param audioResourceIds are the resource IDs for the audio files, in playing order
+     */
+    public void playAll(int[] audioResourceIds) {
+        final long tapNanos = System.nanoTime();
+        final int[] playlist = Arrays.copyOf(audioResourceIds, audioResourceIds.length);
+        final int generation = mGeneration.incrementAndGet();
+        mCommandExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                handlePlayAll(playlist, generation, tapNanos);
+            }
+        });
+    }
+
+    /**
+     * Pause the sound currently playing, if any.
+     */
+    public void pause() {
+        mCommandExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                handlePause();
+            }
+        });
+    }
+
+    /**
+     * Resume the sound paused by {@link #pause()}.
+     */
+    public void resume() {
+        mCommandExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                handleResume();
+            }
+        });
+    }
+
+    /**
+     * Stop the sound currently playing, and cancel the plays still waiting in the queue.
+     */
+    public void stop() {
+        mGeneration.incrementAndGet();
+        mCommandExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                handleStop();
+            }
+        });
+    }
+
+    /**
+     * Stop playing and release the controller. All the later commands are ignored.
+     */
+    public void release() {
+        mGeneration.incrementAndGet();
+        mCommandExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                handleRelease();
+            }
+        });
+    }
+
+    /**
+     * Return the current state of the controller.
+     */
+    public State getState() {
+        return mState;
+    }
+
+    /**
+     * Set the listener triggered on the audio thread each time the state changes.
+     */
+    public void setOnStateChangeListener(OnStateChangeListener listener) {
+        mOnStateChangeListener = listener;
+    }
+
+    /**
+     * Return the latency histograms and the audio focus counters of the controller.
+     */
+    public PlaybackMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Return the number of play commands skipped because a later command overtook them.
+     */
+    public long getSkippedPlayCount() {
+        return mSkippedPlayCount;
+    }
+
+    /**
+     * Return the number of sounds that started playing.
+     */
+    public long getStartedPlayCount() {
+        return mStartedPlayCount;
+    }
+
+    /**
+     * Return the number of handoffs between two sounds of the last list played.
+     */
+    public int getHandoffCount() {
+        return mHandoffCount;
+    }
+
+    /**
+     * Return the mean gap between two sounds of the last list played, in milliseconds.
+     */
+    public double getMeanGapMillis() {
+        int count = mHandoffCount;
+        return count == 0 ? 0 : mTotalGapNanos / 1e6 / count;
+    }
+
+    /**
+     * Return the longest gap between two sounds of the last list played, in milliseconds.
+     */
+    public double getMaxGapMillis() {
+        return mMaxGapNanos / 1e6;
+    }
+
+    private void handlePlay(int audioResourceId, int generation, int categoryId,
+                            long tapNanos) {
+        endPlaylist();
+        startPlayback(audioResourceId, generation, categoryId, tapNanos);
+    }
+
+    private void handlePlayAll(int[] playlist, int generation, long tapNanos) {
+        endPlaylist();
+        if (playlist.length == 0 || !startPlayback(playlist[0], generation,
+                PlaybackMetrics.NO_CATEGORY, tapNanos)) {
+            return;
+        }
+        mPlaylist = playlist;
+        mPlaylistIndex = 0;
+        mHandoffCount = 0;
+        mTotalGapNanos = 0;
+        mMaxGapNanos = 0;
+        queueNextClip(generation);
+    }
+
+    /**
+     * Start playing the sound, unless a later command overtook the one that asked for it.
+     *
+     * @param categoryId is the category of the tapped word, or
+     *                   {@link PlaybackMetrics#NO_CATEGORY}
+     * @param tapNanos is the time of the tap, the stages of the play are measured from it
+     * @return true if the sound started playing
+     */
+    private boolean startPlayback(int audioResourceId, int generation, int categoryId,
+                                  long tapNanos) {
+        if (mState == State.RELEASED) {
+            return false;
+        }
+        if (generation != mGeneration.get()) {
+            mSkippedPlayCount++;
+            return false;
+        }
+        // Stop the current sound because we are about to play a different sound file
+        mEngine.stop();
+        mPausedForFocus = false;
+        setState(State.PREPARING);
+
+        // Request audio focus in order to play the audio file
+        if (!requestFocus()) {
+            setState(State.IDLE);
+            return false;
+        }
+        mMetrics.recordStage(categoryId, PlaybackMetrics.STAGE_FOCUS_GRANTED,
+                System.nanoTime() - tapNanos);
+        // Loading can take a while, so check again that no tap came in the meantime
+        mEngine.preload(audioResourceId);
+        if (generation != mGeneration.get()) {
+            // The next command in the queue decides what happens to the focus and the state
+            mSkippedPlayCount++;
+            return false;
+        }
+        mMetrics.recordStage(categoryId, PlaybackMetrics.STAGE_PREPARED,
+                System.nanoTime() - tapNanos);
+        mPlayingGeneration = generation;
+        // The first audio is recorded when the sink reports it, the sound is only starting
+        mFirstAudioTapNanos = tapNanos;
+        mFirstAudioCategoryId = categoryId;
+        mFirstAudioResourceId = audioResourceId;
+        if (mEngine.play(audioResourceId)) {
+            mStartedPlayCount++;
+            if (mFocusLostTransiently) {
+                // The focus was lost while the sound was preparing, so it waits for the
+                // focus to come back, like a sound that was playing would
+                mEngine.pause();
+                mPausedForFocus = true;
+                setState(State.PAUSED);
+            } else {
+                setState(State.PLAYING);
+            }
+            return true;
+        }
+        mFirstAudioTapNanos = 0;
+        abandonFocus();
+        setState(State.IDLE);
+        return false;
+    }
+
+    /**
+     * The sound of a play command was first heard, record the time from its tap.
+     */
+    private void handleFirstAudio(int generation, long renderNanos) {
+        // Only the first audio of the last sound played counts, once
+        if (generation != mPlayingGeneration || mFirstAudioTapNanos == 0) {
+            return;
+        }
+        long elapsedNanos = renderNanos - mFirstAudioTapNanos;
+        mFirstAudioTapNanos = 0;
+        mMetrics.recordStage(mFirstAudioCategoryId, PlaybackMetrics.STAGE_FIRST_AUDIO,
+                elapsedNanos);
+        mMetrics.recordClip(mFirstAudioResourceId, elapsedNanos);
+    }
+
+    /**
+     * Load the sound after the current one in the list while the current one plays, and
+     * hand it to the engine so it starts without a gap.
+     */
+    private void queueNextClip(int generation) {
+        int[] playlist = mPlaylist;
+        int nextIndex = mPlaylistIndex + 1;
+        if (playlist == null || nextIndex >= playlist.length) {
+            return;
+        }
+        mEngine.preload(playlist[nextIndex]);
+        // A command may have come in while the sound was loading
+        if (generation != mGeneration.get() || playlist != mPlaylist) {
+            return;
+        }
+        mEngine.setNextClip(playlist[nextIndex]);
+    }
+
+    /**
+     * The engine started the next sound of the list by itself.
+     */
+    private void handleNextClipStarted(int generation, long gapNanos) {
+        if (generation != mPlayingGeneration || mPlaylist == null) {
+            return;
+        }
+        mPlaylistIndex++;
+        mStartedPlayCount++;
+        recordGap(gapNanos);
+        queueNextClip(generation);
+    }
+
+    private void recordGap(long gapNanos) {
+        mHandoffCount++;
+        mTotalGapNanos += gapNanos;
+        if (gapNanos > mMaxGapNanos) {
+            mMaxGapNanos = gapNanos;
+        }
+    }
+
+    /**
+     * Forget the list being played, logging the gaps measured between its sounds.
+     */
+    private void endPlaylist() {
+        if (mPlaylist == null) {
+            return;
+        }
+        mPlaylist = null;
+        if (mHandoffCount == 0) {
+            return;
+        }
+        String report = String.format(Locale.US,
+                "%d handoffs, mean gap %.1f ms, max gap %.1f ms (target %d ms)",
+                mHandoffCount, getMeanGapMillis(), getMaxGapMillis(), GAP_TARGET_MILLIS);
+        if (getMaxGapMillis() > GAP_TARGET_MILLIS) {
+            Log.w(LOG_TAG, report);
+        } else {
+            Log.i(LOG_TAG, report);
+        }
+    }
+
+    private void handlePause() {
+        if (mState == State.PLAYING) {
+            mEngine.pause();
+            mPausedForFocus = false;
+            setState(State.PAUSED);
+        }
+    }
+
+    private void handleResume() {
+        // A sound paused because of the focus waits until the focus is gained back
+        if (mState == State.PAUSED && !mPausedForFocus) {
+            mEngine.resume();
+            setState(State.PLAYING);
+        }
+    }
+
+    private void handleStop() {
+        if (mState == State.RELEASED) {
+            return;
+        }
+        endPlaylist();
+        mEngine.stop();
+        mPausedForFocus = false;
+        abandonFocus();
+        setState(State.IDLE);
+    }
+
+    private void handleRelease() {
+        if (mState == State.RELEASED) {
+            return;
+        }
+        handleStop();
+        mEngine.setOnPlaybackCompletedListener(null);
+        mEngine.setOnNextClipStartedListener(null);
+        mEngine.setOnFirstAudioListener(null);
+        mMetrics.recordRelease();
+        setState(State.RELEASED);
+        if (mAudioThread != null) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                mAudioThread.quitSafely();
+            } else {
+                // This runs as the last command, the commands still queued after it would be
+                // ignored by the released controller anyway
+                mAudioThread.quit();
+            }
+        }
+    }
+
+    private void handleCompleted(int generation, long completedAtNanos) {
+        // A completion queued before a newer sound started is stale
+        if (generation != mPlayingGeneration || mState != State.PLAYING) {
+            return;
+        }
+        int[] playlist = mPlaylist;
+        if (playlist != null && mPlaylistIndex + 1 < playlist.length) {
+            // The next sound was not ready in time, so start it now, with a gap
+            mPlaylistIndex++;
+            if (mEngine.play(playlist[mPlaylistIndex])) {
+                mStartedPlayCount++;
+                recordGap(System.nanoTime() - completedAtNanos);
+                queueNextClip(generation);
+                return;
+            }
+        }
+        endPlaylist();
+        abandonFocus();
+        setState(State.IDLE);
+    }
+
+    private void handleFocusChange(int focusChange) {
+        // The focus may have been abandoned after this change was queued
+        if (!mHasFocus) {
+            return;
+        }
+        if (focusChange == AudioManager.AUDIOFOCUS_LOSS_TRANSIENT ||
+                focusChange == AudioManager.AUDIOFOCUS_LOSS_TRANSIENT_CAN_DUCK) {
+            mMetrics.recordFocusLoss();
+            // The AUDIOFOCUS_LOSS_TRANSIENT case means that we've lost audio focus for a
+            // short amount of time. Pause the sound, it is resumed when the focus comes back.
+            // A sound still preparing, when its play command was overtaken by a later one,
+            // is started paused by that command.
+            mFocusLostTransiently = true;
+            if (mState == State.PLAYING) {
+                mEngine.pause();
+                mPausedForFocus = true;
+                setState(State.PAUSED);
+            }
+        } else if (focusChange == AudioManager.AUDIOFOCUS_GAIN) {
+            mFocusLostTransiently = false;
+            if (mState == State.PAUSED && mPausedForFocus) {
+                mEngine.resume();
+                mPausedForFocus = false;
+                setState(State.PLAYING);
+            }
+        } else if (focusChange == AudioManager.AUDIOFOCUS_LOSS) {
+            mMetrics.recordFocusLoss();
+            // The AUDIOFOCUS_LOSS case means we've lost audio focus, stop playback
+            handleStop();
+        }
+    }
+
+    private void setState(State state) {
+        if (mState == state) {
+            return;
+        }
+        mState = state;
+        OnStateChangeListener listener = mOnStateChangeListener;
+        if (listener != null) {
+            listener.onStateChanged(state);
+        }
+    }
+
+    private boolean requestFocus() {
+        if (mAudioFocus == null || mHasFocus) {
+            return true;
+        }
+        mHasFocus = mAudioFocus.request(mOnAudioFocusChangeListener);
+        mMetrics.recordFocusRequest(mHasFocus);
+        return mHasFocus;
+    }
+
+    private void abandonFocus() {
+        if (mAudioFocus != null && mHasFocus) {
+            // Unregisters the AudioFocusChangeListener so we don't get anymore callbacks.
+            mAudioFocus.abandon(mOnAudioFocusChangeListener);
+            mHasFocus = false;
+            mFocusLostTransiently = false;
+            mMetrics.recordFocusAbandon();
+        }
+    }
+
+    /**
+     * {@link AudioFocus} of the app, asked to the {@link AudioManager}.
+     */
+    private static class ManagerFocus implements AudioFocus {
+
+        private final AudioManager mAudioManager;
+
+        ManagerFocus(AudioManager audioManager) {
+            mAudioManager = audioManager;
+        }
+
+        @Override
+        public boolean request(AudioManager.OnAudioFocusChangeListener listener) {
+            // The app needs to play a short audio file
+            int result = mAudioManager.requestAudioFocus(listener, AudioManager.STREAM_MUSIC,
+                    AudioManager.AUDIOFOCUS_GAIN_TRANSIENT);
+            return result == AudioManager.AUDIOFOCUS_REQUEST_GRANTED;
+        }
+
+        @Override
+        public void abandon(AudioManager.OnAudioFocusChangeListener listener) {
+            mAudioManager.abandonAudioFocus(listener);
+        }
+    }
+}
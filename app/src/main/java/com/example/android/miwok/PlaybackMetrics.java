@@ -0,0 +1,431 @@
+package com.example.android.miwok;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link PlaybackMetrics} measures how long a tap on a word takes to become audible, how
+ * the audio focus requests go, and how often the player is released.
+ *
+ * Each play records the time from the tap to three stages: the audio focus granted, the
+ * sound file prepared and the first audio rendered. The times go into histograms for all
+ * the plays, for the category of the word, and for the sound file itself (the time to the
+ * first audio only). A histogram has one bucket per power of two microseconds, so it has
+ * a fixed size whatever the number of plays, and its percentiles are known within a
+ * factor of two.
+ *
+ * All the histograms and counters live in atomic arrays allocated up front, so recording
+ * takes no lock and doesn't allocate, and can be done from any thread. The sound files get
+ * their histograms on their first play, up to a fixed number of files. {@link #snapshot()}
+ * copies everything into a {@link Snapshot}, which a debug screen or a test can read.
+ *
+ * The metrics don't use any Android API, so they can be tested on a plain JVM.
+ */
+
+public class PlaybackMetrics {
+
+    /** Category of the plays that don't come from a category, such as a list of sounds */
+    public static final int NO_CATEGORY = -1;
+
+    /** Stages of a play, measured from the tap */
+    public static final int STAGE_FOCUS_GRANTED = 0;
+    public static final int STAGE_PREPARED = 1;
+    public static final int STAGE_FIRST_AUDIO = 2;
+    public static final int STAGE_COUNT = 3;
+
+    /** Default number of sound files that get their own histogram */
+    public static final int DEFAULT_CLIP_CAPACITY = 256;
+
+    /** Number of buckets of a histogram, the last one goes from about 36 minutes up */
+    static final int BUCKET_COUNT = 32;
+
+    /** Counters */
+    private static final int FOCUS_REQUESTS = 0;
+    private static final int FOCUS_DENIALS = 1;
+    private static final int FOCUS_ABANDONS = 2;
+    private static final int FOCUS_LOSSES = 3;
+    private static final int DROPPED_CLIPS = 4;
+    private static final int RELEASES = 5;
+    private static final int COUNTER_COUNT = 6;
+
+    private final int mCategoryCount;
+    private final int mClipCapacity;
+
+    /**
+     * Buckets of the stage histograms: row 0 for all the plays, then one row per category,
+     * each row holding {@link #STAGE_COUNT} histograms of {@link #BUCKET_COUNT} buckets
+     */
+    private final AtomicLongArray mStageBuckets;
+
+    /** Sum of the recorded times of each stage histogram, in microseconds */
+    private final AtomicLongArray mStageSums;
+
+    /** Sound file of each slot of the clip histograms, 0 for a free slot */
+    private final AtomicIntegerArray mClipIds;
+
+    /** Buckets and sums of the time to the first audio of each clip slot */
+    private final AtomicLongArray mClipBuckets;
+    private final AtomicLongArray mClipSums;
+
+    private final AtomicLongArray mCounters = new AtomicLongArray(COUNTER_COUNT);
+
+    /**
+     * Create a new {@link PlaybackMetrics} object
+     *
+     * @param categoryCount is the number of categories, their IDs go from 0 to
+     *                      categoryCount - 1
+     * @param clipCapacity is the number of sound files that get their own histogram
+     */
+    public PlaybackMetrics(int categoryCount, int clipCapacity) {
+        if (categoryCount < 0 || clipCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid sizes: " + categoryCount + " categories, " +
+                    clipCapacity + " clips");
+        }
+        mCategoryCount = categoryCount;
+        mClipCapacity = clipCapacity;
+        int stageHistograms = (categoryCount + 1) * STAGE_COUNT;
+        mStageBuckets = new AtomicLongArray(stageHistograms * BUCKET_COUNT);
+        mStageSums = new AtomicLongArray(stageHistograms);
+        mClipIds = new AtomicIntegerArray(clipCapacity);
+        mClipBuckets = new AtomicLongArray(clipCapacity * BUCKET_COUNT);
+        mClipSums = new AtomicLongArray(clipCapacity);
+    }
+
+    /**
+     * Record the time from a tap to a stage of its play.
+     *
+     * @param category is the ID of the category of the word, or {@link #NO_CATEGORY}
+     * @param stage is one of the STAGE constants
+     * @param elapsedNanos is the time since the tap, in nanoseconds
+     */
+    public void recordStage(int category, int stage, long elapsedNanos) {
+        if (stage < 0 || stage >= STAGE_COUNT) {
+            throw new IllegalArgumentException("Unknown stage: " + stage);
+        }
+        long micros = Math.max(0, elapsedNanos / 1000);
+        int bucket = bucketOf(micros);
+        record(mStageBuckets, mStageSums, stage, bucket, micros);
+        if (category >= 0 && category < mCategoryCount) {
+            record(mStageBuckets, mStageSums, (category + 1) * STAGE_COUNT + stage, bucket,
+                    micros);
+        }
+    }
+
+    /**
+     * Record the time from a tap to the first audio of a sound file.
+     *
+     * @param audioResourceId is the resource ID of the sound file
+     * @param elapsedNanos is the time since the tap, in nanoseconds
+     */
+    public void recordClip(int audioResourceId, long elapsedNanos) {
+        int slot = clipSlot(audioResourceId);
+        if (slot < 0) {
+            mCounters.incrementAndGet(DROPPED_CLIPS);
+            return;
+        }
+        long micros = Math.max(0, elapsedNanos / 1000);
+        record(mClipBuckets, mClipSums, slot, bucketOf(micros), micros);
+    }
+
+    /**
+     * Record a request of the audio focus.
+     *
+     * @param granted is whether the focus was granted
+     */
+    public void recordFocusRequest(boolean granted) {
+        mCounters.incrementAndGet(FOCUS_REQUESTS);
+        if (!granted) {
+            mCounters.incrementAndGet(FOCUS_DENIALS);
+        }
+    }
+
+    /**
+     * Record that the audio focus was given back.
+     */
+    public void recordFocusAbandon() {
+        mCounters.incrementAndGet(FOCUS_ABANDONS);
+    }
+
+    /**
+     * Record that another app took the audio focus, for a while or for good.
+     */
+    public void recordFocusLoss() {
+        mCounters.incrementAndGet(FOCUS_LOSSES);
+    }
+
+    /**
+     * Record that the player was released, with its sounds and its audio thread.
+     */
+    public void recordRelease() {
+        mCounters.incrementAndGet(RELEASES);
+    }
+
+    /**
+     * Return a copy of all the metrics. The copy is not atomic: plays recorded while it is
+     * made may be partly in it.
+     */
+    public Snapshot snapshot() {
+        int clipCount = 0;
+        for (int slot = 0; slot < mClipCapacity; slot++) {
+            if (mClipIds.get(slot) != 0) {
+                clipCount++;
+            }
+        }
+        int[] clipIds = new int[clipCount];
+        long[] clipBuckets = new long[clipCount * BUCKET_COUNT];
+        long[] clipSums = new long[clipCount];
+        int index = 0;
+        for (int slot = 0; slot < mClipCapacity && index < clipCount; slot++) {
+            int id = mClipIds.get(slot);
+            if (id == 0) {
+                continue;
+            }
+            clipIds[index] = id;
+            clipSums[index] = mClipSums.get(slot);
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                clipBuckets[index * BUCKET_COUNT + bucket] =
+                        mClipBuckets.get(slot * BUCKET_COUNT + bucket);
+            }
+            index++;
+        }
+        return new Snapshot(mCategoryCount, copy(mStageBuckets), copy(mStageSums),
+                clipIds, clipBuckets, clipSums, copy(mCounters));
+    }
+
+    private static void record(AtomicLongArray buckets, AtomicLongArray sums, int histogram,
+                               int bucket, long micros) {
+        buckets.incrementAndGet(histogram * BUCKET_COUNT + bucket);
+        sums.addAndGet(histogram, micros);
+    }
+
+    /**
+     * Return the slot of the histogram of a sound file, taking a free slot on its first
+     * play, or -1 if all the slots are taken.
+     */
+    private int clipSlot(int audioResourceId) {
+        if (audioResourceId == 0) {
+            return -1;
+        }
+        int start = ((audioResourceId * 0x9E3779B9) >>> 1) % mClipCapacity;
+        for (int i = 0; i < mClipCapacity; i++) {
+            int slot = (start + i) % mClipCapacity;
+            int id = mClipIds.get(slot);
+            if (id == audioResourceId) {
+                return slot;
+            }
+            if (id == 0) {
+                if (mClipIds.compareAndSet(slot, 0, audioResourceId)) {
+                    return slot;
+                }
+                // Another thread took the slot, maybe for the same file
+                if (mClipIds.get(slot) == audioResourceId) {
+                    return slot;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return the bucket of a time: 0 for less than 2 microseconds, then i for
+     * [2^i, 2^(i + 1)) microseconds.
+     */
+    static int bucketOf(long micros) {
+        int bucket = 63 - Long.numberOfLeadingZeros(micros | 1);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    private static long[] copy(AtomicLongArray array) {
+        long[] copy = new long[array.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = array.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * {@link Snapshot} is a copy of the metrics at one point in time.
+     */
+    public static class Snapshot {
+
+        private final int mCategoryCount;
+        private final long[] mStageBuckets;
+        private final long[] mStageSums;
+        private final int[] mClipIds;
+        private final long[] mClipBuckets;
+        private final long[] mClipSums;
+        private final long[] mCounters;
+
+        Snapshot(int categoryCount, long[] stageBuckets, long[] stageSums, int[] clipIds,
+                 long[] clipBuckets, long[] clipSums, long[] counters) {
+            mCategoryCount = categoryCount;
+            mStageBuckets = stageBuckets;
+            mStageSums = stageSums;
+            mClipIds = clipIds;
+            mClipBuckets = clipBuckets;
+            mClipSums = clipSums;
+            mCounters = counters;
+        }
+
+        /**
+         * Return the number of plays that reached a stage.
+         *
+         * @param category is the ID of a category, or {@link #NO_CATEGORY} for all the plays
+         * @param stage is one of the STAGE constants
+         */
+        public long getCount(int category, int stage) {
+            return count(mStageBuckets, stageHistogram(category, stage));
+        }
+
+        /**
+         * Return the mean time from the tap to a stage, in microseconds, or 0 if no play
+         * reached it.
+         *
+         * @param category is the ID of a category, or {@link #NO_CATEGORY} for all the plays
+         * @param stage is one of the STAGE constants
+         */
+        public long getMeanMicros(int category, int stage) {
+            int histogram = stageHistogram(category, stage);
+            long count = count(mStageBuckets, histogram);
+            return count == 0 ? 0 : mStageSums[histogram] / count;
+        }
+
+        /**
+         * Return a percentile of the time from the tap to a stage, in microseconds, as the
+         * upper bound of its bucket, or 0 if no play reached it.
+         *
+         * @param category is the ID of a category, or {@link #NO_CATEGORY} for all the plays
+         * @param stage is one of the STAGE constants
+         * @param percentile is the percentile, from 0 to 100
+         */
+        public long getPercentileMicros(int category, int stage, double percentile) {
+            return percentile(mStageBuckets, stageHistogram(category, stage), percentile);
+        }
+
+        /**
+         * Return the resource IDs of the sound files that have their own histogram.
+         */
+        public int[] getClipIds() {
+            return mClipIds.clone();
+        }
+
+        /**
+         * Return the number of plays of a sound file that reached the first audio.
+         */
+        public long getClipCount(int audioResourceId) {
+            int clip = indexOfClip(audioResourceId);
+            return clip < 0 ? 0 : count(mClipBuckets, clip);
+        }
+
+        /**
+         * Return a percentile of the time from the tap to the first audio of a sound file,
+         * in microseconds, as the upper bound of its bucket, or 0 if it was never played.
+         *
+         * @param percentile is the percentile, from 0 to 100
+         */
+        public long getClipPercentileMicros(int audioResourceId, double percentile) {
+            int clip = indexOfClip(audioResourceId);
+            return clip < 0 ? 0 : percentile(mClipBuckets, clip, percentile);
+        }
+
+        public long getFocusRequestCount() {
+            return mCounters[FOCUS_REQUESTS];
+        }
+
+        public long getFocusDenialCount() {
+            return mCounters[FOCUS_DENIALS];
+        }
+
+        public long getFocusAbandonCount() {
+            return mCounters[FOCUS_ABANDONS];
+        }
+
+        public long getFocusLossCount() {
+            return mCounters[FOCUS_LOSSES];
+        }
+
+        public long getReleaseCount() {
+            return mCounters[RELEASES];
+        }
+
+        /**
+         * Return the number of plays of sound files that found no free histogram.
+         */
+        public long getDroppedClipCount() {
+            return mCounters[DROPPED_CLIPS];
+        }
+
+        /**
+         * @return a summary of the metrics of all the plays, one line per stage
+         */
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            String[] names = {"focus granted", "prepared", "first audio"};
+            for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                builder.append(String.format(Locale.US,
+                        "%s: %d plays, mean %.1f ms, p50 %.1f ms, p95 %.1f ms, p99 %.1f ms%n",
+                        names[stage], getCount(NO_CATEGORY, stage),
+                        getMeanMicros(NO_CATEGORY, stage) / 1000.0,
+                        getPercentileMicros(NO_CATEGORY, stage, 50) / 1000.0,
+                        getPercentileMicros(NO_CATEGORY, stage, 95) / 1000.0,
+                        getPercentileMicros(NO_CATEGORY, stage, 99) / 1000.0));
+            }
+            builder.append(String.format(Locale.US,
+                    "focus: %d requests, %d denials, %d abandons, %d losses, %d releases",
+                    getFocusRequestCount(), getFocusDenialCount(), getFocusAbandonCount(),
+                    getFocusLossCount(), getReleaseCount()));
+            return builder.toString();
+        }
+
+        private int stageHistogram(int category, int stage) {
+            if (stage < 0 || stage >= STAGE_COUNT) {
+                throw new IllegalArgumentException("Unknown stage: " + stage);
+            }
+            if (category == NO_CATEGORY) {
+                return stage;
+            }
+            if (category < 0 || category >= mCategoryCount) {
+                throw new IllegalArgumentException("Unknown category: " + category);
+            }
+            return (category + 1) * STAGE_COUNT + stage;
+        }
+
+        private int indexOfClip(int audioResourceId) {
+            for (int i = 0; i < mClipIds.length; i++) {
+                if (mClipIds[i] == audioResourceId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static long count(long[] buckets, int histogram) {
+            long count = 0;
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                count += buckets[histogram * BUCKET_COUNT + bucket];
+            }
+            return count;
+        }
+
+        private static long percentile(long[] buckets, int histogram, double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Invalid percentile: " + percentile);
+            }
+            long count = count(buckets, histogram);
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                seen += buckets[histogram * BUCKET_COUNT + bucket];
+                if (seen >= rank) {
+                    return 1L << (bucket + 1);
+                }
+            }
+            return 1L << BUCKET_COUNT;
+        }
+    }
+}
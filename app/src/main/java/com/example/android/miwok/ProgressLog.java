@@ -0,0 +1,714 @@
+package com.example.android.miwok;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * {@link ProgressLog} stores the progress of the learner: the words played, the answers of
+ * the reviews and the pronunciation scores.
+ *
+ * Each event is appended to a log file as a fixed size record, so recording an event is a
+ * single small write and never rewrites what is already stored. The writes reach the disk
+ * in batches: the first record after a sync schedules the next sync on a background thread,
+ * {@link #SYNC_DELAY_MS} later. A record is safe from a crash of the app as soon as it is
+ * appended, and safe from a crash of the device once it is synced.
+ *
+ * The totals of each word are kept in memory, in primitive columns keyed by
+ * {@link Word#getStableId()}. On startup they are rebuilt from the last snapshot, then from
+ * the records of the log, read through a memory-mapped buffer. A record torn by a crash
+ * fails its checksum, and the log is cut before it. Once the log holds enough records, the
+ * totals are written to a new snapshot, and the log is replaced by a new one holding only
+ * the records appended meanwhile. Both files are written aside and renamed into place, so a
+ * crash during a compaction leaves either the old files or the new ones.
+ *
+ * The log only deals with files and buffers, it doesn't use any Android API, so it can be
+ * tested on a plain JVM. All the methods are thread safe.
+ *
+ * Format of the log file (little endian):
+ *   int    magic ("MWKL")
+ *   int    version of the format
+ *   then records of 32 bytes:
+ *   long   stable id of the word
+ *   long   time of the event, in milliseconds since the epoch
+ *   long   sequence number, one more than the previous record
+ *   short  type of the event
+ *   short  value of the event: quality of a review, or score
+ *   int    CRC32 of the 28 previous bytes
+ *
+ * Format of the snapshot file (little endian):
+ *   int    magic ("MWKS")
+ *   int    version of the format
+ *   long   sequence number of the last record included
+ *   int    number of words
+ *   then for each word:
+ *   long   stable id, long time of the last event, int play count, int review count,
+ *   int    last quality, int best score, int last score
+ *   int    CRC32 of all the previous bytes
+ */
+
+public class ProgressLog {
+
+    /** Types of events */
+    public static final int TYPE_PLAY = 1;
+    public static final int TYPE_REVIEW = 2;
+    public static final int TYPE_SCORE = 3;
+
+    /** Value returned for a quality or a score that was never recorded */
+    public static final int NO_VALUE = -1;
+
+    /** Magic numbers at the start of the files ("MWKL" and "MWKS") */
+    static final int LOG_MAGIC = 0x4D574B4C;
+    static final int SNAPSHOT_MAGIC = 0x4D574B53;
+
+    /** Version of the file formats */
+    static final int VERSION = 1;
+
+    static final int LOG_HEADER_SIZE = 8;
+    static final int RECORD_SIZE = 32;
+    static final int SNAPSHOT_HEADER_SIZE = 20;
+    static final int SNAPSHOT_ROW_SIZE = 36;
+
+    /** Number of bytes of a record covered by its checksum */
+    private static final int RECORD_CHECKED_SIZE = 28;
+
+    /** Time between the first unsynced record and the sync */
+    static final long SYNC_DELAY_MS = 200;
+
+    /** Number of records in the log after which it is compacted */
+    static final int DEFAULT_COMPACT_THRESHOLD = 8192;
+
+    static final String LOG_FILE = "progress.log";
+    static final String SNAPSHOT_FILE = "progress.snap";
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    private final File mDirectory;
+    private final ReviewScheduler.Clock mClock;
+    private final int mCompactThreshold;
+
+    /** Log file, replaced by each compaction */
+    private RandomAccessFile mFile;
+    private FileChannel mChannel;
+
+    /** Syncs and compacts in the background */
+    private final ScheduledThreadPoolExecutor mExecutor;
+
+    /** Held for a whole compaction, so two compactions don't interleave */
+    private final Object mCompactionLock = new Object();
+
+    /** Encoding buffer of a record, reused by every append */
+    private final byte[] mRecord = new byte[RECORD_SIZE];
+    private final ByteBuffer mRecordBuffer =
+            ByteBuffer.wrap(mRecord).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 mCrc = new CRC32();
+
+    /** End of the last valid record of the log */
+    private long mLogEnd;
+    private long mNextSequence;
+    private boolean mSyncScheduled;
+    private boolean mClosed;
+
+    /** Word index of each stable id */
+    private final LongIntMap mIndex = new LongIntMap(256);
+
+    /** Word columns, the word i is stored at the index i of each array */
+    private long[] mIds = new long[256];
+    private long[] mLastTimes = new long[256];
+    private int[] mPlayCounts = new int[256];
+    private int[] mReviewCounts = new int[256];
+    private int[] mLastQualities = new int[256];
+    private int[] mBestScores = new int[256];
+    private int[] mLastScores = new int[256];
+    private int mWordCount;
+
+    private long mAppendCount;
+    private int mSyncCount;
+    private int mFailedSyncCount;
+    private int mCompactionCount;
+    private long mDiscardedByteCount;
+
+    /** Syncs the log, then compacts it if it grew enough */
+    private final Runnable mSyncTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (ProgressLog.this) {
+                mSyncScheduled = false;
+                if (mClosed) {
+                    return;
+                }
+            }
+            try {
+                // Records appended during the sync schedule the next one
+                forceLog();
+                boolean compact;
+                synchronized (ProgressLog.this) {
+                    mSyncCount++;
+                    compact = getLogRecordCount() >= mCompactThreshold;
+                }
+                if (compact) {
+                    compact();
+                }
+            } catch (IOException e) {
+                synchronized (ProgressLog.this) {
+                    mFailedSyncCount++;
+                }
+            }
+        }
+    };
+
+    /**
+     * Create a new {@link ProgressLog} object, loading the progress already stored in the
+     * directory.
+     *
+     * @param directory is the directory holding the files, created if needed
+     * @param clock gives the time of the events
+     */
+    public ProgressLog(File directory, ReviewScheduler.Clock clock) throws IOException {
+        this(directory, clock, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    /**
+     * Create a new {@link ProgressLog} object, loading the progress already stored in the
+     * directory.
+     *
+     * @param directory is the directory holding the files, created if needed
+     * @param clock gives the time of the events
+     * @param compactThreshold is the number of records in the log after which it is compacted
+     */
+    ProgressLog(File directory, ReviewScheduler.Clock clock, int compactThreshold)
+            throws IOException {
+        if (compactThreshold <= 0) {
+            throw new IllegalArgumentException("compactThreshold must be positive: " +
+                    compactThreshold);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the progress directory " + directory);
+        }
+        mDirectory = directory;
+        mClock = clock;
+        mCompactThreshold = compactThreshold;
+
+        // Left by a compaction that didn't finish, the previous files are still valid
+        new File(directory, SNAPSHOT_FILE + TEMP_EXTENSION).delete();
+        new File(directory, LOG_FILE + TEMP_EXTENSION).delete();
+        long snapshotSequence = 0;
+        File snapshot = new File(directory, SNAPSHOT_FILE);
+        if (snapshot.exists()) {
+            snapshotSequence = readSnapshot(snapshot);
+        }
+
+        mFile = new RandomAccessFile(new File(directory, LOG_FILE), "rw");
+        mChannel = mFile.getChannel();
+        try {
+            mNextSequence = replayLog(snapshotSequence) + 1;
+        } catch (IOException e) {
+            mFile.close();
+            throw e;
+        }
+
+        mExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ProgressLog");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // close() syncs itself, the pending syncs don't need to wait for their delay
+        mExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Record that the audio of a word was played.
+     */
+    public void recordPlay(long wordId) throws IOException {
+        append(wordId, TYPE_PLAY, 0);
+    }
+
+    /**
+     * Record the answer of a review of a word.
+     *
+     * @param quality is how well the word was remembered, as in
+     *                {@link ReviewScheduler#recordAnswer(long, int)}
+     */
+    public void recordReview(long wordId, int quality) throws IOException {
+        if (quality < ReviewScheduler.QUALITY_BLACKOUT ||
+                quality > ReviewScheduler.QUALITY_PERFECT) {
+            throw new IllegalArgumentException("Invalid quality: " + quality);
+        }
+        append(wordId, TYPE_REVIEW, quality);
+    }
+
+    /**
+     * Record a pronunciation score of a word, as given by {@link PronunciationScorer}.
+     *
+     * @param score is the score, from 0 to 100
+     */
+    public void recordScore(long wordId, int score) throws IOException {
+        if (score < 0 || score > 100) {
+            throw new IllegalArgumentException("Invalid score: " + score);
+        }
+        append(wordId, TYPE_SCORE, score);
+    }
+
+    /**
+     * Write the records appended so far to the disk now, instead of waiting for the
+     * background sync. Useful when the app goes to the background.
+     */
+    public void sync() throws IOException {
+        forceLog();
+        synchronized (this) {
+            mSyncCount++;
+        }
+    }
+
+    /**
+     * Write the totals of all the words to a new snapshot and start a new log. This is done
+     * in the background when the log grows, but can also be called directly.
+     */
+    public void compact() throws IOException {
+        synchronized (mCompactionLock) {
+            ByteBuffer snapshot;
+            long lastSequence;
+            long mark;
+            synchronized (this) {
+                checkOpen();
+                lastSequence = mNextSequence - 1;
+                mark = mLogEnd;
+                snapshot = encodeSnapshot(lastSequence);
+            }
+
+            // The snapshot is written without holding the lock, so appends don't wait for it
+            File temp = new File(mDirectory, SNAPSHOT_FILE + TEMP_EXTENSION);
+            RandomAccessFile file = new RandomAccessFile(temp, "rw");
+            try {
+                file.setLength(0);
+                FileChannel channel = file.getChannel();
+                while (snapshot.hasRemaining()) {
+                    channel.write(snapshot);
+                }
+                channel.force(true);
+            } finally {
+                file.close();
+            }
+            if (!temp.renameTo(new File(mDirectory, SNAPSHOT_FILE))) {
+                temp.delete();
+                throw new IOException("Unable to move " + temp + " to " + SNAPSHOT_FILE);
+            }
+
+            synchronized (this) {
+                checkOpen();
+                // Start a new log with the records appended during the snapshot. It replaces
+                // the old one only once it is complete on the disk, and until then the old
+                // log is still valid: its records already in the snapshot are skipped on
+                // replay, since their sequence numbers are not above the snapshot's.
+                int tailSize = (int) (mLogEnd - mark);
+                ByteBuffer log = ByteBuffer.allocate(LOG_HEADER_SIZE + tailSize)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                log.putInt(LOG_MAGIC).putInt(VERSION);
+                while (log.hasRemaining()) {
+                    if (mChannel.read(log, mark + log.position() - LOG_HEADER_SIZE) < 0) {
+                        throw new IOException("Progress log shorter than expected");
+                    }
+                }
+                log.flip();
+                File newLog = new File(mDirectory, LOG_FILE + TEMP_EXTENSION);
+                RandomAccessFile newFile = new RandomAccessFile(newLog, "rw");
+                try {
+                    newFile.setLength(0);
+                    FileChannel channel = newFile.getChannel();
+                    while (log.hasRemaining()) {
+                        channel.write(log, log.position());
+                    }
+                    channel.force(true);
+                } catch (IOException e) {
+                    newFile.close();
+                    newLog.delete();
+                    throw e;
+                }
+                if (!newLog.renameTo(new File(mDirectory, LOG_FILE))) {
+                    newFile.close();
+                    newLog.delete();
+                    throw new IOException("Unable to move " + newLog + " to " + LOG_FILE);
+                }
+                // The old log is unlinked, appends go to the new one from now on
+                mFile.close();
+                mFile = newFile;
+                mChannel = newFile.getChannel();
+                mLogEnd = LOG_HEADER_SIZE + tailSize;
+                mCompactionCount++;
+            }
+        }
+    }
+
+    /**
+     * Sync the log and close it. The log can't be used anymore afterwards.
+     */
+    public void close() throws IOException {
+        mExecutor.shutdown();
+        try {
+            // Wait for a sync or a compaction that is running
+            mExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (mCompactionLock) {
+            synchronized (this) {
+                if (mClosed) {
+                    return;
+                }
+                mClosed = true;
+                try {
+                    mChannel.force(false);
+                } finally {
+                    mFile.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the appended records to the disk, without holding the lock so the appends
+     * don't wait for it.
+     */
+    private void forceLog() throws IOException {
+        FileChannel channel;
+        synchronized (this) {
+            checkOpen();
+            channel = mChannel;
+        }
+        while (true) {
+            try {
+                channel.force(false);
+                return;
+            } catch (ClosedChannelException e) {
+                synchronized (this) {
+                    if (mClosed || channel == mChannel) {
+                        throw e;
+                    }
+                    // A compaction replaced the log meanwhile, the records of the old one
+                    // were forced with the new one, but not the ones appended since
+                    channel = mChannel;
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the number of words with some progress.
+     */
+    public synchronized int getWordCount() {
+        return mWordCount;
+    }
+
+    /**
+     * Return the number of times the audio of the word was played.
+     */
+    public synchronized int getPlayCount(long wordId) {
+        int word = mIndex.get(wordId);
+        return word == LongIntMap.NO_VALUE ? 0 : mPlayCounts[word];
+    }
+
+    /**
+     * Return the number of reviews of the word.
+     */
+    public synchronized int getReviewCount(long wordId) {
+        int word = mIndex.get(wordId);
+        return word == LongIntMap.NO_VALUE ? 0 : mReviewCounts[word];
+    }
+
+    /**
+     * Return the quality of the last review of the word, or {@link #NO_VALUE}.
+     */
+    public synchronized int getLastQuality(long wordId) {
+        int word = mIndex.get(wordId);
+        return word == LongIntMap.NO_VALUE ? NO_VALUE : mLastQualities[word];
+    }
+
+    /**
+     * Return the best pronunciation score of the word, or {@link #NO_VALUE}.
+     */
+    public synchronized int getBestScore(long wordId) {
+        int word = mIndex.get(wordId);
+        return word == LongIntMap.NO_VALUE ? NO_VALUE : mBestScores[word];
+    }
+
+    /**
+     * Return the last pronunciation score of the word, or {@link #NO_VALUE}.
+     */
+    public synchronized int getLastScore(long wordId) {
+        int word = mIndex.get(wordId);
+        return word == LongIntMap.NO_VALUE ? NO_VALUE : mLastScores[word];
+    }
+
+    /**
+     * Return the time of the last event of the word, in milliseconds since the epoch, or 0.
+     */
+    public synchronized long getLastActivityTime(long wordId) {
+        int word = mIndex.get(wordId);
+        return word == LongIntMap.NO_VALUE ? 0 : mLastTimes[word];
+    }
+
+    /**
+     * Return the number of records in the log, since the last compaction.
+     */
+    public synchronized int getLogRecordCount() {
+        return (int) ((mLogEnd - LOG_HEADER_SIZE) / RECORD_SIZE);
+    }
+
+    public synchronized long getAppendCount() {
+        return mAppendCount;
+    }
+
+    public synchronized int getSyncCount() {
+        return mSyncCount;
+    }
+
+    public synchronized int getFailedSyncCount() {
+        return mFailedSyncCount;
+    }
+
+    public synchronized int getCompactionCount() {
+        return mCompactionCount;
+    }
+
+    /**
+     * Return the number of bytes cut from the end of the log on startup, because a crash
+     * left a torn record there.
+     */
+    public synchronized long getDiscardedByteCount() {
+        return mDiscardedByteCount;
+    }
+
+    private synchronized void append(long wordId, int type, int value) throws IOException {
+        checkOpen();
+        long time = mClock.currentTimeMillis();
+        mRecordBuffer.putLong(0, wordId);
+        mRecordBuffer.putLong(8, time);
+        mRecordBuffer.putLong(16, mNextSequence);
+        mRecordBuffer.putShort(24, (short) type);
+        mRecordBuffer.putShort(26, (short) value);
+        mCrc.reset();
+        mCrc.update(mRecord, 0, RECORD_CHECKED_SIZE);
+        mRecordBuffer.putInt(RECORD_CHECKED_SIZE, (int) mCrc.getValue());
+
+        mRecordBuffer.clear();
+        while (mRecordBuffer.hasRemaining()) {
+            mChannel.write(mRecordBuffer, mLogEnd + mRecordBuffer.position());
+        }
+        mLogEnd += RECORD_SIZE;
+        mNextSequence++;
+        mAppendCount++;
+        apply(wordId, time, type, value);
+
+        if (!mSyncScheduled) {
+            mSyncScheduled = true;
+            mExecutor.schedule(mSyncTask, SYNC_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Add an event to the totals of its word.
+     */
+    private void apply(long wordId, long time, int type, int value) {
+        int word = mIndex.get(wordId);
+        if (word == LongIntMap.NO_VALUE) {
+            word = addWord(wordId);
+        }
+        mLastTimes[word] = Math.max(mLastTimes[word], time);
+        switch (type) {
+            case TYPE_PLAY:
+                mPlayCounts[word]++;
+                break;
+            case TYPE_REVIEW:
+                mReviewCounts[word]++;
+                mLastQualities[word] = value;
+                break;
+            case TYPE_SCORE:
+                mLastScores[word] = value;
+                mBestScores[word] = Math.max(mBestScores[word], value);
+                break;
+            default:
+                // Written by a newer version of the app, it only counts as activity
+                break;
+        }
+    }
+
+    private int addWord(long wordId) {
+        if (mWordCount == mIds.length) {
+            int capacity = mIds.length * 2;
+            mIds = copyOf(mIds, capacity);
+            mLastTimes = copyOf(mLastTimes, capacity);
+            mPlayCounts = copyOf(mPlayCounts, capacity);
+            mReviewCounts = copyOf(mReviewCounts, capacity);
+            mLastQualities = copyOf(mLastQualities, capacity);
+            mBestScores = copyOf(mBestScores, capacity);
+            mLastScores = copyOf(mLastScores, capacity);
+        }
+        int word = mWordCount++;
+        mIndex.put(wordId, word);
+        mIds[word] = wordId;
+        mLastTimes[word] = 0;
+        mPlayCounts[word] = 0;
+        mReviewCounts[word] = 0;
+        mLastQualities[word] = NO_VALUE;
+        mBestScores[word] = NO_VALUE;
+        mLastScores[word] = NO_VALUE;
+        return word;
+    }
+
+    /**
+     * Read the records of the log through a memory-mapped buffer, and cut the log after the
+     * last valid one.
+     *
+     * @param lastSequence is the sequence number of the last record already in the snapshot
+     * @return the sequence number of the last record read
+     */
+    private long replayLog(long lastSequence) throws IOException {
+        long length = mChannel.size();
+        if (length < LOG_HEADER_SIZE) {
+            // New log, or a crash before its header was written
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(LOG_MAGIC).putInt(VERSION);
+            header.flip();
+            mChannel.truncate(0);
+            while (header.hasRemaining()) {
+                mChannel.write(header, header.position());
+            }
+            // The size of the file is metadata, so it is only forced with it
+            mChannel.force(true);
+            mLogEnd = LOG_HEADER_SIZE;
+            return lastSequence;
+        }
+
+        MappedByteBuffer buffer = mChannel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt() != LOG_MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a progress log " + LOG_FILE);
+        }
+        long position = LOG_HEADER_SIZE;
+        while (position + RECORD_SIZE <= length) {
+            buffer.position((int) position);
+            buffer.get(mRecord);
+            mCrc.reset();
+            mCrc.update(mRecord, 0, RECORD_CHECKED_SIZE);
+            if (mRecordBuffer.getInt(RECORD_CHECKED_SIZE) != (int) mCrc.getValue()) {
+                // A torn write, nothing after it can be trusted
+                break;
+            }
+            long sequence = mRecordBuffer.getLong(16);
+            // Records already in the snapshot, or copies left by a compaction cut short
+            if (sequence > lastSequence) {
+                apply(mRecordBuffer.getLong(0), mRecordBuffer.getLong(8),
+                        mRecordBuffer.getShort(24), mRecordBuffer.getShort(26));
+                lastSequence = sequence;
+            }
+            position += RECORD_SIZE;
+        }
+        if (position < length) {
+            mDiscardedByteCount = length - position;
+            mChannel.truncate(position);
+            mChannel.force(true);
+        }
+        mLogEnd = position;
+        return lastSequence;
+    }
+
+    /**
+     * Load the totals of the snapshot.
+     *
+     * @return the sequence number of the last record included in the snapshot
+     */
+    private long readSnapshot(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (length < SNAPSHOT_HEADER_SIZE + 4 || buffer.getInt() != SNAPSHOT_MAGIC ||
+                    buffer.getInt() != VERSION) {
+                throw new IOException("Not a progress snapshot " + file);
+            }
+            long lastSequence = buffer.getLong();
+            int wordCount = buffer.getInt();
+            if (wordCount < 0 ||
+                    length != SNAPSHOT_HEADER_SIZE + (long) wordCount * SNAPSHOT_ROW_SIZE + 4) {
+                throw new IOException("Corrupted progress snapshot " + file);
+            }
+            mCrc.reset();
+            byte[] chunk = new byte[8192];
+            buffer.position(0);
+            int checked = (int) length - 4;
+            while (buffer.position() < checked) {
+                int count = Math.min(chunk.length, checked - buffer.position());
+                buffer.get(chunk, 0, count);
+                mCrc.update(chunk, 0, count);
+            }
+            if (buffer.getInt() != (int) mCrc.getValue()) {
+                throw new IOException("Corrupted progress snapshot " + file);
+            }
+
+            buffer.position(SNAPSHOT_HEADER_SIZE);
+            for (int i = 0; i < wordCount; i++) {
+                int word = addWord(buffer.getLong());
+                mLastTimes[word] = buffer.getLong();
+                mPlayCounts[word] = buffer.getInt();
+                mReviewCounts[word] = buffer.getInt();
+                mLastQualities[word] = buffer.getInt();
+                mBestScores[word] = buffer.getInt();
+                mLastScores[word] = buffer.getInt();
+            }
+            return lastSequence;
+        } finally {
+            // The mapping stays valid after the file is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * Return the totals of all the words in the snapshot format, ready to be written.
+     */
+    private ByteBuffer encodeSnapshot(long lastSequence) {
+        int size = SNAPSHOT_HEADER_SIZE + mWordCount * SNAPSHOT_ROW_SIZE + 4;
+        ByteBuffer snapshot = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        snapshot.putInt(SNAPSHOT_MAGIC).putInt(VERSION).putLong(lastSequence).putInt(mWordCount);
+        for (int word = 0; word < mWordCount; word++) {
+            snapshot.putLong(mIds[word]).putLong(mLastTimes[word]).putInt(mPlayCounts[word])
+                    .putInt(mReviewCounts[word]).putInt(mLastQualities[word])
+                    .putInt(mBestScores[word]).putInt(mLastScores[word]);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(snapshot.array(), 0, size - 4);
+        snapshot.putInt((int) crc.getValue());
+        snapshot.flip();
+        return snapshot;
+    }
+
+    private void checkOpen() throws IOException {
+        if (mClosed) {
+            throw new IOException("Progress log closed");
+        }
+    }
+
+    private static long[] copyOf(long[] array, int length) {
+        long[] copy = new long[length];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+}
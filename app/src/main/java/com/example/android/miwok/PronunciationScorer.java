@@ -0,0 +1,150 @@
+package com.example.android.miwok;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link PronunciationScorer} scores a learner's recording of a word against the reference
+ * clip of the {@link Word}, from 0 (nothing alike) to 100 (the same).
+ *
+ * The silence around both recordings is skipped, their {@link Mfcc} coefficients are
+ * extracted and normalized, and the {@link Dtw} distance between them is turned into a
+ * score. The reference is analyzed once with {@link #setReference(short[], int, int)}, so
+ * several attempts at the same word only analyze the new recording.
+ *
+ * All the buffers are kept between calls, so scoring doesn't allocate once they have grown
+ * to the size of the longest recording. An instance is not thread safe.
+ */
+
+public class PronunciationScorer {
+
+    /** Width of the DTW band on each side of the diagonal, as a part of the longest recording */
+    static final float BAND_FRACTION = 0.2f;
+
+    /** DTW distance at which the score falls to about a third */
+    static final float DISTANCE_SCALE = 20f;
+
+    /** Length of the blocks the silence is detected on, in milliseconds */
+    private static final int SILENCE_BLOCK_MS = 10;
+
+    /** RMS level under which a block is silent, as a 16 bit sample value (-40 dBFS) */
+    private static final float SILENCE_LEVEL = 328f;
+
+    private final Mfcc mReferenceMfcc;
+    private final Mfcc mRecordingMfcc;
+    private final Dtw mDtw = new Dtw(BAND_FRACTION);
+
+    private final Mfcc.Features mReference = new Mfcc.Features();
+    private final Mfcc.Features mRecording = new Mfcc.Features();
+
+    /** Mono samples of a reference read from a PCM buffer */
+    private short[] mReferenceSamples = new short[0];
+
+    /** Audible part found by {@link #findSound(short[], int, int, int)} */
+    private int mSoundStart;
+    private int mSoundEnd;
+
+    private float mLastDistance = Float.NaN;
+
+    /**
+     * Create a new {@link PronunciationScorer} object
+     *
+     * @param referenceSampleRate is the sample rate of the reference clips, in Hz
+     * @param recordingSampleRate is the sample rate of the learner's recordings, in Hz
+     */
+    public PronunciationScorer(int referenceSampleRate, int recordingSampleRate) {
+        mReferenceMfcc = new Mfcc(referenceSampleRate);
+        mRecordingMfcc = recordingSampleRate == referenceSampleRate
+                ? mReferenceMfcc : new Mfcc(recordingSampleRate);
+    }
+
+    /**
+     * Analyze the reference clip the next recordings are compared to.
+     *
+     * @param samples holds mono 16 bit samples
+     * @param offset is the index of the first sample
+     * @param length is the number of samples
+     */
+    public void setReference(short[] samples, int offset, int length) {
+        analyze(mReferenceMfcc, samples, offset, length, mReference);
+    }
+
+    /**
+     * Analyze the reference clip the next recordings are compared to, from little endian
+     * 16 bit samples such as a {@link PcmCache.Clip}. Several channels are mixed down.
+     *
+     * @param pcm holds the samples, from its position to its limit
+     * @param channelCount is the number of interleaved channels
+     */
+    public void setReference(ByteBuffer pcm, int channelCount) {
+        int frames = pcm.remaining() / (2 * channelCount);
+        if (mReferenceSamples.length < frames) {
+            mReferenceSamples = new short[frames];
+        }
+        int position = pcm.position();
+        for (int frame = 0; frame < frames; frame++) {
+            int sum = 0;
+            for (int c = 0; c < channelCount; c++) {
+                sum += pcm.getShort(position);
+                position += 2;
+            }
+            mReferenceSamples[frame] = (short) (sum / channelCount);
+        }
+        setReference(mReferenceSamples, 0, frames);
+    }
+
+    /**
+     * Score a recording against the reference.
+     *
+     * @param samples holds mono 16 bit samples
+     * @param offset is the index of the first sample
+     * @param length is the number of samples
+     * @return the score, from 0 to 100, or 0 if one of the recordings has no sound
+     */
+    public float score(short[] samples, int offset, int length) {
+        analyze(mRecordingMfcc, samples, offset, length, mRecording);
+        mLastDistance = mDtw.distance(mReference, mRecording);
+        if (Float.isInfinite(mLastDistance)) {
+            return 0;
+        }
+        return (float) (100 * Math.exp(-mLastDistance / DISTANCE_SCALE));
+    }
+
+    /**
+     * Return the DTW distance found by the last call to {@link #score(short[], int, int)}.
+     */
+    public float getLastDistance() {
+        return mLastDistance;
+    }
+
+    private void analyze(Mfcc mfcc, short[] samples, int offset, int length,
+                         Mfcc.Features features) {
+        findSound(samples, offset, length, mfcc.getSampleRate());
+        mfcc.extract(samples, mSoundStart, mSoundEnd - mSoundStart, features);
+        features.normalizeMean();
+    }
+
+    /**
+     * Find the part of the samples between the first and the last audible blocks, and store
+     * it in {@link #mSoundStart} and {@link #mSoundEnd}. Silent samples give an empty part.
+     */
+    private void findSound(short[] samples, int offset, int length, int sampleRate) {
+        int block = sampleRate * SILENCE_BLOCK_MS / 1000;
+        float threshold = SILENCE_LEVEL * SILENCE_LEVEL * block;
+        mSoundStart = offset;
+        mSoundEnd = offset;
+        boolean found = false;
+        for (int start = offset; start + block <= offset + length; start += block) {
+            float sumSquares = 0;
+            for (int i = start; i < start + block; i++) {
+                sumSquares += (float) samples[i] * samples[i];
+            }
+            if (sumSquares >= threshold) {
+                if (!found) {
+                    mSoundStart = start;
+                    found = true;
+                }
+                mSoundEnd = start + block;
+            }
+        }
+    }
+}
@@ -0,0 +1,630 @@
+package com.example.android.miwok;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * {@link QuizGenerator} makes multiple choice questions such as "which of these is otiiko?",
+ * where the options are default translations. The wrong options (the distractors) are the
+ * translations of the words whose Miwok spelling is the closest to the asked word, so they
+ * are plausible rather than random.
+ *
+ * The closest words of each word are found once, when the generator is built: the folded
+ * Miwok translations are indexed by their letter triples, and the edit distance of each
+ * word is measured to the {@link #CANDIDATE_COUNT} words sharing the most letter triples
+ * with it, or to all the words of a small vocabulary. The closest ones are kept as its
+ * neighbours, words of the same category winning the ties, and no two of them meaning the
+ * same. Making a question then only picks among the neighbours of the asked word, so it
+ * takes O(k) time and doesn't look at the rest of the vocabulary.
+ *
+ * The choices are made with the {@link Random} given by the caller, so a seeded random gives
+ * the same questions every time.
+ */
+
+public class QuizGenerator {
+
+    /** Default number of neighbours kept per word */
+    public static final int DEFAULT_NEIGHBOR_COUNT = 8;
+
+    /** Category that stands for all the categories */
+    public static final int ANY_CATEGORY = -1;
+
+    /** Number of terms sharing the most letter triples compared with each term */
+    static final int CANDIDATE_COUNT = 128;
+
+    /** Letters standing for the start and the end of a term in the letter triples */
+    private static final char TERM_START = '\u0002';
+    private static final char TERM_END = '\u0003';
+
+    /**
+     * {@link Question} is a generated question. It is meant to be reused, generating a
+     * question into it doesn't allocate once it is large enough.
+     */
+    public static class Question {
+
+        private int mWord = -1;
+        private int mCorrectOption;
+        private int mOptionCount;
+        private int[] mOptions = new int[4];
+
+        /** Neighbours being shuffled */
+        private int[] mCandidates = new int[DEFAULT_NEIGHBOR_COUNT];
+
+        /**
+         * Return the asked word, as an index in the generator.
+         */
+        public int getWord() {
+            return mWord;
+        }
+
+        /**
+         * Return the number of options, which can be less than asked for a tiny vocabulary.
+         */
+        public int getOptionCount() {
+            return mOptionCount;
+        }
+
+        /**
+         * Return the word of an option, as an index in the generator.
+         */
+        public int getOptionWord(int option) {
+            if (option < 0 || option >= mOptionCount) {
+                throw new IndexOutOfBoundsException("Invalid option: " + option);
+            }
+            return mOptions[option];
+        }
+
+        /**
+         * Return the option holding the asked word.
+         */
+        public int getCorrectOption() {
+            return mCorrectOption;
+        }
+    }
+
+    /** Category, position in the category and store of each word */
+    private final int[] mCategories;
+    private final int[] mPositions;
+    private final VocabularyStore[] mStores;
+
+    /** First word of each category, in the order the categories were added */
+    private final int[] mCategoryIds;
+    private final int[] mCategoryStarts;
+
+    /** Neighbours of the word i, closest first, at i * mNeighborCount */
+    private final int mNeighborCount;
+    private final int[] mNeighbors;
+    private final int[] mNeighborCounts;
+
+    private QuizGenerator(Builder builder, int[] neighbors, int[] neighborCounts) {
+        int wordCount = builder.mWordCount;
+        mCategories = Arrays.copyOf(builder.mCategories, wordCount);
+        mPositions = Arrays.copyOf(builder.mPositions, wordCount);
+        mStores = builder.mStores.toArray(new VocabularyStore[wordCount]);
+        int categoryCount = builder.mCategoryIds.size();
+        mCategoryIds = new int[categoryCount];
+        mCategoryStarts = new int[categoryCount + 1];
+        for (int i = 0; i < categoryCount; i++) {
+            mCategoryIds[i] = builder.mCategoryIds.get(i);
+            mCategoryStarts[i] = builder.mCategoryStarts.get(i);
+        }
+        mCategoryStarts[categoryCount] = wordCount;
+        mNeighborCount = builder.mNeighborCount;
+        mNeighbors = neighbors;
+        mNeighborCounts = neighborCounts;
+    }
+
+    /**
+     * Return the number of words.
+     */
+    public int getWordCount() {
+        return mCategories.length;
+    }
+
+    /**
+     * Return the category of a word.
+     */
+    public int getCategory(int word) {
+        return mCategories[word];
+    }
+
+    /**
+     * Return the position of a word in the words of its category.
+     */
+    public int getPosition(int word) {
+        return mPositions[word];
+    }
+
+    /**
+     * Return the Miwok translation of a word, the text of the question.
+     */
+    public String getMiwokTranslation(int word) {
+        return mStores[word].getMiwokTranslation(mPositions[word]);
+    }
+
+    /**
+     * Return the default translation of a word, the text of an option.
+     */
+    public String getDefaultTranslation(int word) {
+        return mStores[word].getDefaultTranslation(mPositions[word]);
+    }
+
+    /**
+     * Return the number of neighbours found for a word.
+     */
+    public int getNeighborCount(int word) {
+        return mNeighborCounts[word];
+    }
+
+    /**
+     * Return a neighbour of a word, the closest one being 0.
+     */
+    public int getNeighbor(int word, int index) {
+        if (index < 0 || index >= mNeighborCounts[word]) {
+            throw new IndexOutOfBoundsException("Invalid neighbor: " + index);
+        }
+        return mNeighbors[word * mNeighborCount + index];
+    }
+
+    /**
+     * Generate a question about a random word.
+     *
+     * @param category is the category of the asked word, or {@link #ANY_CATEGORY}
+     * @param optionCount is the number of options, the right one included
+     * @param random makes the choices
+     * @param question receives the question
+     */
+    public void nextQuestion(int category, int optionCount, Random random, Question question) {
+        int from = 0;
+        int to = getWordCount();
+        if (category != ANY_CATEGORY) {
+            int index = indexOfCategory(category);
+            from = mCategoryStarts[index];
+            to = mCategoryStarts[index + 1];
+        }
+        if (from == to) {
+            throw new IllegalStateException("No words in category " + category);
+        }
+        generate(from + random.nextInt(to - from), optionCount, random, question);
+    }
+
+    /**
+     * Generate a question about a word.
+     *
+     * @param word is the asked word, as an index in the generator
+     * @param optionCount is the number of options, the right one included
+     * @param random makes the choices
+     * @param question receives the question
+     */
+    public void generate(int word, int optionCount, Random random, Question question) {
+        if (optionCount < 2) {
+            throw new IllegalArgumentException("optionCount must be at least 2: " + optionCount);
+        }
+        int available = mNeighborCounts[word];
+        int distractorCount = Math.min(optionCount - 1, available);
+        if (question.mCandidates.length < available) {
+            question.mCandidates = new int[available];
+        }
+        if (question.mOptions.length < distractorCount + 1) {
+            question.mOptions = new int[distractorCount + 1];
+        }
+        int[] candidates = question.mCandidates;
+        System.arraycopy(mNeighbors, word * mNeighborCount, candidates, 0, available);
+
+        // Partial Fisher-Yates shuffle, the first distractorCount candidates are the picks
+        for (int i = 0; i < distractorCount; i++) {
+            int j = i + random.nextInt(available - i);
+            int picked = candidates[j];
+            candidates[j] = candidates[i];
+            candidates[i] = picked;
+        }
+        int correct = random.nextInt(distractorCount + 1);
+        int[] options = question.mOptions;
+        for (int option = 0, next = 0; option <= distractorCount; option++) {
+            options[option] = option == correct ? word : candidates[next++];
+        }
+        question.mWord = word;
+        question.mCorrectOption = correct;
+        question.mOptionCount = distractorCount + 1;
+    }
+
+    private int indexOfCategory(int category) {
+        for (int i = 0; i < mCategoryIds.length; i++) {
+            if (mCategoryIds[i] == category) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown category: " + category);
+    }
+
+    /**
+     * {@link Builder} collects the words of a {@link QuizGenerator} and finds their
+     * neighbours.
+     */
+    public static class Builder {
+
+        private TextFolder mDefaultFolder = TextFolder.DEFAULT;
+        private TextFolder mMiwokFolder = TextFolder.MIWOK;
+        private int mNeighborCount = DEFAULT_NEIGHBOR_COUNT;
+
+        private int mWordCount;
+        private int[] mCategories = new int[64];
+        private int[] mPositions = new int[64];
+        private final List<VocabularyStore> mStores = new ArrayList<>();
+        private final List<Integer> mCategoryIds = new ArrayList<>();
+        private final List<Integer> mCategoryStarts = new ArrayList<>();
+
+        /** Folded default translations, the words with the same meaning share an ID */
+        private final Map<String, Integer> mMeaningsByText = new HashMap<>();
+        private int[] mMeanings = new int[64];
+
+        /** Distinct folded Miwok translations, the words spelled the same share a term */
+        private final List<String> mTerms = new ArrayList<>();
+        private final Map<String, Integer> mTermsByText = new HashMap<>();
+        private int[] mWordTerms = new int[64];
+
+        /** Words of each term, as a linked list */
+        private int[] mFirstWord = new int[64];
+        private int[] mNextWord = new int[64];
+
+        /**
+         * Set the rules used to fold the default translations, to find the words that have
+         * the same meaning. They must be set before adding words.
+         */
+        public Builder setDefaultFolder(TextFolder folder) {
+            mDefaultFolder = folder;
+            return this;
+        }
+
+        /**
+         * Set the rules used to fold the Miwok translations before measuring their
+         * distance. They must be set before adding words.
+         */
+        public Builder setMiwokFolder(TextFolder folder) {
+            mMiwokFolder = folder;
+            return this;
+        }
+
+        /**
+         * Set the number of neighbours kept per word, the distractors of a question are
+         * picked among them.
+         */
+        public Builder setNeighborCount(int neighborCount) {
+            if (neighborCount <= 0) {
+                throw new IllegalArgumentException("neighborCount must be positive: " +
+                        neighborCount);
+            }
+            mNeighborCount = neighborCount;
+            return this;
+        }
+
+        /**
+         * Add the words of a category.
+         *
+         * @param category is the category of the words
+         * @param words are the words of the category
+         */
+        public Builder addCategory(int category, VocabularyStore words) {
+            if (mCategoryIds.contains(category)) {
+                throw new IllegalArgumentException("Category already added: " + category);
+            }
+            mCategoryIds.add(category);
+            mCategoryStarts.add(mWordCount);
+            for (int i = 0; i < words.size(); i++) {
+                add(category, i, words);
+            }
+            return this;
+        }
+
+        public QuizGenerator build() {
+            int termCount = mTerms.size();
+            boolean compareAll = termCount - 1 <= CANDIDATE_COUNT;
+            TermIndex index = compareAll ? null : new TermIndex(mTerms);
+
+            int[] neighbors = new int[mWordCount * mNeighborCount];
+            int[] neighborCounts = new int[mWordCount];
+            int[] costs = new int[mNeighborCount];
+            int[] candidates = new int[termCount];
+            int[] distances = new int[termCount];
+            int[] previousRow = new int[32];
+            int[] currentRow = new int[32];
+            for (int term = 0; term < termCount; term++) {
+                int candidateCount = 0;
+                if (compareAll) {
+                    for (int other = 0; other < termCount; other++) {
+                        if (other != term) {
+                            candidates[candidateCount++] = other;
+                        }
+                    }
+                } else {
+                    candidateCount = index.findCandidates(term, candidates, CANDIDATE_COUNT);
+                }
+
+                // The distances are measured once for all the words spelled like this term
+                String text = mTerms.get(term);
+                for (int i = 0; i < candidateCount; i++) {
+                    String candidate = mTerms.get(candidates[i]);
+                    if (previousRow.length <= candidate.length()) {
+                        previousRow = new int[candidate.length() + 1];
+                        currentRow = new int[candidate.length() + 1];
+                    }
+                    distances[i] = FuzzyMatcher.levenshtein(text, candidate, Integer.MAX_VALUE,
+                            previousRow, currentRow);
+                }
+                for (int word = mFirstWord[term]; word != -1; word = mNextWord[word]) {
+                    neighborCounts[word] = findNeighbors(word, candidates, distances,
+                            candidateCount, neighbors, word * mNeighborCount, costs);
+                }
+            }
+            return new QuizGenerator(this, neighbors, neighborCounts);
+        }
+
+        private void add(int category, int position, VocabularyStore words) {
+            int word = mWordCount++;
+            if (word == mCategories.length) {
+                int capacity = word * 2;
+                mCategories = Arrays.copyOf(mCategories, capacity);
+                mPositions = Arrays.copyOf(mPositions, capacity);
+                mMeanings = Arrays.copyOf(mMeanings, capacity);
+                mWordTerms = Arrays.copyOf(mWordTerms, capacity);
+                mNextWord = Arrays.copyOf(mNextWord, capacity);
+            }
+            mCategories[word] = category;
+            mPositions[word] = position;
+            mStores.add(words);
+
+            String meaning = mDefaultFolder.fold(words.getDefaultTranslation(position));
+            Integer meaningId = mMeaningsByText.get(meaning);
+            if (meaningId == null) {
+                meaningId = mMeaningsByText.size();
+                mMeaningsByText.put(meaning, meaningId);
+            }
+            mMeanings[word] = meaningId;
+
+            String text = mMiwokFolder.fold(words.getMiwokTranslation(position));
+            Integer term = mTermsByText.get(text);
+            if (term == null) {
+                term = mTerms.size();
+                if (term == mFirstWord.length) {
+                    mFirstWord = Arrays.copyOf(mFirstWord, term * 2);
+                }
+                mTerms.add(text);
+                mTermsByText.put(text, term);
+                mFirstWord[term] = -1;
+            }
+            mWordTerms[word] = term;
+            mNextWord[word] = mFirstWord[term];
+            mFirstWord[term] = word;
+        }
+
+        /**
+         * Find the closest words of a word among the words of the candidate terms.
+         *
+         * The cost of a neighbour is twice the edit distance, plus one if it is in another
+         * category, so the category only breaks the ties between equal distances. The words
+         * meaning the same as the word are skipped, and so are the words meaning the same as
+         * a closer neighbour, so no two options of a question show the same text.
+         *
+         * @param distances are the edit distances of the candidate terms to the word
+         * @return the number of neighbours found
+         */
+        private int findNeighbors(int word, int[] candidates, int[] distances,
+                                  int candidateCount, int[] neighbors, int offset,
+                                  int[] costs) {
+            int meaning = mMeanings[word];
+            int category = mCategories[word];
+            int count = 0;
+            for (int i = 0; i < candidateCount; i++) {
+                // Once the neighbours are full, only closer words can get in
+                if (count == mNeighborCount && 2 * distances[i] > costs[count - 1]) {
+                    continue;
+                }
+                for (int other = mFirstWord[candidates[i]]; other != -1; other = mNextWord[other]) {
+                    if (mMeanings[other] == meaning) {
+                        // Same meaning, the option would be right too
+                        continue;
+                    }
+                    int cost = 2 * distances[i] + (mCategories[other] == category ? 0 : 1);
+                    count = insertNeighbor(neighbors, offset, costs, count, other, cost);
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Insert a word in the neighbours sorted by cost, dropping the worst one if they are
+         * full. Between equal costs, the word added first wins. Of the words with the same
+         * meaning, only the best one is kept.
+         *
+         * @return the new number of neighbours
+         */
+        private int insertNeighbor(int[] neighbors, int offset, int[] costs, int count,
+                                   int word, int cost) {
+            int meaning = mMeanings[word];
+            for (int i = 0; i < count; i++) {
+                if (mMeanings[neighbors[offset + i]] != meaning) {
+                    continue;
+                }
+                if (!isBefore(cost, word, costs[i], neighbors[offset + i])) {
+                    return count;
+                }
+                // The new word replaces the neighbour meaning the same
+                count--;
+                System.arraycopy(costs, i + 1, costs, i, count - i);
+                System.arraycopy(neighbors, offset + i + 1, neighbors, offset + i, count - i);
+                break;
+            }
+            if (count == mNeighborCount) {
+                if (!isBefore(cost, word, costs[count - 1], neighbors[offset + count - 1])) {
+                    return count;
+                }
+                count--;
+            }
+            int i = count;
+            while (i > 0 && isBefore(cost, word, costs[i - 1], neighbors[offset + i - 1])) {
+                costs[i] = costs[i - 1];
+                neighbors[offset + i] = neighbors[offset + i - 1];
+                i--;
+            }
+            costs[i] = cost;
+            neighbors[offset + i] = word;
+            return count + 1;
+        }
+
+        /**
+         * Return whether a neighbour goes before another one, the lowest cost first and the
+         * word added first between equal costs.
+         */
+        private static boolean isBefore(int cost, int word, int otherCost, int otherWord) {
+            return cost < otherCost || (cost == otherCost && word < otherWord);
+        }
+    }
+
+    /**
+     * {@link TermIndex} indexes the terms of a large vocabulary by their distinct letter
+     * triples, the start and the end of a term counting as letters, and finds the terms
+     * sharing the most triples with a term.
+     *
+     * Triples rather than pairs, because the Miwok alphabet is small: with pairs, every term
+     * shares a pair with nearly every other one, and finding the candidates of each term
+     * goes through most of the vocabulary.
+     */
+    private static class TermIndex {
+
+        /** Triples of the term i, from mTripleStarts[i] to mTripleStarts[i + 1] */
+        private final int[] mTripleStarts;
+        private final int[] mTriples;
+
+        /** Terms having the triple i, from mPostingStarts[i] to mPostingStarts[i + 1] */
+        private final int[] mPostingStarts;
+        private final int[] mPostings;
+
+        /** Number of triples each term shares with the term being looked up, and these terms */
+        private final int[] mShared;
+        private final int[] mTouched;
+        private final int[] mBucketStarts;
+
+        TermIndex(List<String> terms) {
+            int termCount = terms.size();
+            LongIntMap tripleIds = new LongIntMap(256);
+            mTripleStarts = new int[termCount + 1];
+            int[] triples = new int[64];
+            int tripleTotal = 0;
+            int maxTriples = 0;
+            for (int term = 0; term < termCount; term++) {
+                String text = terms.get(term);
+                if (triples.length < tripleTotal + text.length() + 1) {
+                    triples = Arrays.copyOf(triples,
+                            Math.max(triples.length * 2, tripleTotal + text.length() + 1));
+                }
+                mTripleStarts[term] = tripleTotal;
+                int count = letterTriples(text, tripleIds, triples, tripleTotal);
+                tripleTotal += count;
+                maxTriples = Math.max(maxTriples, count);
+            }
+            mTripleStarts[termCount] = tripleTotal;
+            mTriples = triples;
+
+            int tripleCount = tripleIds.size();
+            mPostingStarts = new int[tripleCount + 1];
+            for (int i = 0; i < tripleTotal; i++) {
+                mPostingStarts[triples[i] + 1]++;
+            }
+            for (int triple = 0; triple < tripleCount; triple++) {
+                mPostingStarts[triple + 1] += mPostingStarts[triple];
+            }
+            mPostings = new int[tripleTotal];
+            int[] next = Arrays.copyOf(mPostingStarts, tripleCount);
+            for (int term = 0; term < termCount; term++) {
+                for (int i = mTripleStarts[term]; i < mTripleStarts[term + 1]; i++) {
+                    mPostings[next[triples[i]]++] = term;
+                }
+            }
+
+            mShared = new int[termCount];
+            mTouched = new int[termCount];
+            mBucketStarts = new int[maxTriples + 1];
+        }
+
+        /**
+         * Store the terms sharing the most triples with a term in candidates, most first.
+         *
+         * @return the number of candidates, up to max
+         */
+        int findCandidates(int term, int[] candidates, int max) {
+            // Count the triples each term shares with this one
+            int touchedCount = 0;
+            int maxShared = 0;
+            for (int i = mTripleStarts[term]; i < mTripleStarts[term + 1]; i++) {
+                int triple = mTriples[i];
+                for (int p = mPostingStarts[triple]; p < mPostingStarts[triple + 1]; p++) {
+                    int other = mPostings[p];
+                    if (other == term) {
+                        continue;
+                    }
+                    if (mShared[other] == 0) {
+                        mTouched[touchedCount++] = other;
+                    }
+                    maxShared = Math.max(maxShared, ++mShared[other]);
+                }
+            }
+            // Sort them by shared triples, most first, with a counting sort
+            Arrays.fill(mBucketStarts, 0, maxShared + 1, 0);
+            for (int i = 0; i < touchedCount; i++) {
+                mBucketStarts[mShared[mTouched[i]]]++;
+            }
+            int position = 0;
+            for (int count = maxShared; count >= 1; count--) {
+                int size = mBucketStarts[count];
+                mBucketStarts[count] = position;
+                position += size;
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                int other = mTouched[i];
+                int bucket = mBucketStarts[mShared[other]]++;
+                if (bucket < max) {
+                    candidates[bucket] = other;
+                }
+                mShared[other] = 0;
+            }
+            return Math.min(touchedCount, max);
+        }
+
+        /**
+         * Store the IDs of the distinct letter triples of a text in out, from offset, giving
+         * a new ID to the triples not seen before.
+         *
+         * @return the number of distinct triples
+         */
+        private static int letterTriples(String text, LongIntMap tripleIds, int[] out,
+                                         int offset) {
+            int count = 0;
+            char first = TERM_START;
+            char second = TERM_START;
+            for (int i = 0; i <= text.length(); i++) {
+                char c = i < text.length() ? text.charAt(i) : TERM_END;
+                long key = ((long) first << 32) | ((long) second << 16) | c;
+                int id = tripleIds.get(key);
+                if (id == LongIntMap.NO_VALUE) {
+                    id = tripleIds.size();
+                    tripleIds.put(key, id);
+                }
+                out[offset + count++] = id;
+                first = second;
+                second = c;
+            }
+            Arrays.sort(out, offset, offset + count);
+            int distinct = 0;
+            for (int i = 0; i < count; i++) {
+                if (distinct == 0 || out[offset + i] != out[offset + distinct - 1]) {
+                    out[offset + distinct++] = out[offset + i];
+                }
+            }
+            return distinct;
+        }
+    }
+}
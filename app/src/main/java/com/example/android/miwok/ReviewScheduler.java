@@ -0,0 +1,378 @@
+package com.example.android.miwok;
+
+/**
+ * {@link ReviewScheduler} decides when each {@link Word} should be reviewed again, with the
+ * SM-2 spaced repetition algorithm: a word answered well comes back after a longer and
+ * longer interval, and a word answered badly comes back the next day.
+ *
+ * The cards are keyed by {@link Word#getStableId()} and stored in primitive columns, like
+ * {@link VocabularyStore}. The cards are kept in a binary heap ordered by due time, and
+ * each card remembers its place in the heap, so {@link #nextDueCard()},
+ * {@link #recordAnswer(long, int)}, {@link #addCard(long)} and {@link #removeCard(long)}
+ * take O(log n) time however large the deck is, and never scan it.
+ *
+ * The time comes from a {@link Clock}, which tests can replace. An instance is not thread
+ * safe.
+ */
+
+public class ReviewScheduler {
+
+    /** Value returned by {@link #nextDueCard()} when no card is due */
+    public static final long NO_CARD = Long.MIN_VALUE;
+
+    /** Lowest and highest quality of an answer, 3 and more mean the word was remembered */
+    public static final int QUALITY_BLACKOUT = 0;
+    public static final int QUALITY_PERFECT = 5;
+    private static final int QUALITY_PASS = 3;
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    /** Ease factors are stored in thousandths, SM-2 starts at 2.5 and never goes under 1.3 */
+    private static final int INITIAL_EASE = 2500;
+    private static final int MIN_EASE = 1300;
+
+    /**
+     * {@link Clock} gives the current time to the scheduler.
+     */
+    public interface Clock {
+
+        /**
+         * Return the current time, in milliseconds since the epoch.
+         */
+        long currentTimeMillis();
+    }
+
+    /** {@link Clock} of the device */
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private final Clock mClock;
+
+    /** Card index of each stable id */
+    private final LongIntMap mIndex;
+
+    /** Card columns, the card i is stored at the index i of each array */
+    private long[] mIds;
+    private long[] mDueTimes;
+    private int[] mIntervalDays;
+    private int[] mEases;
+    private int[] mRepetitions;
+    private int[] mLapses;
+
+    /** Place of each card in the heap */
+    private int[] mHeapPositions;
+
+    /** Card indexes, ordered as a binary heap on the due time */
+    private int[] mHeap;
+
+    private int mSize;
+
+    /**
+     * Create a new {@link ReviewScheduler} object with the clock of the device
+     */
+    public ReviewScheduler() {
+        this(SYSTEM_CLOCK, 16);
+    }
+
+    /**
+     * Create a new {@link ReviewScheduler} object
+     *
+     * @param clock gives the current time
+     * @param expectedSize is the number of cards expected, used to size the arrays
+     */
+    public ReviewScheduler(Clock clock, int expectedSize) {
+        mClock = clock;
+        int capacity = Math.max(16, expectedSize);
+        mIndex = new LongIntMap(capacity);
+        mIds = new long[capacity];
+        mDueTimes = new long[capacity];
+        mIntervalDays = new int[capacity];
+        mEases = new int[capacity];
+        mRepetitions = new int[capacity];
+        mLapses = new int[capacity];
+        mHeapPositions = new int[capacity];
+        mHeap = new int[capacity];
+    }
+
+    /**
+     * Return the number of cards in the deck.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Return whether the deck holds a card for the stable id.
+     */
+    public boolean contains(long id) {
+        return mIndex.containsKey(id);
+    }
+
+    /**
+     * Add a new card to the deck, due now. Nothing changes if the deck already holds it.
+     *
+     * @param id is the stable id of the word
+     * @return true if the card was added
+     */
+    public boolean addCard(long id) {
+        if (mIndex.containsKey(id)) {
+            return false;
+        }
+        restoreCard(id, mClock.currentTimeMillis(), 0, INITIAL_EASE, 0, 0);
+        return true;
+    }
+
+    /**
+     * Add a card with a known state to the deck, or replace the state of a card, such as
+     * when the progress is loaded from storage.
+     *
+     * @param id is the stable id of the word
+     * @param dueTime is when the card should be reviewed, in milliseconds since the epoch
+     * @param intervalDays is the last interval between two reviews, in days
+     * @param ease is the ease factor, in thousandths
+     * @param repetitions is the number of reviews in a row the word was remembered
+     * @param lapses is the number of times the word was forgotten
+     */
+    public void restoreCard(long id, long dueTime, int intervalDays, int ease,
+                            int repetitions, int lapses) {
+        int card = mIndex.get(id);
+        if (card == LongIntMap.NO_VALUE) {
+            if (mSize == mIds.length) {
+                grow();
+            }
+            card = mSize++;
+            mIndex.put(id, card);
+            mIds[card] = id;
+            mHeap[card] = card;
+            mHeapPositions[card] = card;
+        }
+        mIntervalDays[card] = intervalDays;
+        mEases[card] = Math.max(MIN_EASE, ease);
+        mRepetitions[card] = repetitions;
+        mLapses[card] = lapses;
+        setDueTime(card, dueTime);
+    }
+
+    /**
+     * Remove a card from the deck.
+     *
+     * @return true if the deck held the card
+     */
+    public boolean removeCard(long id) {
+        int card = mIndex.remove(id);
+        if (card == LongIntMap.NO_VALUE) {
+            return false;
+        }
+        // Take the card out of the heap, by moving the last card of the heap in its place
+        int position = mHeapPositions[card];
+        int lastInHeap = mHeap[--mSize];
+        mHeap[position] = lastInHeap;
+        mHeapPositions[lastInHeap] = position;
+        // Then move the last card of the columns in the place of the removed one
+        if (card != mSize) {
+            moveCard(mSize, card);
+        }
+        if (position < mSize) {
+            siftDown(siftUp(position));
+        }
+        return true;
+    }
+
+    /**
+     * Return the stable id of the card that is due the earliest, or {@link #NO_CARD} if no
+     * card is due yet.
+     */
+    public long nextDueCard() {
+        if (mSize == 0 || mDueTimes[mHeap[0]] > mClock.currentTimeMillis()) {
+            return NO_CARD;
+        }
+        return mIds[mHeap[0]];
+    }
+
+    /**
+     * Return when the next card is due, in milliseconds since the epoch, or
+     * {@link Long#MAX_VALUE} if the deck is empty.
+     */
+    public long nextDueTime() {
+        return mSize == 0 ? Long.MAX_VALUE : mDueTimes[mHeap[0]];
+    }
+
+    /**
+     * Record the answer of a review, and schedule the next review of the card.
+     *
+     * @param id is the stable id of the word
+     * @param quality is how well the word was remembered, from {@link #QUALITY_BLACKOUT} to
+     *                {@link #QUALITY_PERFECT}
+     * @return when the card is due again, in milliseconds since the epoch
+     */
+    public long recordAnswer(long id, int quality) {
+        if (quality < QUALITY_BLACKOUT || quality > QUALITY_PERFECT) {
+            throw new IllegalArgumentException("Invalid quality: " + quality);
+        }
+        int card = requireCard(id);
+        if (quality < QUALITY_PASS) {
+            // Forgotten, start again from a one day interval
+            mRepetitions[card] = 0;
+            mIntervalDays[card] = 1;
+            mLapses[card]++;
+        } else {
+            int repetitions = ++mRepetitions[card];
+            if (repetitions == 1) {
+                mIntervalDays[card] = 1;
+            } else if (repetitions == 2) {
+                mIntervalDays[card] = 6;
+            } else {
+                long interval = (long) mIntervalDays[card] * mEases[card] / 1000;
+                mIntervalDays[card] = (int) Math.min(Integer.MAX_VALUE / 2, Math.max(1, interval));
+            }
+        }
+        // EF' = EF + 0.1 - (5 - q) * (0.08 + (5 - q) * 0.02), in thousandths
+        int miss = QUALITY_PERFECT - quality;
+        mEases[card] = Math.max(MIN_EASE, mEases[card] + 100 - miss * (80 + miss * 20));
+
+        long dueTime = mClock.currentTimeMillis() + mIntervalDays[card] * DAY_MILLIS;
+        setDueTime(card, dueTime);
+        return dueTime;
+    }
+
+    /**
+     * Return when the card is due, in milliseconds since the epoch.
+     */
+    public long getDueTime(long id) {
+        return mDueTimes[requireCard(id)];
+    }
+
+    /**
+     * Return the last interval between two reviews of the card, in days.
+     */
+    public int getIntervalDays(long id) {
+        return mIntervalDays[requireCard(id)];
+    }
+
+    /**
+     * Return the ease factor of the card, in thousandths.
+     */
+    public int getEase(long id) {
+        return mEases[requireCard(id)];
+    }
+
+    /**
+     * Return the number of reviews in a row the word of the card was remembered.
+     */
+    public int getRepetitions(long id) {
+        return mRepetitions[requireCard(id)];
+    }
+
+    /**
+     * Return the number of times the word of the card was forgotten.
+     */
+    public int getLapses(long id) {
+        return mLapses[requireCard(id)];
+    }
+
+    private int requireCard(long id) {
+        int card = mIndex.get(id);
+        if (card == LongIntMap.NO_VALUE) {
+            throw new IllegalArgumentException("No card for id " + id);
+        }
+        return card;
+    }
+
+    private void setDueTime(int card, long dueTime) {
+        mDueTimes[card] = dueTime;
+        siftDown(siftUp(mHeapPositions[card]));
+    }
+
+    /**
+     * Move a card up the heap while it is due before its parent.
+     *
+     * @return the new position of the card
+     */
+    private int siftUp(int position) {
+        int card = mHeap[position];
+        long dueTime = mDueTimes[card];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            int parentCard = mHeap[parent];
+            if (mDueTimes[parentCard] <= dueTime) {
+                break;
+            }
+            mHeap[position] = parentCard;
+            mHeapPositions[parentCard] = position;
+            position = parent;
+        }
+        mHeap[position] = card;
+        mHeapPositions[card] = position;
+        return position;
+    }
+
+    /**
+     * Move a card down the heap while one of its children is due before it.
+     */
+    private void siftDown(int position) {
+        int card = mHeap[position];
+        long dueTime = mDueTimes[card];
+        int half = mSize >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int childCard = mHeap[child];
+            int right = child + 1;
+            if (right < mSize && mDueTimes[mHeap[right]] < mDueTimes[childCard]) {
+                child = right;
+                childCard = mHeap[right];
+            }
+            if (dueTime <= mDueTimes[childCard]) {
+                break;
+            }
+            mHeap[position] = childCard;
+            mHeapPositions[childCard] = position;
+            position = child;
+        }
+        mHeap[position] = card;
+        mHeapPositions[card] = position;
+    }
+
+    /**
+     * Copy the columns of a card to another index, and update the map and the heap.
+     */
+    private void moveCard(int from, int to) {
+        mIds[to] = mIds[from];
+        mDueTimes[to] = mDueTimes[from];
+        mIntervalDays[to] = mIntervalDays[from];
+        mEases[to] = mEases[from];
+        mRepetitions[to] = mRepetitions[from];
+        mLapses[to] = mLapses[from];
+        int position = mHeapPositions[from];
+        mHeapPositions[to] = position;
+        mHeap[position] = to;
+        mIndex.put(mIds[to], to);
+    }
+
+    private void grow() {
+        int capacity = mIds.length * 2;
+        mIds = copyOf(mIds, capacity);
+        mDueTimes = copyOf(mDueTimes, capacity);
+        mIntervalDays = copyOf(mIntervalDays, capacity);
+        mEases = copyOf(mEases, capacity);
+        mRepetitions = copyOf(mRepetitions, capacity);
+        mLapses = copyOf(mLapses, capacity);
+        mHeapPositions = copyOf(mHeapPositions, capacity);
+        mHeap = copyOf(mHeap, capacity);
+    }
+
+    private static long[] copyOf(long[] array, int length) {
+        long[] copy = new long[length];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.android.miwok;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.View;
+import android.widget.AbsListView;
+
+/**
+ * {@link ScrollFrameMonitor} times the frames of a category list while it scrolls, and the
+ * rows bound by its {@link WordAdapter}, and records them in {@link FrameStats} with the
+ * velocity of the list at that time.
+ *
+ * It takes the place of the scroll listener of the list, and passes every scroll event on
+ * to the listener it wraps, such as the {@link AudioPrefetcher}. The frames are timed with a
+ * {@link Choreographer} callback, which is only posted while the list scrolls, so an idle
+ * list costs nothing. Choreographer needs Jelly Bean, the older devices only record the
+ * bind times.
+ *
+ * The events can also be fed with {@link #onScrollPosition(float, long)},
+ * {@link #onFrame(long)} and {@link #onBind(long)}, such as by a test.
+ */
+
+public class ScrollFrameMonitor implements AbsListView.OnScrollListener,
+        WordAdapter.OnBindListener {
+
+    private static final String LOG_TAG = ScrollFrameMonitor.class.getSimpleName();
+
+    /** Time without moving after which a scrolling list counts as still, in nanoseconds */
+    private static final long STILL_AFTER_NANOS = 100000000L;
+
+    private final FrameStats mStats;
+    private final int mCategoryId;
+    private final AbsListView.OnScrollListener mDelegate;
+
+    /** Posts {@link #onFrame(long)} on every frame, null before Jelly Bean */
+    private final FrameTicker mFrameTicker;
+
+    /** List whose scroll events are received, null when detached */
+    private AbsListView mListView;
+
+    /** Whether the list is being scrolled or flung */
+    private boolean mScrolling;
+
+    /** Velocity band of the list, updated on each scroll event */
+    private int mVelocityBand = FrameStats.VELOCITY_STILL;
+
+    /** Last scroll position, in rows, and when it was reached */
+    private float mLastPosition = -1;
+    private long mLastPositionNanos;
+
+    /** Time of the last frame, or 0 if no frame was seen since the list started to scroll */
+    private long mLastFrameNanos;
+
+    /**
+     * Create a new {@link ScrollFrameMonitor} object
+     *
+     * @param stats records the times
+     * @param categoryId is the ID of the category of the list
+     * @param delegate receives all the scroll events of the list, may be null
+     */
+    public ScrollFrameMonitor(FrameStats stats, int categoryId,
+                              AbsListView.OnScrollListener delegate) {
+        mStats = stats;
+        mCategoryId = categoryId;
+        mDelegate = delegate;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mFrameTicker = new FrameTicker();
+        } else {
+            mFrameTicker = null;
+        }
+    }
+
+    /**
+     * Start receiving the scroll events of a list, in the place of its scroll listener.
+     */
+    public void attach(AbsListView listView) {
+        mListView = listView;
+        listView.setOnScrollListener(this);
+    }
+
+    /**
+     * Stop receiving the scroll events of the list and timing its frames, and log what was
+     * recorded for the category.
+     */
+    public void detach() {
+        stopFrames();
+        if (mListView != null) {
+            mListView.setOnScrollListener(mDelegate);
+            mListView = null;
+        }
+        Log.d(LOG_TAG, "Category " + mCategoryId + ": " +
+                mStats.getReport(mCategoryId, FrameStats.ANY_VELOCITY));
+    }
+
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+        if (scrollState == SCROLL_STATE_IDLE) {
+            stopFrames();
+            mVelocityBand = FrameStats.VELOCITY_STILL;
+        } else {
+            startFrames();
+        }
+        if (mDelegate != null) {
+            mDelegate.onScrollStateChanged(view, scrollState);
+        }
+    }
+
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                         int totalItemCount) {
+        View firstRow = view.getChildAt(0);
+        if (firstRow != null && firstRow.getHeight() > 0) {
+            // The part of the first row scrolled out of the top of the list
+            float hidden = -firstRow.getTop() / (float) firstRow.getHeight();
+            onScrollPosition(firstVisibleItem + hidden, System.nanoTime());
+        }
+        if (mDelegate != null) {
+            mDelegate.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
+        }
+    }
+
+    /**
+     * Update the velocity of the list from its scroll position.
+     *
+     * @param position is the scroll position, in rows from the top of the list
+     * @param nowNanos is the time of the position, from {@link System#nanoTime()}
+     */
+    public void onScrollPosition(float position, long nowNanos) {
+        if (position == mLastPosition && nowNanos - mLastPositionNanos < STILL_AFTER_NANOS) {
+            // The list is often laid out again without moving, that doesn't stop it
+            return;
+        }
+        if (mLastPosition >= 0 && nowNanos > mLastPositionNanos) {
+            float rowsPerSecond = (position - mLastPosition) * 1e9f /
+                    (nowNanos - mLastPositionNanos);
+            mVelocityBand = FrameStats.velocityBand(rowsPerSecond);
+        }
+        mLastPosition = position;
+        mLastPositionNanos = nowNanos;
+    }
+
+    /**
+     * Record the frame that started at the given time, which ends the previous frame.
+     *
+     * @param frameTimeNanos is the time the frame started, as given by {@link Choreographer}
+     */
+    public void onFrame(long frameTimeNanos) {
+        if (mLastFrameNanos != 0 && frameTimeNanos > mLastFrameNanos) {
+            mStats.recordFrame(mCategoryId, mVelocityBand, frameTimeNanos - mLastFrameNanos);
+        }
+        mLastFrameNanos = frameTimeNanos;
+    }
+
+    @Override
+    public void onBind(long bindNanos) {
+        mStats.recordBind(mCategoryId, mVelocityBand, bindNanos);
+    }
+
+    /**
+     * Return the velocity band of the list, one of the VELOCITY constants of
+     * {@link FrameStats}.
+     */
+    public int getVelocityBand() {
+        return mVelocityBand;
+    }
+
+    private void startFrames() {
+        if (mScrolling) {
+            return;
+        }
+        mScrolling = true;
+        mLastFrameNanos = 0;
+        if (mFrameTicker != null) {
+            mFrameTicker.start();
+        }
+    }
+
+    private void stopFrames() {
+        if (!mScrolling) {
+            return;
+        }
+        mScrolling = false;
+        mLastPosition = -1;
+        if (mFrameTicker != null) {
+            mFrameTicker.stop();
+        }
+    }
+
+    /**
+     * Calls {@link #onFrame(long)} on every frame between {@link #start()} and
+     * {@link #stop()}.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private class FrameTicker implements Choreographer.FrameCallback {
+
+        void start() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void stop() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            onFrame(frameTimeNanos);
+            // Keep timing until the list stops, a frame callback only runs once
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package com.example.android.miwok;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link SearchIndex} finds words by their default or Miwok translation across all the
+ * categories. Each category is indexed by a segment holding a sorted suffix array over the
+ * translations folded by a {@link TextFolder}, so prefix and substring queries are answered
+ * with a binary search instead of a scan of the words, and "wo’e" is found by typing "wo'e".
+ * The hits are then read from the matching range of each segment in the order of the
+ * suffixes, merged across the segments, and the search stops as soon as it has enough
+ * words, so a short query that matches most of the vocabulary costs no more than a long one.
+ * Building the index sorts every suffix of the vocabulary, so it should be done off the
+ * main thread with {@link #buildAsync(Builder, Executor, Callback)}.
+ */
+
+public class SearchIndex {
+
+    /** Field number of the default translation of a word */
+    public static final int FIELD_DEFAULT = 0;
+
+    /** Field number of the Miwok translation of a word */
+    public static final int FIELD_MIWOK = 1;
+
+    /** Character separating the fields in the indexed text */
+    private static final char SEPARATOR = '\0';
+
+    /** Below this number of suffixes, they are sorted with an insertion sort */
+    private static final int INSERTION_SORT_THRESHOLD = 12;
+
+    /**
+     * Callback receiving the index built by {@link #buildAsync(Builder, Executor, Callback)}
+     */
+    public interface Callback {
+        void onSearchIndexReady(SearchIndex index);
+    }
+
+    /**
+     * {@link Hit} is a word found by a query.
+     */
+    public static class Hit {
+
+        /** Category of the word */
+        public final int category;
+
+        /** Position of the word in the words of its category */
+        public final int position;
+
+        /** Field that matched, {@link #FIELD_DEFAULT} or {@link #FIELD_MIWOK} */
+        public final int field;
+
+        Hit(int category, int position, int field) {
+            this.category = category;
+            this.position = position;
+            this.field = field;
+        }
+
+        @Override
+        public String toString() {
+            return "Hit{category=" + category + ", position=" + position + ", field=" + field + '}';
+        }
+    }
+
+    /** Segments of the index, one per category */
+    private final Segment[] mSegments;
+
+    /** Rules used to fold the translations and the queries */
+    private final TextFolder mFolder;
+
+    private SearchIndex(Segment[] segments, TextFolder folder) {
+        mSegments = segments;
+        mFolder = folder;
+    }
+
+    /**
+     * Build the index on the given executor, and deliver it to the callback on the
+     * main thread.
+     */
+    public static void buildAsync(final Builder builder, Executor executor,
+                                  final Callback callback) {
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final SearchIndex index = builder.build();
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onSearchIndexReady(index);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Return an index where the words of one category are replaced, or added if the index
+     * has no such category. Only the segment of that category is built, the segments of
+     * the other categories are shared with this index, which is left unchanged. This
+     * should not be called on the main thread either.
+     *
+     * @param category is the category of the words
+     * @param words are the new words of the category
+     */
+    public SearchIndex withCategory(int category, VocabularyStore words) {
+        Segment segment = new Segment(category, words, mFolder);
+        for (int i = 0; i < mSegments.length; i++) {
+            if (mSegments[i].mCategory == category) {
+                Segment[] segments = mSegments.clone();
+                segments[i] = segment;
+                return new SearchIndex(segments, mFolder);
+            }
+        }
+        Segment[] segments = Arrays.copyOf(mSegments, mSegments.length + 1);
+        segments[mSegments.length] = segment;
+        return new SearchIndex(segments, mFolder);
+    }
+
+    /**
+     * Return the words that have a word of a translation starting with the query,
+     * for instance "yel" finds "dusty yellow". The words come in the alphabetical order of
+     * their translations from the matched word on, so the shortest completions come first.
+     *
+     * @param query is the text to search for
+     * @param maxHits is the maximum number of hits to return
+     */
+    public List<Hit> findPrefix(String query, int maxHits) {
+        return find(query, maxHits, true);
+    }
+
+    /**
+     * Return the words that have a translation containing the query. The words come in the
+     * alphabetical order of their translations from the match on.
+     *
+     * @param query is the text to search for
+     * @param maxHits is the maximum number of hits to return
+     */
+    public List<Hit> findSubstring(String query, int maxHits) {
+        return find(query, maxHits, false);
+    }
+
+    private List<Hit> find(String query, int maxHits, boolean wordStartOnly) {
+        char[] key = mFolder.fold(query).toCharArray();
+        List<Hit> hits = new ArrayList<>();
+        if (key.length == 0 || maxHits <= 0) {
+            return hits;
+        }
+
+        // Range of the suffixes starting with the key in each segment
+        int segmentCount = mSegments.length;
+        int[] next = new int[segmentCount];
+        int[] end = new int[segmentCount];
+        for (int s = 0; s < segmentCount; s++) {
+            int[] suffixes = mSegments[s].suffixes(wordStartOnly);
+            next[s] = mSegments[s].bound(suffixes, key, false);
+            end[s] = mSegments[s].bound(suffixes, key, true);
+        }
+
+        // Merge the ranges in the order of the suffixes, until enough words are found. A
+        // word can match at several places, only its first match is kept.
+        while (hits.size() < maxHits) {
+            int best = -1;
+            for (int s = 0; s < segmentCount; s++) {
+                if (next[s] < end[s] && (best < 0 ||
+                        compareMatches(mSegments[s], next[s], mSegments[best], next[best],
+                                wordStartOnly, key.length) < 0)) {
+                    best = s;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            Segment segment = mSegments[best];
+            int field = segment.fieldOf(segment.suffixes(wordStartOnly)[next[best]++]);
+            if (!contains(hits, segment.mCategory, field / 2)) {
+                hits.add(new Hit(segment.mCategory, field / 2, field % 2));
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Compare the suffixes at the given ranks of two segments, which both start with the
+     * first d characters of the query.
+     */
+    private static int compareMatches(Segment a, int rankA, Segment b, int rankB,
+                                      boolean wordStartOnly, int d) {
+        return compareSuffixes(a.mText, a.suffixes(wordStartOnly)[rankA],
+                b.mText, b.suffixes(wordStartOnly)[rankB], d);
+    }
+
+    private static boolean contains(List<Hit> hits, int category, int position) {
+        for (int i = 0; i < hits.size(); i++) {
+            Hit hit = hits.get(i);
+            if (hit.position == position && hit.category == category) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@link Segment} indexes the words of one category.
+     */
+    private static class Segment {
+
+        /** Category of the words */
+        final int mCategory;
+
+        /** Folded translations of the words, each one followed by {@link #SEPARATOR} */
+        final char[] mText;
+
+        /** Start offset of each field in {@link #mText}, field 2 * i + f is field f of word i */
+        final int[] mFieldStarts;
+
+        /** Offsets in {@link #mText} of all the suffixes, sorted */
+        final int[] mSuffixes;
+
+        /** Offsets of the suffixes that start a word, sorted, for the prefix queries */
+        final int[] mWordStarts;
+
+        Segment(int category, VocabularyStore words, TextFolder folder) {
+            mCategory = category;
+            int fieldCount = 2 * words.size();
+            mFieldStarts = new int[fieldCount];
+
+            // Fold the translations and copy them into one text
+            String[] fields = new String[fieldCount];
+            int length = 0;
+            for (int i = 0; i < words.size(); i++) {
+                fields[2 * i + FIELD_DEFAULT] = folder.fold(words.getDefaultTranslation(i));
+                fields[2 * i + FIELD_MIWOK] = folder.fold(words.getMiwokTranslation(i));
+            }
+            for (String field : fields) {
+                length += field.length() + 1;
+            }
+            mText = new char[length];
+            int suffixCount = 0;
+            int offset = 0;
+            for (int f = 0; f < fieldCount; f++) {
+                mFieldStarts[f] = offset;
+                fields[f].getChars(0, fields[f].length(), mText, offset);
+                offset += fields[f].length();
+                suffixCount += fields[f].length();
+                mText[offset++] = SEPARATOR;
+            }
+
+            // Every character that is not a separator starts a suffix
+            mSuffixes = new int[suffixCount];
+            int s = 0;
+            for (int i = 0; i < mText.length; i++) {
+                if (mText[i] != SEPARATOR) {
+                    mSuffixes[s++] = i;
+                }
+            }
+            sort(mText, mSuffixes, 0, mSuffixes.length - 1, 0);
+
+            // Keep the suffixes that start a word apart, in the same order
+            int wordStartCount = 0;
+            for (int suffix : mSuffixes) {
+                if (isWordStart(suffix)) {
+                    wordStartCount++;
+                }
+            }
+            mWordStarts = new int[wordStartCount];
+            int w = 0;
+            for (int suffix : mSuffixes) {
+                if (isWordStart(suffix)) {
+                    mWordStarts[w++] = suffix;
+                }
+            }
+        }
+
+        private boolean isWordStart(int offset) {
+            return offset == 0 || !Character.isLetterOrDigit(mText[offset - 1]);
+        }
+
+        /**
+         * Return the sorted suffixes of the prefix queries, or of the substring queries.
+         */
+        int[] suffixes(boolean wordStartOnly) {
+            return wordStartOnly ? mWordStarts : mSuffixes;
+        }
+
+        /**
+         * Return the field holding the character at the offset, field 2 * i + f is field f
+         * of word i.
+         */
+        int fieldOf(int offset) {
+            int field = Arrays.binarySearch(mFieldStarts, offset);
+            // Not the start of a field, so it is in the field starting before it
+            return field >= 0 ? field : -field - 2;
+        }
+
+        /**
+         * Return the rank of the first suffix that is not smaller than the key, or with
+         * after set, of the first suffix that is greater than the key.
+         */
+        int bound(int[] suffixes, char[] key, boolean after) {
+            int low = 0;
+            int high = suffixes.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int comparison = compareToKey(suffixes[middle], key);
+                if (comparison < 0 || (after && comparison == 0)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Compare the first characters of the suffix with the key.
+         */
+        private int compareToKey(int offset, char[] key) {
+            for (int i = 0; i < key.length; i++) {
+                char c = mText[offset + i];
+                if (c != key[i]) {
+                    return c < key[i] ? -1 : 1;
+                }
+                if (c == SEPARATOR) {
+                    break;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Sort the suffixes from lo to hi (inclusive), which share their first d characters,
+     * with a three-way radix quicksort. The text must end with a {@link #SEPARATOR}.
+     */
+    private static void sort(char[] text, int[] suffixes, int lo, int hi, int d) {
+        while (hi - lo >= INSERTION_SORT_THRESHOLD) {
+            swap(suffixes, lo, (lo + hi) >>> 1);
+            char pivot = text[suffixes[lo] + d];
+            int lt = lo;
+            int gt = hi;
+            int i = lo + 1;
+            while (i <= gt) {
+                char c = text[suffixes[i] + d];
+                if (c < pivot) {
+                    swap(suffixes, lt++, i++);
+                } else if (c > pivot) {
+                    swap(suffixes, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            sort(text, suffixes, lo, lt - 1, d);
+            sort(text, suffixes, gt + 1, hi, d);
+            if (pivot == SEPARATOR) {
+                // These suffixes are equal up to the end of their field
+                return;
+            }
+            // Loop instead of recursing on the middle part, it is usually the largest
+            lo = lt;
+            hi = gt;
+            d++;
+        }
+        insertionSort(text, suffixes, lo, hi, d);
+    }
+
+    private static void insertionSort(char[] text, int[] suffixes, int lo, int hi, int d) {
+        for (int i = lo + 1; i <= hi; i++) {
+            int suffix = suffixes[i];
+            int j = i;
+            while (j > lo && compareSuffixes(text, suffixes[j - 1], text, suffix, d) > 0) {
+                suffixes[j] = suffixes[j - 1];
+                j--;
+            }
+            suffixes[j] = suffix;
+        }
+    }
+
+    /**
+     * Compare two suffixes, of the same text or not, which share their first d characters.
+     */
+    private static int compareSuffixes(char[] textA, int a, char[] textB, int b, int d) {
+        while (true) {
+            char ca = textA[a + d];
+            char cb = textB[b + d];
+            if (ca != cb) {
+                return ca < cb ? -1 : 1;
+            }
+            if (ca == SEPARATOR) {
+                return 0;
+            }
+            d++;
+        }
+    }
+
+    private static void swap(int[] array, int i, int j) {
+        int tmp = array[i];
+        array[i] = array[j];
+        array[j] = tmp;
+    }
+
+    /**
+     * {@link Builder} collects the categories of a {@link SearchIndex}.
+     */
+    public static class Builder {
+
+        private final List<Integer> mCategories = new ArrayList<>();
+        private final List<VocabularyStore> mWords = new ArrayList<>();
+        private TextFolder mFolder = TextFolder.MIWOK;
+
+        /**
+         * Set the rules used to fold the translations and the queries.
+         */
+        public Builder setFolder(TextFolder folder) {
+            mFolder = folder;
+            return this;
+        }
+
+        /**
+         * Add the words of a category to the index.
+         *
+         * @param category is the category of the words, returned in the hits
+         * @param words are the words of the category
+         */
+        public Builder addCategory(int category, VocabularyStore words) {
+            mCategories.add(category);
+            mWords.add(words);
+            return this;
+        }
+
+        /**
+         * Build the index. This sorts all the suffixes of the translations, so it should
+         * not be called on the main thread.
+         */
+        public SearchIndex build() {
+            Segment[] segments = new Segment[mCategories.size()];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = new Segment(mCategories.get(i), mWords.get(i), mFolder);
+            }
+            return new SearchIndex(segments, mFolder);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.android.miwok;
+
+import android.os.Build;
+import android.os.Trace;
+import android.util.Log;
+
+/**
+ * {@link StartupTrace} times the phases of a cold start: the content view of
+ * {@link MainActivity}, its {@link CategoryAdapter}, its tabs, and the word list of the first
+ * {@link CategoryFragment}.
+ *
+ * Each phase is also a named section in systrace from Jelly Bean MR2, so the phases can be
+ * found in a trace of the device. Only the first time of each phase is recorded, the pages
+ * and activities created later are not part of the cold start.
+ *
+ * Each phase has a budget, in milliseconds. Once all the phases are done, the times are
+ * logged, with a warning for the phases over their budget. {@link #getReport()} returns
+ * them, so a test can fail when a phase goes over its budget. It must only be used on the
+ * main thread.
+ */
+
+public class StartupTrace {
+
+    private static final String LOG_TAG = StartupTrace.class.getSimpleName();
+
+    /** Phases of the start, in the order they run */
+    public static final int PHASE_CONTENT_VIEW = 0;
+    public static final int PHASE_CATEGORY_ADAPTER = 1;
+    public static final int PHASE_TABS = 2;
+    public static final int PHASE_FIRST_WORD_LIST = 3;
+    public static final int PHASE_COUNT = 4;
+
+    /** Names of the phases, also used as the names of the trace sections */
+    private static final String[] PHASE_NAMES = {
+            "Miwok.setContentView",
+            "Miwok.CategoryAdapter",
+            "Miwok.TabLayout",
+            "Miwok.firstWordList"
+    };
+
+    /** Default budgets of the phases, in milliseconds */
+    private static final long[] DEFAULT_BUDGET_MILLIS = {150, 20, 50, 100};
+
+    /** Trace of the start of the process */
+    private static StartupTrace sInstance;
+
+    /** When each phase began, from {@link System#nanoTime()}, or 0 if it didn't yet */
+    private final long[] mStartNanos = new long[PHASE_COUNT];
+
+    /** Duration of each phase, or -1 if it didn't end yet */
+    private final long[] mDurationNanos = new long[PHASE_COUNT];
+
+    private final long[] mBudgetMillis = DEFAULT_BUDGET_MILLIS.clone();
+
+    private int mEndedCount;
+
+    /**
+     * Return the {@link StartupTrace} of the start of the process.
+     */
+    public static StartupTrace getInstance() {
+        if (sInstance == null) {
+            sInstance = new StartupTrace();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Forget the trace of the start of the process, so the next {@link #getInstance()}
+     * times a new start. The tests start several activities in the same process.
+     */
+    static void resetInstance() {
+        sInstance = null;
+    }
+
+    /**
+     * Create a new {@link StartupTrace} object, with the default budgets
+     */
+    public StartupTrace() {
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            mDurationNanos[phase] = -1;
+        }
+    }
+
+    /**
+     * Return the name of a phase.
+     */
+    public static String getPhaseName(int phase) {
+        return PHASE_NAMES[checkPhase(phase)];
+    }
+
+    /**
+     * Set the budget of a phase.
+     *
+     * @param phase is one of the PHASE constants
+     * @param budgetMillis is the longest the phase should take, in milliseconds
+     */
+    public void setBudgetMillis(int phase, long budgetMillis) {
+        if (budgetMillis < 0) {
+            throw new IllegalArgumentException("Negative budget: " + budgetMillis);
+        }
+        mBudgetMillis[checkPhase(phase)] = budgetMillis;
+    }
+
+    /**
+     * Begin a phase, unless it already ran. Each call must be followed by a call of
+     * {@link #endPhase(int)} for the same phase.
+     */
+    public void beginPhase(int phase) {
+        checkPhase(phase);
+        if (mStartNanos[phase] != 0) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(PHASE_NAMES[phase]);
+        }
+        mStartNanos[phase] = System.nanoTime();
+    }
+
+    /**
+     * End a phase begun by {@link #beginPhase(int)}, unless it already ran.
+     */
+    public void endPhase(int phase) {
+        checkPhase(phase);
+        if (mStartNanos[phase] == 0 || mDurationNanos[phase] >= 0) {
+            return;
+        }
+        mDurationNanos[phase] = System.nanoTime() - mStartNanos[phase];
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+        if (++mEndedCount == PHASE_COUNT) {
+            logReport();
+        }
+    }
+
+    /**
+     * Return the times of the phases recorded so far, and their budgets.
+     */
+    public Report getReport() {
+        return new Report(mDurationNanos.clone(), mBudgetMillis.clone());
+    }
+
+    private void logReport() {
+        Report report = getReport();
+        Log.i(LOG_TAG, "Cold start: " + report);
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            if (report.isOverBudget(phase)) {
+                Log.w(LOG_TAG, PHASE_NAMES[phase] + " took " + report.getDurationMillis(phase) +
+                        "ms, over its budget of " + report.getBudgetMillis(phase) + "ms");
+            }
+        }
+    }
+
+    private static int checkPhase(int phase) {
+        if (phase < 0 || phase >= PHASE_COUNT) {
+            throw new IllegalArgumentException("Unknown phase: " + phase);
+        }
+        return phase;
+    }
+
+    /**
+     * {@link Report} holds the times of the startup phases and their budgets, copied when the
+     * report was made.
+     */
+    public static class Report {
+
+        private final long[] mDurationNanos;
+        private final long[] mBudgetMillis;
+
+        Report(long[] durationNanos, long[] budgetMillis) {
+            mDurationNanos = durationNanos;
+            mBudgetMillis = budgetMillis;
+        }
+
+        /**
+         * Return whether the phase ran.
+         */
+        public boolean isRecorded(int phase) {
+            return mDurationNanos[checkPhase(phase)] >= 0;
+        }
+
+        /**
+         * Return how long the phase took, in milliseconds, or -1 if it didn't run.
+         */
+        public long getDurationMillis(int phase) {
+            long nanos = mDurationNanos[checkPhase(phase)];
+            return nanos < 0 ? -1 : nanos / 1000000;
+        }
+
+        public long getBudgetMillis(int phase) {
+            return mBudgetMillis[checkPhase(phase)];
+        }
+
+        /**
+         * Return whether the phase took longer than its budget.
+         */
+        public boolean isOverBudget(int phase) {
+            return mDurationNanos[checkPhase(phase)] > mBudgetMillis[phase] * 1000000;
+        }
+
+        /**
+         * Return whether none of the phases took longer than its budget.
+         */
+        public boolean isWithinBudget() {
+            for (int phase = 0; phase < PHASE_COUNT; phase++) {
+                if (isOverBudget(phase)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Return the time taken by all the phases that ran, in milliseconds.
+         */
+        public long getTotalMillis() {
+            long total = 0;
+            for (long nanos : mDurationNanos) {
+                if (nanos > 0) {
+                    total += nanos;
+                }
+            }
+            return total / 1000000;
+        }
+
+        /**
+         * @return a one line summary of the report
+         */
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (int phase = 0; phase < PHASE_COUNT; phase++) {
+                builder.append(PHASE_NAMES[phase]).append('=');
+                if (isRecorded(phase)) {
+                    builder.append(getDurationMillis(phase)).append("ms");
+                } else {
+                    builder.append('-');
+                }
+                builder.append(" (budget ").append(mBudgetMillis[phase]).append("ms), ");
+            }
+            return builder.append("total=").append(getTotalMillis()).append("ms").toString();
+        }
+    }
+}
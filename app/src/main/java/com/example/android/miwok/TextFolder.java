@@ -0,0 +1,146 @@
+package com.example.android.miwok;
+
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link TextFolder} turns a text into the form used to compare it with what the user typed.
+ * Depending on its rules, it lower cases the text, removes the accents and dots under the
+ * letters, replaces the letters that learners can't type with the ones they type instead,
+ * and drops the punctuation. Each language can have its own rules.
+ */
+
+public class TextFolder {
+
+    /**
+     * Rules for the Miwok translations: the schwa is typed as "e", curly apostrophes as a
+     * straight apostrophe, and letters such as "ṭ" are typed without their dot.
+     */
+    public static final TextFolder MIWOK = new Builder()
+            .replace('ә', "e")   // Cyrillic small schwa
+            .replace('Ә', "e")   // Cyrillic capital schwa
+            .replace('ə', "e")   // Latin small schwa
+            .replace('Ə', "e")   // Latin capital schwa
+            .replace('’', "'")   // Right single quotation mark
+            .replace('‘', "'")   // Left single quotation mark
+            .replace('ʼ', "'")   // Modifier letter apostrophe
+            .build();
+
+    /** Rules for the default (English) translations */
+    public static final TextFolder DEFAULT = new Builder()
+            .replace('’', "'")
+            .replace('‘', "'")
+            .build();
+
+    /** Whether the text is lower cased */
+    private final boolean mLowerCase;
+
+    /** Whether the combining marks (accents, dots under the letters...) are removed */
+    private final boolean mStripMarks;
+
+    /** Whether the punctuation other than apostrophes is dropped */
+    private final boolean mDropPunctuation;
+
+    /** Replacements of single characters, applied after the other rules */
+    private final Map<Character, String> mReplacements;
+
+    private TextFolder(Builder builder) {
+        mLowerCase = builder.mLowerCase;
+        mStripMarks = builder.mStripMarks;
+        mDropPunctuation = builder.mDropPunctuation;
+        mReplacements = new HashMap<>(builder.mReplacements);
+    }
+
+    /**
+     * Return the folded form of the text.
+     */
+    public String fold(CharSequence text) {
+        String source = text.toString();
+        if (mStripMarks) {
+            // Decompose the letters so their marks become separate characters
+            source = Normalizer.normalize(source, Normalizer.Form.NFD);
+        }
+        StringBuilder folded = new StringBuilder(source.length());
+        boolean lastWasSpace = true;
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (mStripMarks && Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            String replacement = mReplacements.get(c);
+            if (replacement != null) {
+                folded.append(replacement);
+                lastWasSpace = false;
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                // Collapse the spaces, and drop the leading ones
+                if (!lastWasSpace) {
+                    folded.append(' ');
+                    lastWasSpace = true;
+                }
+                continue;
+            }
+            if (mDropPunctuation && c != '\'' && !Character.isLetterOrDigit(c)) {
+                continue;
+            }
+            folded.append(mLowerCase ? Character.toLowerCase(c) : c);
+            lastWasSpace = false;
+        }
+        // Drop the trailing space
+        int length = folded.length();
+        if (length > 0 && folded.charAt(length - 1) == ' ') {
+            folded.setLength(length - 1);
+        }
+        return folded.toString();
+    }
+
+    /**
+     * {@link Builder} sets the rules of a {@link TextFolder}. By default the text is lower
+     * cased, its marks are removed and its punctuation is dropped.
+     */
+    public static class Builder {
+
+        private boolean mLowerCase = true;
+        private boolean mStripMarks = true;
+        private boolean mDropPunctuation = true;
+        private final Map<Character, String> mReplacements = new HashMap<>();
+
+        /**
+         * Set whether the text is lower cased.
+         */
+        public Builder lowerCase(boolean lowerCase) {
+            mLowerCase = lowerCase;
+            return this;
+        }
+
+        /**
+         * Set whether the combining marks (accents, dots under the letters...) are removed.
+         */
+        public Builder stripMarks(boolean stripMarks) {
+            mStripMarks = stripMarks;
+            return this;
+        }
+
+        /**
+         * Set whether the punctuation other than apostrophes is dropped.
+         */
+        public Builder dropPunctuation(boolean dropPunctuation) {
+            mDropPunctuation = dropPunctuation;
+            return this;
+        }
+
+        /**
+         * Replace a character by a text. The replacement is used as is, it is not folded.
+         */
+        public Builder replace(char c, String replacement) {
+            mReplacements.put(c, replacement);
+            return this;
+        }
+
+        public TextFolder build() {
+            return new TextFolder(this);
+        }
+    }
+}
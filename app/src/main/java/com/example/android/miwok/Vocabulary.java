@@ -0,0 +1,122 @@
+package com.example.android.miwok;
+
+import java.util.concurrent.Executor;
+
+/**
+ * {@link Vocabulary} holds the words of each category of the app.
+ * The words are defined in the files of src/main/vocabulary, which are compiled at build
+ * time into the static tables of VocabularyTables, so nothing is parsed at runtime. The
+ * words of a category are wrapped in a {@link VocabularyStore} the first time the category
+ * is needed and then shared, instead of being built again each time the view of the
+ * category is created.
+ */
+
+public final class Vocabulary {
+
+    /** Words of each category by category ID, wrapped on first use */
+    private static final VocabularyStore[] sStores =
+            new VocabularyStore[VocabularyTables.CATEGORY_COUNT];
+
+    private Vocabulary() {
+    }
+
+    /**
+     * Return the words of a category.
+     *
+     * @param categoryId is the ID of the category in {@link Categories}
+     */
+    public static synchronized VocabularyStore getWords(int categoryId) {
+        if (categoryId < 0 || categoryId >= sStores.length) {
+            throw new IllegalArgumentException("Unknown category: " + categoryId);
+        }
+        if (sStores[categoryId] == null) {
+            sStores[categoryId] = VocabularyStore.fromTables(
+                    VocabularyTables.TEXT[categoryId],
+                    VocabularyTables.TEXT_OFFSETS[categoryId],
+                    VocabularyTables.IMAGE_RESOURCE_IDS[categoryId],
+                    VocabularyTables.AUDIO_RESOURCE_IDS[categoryId]);
+        }
+        return sStores[categoryId];
+    }
+
+    /**
+     * Return the words of the colors category.
+     */
+    public static VocabularyStore getColors() {
+        return getWords(Categories.COLORS);
+    }
+
+    /**
+     * Return the words of the family category.
+     */
+    public static VocabularyStore getFamily() {
+        return getWords(Categories.FAMILY);
+    }
+
+    /**
+     * Return the words of the numbers category.
+     */
+    public static VocabularyStore getNumbers() {
+        return getWords(Categories.NUMBERS);
+    }
+
+    /**
+     * Return the words of the phrases category.
+     */
+    public static VocabularyStore getPhrases() {
+        return getWords(Categories.PHRASES);
+    }
+
+    /**
+     * Return a {@link SearchIndex.Builder} holding the words of all the categories.
+     * The category of each hit is its ID in {@link Categories}.
+     */
+    public static SearchIndex.Builder newSearchIndexBuilder() {
+        SearchIndex.Builder builder = new SearchIndex.Builder();
+        for (int id = 0; id < Categories.getCount(); id++) {
+            builder.addCategory(id, getWords(id));
+        }
+        return builder;
+    }
+
+    /**
+     * Return a {@link FuzzyMatcher.Builder} holding the words of all the categories.
+     * The category of each match is its ID in {@link Categories}.
+     */
+    public static FuzzyMatcher.Builder newFuzzyMatcherBuilder() {
+        FuzzyMatcher.Builder builder = new FuzzyMatcher.Builder();
+        for (int id = 0; id < Categories.getCount(); id++) {
+            builder.addCategory(id, getWords(id));
+        }
+        return builder;
+    }
+
+    /**
+     * Return a {@link QuizGenerator.Builder} holding the words of all the categories.
+     * The category of each word is its ID in {@link Categories}.
+     */
+    public static QuizGenerator.Builder newQuizGeneratorBuilder() {
+        QuizGenerator.Builder builder = new QuizGenerator.Builder();
+        for (int id = 0; id < Categories.getCount(); id++) {
+            builder.addCategory(id, getWords(id));
+        }
+        return builder;
+    }
+
+    /**
+     * Return a {@link VocabularyImporter} that knows the words of all the categories, so
+     * importing a list skips the words the app already has.
+     *
+     * @param storage receives the imported words
+     * @param storageExecutor is the background executor the storage is called on
+     */
+    public static VocabularyImporter newImporter(VocabularyImporter.Storage storage,
+                                                 Executor storageExecutor) {
+        VocabularyImporter importer = new VocabularyImporter(storage, storageExecutor,
+                VocabularyImporter.DEFAULT_BATCH_SIZE);
+        for (int id = 0; id < Categories.getCount(); id++) {
+            importer.addExistingWords(getWords(id));
+        }
+        return importer;
+    }
+}
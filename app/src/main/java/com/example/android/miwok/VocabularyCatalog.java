@@ -0,0 +1,421 @@
+package com.example.android.miwok;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link VocabularyCatalog} holds the words of a {@link VocabularyPack}, one segment per
+ * category, and keeps them up to date with {@link VocabularyDelta}s. The words are read
+ * from the mapped pack on demand, a category at a time, and only the words changed by the
+ * deltas are kept in memory.
+ * Applying a delta only rebuilds the segments of the categories it changes, and only the
+ * matching segments of the {@link SearchIndex}; the other categories are shared untouched.
+ * The updated words can be written back as a new version of the pack.
+ */
+
+public class VocabularyCatalog {
+
+    /**
+     * Finds the resource IDs of the images and sounds named in the packs.
+     */
+    public interface ResourceResolver {
+        int getImageResourceId(String name);
+
+        int getAudioResourceId(String name);
+    }
+
+    /**
+     * {@link Segment} holds the words of one category. The words read from the pack are
+     * only entry indexes, their fields are read from the mapped pack when they are needed.
+     * The words added or changed by a delta keep the operation holding their new fields.
+     */
+    private static class Segment {
+
+        final int mCategoryId;
+        final String mName;
+
+        /** Pack holding the words that no delta changed */
+        final VocabularyPack mPack;
+
+        /** Entry of each word in the pack, or -1 if the word comes from a delta */
+        final int[] mEntries;
+
+        /** Operation holding the fields of each word from a delta, null if there is none */
+        final VocabularyDelta.Operation[] mChanges;
+
+        /** The words with their resource IDs, built the first time they are asked for */
+        private VocabularyStore mWords;
+
+        Segment(int categoryId, String name, VocabularyPack pack, int[] entries,
+                VocabularyDelta.Operation[] changes) {
+            mCategoryId = categoryId;
+            mName = name;
+            mPack = pack;
+            mEntries = entries;
+            mChanges = changes;
+        }
+
+        int size() {
+            return mEntries.length;
+        }
+
+        /**
+         * Return the operation holding the fields of the word, or null if they are in the
+         * pack.
+         */
+        VocabularyDelta.Operation getChange(int i) {
+            return mEntries[i] >= 0 ? null : mChanges[i];
+        }
+
+        long getStableId(int i) {
+            return mEntries[i] >= 0 ? mPack.getStableId(mEntries[i]) : mChanges[i].stableId;
+        }
+
+        String getDefaultTranslation(int i) {
+            return mEntries[i] >= 0
+                    ? mPack.getDefaultTranslation(mEntries[i]) : mChanges[i].defaultTranslation;
+        }
+
+        String getMiwokTranslation(int i) {
+            return mEntries[i] >= 0
+                    ? mPack.getMiwokTranslation(mEntries[i]) : mChanges[i].miwokTranslation;
+        }
+
+        String getImageName(int i) {
+            return mEntries[i] >= 0 ? mPack.getImageName(mEntries[i]) : mChanges[i].imageName;
+        }
+
+        String getAudioName(int i) {
+            return mEntries[i] >= 0 ? mPack.getAudioName(mEntries[i]) : mChanges[i].audioName;
+        }
+
+        /**
+         * Return the words with their resource IDs, as used by the adapters and the index,
+         * decoding them the first time. The catalog lock must be held.
+         */
+        VocabularyStore getWords(ResourceResolver resolver) {
+            if (mWords == null) {
+                VocabularyStore.Builder builder = new VocabularyStore.Builder(size());
+                for (int i = 0; i < size(); i++) {
+                    String imageName = getImageName(i);
+                    int image = imageName.isEmpty()
+                            ? Word.NO_IMAGE_PROVIDED : resolver.getImageResourceId(imageName);
+                    builder.add(getDefaultTranslation(i), getMiwokTranslation(i), image,
+                            resolver.getAudioResourceId(getAudioName(i)));
+                }
+                mWords = builder.build();
+            }
+            return mWords;
+        }
+    }
+
+    private final ResourceResolver mResolver;
+
+    /** Segments of the categories, in the order of the pack */
+    private Segment[] mSegments;
+
+    /** Index of the segment of each word, by stable ID */
+    private final LongIntMap mSegmentsById;
+
+    /** Version of the words */
+    private int mVersion;
+
+    /** Index of the words, null until it is asked for */
+    private SearchIndex mSearchIndex;
+
+    private VocabularyCatalog(ResourceResolver resolver, Segment[] segments,
+                              LongIntMap segmentsById, int version) {
+        mResolver = resolver;
+        mSegments = segments;
+        mSegmentsById = segmentsById;
+        mVersion = version;
+    }
+
+    /**
+     * Return a {@link ResourceResolver} finding the resources of the app by name.
+     */
+    public static ResourceResolver resolverFor(Context context) {
+        final Resources resources = context.getResources();
+        final String packageName = context.getPackageName();
+        return new ResourceResolver() {
+            private final Map<String, Integer> mIds = new HashMap<>();
+
+            @Override
+            public int getImageResourceId(String name) {
+                return find(name, "drawable");
+            }
+
+            @Override
+            public int getAudioResourceId(String name) {
+                return find(name, "raw");
+            }
+
+            private synchronized int find(String name, String type) {
+                String key = type + '/' + name;
+                Integer id = mIds.get(key);
+                if (id == null) {
+                    id = resources.getIdentifier(name, type, packageName);
+                    mIds.put(key, id);
+                }
+                return id;
+            }
+        };
+    }
+
+    /**
+     * Load the words of a pack. Only the stable IDs of the words are read, the translations
+     * are decoded from the mapped pack when the words of a category are first asked for,
+     * so the pack must stay open while the catalog is used. Reading the IDs of a large pack
+     * still takes a while, so this should not be called on the main thread.
+     *
+     * @param pack is the pack to load
+     * @param resolver finds the resource IDs of the images and sounds
+     */
+    public static VocabularyCatalog load(VocabularyPack pack, ResourceResolver resolver) {
+        Segment[] segments = new Segment[pack.getCategoryCount()];
+        LongIntMap segmentsById = new LongIntMap(pack.getEntryCount());
+        for (int c = 0; c < segments.length; c++) {
+            int first = pack.getFirstEntry(c);
+            int[] entries = new int[pack.getCategorySize(c)];
+            for (int i = 0; i < entries.length; i++) {
+                entries[i] = first + i;
+                segmentsById.put(pack.getStableId(first + i), c);
+            }
+            segments[c] = new Segment(pack.getCategoryId(c), pack.getCategoryName(c), pack,
+                    entries, null);
+        }
+        return new VocabularyCatalog(resolver, segments, segmentsById, pack.getDataVersion());
+    }
+
+    /**
+     * Return the version of the words.
+     */
+    public synchronized int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Return the number of categories.
+     */
+    public synchronized int getCategoryCount() {
+        return mSegments.length;
+    }
+
+    /**
+     * Return the ID of the category at the given index.
+     */
+    public synchronized int getCategoryId(int category) {
+        return mSegments[category].mCategoryId;
+    }
+
+    /**
+     * Return the words of the category at the given index.
+     */
+    public synchronized VocabularyStore getWords(int category) {
+        return mSegments[category].getWords(mResolver);
+    }
+
+    /**
+     * Return the stable ID of a word of the category at the given index.
+     */
+    public synchronized long getStableId(int category, int position) {
+        return mSegments[category].getStableId(position);
+    }
+
+    /**
+     * Return the number of words in all the categories.
+     */
+    public synchronized int size() {
+        return mSegmentsById.size();
+    }
+
+    /**
+     * Return the index of the words of all the categories, building it the first time.
+     * The category of each hit is the ID of the category, not its index.
+     */
+    public synchronized SearchIndex getSearchIndex() {
+        if (mSearchIndex == null) {
+            SearchIndex.Builder builder = new SearchIndex.Builder();
+            for (Segment segment : mSegments) {
+                builder.addCategory(segment.mCategoryId, segment.getWords(mResolver));
+            }
+            mSearchIndex = builder.build();
+        }
+        return mSearchIndex;
+    }
+
+    /**
+     * Apply a delta. The whole delta is checked before anything is changed, so a delta that
+     * doesn't match the words leaves the catalog as it was.
+     *
+     * @return the IDs of the categories whose words changed
+     * @throws IOException if the delta is not for the version of the words, or refers to
+     *                     words or categories that don't exist
+     */
+    public synchronized int[] applyDelta(VocabularyDelta delta) throws IOException {
+        if (delta.getBaseVersion() != mVersion) {
+            throw new IOException("Delta for version " + delta.getBaseVersion() +
+                    " doesn't apply to version " + mVersion);
+        }
+
+        // Find the final state of each changed word: the last operation on it, and the
+        // segment it ends up in, or -1 if it ends up removed
+        List<VocabularyDelta.Operation> operations = delta.getOperations();
+        LongIntMap changes = new LongIntMap(operations.size());
+        List<VocabularyDelta.Operation> finalOperations = new ArrayList<>();
+        int[] finalSegments = new int[operations.size()];
+        for (VocabularyDelta.Operation operation : operations) {
+            int change = changes.get(operation.stableId);
+            int current = change != LongIntMap.NO_VALUE
+                    ? finalSegments[change] : mSegmentsById.get(operation.stableId);
+            int segment;
+            if (operation.type == VocabularyDelta.OP_ADD) {
+                if (current >= 0) {
+                    throw new IOException("Word " + operation.stableId + " already exists");
+                }
+                segment = indexOfCategory(operation.categoryId);
+                if (segment == -1) {
+                    throw new IOException("Unknown category " + operation.categoryId);
+                }
+            } else {
+                if (current < 0) {
+                    throw new IOException("Word " + operation.stableId + " doesn't exist");
+                }
+                segment = operation.type == VocabularyDelta.OP_REMOVE ? -1 : current;
+            }
+            if (operation.type == VocabularyDelta.OP_MODIFY && change != LongIntMap.NO_VALUE &&
+                    finalOperations.get(change).type == VocabularyDelta.OP_ADD) {
+                // A word added by this delta and then corrected is still a new word
+                VocabularyDelta.Operation added = finalOperations.get(change);
+                operation = new VocabularyDelta.Operation(VocabularyDelta.OP_ADD,
+                        operation.stableId, added.categoryId, operation.defaultTranslation,
+                        operation.miwokTranslation, operation.imageName, operation.audioName);
+            }
+            if (change == LongIntMap.NO_VALUE) {
+                change = finalOperations.size();
+                finalOperations.add(operation);
+                changes.put(operation.stableId, change);
+            } else {
+                finalOperations.set(change, operation);
+            }
+            finalSegments[change] = segment;
+        }
+
+        // Find the segments to rebuild: the ones the changed words were in or end up in
+        boolean[] affected = new boolean[mSegments.length];
+        for (int change = 0; change < finalOperations.size(); change++) {
+            int before = mSegmentsById.get(finalOperations.get(change).stableId);
+            if (before >= 0) {
+                affected[before] = true;
+            }
+            if (finalSegments[change] >= 0) {
+                affected[finalSegments[change]] = true;
+            }
+        }
+
+        // Rebuild them, and only them
+        Segment[] segments = mSegments.clone();
+        int[] changedCategories = new int[0];
+        for (int s = 0; s < segments.length; s++) {
+            if (affected[s]) {
+                segments[s] = rebuild(s, changes, finalOperations, finalSegments);
+                changedCategories = Arrays.copyOf(changedCategories, changedCategories.length + 1);
+                changedCategories[changedCategories.length - 1] = segments[s].mCategoryId;
+            }
+        }
+        for (int change = 0; change < finalOperations.size(); change++) {
+            long stableId = finalOperations.get(change).stableId;
+            if (finalSegments[change] >= 0) {
+                mSegmentsById.put(stableId, finalSegments[change]);
+            } else {
+                mSegmentsById.remove(stableId);
+            }
+        }
+        mSegments = segments;
+        mVersion = delta.getTargetVersion();
+
+        // Only rebuild the index segments of the changed categories
+        if (mSearchIndex != null) {
+            for (int s = 0; s < segments.length; s++) {
+                if (affected[s]) {
+                    mSearchIndex = mSearchIndex.withCategory(segments[s].mCategoryId,
+                            segments[s].getWords(mResolver));
+                }
+            }
+        }
+        return changedCategories;
+    }
+
+    /**
+     * Return the segment at the given index with the changes applied: the changed words
+     * are updated in place, the removed and moved ones are dropped, and the new ones are
+     * added at the end. The words left untouched are still read from the pack.
+     */
+    private Segment rebuild(int index, LongIntMap changes,
+                            List<VocabularyDelta.Operation> finalOperations, int[] finalSegments) {
+        Segment old = mSegments[index];
+        int capacity = old.size() + finalOperations.size();
+        int[] entries = new int[capacity];
+        VocabularyDelta.Operation[] words = new VocabularyDelta.Operation[capacity];
+        int size = 0;
+        for (int i = 0; i < old.size(); i++) {
+            int change = changes.get(old.getStableId(i));
+            if (change == LongIntMap.NO_VALUE) {
+                entries[size] = old.mEntries[i];
+                words[size] = old.getChange(i);
+            } else if (finalSegments[change] == index) {
+                entries[size] = -1;
+                words[size] = finalOperations.get(change);
+            } else {
+                // Removed, or moved to another category
+                continue;
+            }
+            size++;
+        }
+        for (int change = 0; change < finalOperations.size(); change++) {
+            VocabularyDelta.Operation operation = finalOperations.get(change);
+            if (finalSegments[change] == index && mSegmentsById.get(operation.stableId) != index) {
+                entries[size] = -1;
+                words[size] = operation;
+                size++;
+            }
+        }
+        return new Segment(old.mCategoryId, old.mName, old.mPack, Arrays.copyOf(entries, size),
+                Arrays.copyOf(words, size));
+    }
+
+    private int indexOfCategory(int categoryId) {
+        for (int i = 0; i < mSegments.length; i++) {
+            if (mSegments[i].mCategoryId == categoryId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Write the words as a pack with the current version, replacing the file if it exists.
+     * The file can be the pack the words were loaded from: it is replaced atomically, and
+     * the catalog keeps reading the pack it mapped.
+     */
+    public synchronized void writeTo(File file) throws IOException {
+        VocabularyPack.Writer writer = new VocabularyPack.Writer().setDataVersion(mVersion);
+        for (Segment segment : mSegments) {
+            writer.startCategory(segment.mCategoryId, segment.mName);
+            for (int i = 0; i < segment.size(); i++) {
+                writer.add(segment.getStableId(i), segment.getDefaultTranslation(i),
+                        segment.getMiwokTranslation(i), segment.getImageName(i),
+                        segment.getAudioName(i));
+            }
+        }
+        writer.writeTo(file);
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.android.miwok;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * {@link VocabularyDelta} is a set of changes turning one version of the words into the
+ * next one: words added, removed or corrected, found by their stable ID. A corrected word
+ * keeps its stable ID. Deltas are read from local files and applied in order with
+ * {@link VocabularyCatalog#applyDelta(VocabularyDelta)}.
+ *
+ * Format of a delta file (big endian):
+ *   int    magic ("MWKD")
+ *   int    version of the delta format
+ *   int    version of the words the delta applies to
+ *   int    version of the words after the delta
+ *   int    number of operations
+ *   per operation:
+ *     byte   {@link #OP_ADD}, {@link #OP_REMOVE} or {@link #OP_MODIFY}
+ *     long   stable ID of the word
+ *     add only:        int ID of the category
+ *     add and modify:  UTF default translation, Miwok translation, image name, audio name
+ *   int    CRC32 of everything before it
+ */
+
+public class VocabularyDelta {
+
+    /** Magic number at the start of a delta ("MWKD") */
+    static final int MAGIC = 0x4D574B44;
+
+    /** Version of the delta format read by this class */
+    static final int FORMAT_VERSION = 1;
+
+    /** Types of the operations */
+    public static final int OP_ADD = 1;
+    public static final int OP_REMOVE = 2;
+    public static final int OP_MODIFY = 3;
+
+    /**
+     * {@link Operation} is one change of a delta.
+     */
+    public static class Operation {
+
+        /** {@link #OP_ADD}, {@link #OP_REMOVE} or {@link #OP_MODIFY} */
+        public final int type;
+
+        /** Stable ID of the word */
+        public final long stableId;
+
+        /** Category of an added word, unused otherwise */
+        public final int categoryId;
+
+        /** New values of an added or modified word, null for a removed word */
+        public final String defaultTranslation;
+        public final String miwokTranslation;
+        public final String imageName;
+        public final String audioName;
+
+        Operation(int type, long stableId, int categoryId, String defaultTranslation,
+                  String miwokTranslation, String imageName, String audioName) {
+            this.type = type;
+            this.stableId = stableId;
+            this.categoryId = categoryId;
+            this.defaultTranslation = defaultTranslation;
+            this.miwokTranslation = miwokTranslation;
+            this.imageName = imageName;
+            this.audioName = audioName;
+        }
+
+        @Override
+        public String toString() {
+            return "Operation{type=" + type + ", stableId=" + stableId +
+                    ", defaultTranslation='" + defaultTranslation + '\'' + '}';
+        }
+    }
+
+    private final int mBaseVersion;
+    private final int mTargetVersion;
+    private final List<Operation> mOperations;
+
+    private VocabularyDelta(int baseVersion, int targetVersion, List<Operation> operations) {
+        mBaseVersion = baseVersion;
+        mTargetVersion = targetVersion;
+        mOperations = Collections.unmodifiableList(operations);
+    }
+
+    /**
+     * Read a delta file, checking its checksum.
+     */
+    public static VocabularyDelta read(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(file)), crc));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a vocabulary delta");
+            }
+            int formatVersion = in.readInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported vocabulary delta version " + formatVersion);
+            }
+            int baseVersion = in.readInt();
+            int targetVersion = in.readInt();
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Corrupted vocabulary delta, operation count " + count);
+            }
+            List<Operation> operations = new ArrayList<>(Math.min(count, 1024));
+            for (int i = 0; i < count; i++) {
+                int type = in.readByte();
+                long stableId = in.readLong();
+                if (type == OP_REMOVE) {
+                    operations.add(new Operation(type, stableId, 0, null, null, null, null));
+                } else if (type == OP_ADD || type == OP_MODIFY) {
+                    int categoryId = type == OP_ADD ? in.readInt() : 0;
+                    operations.add(new Operation(type, stableId, categoryId, in.readUTF(),
+                            in.readUTF(), in.readUTF(), in.readUTF()));
+                } else {
+                    throw new IOException("Corrupted vocabulary delta, operation type " + type);
+                }
+            }
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("Corrupted vocabulary delta, wrong checksum");
+            }
+            return new VocabularyDelta(baseVersion, targetVersion, operations);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Return the version of the words the delta applies to.
+     */
+    public int getBaseVersion() {
+        return mBaseVersion;
+    }
+
+    /**
+     * Return the version of the words after the delta.
+     */
+    public int getTargetVersion() {
+        return mTargetVersion;
+    }
+
+    /**
+     * Return the changes of the delta, in the order they were written.
+     */
+    public List<Operation> getOperations() {
+        return mOperations;
+    }
+
+    /**
+     * {@link Builder} collects the changes of a {@link VocabularyDelta}.
+     */
+    public static class Builder {
+
+        private final int mBaseVersion;
+        private final int mTargetVersion;
+        private final List<Operation> mOperations = new ArrayList<>();
+
+        /**
+         * Create a new {@link Builder} object
+         *
+         * @param baseVersion is the version of the words the delta applies to
+         * @param targetVersion is the version of the words after the delta, it must be
+         *                      greater than the base version
+         */
+        public Builder(int baseVersion, int targetVersion) {
+            if (targetVersion <= baseVersion) {
+                throw new IllegalArgumentException("Target version " + targetVersion +
+                        " must be greater than base version " + baseVersion);
+            }
+            mBaseVersion = baseVersion;
+            mTargetVersion = targetVersion;
+        }
+
+        /**
+         * Add a new word, its stable ID is computed from its translations.
+         *
+         * @param categoryId is the ID of the category of the word
+         * @param imageName is the name of the drawable of the word, or null if it has none
+         */
+        public Builder add(int categoryId, String defaultTranslation, String miwokTranslation,
+                           String imageName, String audioName) {
+            mOperations.add(new Operation(OP_ADD,
+                    Word.stableId(defaultTranslation, miwokTranslation), categoryId,
+                    defaultTranslation, miwokTranslation, imageName != null ? imageName : "",
+                    audioName));
+            return this;
+        }
+
+        /**
+         * Remove the word with the given stable ID.
+         */
+        public Builder remove(long stableId) {
+            mOperations.add(new Operation(OP_REMOVE, stableId, 0, null, null, null, null));
+            return this;
+        }
+
+        /**
+         * Replace the values of the word with the given stable ID, which keeps its ID and
+         * its category.
+         *
+         * @param imageName is the name of the drawable of the word, or null if it has none
+         */
+        public Builder modify(long stableId, String defaultTranslation, String miwokTranslation,
+                              String imageName, String audioName) {
+            mOperations.add(new Operation(OP_MODIFY, stableId, 0, defaultTranslation,
+                    miwokTranslation, imageName != null ? imageName : "", audioName));
+            return this;
+        }
+
+        /**
+         * Return the delta with the changes added so far.
+         */
+        public VocabularyDelta build() {
+            return new VocabularyDelta(mBaseVersion, mTargetVersion,
+                    new ArrayList<>(mOperations));
+        }
+
+        /**
+         * Write the delta to a file, replacing it if it exists.
+         */
+        public void writeTo(File file) throws IOException {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file)), crc));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(mBaseVersion);
+                out.writeInt(mTargetVersion);
+                out.writeInt(mOperations.size());
+                for (Operation operation : mOperations) {
+                    out.writeByte(operation.type);
+                    out.writeLong(operation.stableId);
+                    if (operation.type == OP_REMOVE) {
+                        continue;
+                    }
+                    if (operation.type == OP_ADD) {
+                        out.writeInt(operation.categoryId);
+                    }
+                    out.writeUTF(operation.defaultTranslation);
+                    out.writeUTF(operation.miwokTranslation);
+                    out.writeUTF(operation.imageName);
+                    out.writeUTF(operation.audioName);
+                }
+                out.flush();
+                out.writeInt((int) crc.getValue());
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,685 @@
+package com.example.android.miwok;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link VocabularyImporter} reads word lists in CSV or JSON and hands the words to a
+ * {@link Storage} in batches. The input is parsed as a stream, one word at a time, and only
+ * a few batches are kept in memory while the storage catches up, so a file of a million
+ * lines is imported without ever being loaded whole.
+ *
+ * Each word has a default translation, a Miwok translation, the name of the sound to play
+ * and, optionally, a category and the name of its image. Invalid words are rejected and
+ * words already known, by their {@link Word#getStableId() stable ID}, are skipped. Apart
+ * from the IDs of the known words, an import only keeps the batches waiting for the
+ * storage, whatever the length of the list.
+ *
+ * A CSV file starts with a header line naming its columns: "english", "miwok", "audio",
+ * and optionally "category" and "image". A JSON file is an array of objects with the same
+ * names.
+ *
+ * The import methods block until all the words are stored, so they must not be called on
+ * the main thread.
+ */
+
+public class VocabularyImporter {
+
+    /** Default number of words handed to the storage at once */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /** Number of batches that can wait for the storage before the parsing waits too */
+    private static final int MAX_PENDING_BATCHES = 2;
+
+    /** Maximum number of error messages kept in the {@link Stats} */
+    private static final int MAX_ERRORS = 20;
+
+    /** Minimum time between two progress reports, in milliseconds */
+    private static final long PROGRESS_INTERVAL_MS = 250;
+
+    /** Names of the columns and JSON fields */
+    private static final String COLUMN_CATEGORY = "category";
+    private static final String COLUMN_ENGLISH = "english";
+    private static final String COLUMN_MIWOK = "miwok";
+    private static final String COLUMN_IMAGE = "image";
+    private static final String COLUMN_AUDIO = "audio";
+
+    /**
+     * Storage receiving the imported words. It is called on the storage executor, one batch
+     * after the other, even if the executor has several threads.
+     */
+    public interface Storage {
+        void storeBatch(Batch batch) throws IOException;
+    }
+
+    /**
+     * Listener receiving the progress of an import, on the storage executor after each
+     * stored batch and on the importing thread at the end.
+     */
+    public interface Listener {
+        void onProgress(Stats stats);
+    }
+
+    /**
+     * {@link Batch} is a group of valid, new words handed to the {@link Storage}.
+     */
+    public static class Batch {
+
+        private final String[] mCategories;
+        private final String[] mDefaultTranslations;
+        private final String[] mMiwokTranslations;
+        private final String[] mImageNames;
+        private final String[] mAudioNames;
+        private final long[] mStableIds;
+        private int mSize;
+
+        Batch(int capacity) {
+            mCategories = new String[capacity];
+            mDefaultTranslations = new String[capacity];
+            mMiwokTranslations = new String[capacity];
+            mImageNames = new String[capacity];
+            mAudioNames = new String[capacity];
+            mStableIds = new long[capacity];
+        }
+
+        void add(String category, String defaultTranslation, String miwokTranslation,
+                 String imageName, String audioName, long stableId) {
+            mCategories[mSize] = category;
+            mDefaultTranslations[mSize] = defaultTranslation;
+            mMiwokTranslations[mSize] = miwokTranslation;
+            mImageNames[mSize] = imageName;
+            mAudioNames[mSize] = audioName;
+            mStableIds[mSize] = stableId;
+            mSize++;
+        }
+
+        boolean isFull() {
+            return mSize == mStableIds.length;
+        }
+
+        /** Return the number of words in the batch. */
+        public int size() {
+            return mSize;
+        }
+
+        /** Return the category of the word, or an empty string if the file has none. */
+        public String getCategory(int i) {
+            return mCategories[i];
+        }
+
+        public String getDefaultTranslation(int i) {
+            return mDefaultTranslations[i];
+        }
+
+        public String getMiwokTranslation(int i) {
+            return mMiwokTranslations[i];
+        }
+
+        /** Return the name of the image of the word, or an empty string if it has none. */
+        public String getImageName(int i) {
+            return mImageNames[i];
+        }
+
+        public String getAudioName(int i) {
+            return mAudioNames[i];
+        }
+
+        /** Return the {@link Word#getStableId() stable ID} of the word. */
+        public long getStableId(int i) {
+            return mStableIds[i];
+        }
+    }
+
+    /**
+     * {@link Stats} is the progress of an import.
+     */
+    public static class Stats {
+
+        /** Number of words read from the input */
+        public final int rowsRead;
+
+        /** Number of words stored */
+        public final int rowsStored;
+
+        /** Number of words skipped because they were already known */
+        public final int duplicates;
+
+        /** Number of invalid words */
+        public final int rejected;
+
+        /** Time since the start of the import, in milliseconds */
+        public final long elapsedMs;
+
+        /** First error messages, with their line or word number */
+        public final List<String> errors;
+
+        Stats(int rowsRead, int rowsStored, int duplicates, int rejected, long elapsedMs,
+              List<String> errors) {
+            this.rowsRead = rowsRead;
+            this.rowsStored = rowsStored;
+            this.duplicates = duplicates;
+            this.rejected = rejected;
+            this.elapsedMs = elapsedMs;
+            this.errors = errors;
+        }
+
+        /**
+         * Return the number of words read per second.
+         */
+        public long getRowsPerSecond() {
+            return elapsedMs == 0 ? rowsRead * 1000L : rowsRead * 1000L / elapsedMs;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{rowsRead=" + rowsRead + ", rowsStored=" + rowsStored +
+                    ", duplicates=" + duplicates + ", rejected=" + rejected +
+                    ", elapsedMs=" + elapsedMs + ", rowsPerSecond=" + getRowsPerSecond() + '}';
+        }
+    }
+
+    private final Storage mStorage;
+    private final Executor mStorageExecutor;
+    private final int mBatchSize;
+    private Listener mListener;
+
+    /**
+     * Stable IDs of the words already known, stored by a previous import or read earlier by
+     * the current one, to skip them
+     */
+    private final LongIntMap mKnownIds = new LongIntMap(1024);
+
+    /**
+     * Stable IDs of the batches handed to the storage by the current import that may not be
+     * stored yet, in the order they were submitted
+     */
+    private final ArrayDeque<long[]> mSubmittedIds = new ArrayDeque<>();
+
+    /** Number of batches of the current import removed from {@link #mSubmittedIds} */
+    private int mConfirmedBatches;
+
+    /**
+     * Number of batches of the current import stored so far. The storage is called one
+     * batch after the other, so they are the first ones submitted.
+     */
+    private final AtomicInteger mStoredBatches = new AtomicInteger();
+
+    /** Limits the number of batches waiting for the storage */
+    private final Semaphore mPendingBatches = new Semaphore(MAX_PENDING_BATCHES);
+
+    /** First error thrown by the storage, which stops the import */
+    private volatile IOException mStorageError;
+
+    /**
+     * Progress of the current import. The counts are written by the importing thread,
+     * except the stored count, and read by the storage executor to report the progress.
+     */
+    private volatile int mRowsRead;
+    private final AtomicInteger mRowsStored = new AtomicInteger();
+    private volatile int mDuplicates;
+    private volatile int mRejected;
+    private long mStartTime;
+    private volatile long mLastProgressTime;
+    private final List<String> mErrors = Collections.synchronizedList(new ArrayList<String>());
+
+    private Batch mBatch;
+
+    /**
+     * Create a new {@link VocabularyImporter} object
+     *
+     * @param storage receives the imported words
+     * @param storageExecutor is the background executor the storage is called on. The
+     *                        batches are run on it one after the other.
+     * @param batchSize is the number of words handed to the storage at once
+     */
+    public VocabularyImporter(Storage storage, Executor storageExecutor, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        mStorage = storage;
+        mStorageExecutor = new SerialExecutor(storageExecutor);
+        mBatchSize = batchSize;
+    }
+
+    /**
+     * Set the listener receiving the progress of the imports.
+     */
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Mark the words of a store as known, so they are not imported again. The importers
+     * returned by {@link Vocabulary#newImporter} already know the words of the app.
+     */
+    public void addExistingWords(VocabularyStore words) {
+        for (int i = 0; i < words.size(); i++) {
+            mKnownIds.put(Word.stableId(words.getDefaultTranslation(i),
+                    words.getMiwokTranslation(i)), 0);
+        }
+    }
+
+    /**
+     * Import a CSV word list. Blocks until all the words are stored.
+     *
+     * @param in is the CSV text, it is read as a stream and not closed
+     * @return the final progress of the import
+     */
+    public Stats importCsv(Reader in) throws IOException {
+        start();
+        try {
+            return readCsv(in);
+        } finally {
+            end();
+        }
+    }
+
+    /**
+     * Import a JSON word list. Blocks until all the words are stored.
+     *
+     * @param in is the JSON text, it is read as a stream and not closed
+     * @return the final progress of the import
+     */
+    public Stats importJson(Reader in) throws IOException {
+        start();
+        try {
+            return readJson(in);
+        } finally {
+            end();
+        }
+    }
+
+    private Stats readCsv(Reader in) throws IOException {
+        CsvParser parser = new CsvParser(in);
+        List<String> fields = new ArrayList<>();
+        if (!parser.readRecord(fields)) {
+            throw new IOException("Empty CSV word list");
+        }
+        int categoryColumn = fields.indexOf(COLUMN_CATEGORY);
+        int englishColumn = fields.indexOf(COLUMN_ENGLISH);
+        int miwokColumn = fields.indexOf(COLUMN_MIWOK);
+        int imageColumn = fields.indexOf(COLUMN_IMAGE);
+        int audioColumn = fields.indexOf(COLUMN_AUDIO);
+        if (englishColumn == -1 || miwokColumn == -1 || audioColumn == -1) {
+            throw new IOException("The CSV header must name the english, miwok and audio columns");
+        }
+
+        int line = parser.getLineNumber() + 1;
+        while (parser.readRecord(fields)) {
+            addRow(line, column(fields, categoryColumn), column(fields, englishColumn),
+                    column(fields, miwokColumn), column(fields, imageColumn),
+                    column(fields, audioColumn));
+            line = parser.getLineNumber() + 1;
+        }
+        return finish();
+    }
+
+    private Stats readJson(Reader in) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        reader.beginArray();
+        int index = 0;
+        while (reader.hasNext()) {
+            String category = null;
+            String english = null;
+            String miwok = null;
+            String image = null;
+            String audio = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                if (COLUMN_CATEGORY.equals(name)) {
+                    category = reader.nextString();
+                } else if (COLUMN_ENGLISH.equals(name)) {
+                    english = reader.nextString();
+                } else if (COLUMN_MIWOK.equals(name)) {
+                    miwok = reader.nextString();
+                } else if (COLUMN_IMAGE.equals(name)) {
+                    image = reader.nextString();
+                } else if (COLUMN_AUDIO.equals(name)) {
+                    audio = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            addRow(++index, category, english, miwok, image, audio);
+        }
+        reader.endArray();
+        return finish();
+    }
+
+    private static String column(List<String> fields, int column) {
+        return column >= 0 && column < fields.size() ? fields.get(column) : null;
+    }
+
+    private void start() {
+        mRowsRead = 0;
+        mRowsStored.set(0);
+        mDuplicates = 0;
+        mRejected = 0;
+        mErrors.clear();
+        mStorageError = null;
+        mStartTime = elapsedMillis();
+        mLastProgressTime = mStartTime;
+        mBatch = new Batch(mBatchSize);
+        mSubmittedIds.clear();
+        mConfirmedBatches = 0;
+        mStoredBatches.set(0);
+    }
+
+    /**
+     * Wait for the batches still being stored, even if the import failed, and forget the
+     * words of the batches that were not stored, so they can be imported again.
+     */
+    private void end() {
+        mPendingBatches.acquireUninterruptibly(MAX_PENDING_BATCHES);
+        mPendingBatches.release(MAX_PENDING_BATCHES);
+        confirmStoredBatches();
+        for (long[] stableIds : mSubmittedIds) {
+            forget(stableIds, stableIds.length);
+        }
+        forget(mBatch.mStableIds, mBatch.size());
+        mSubmittedIds.clear();
+        mBatch = null;
+    }
+
+    /**
+     * Drop the IDs of the batches stored so far, their words stay known.
+     */
+    private void confirmStoredBatches() {
+        int stored = mStoredBatches.get();
+        while (mConfirmedBatches < stored) {
+            mSubmittedIds.removeFirst();
+            mConfirmedBatches++;
+        }
+    }
+
+    private void forget(long[] stableIds, int count) {
+        for (int i = 0; i < count; i++) {
+            mKnownIds.remove(stableIds[i]);
+        }
+    }
+
+    /**
+     * Return a monotonic time in milliseconds.
+     */
+    private static long elapsedMillis() {
+        return System.nanoTime() / 1000000;
+    }
+
+    /**
+     * Validate a word and add it to the current batch, unless it is already known.
+     *
+     * @param row is the line number for CSV, or the word number for JSON
+     */
+    private void addRow(int row, String category, String english, String miwok, String image,
+                        String audio) throws IOException {
+        mRowsRead++;
+        english = english != null ? english.trim() : "";
+        miwok = miwok != null ? miwok.trim() : "";
+        audio = audio != null ? audio.trim() : "";
+        if (english.isEmpty() || miwok.isEmpty()) {
+            reject(row, "missing translation");
+            return;
+        }
+        if (audio.isEmpty()) {
+            reject(row, "missing audio");
+            return;
+        }
+
+        // Skip the words already known, and the ones seen earlier in the same list. The
+        // words of this list are known from now on, unless their batch isn't stored.
+        long stableId = Word.stableId(english, miwok);
+        if (mKnownIds.put(stableId, 0) != LongIntMap.NO_VALUE) {
+            mDuplicates++;
+            return;
+        }
+        mBatch.add(category != null ? category.trim() : "", english, miwok,
+                image != null ? image.trim() : "", audio, stableId);
+        if (mBatch.isFull()) {
+            submitBatch();
+        }
+    }
+
+    private void reject(int row, String reason) {
+        mRejected++;
+        if (mErrors.size() < MAX_ERRORS) {
+            mErrors.add(row + ": " + reason);
+        }
+    }
+
+    /**
+     * Hand the current batch to the storage, waiting if too many batches are pending.
+     */
+    private void submitBatch() throws IOException {
+        checkStorageError();
+        acquire(1);
+        final Batch batch = mBatch;
+        mBatch = new Batch(mBatchSize);
+        confirmStoredBatches();
+        mSubmittedIds.add(Arrays.copyOf(batch.mStableIds, batch.size()));
+        mStorageExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (mStorageError == null) {
+                        mStorage.storeBatch(batch);
+                        mRowsStored.addAndGet(batch.size());
+                        mStoredBatches.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    mStorageError = e;
+                } finally {
+                    mPendingBatches.release();
+                }
+                reportProgress(false);
+            }
+        });
+    }
+
+    /**
+     * Store the last batch, wait for the storage and return the final progress.
+     */
+    private Stats finish() throws IOException {
+        if (mBatch.size() > 0) {
+            submitBatch();
+        }
+        // Wait for all the pending batches
+        acquire(MAX_PENDING_BATCHES);
+        mPendingBatches.release(MAX_PENDING_BATCHES);
+        checkStorageError();
+        return reportProgress(true);
+    }
+
+    private void acquire(int permits) throws IOException {
+        try {
+            mPendingBatches.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Vocabulary import interrupted");
+        }
+    }
+
+    private void checkStorageError() throws IOException {
+        IOException error = mStorageError;
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Report the progress to the listener, at most every {@link #PROGRESS_INTERVAL_MS}
+     * unless forced.
+     */
+    private Stats reportProgress(boolean force) {
+        long now = elapsedMillis();
+        if (!force && (mListener == null || now - mLastProgressTime < PROGRESS_INTERVAL_MS)) {
+            return null;
+        }
+        mLastProgressTime = now;
+        Stats stats = new Stats(mRowsRead, mRowsStored.get(), mDuplicates, mRejected,
+                now - mStartTime, new ArrayList<>(mErrors));
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onProgress(stats);
+        }
+        return stats;
+    }
+
+    /**
+     * {@link SerialExecutor} runs its tasks on another executor one after the other, in the
+     * order they were submitted, so a thread pool never runs two batches at once.
+     */
+    private static class SerialExecutor implements Executor {
+
+        private final Executor mExecutor;
+        private final ArrayDeque<Runnable> mTasks = new ArrayDeque<>();
+
+        /** Task handed to the executor, null when none is running */
+        private Runnable mActive;
+
+        SerialExecutor(Executor executor) {
+            mExecutor = executor;
+        }
+
+        @Override
+        public synchronized void execute(final Runnable task) {
+            mTasks.offer(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        scheduleNext();
+                    }
+                }
+            });
+            if (mActive == null) {
+                scheduleNext();
+            }
+        }
+
+        private synchronized void scheduleNext() {
+            mActive = mTasks.poll();
+            if (mActive != null) {
+                mExecutor.execute(mActive);
+            }
+        }
+    }
+
+    /**
+     * {@link CsvParser} reads the records of a CSV text one at a time. Fields may be quoted
+     * with double quotes, and then hold commas, line breaks and doubled quotes.
+     */
+    private static class CsvParser {
+
+        private final Reader mIn;
+        private final char[] mBuffer = new char[8192];
+        private int mPosition;
+        private int mLimit;
+        private int mLineNumber;
+        private final StringBuilder mField = new StringBuilder();
+
+        CsvParser(Reader in) {
+            mIn = in;
+        }
+
+        /**
+         * Return the number of lines read so far.
+         */
+        int getLineNumber() {
+            return mLineNumber;
+        }
+
+        /**
+         * Read the next record into fields. Empty lines are skipped.
+         *
+         * @return false at the end of the text
+         */
+        boolean readRecord(List<String> fields) throws IOException {
+            fields.clear();
+            int c;
+            // Skip the empty lines
+            do {
+                c = read();
+                if (c == '\n') {
+                    mLineNumber++;
+                }
+            } while (c == '\n' || c == '\r');
+            if (c == -1) {
+                return false;
+            }
+
+            mField.setLength(0);
+            boolean quoted = false;
+            boolean inQuotes = false;
+            while (true) {
+                if (inQuotes) {
+                    if (c == -1) {
+                        throw new IOException("Unterminated quoted field at line " +
+                                (mLineNumber + 1));
+                    }
+                    if (c == '"') {
+                        int next = read();
+                        if (next == '"') {
+                            mField.append('"');
+                        } else {
+                            inQuotes = false;
+                            c = next;
+                            continue;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            mLineNumber++;
+                        }
+                        mField.append((char) c);
+                    }
+                } else if (c == ',') {
+                    fields.add(mField.toString());
+                    mField.setLength(0);
+                    quoted = false;
+                } else if (c == '\n' || c == -1) {
+                    if (c == '\n') {
+                        mLineNumber++;
+                    }
+                    fields.add(mField.toString());
+                    return true;
+                } else if (c == '"' && mField.length() == 0 && !quoted) {
+                    quoted = true;
+                    inQuotes = true;
+                } else if (c != '\r') {
+                    mField.append((char) c);
+                }
+                c = read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (mPosition == mLimit) {
+                mLimit = mIn.read(mBuffer, 0, mBuffer.length);
+                mPosition = 0;
+                if (mLimit <= 0) {
+                    mLimit = 0;
+                    return -1;
+                }
+            }
+            return mBuffer[mPosition++];
+        }
+    }
+}
@@ -0,0 +1,490 @@
+package com.example.android.miwok;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * {@link VocabularyPack} reads a binary file of words, for decks too large to be compiled
+ * into the app. The file is memory mapped and nothing is read when it is opened, except
+ * its header: the translations are only decoded into Strings when they are read. The
+ * {@link VocabularyCatalog} decodes the words of a category into a {@link VocabularyStore}
+ * the first time they are asked for, so only the categories that are displayed are
+ * decoded, and the {@link WordAdapter} binds its rows from that store. Opening a pack of a
+ * million words takes the same time and memory as opening a pack of ten.
+ *
+ * Format of the pack (big endian):
+ *   header, {@link #HEADER_SIZE} bytes:
+ *     int   magic ("MWKV")
+ *     int   version
+ *     int   number of categories
+ *     int   number of entries
+ *     int   size of the string heap in bytes
+ *     int   CRC32 of everything after the header
+ *     int   version of the words, increased by each {@link VocabularyDelta}
+ *     int   reserved, 0
+ *   category table, {@link #CATEGORY_SIZE} bytes per category:
+ *     int   ID of the category
+ *     int   index of its first entry
+ *     int   number of entries
+ *     int   offset and int length of its name in the string heap
+ *   entry table, {@link #ENTRY_SIZE} bytes per entry, the entries of a category are
+ *   contiguous. Each entry holds an int offset and an int length in the string heap for:
+ *     the default translation, the Miwok translation, the name of the drawable (length 0
+ *     if there is none) and the name of the raw resource of the sound
+ *   followed by the long stable ID of the word, which stays the same when the word is
+ *   corrected by a {@link VocabularyDelta}
+ *   string heap: UTF-8 strings, shared when equal
+ *
+ * Use {@link Writer} to create a pack.
+ */
+
+public class VocabularyPack {
+
+    /** Magic number at the start of the pack ("MWKV") */
+    static final int MAGIC = 0x4D574B56;
+
+    /** Version of the pack format read by this class */
+    static final int VERSION = 2;
+
+    /** Size of the header in bytes */
+    static final int HEADER_SIZE = 32;
+
+    /** Size of a category of the category table in bytes */
+    static final int CATEGORY_SIZE = 20;
+
+    /** Size of an entry of the entry table in bytes */
+    static final int ENTRY_SIZE = 40;
+
+    /** Offsets of the strings of an entry */
+    private static final int FIELD_DEFAULT = 0;
+    private static final int FIELD_MIWOK = 8;
+    private static final int FIELD_IMAGE = 16;
+    private static final int FIELD_AUDIO = 24;
+
+    /** Offset of the stable ID of an entry */
+    private static final int FIELD_STABLE_ID = 32;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Extension of the file a pack is written to before it is renamed into place */
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    /** Content of the file, only read with absolute gets so it can be shared by threads */
+    private final ByteBuffer mBuffer;
+
+    private final int mCategoryCount;
+    private final int mEntryCount;
+    private final int mHeapSize;
+    private final int mChecksum;
+    private final int mDataVersion;
+
+    /** Offsets of the tables and of the string heap in the file */
+    private final int mCategoryTableOffset;
+    private final int mEntryTableOffset;
+    private final int mHeapOffset;
+
+    private VocabularyPack(ByteBuffer buffer) throws IOException {
+        mBuffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a vocabulary pack");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported vocabulary pack version " + version);
+        }
+        mCategoryCount = buffer.getInt(8);
+        mEntryCount = buffer.getInt(12);
+        mHeapSize = buffer.getInt(16);
+        mChecksum = buffer.getInt(20);
+        mDataVersion = buffer.getInt(24);
+        mCategoryTableOffset = HEADER_SIZE;
+        mEntryTableOffset = mCategoryTableOffset + mCategoryCount * CATEGORY_SIZE;
+        mHeapOffset = mEntryTableOffset + mEntryCount * ENTRY_SIZE;
+
+        // The sizes in the header must add up to the size of the file
+        long expectedSize = HEADER_SIZE + (long) mCategoryCount * CATEGORY_SIZE +
+                (long) mEntryCount * ENTRY_SIZE + mHeapSize;
+        if (mCategoryCount < 0 || mEntryCount < 0 || mHeapSize < 0 ||
+                expectedSize != buffer.capacity()) {
+            throw new IOException("Corrupted vocabulary pack, expected " + expectedSize +
+                    " bytes, found " + buffer.capacity());
+        }
+    }
+
+    /**
+     * Open a pack by mapping it in memory. Only the header is read, use {@link #verify()}
+     * to check the whole file.
+     *
+     * @param file is the pack file
+     */
+    public static VocabularyPack open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Vocabulary pack too large: " + channel.size());
+            }
+            // The mapping stays valid after the file is closed, and is released with the buffer
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new VocabularyPack(buffer);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Check the CRC32 of the pack and that all its tables point inside the file. This reads
+     * the whole file, so it should not be called on the main thread.
+     *
+     * @throws IOException if the pack is corrupted
+     */
+    public void verify() throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[8192];
+        ByteBuffer body = mBuffer.duplicate();
+        body.position(HEADER_SIZE);
+        while (body.hasRemaining()) {
+            int length = Math.min(chunk.length, body.remaining());
+            body.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+        if ((int) crc.getValue() != mChecksum) {
+            throw new IOException("Corrupted vocabulary pack, wrong checksum");
+        }
+
+        int expectedFirstEntry = 0;
+        for (int c = 0; c < mCategoryCount; c++) {
+            int base = mCategoryTableOffset + c * CATEGORY_SIZE;
+            int first = mBuffer.getInt(base + 4);
+            int count = mBuffer.getInt(base + 8);
+            if (first != expectedFirstEntry || count < 0 || (long) first + count > mEntryCount) {
+                throw new IOException("Corrupted vocabulary pack, category " + c + " out of range");
+            }
+            checkString(base + 12);
+            expectedFirstEntry += count;
+        }
+        for (int e = 0; e < mEntryCount; e++) {
+            int base = mEntryTableOffset + e * ENTRY_SIZE;
+            for (int field = 0; field <= FIELD_AUDIO; field += 8) {
+                checkString(base + field);
+            }
+        }
+    }
+
+    private void checkString(int reference) throws IOException {
+        int offset = mBuffer.getInt(reference);
+        int length = mBuffer.getInt(reference + 4);
+        if (offset < 0 || length < 0 || (long) offset + length > mHeapSize) {
+            throw new IOException("Corrupted vocabulary pack, string out of range");
+        }
+    }
+
+    /**
+     * Return the version of the words of the pack.
+     */
+    public int getDataVersion() {
+        return mDataVersion;
+    }
+
+    /**
+     * Return the number of categories in the pack.
+     */
+    public int getCategoryCount() {
+        return mCategoryCount;
+    }
+
+    /**
+     * Return the ID of the category at the given index of the category table.
+     */
+    public int getCategoryId(int category) {
+        return mBuffer.getInt(categoryBase(category));
+    }
+
+    /**
+     * Return the name of the category at the given index of the category table.
+     */
+    public String getCategoryName(int category) {
+        return readString(categoryBase(category) + 12);
+    }
+
+    /**
+     * Return the number of entries of the category at the given index of the category table.
+     */
+    public int getCategorySize(int category) {
+        return mBuffer.getInt(categoryBase(category) + 8);
+    }
+
+    /**
+     * Return the index of the first entry of the category at the given index of the
+     * category table. The entries of a category follow each other.
+     */
+    public int getFirstEntry(int category) {
+        return mBuffer.getInt(categoryBase(category) + 4);
+    }
+
+    /**
+     * Return the number of entries in the pack, in all the categories.
+     */
+    public int getEntryCount() {
+        return mEntryCount;
+    }
+
+    /**
+     * Return the default translation of the entry, decoded by this call.
+     */
+    public String getDefaultTranslation(int entry) {
+        return readString(entryBase(entry) + FIELD_DEFAULT);
+    }
+
+    /**
+     * Return the Miwok translation of the entry, decoded by this call.
+     */
+    public String getMiwokTranslation(int entry) {
+        return readString(entryBase(entry) + FIELD_MIWOK);
+    }
+
+    /**
+     * Return the name of the drawable of the entry, or an empty string if it has none.
+     */
+    public String getImageName(int entry) {
+        return readString(entryBase(entry) + FIELD_IMAGE);
+    }
+
+    /**
+     * Return the name of the raw resource of the sound of the entry.
+     */
+    public String getAudioName(int entry) {
+        return readString(entryBase(entry) + FIELD_AUDIO);
+    }
+
+    /**
+     * Return the stable ID of the entry, see {@link Word#getStableId()}.
+     */
+    public long getStableId(int entry) {
+        return mBuffer.getLong(entryBase(entry) + FIELD_STABLE_ID);
+    }
+
+    private int categoryBase(int category) {
+        if (category < 0 || category >= mCategoryCount) {
+            throw new IndexOutOfBoundsException("Category " + category + ", count " + mCategoryCount);
+        }
+        return mCategoryTableOffset + category * CATEGORY_SIZE;
+    }
+
+    private int entryBase(int entry) {
+        if (entry < 0 || entry >= mEntryCount) {
+            throw new IndexOutOfBoundsException("Entry " + entry + ", count " + mEntryCount);
+        }
+        return mEntryTableOffset + entry * ENTRY_SIZE;
+    }
+
+    /**
+     * Decode the string whose offset and length are stored at the given position.
+     */
+    private String readString(int reference) {
+        int offset = mBuffer.getInt(reference);
+        int length = mBuffer.getInt(reference + 4);
+        if (offset < 0 || length < 0 || (long) offset + length > mHeapSize) {
+            throw new IllegalStateException("Corrupted vocabulary pack, string out of range");
+        }
+        if (length == 0) {
+            return "";
+        }
+        byte[] bytes = new byte[length];
+        int start = mHeapOffset + offset;
+        for (int i = 0; i < length; i++) {
+            bytes[i] = mBuffer.get(start + i);
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * {@link Writer} collects words and writes them as a {@link VocabularyPack}.
+     */
+    public static class Writer {
+
+        /** ID, first entry and name reference (offset and length) of each category */
+        private final List<int[]> mCategories = new ArrayList<>();
+
+        /** String references (offset and length) of the entries, 8 ints per entry */
+        private int[] mEntries = new int[8 * 64];
+        private long[] mStableIds = new long[64];
+        private int mEntryCount;
+
+        private int mDataVersion;
+
+        /** Strings of the heap, and their references by value so equal strings are shared */
+        private final List<byte[]> mHeap = new ArrayList<>();
+        private final Map<String, int[]> mHeapReferences = new HashMap<>();
+        private int mHeapSize;
+
+        /**
+         * Set the version of the words, 0 by default.
+         */
+        public Writer setDataVersion(int dataVersion) {
+            mDataVersion = dataVersion;
+            return this;
+        }
+
+        /**
+         * Start a new category, the next words are added to it.
+         *
+         * @param id is the ID of the category
+         * @param name is the name of the category
+         */
+        public Writer startCategory(int id, String name) {
+            int[] nameReference = addString(name);
+            mCategories.add(new int[] {id, mEntryCount, nameReference[0], nameReference[1]});
+            return this;
+        }
+
+        /**
+         * Add a word to the current category.
+         *
+         * @param defaultTranslation is the word in a language that the user is already
+         *                           familiar with (such as English)
+         * @param miwokTranslation is the word in the Miwok language
+         * @param imageName is the name of the drawable of the word, or null if it has none
+         * @param audioName is the name of the raw resource of the sound of the word
+         */
+        public Writer add(String defaultTranslation, String miwokTranslation, String imageName,
+                          String audioName) {
+            return add(Word.stableId(defaultTranslation, miwokTranslation), defaultTranslation,
+                    miwokTranslation, imageName, audioName);
+        }
+
+        /**
+         * Add a word with a given stable ID to the current category, for instance a word
+         * whose translations were corrected since its ID was computed.
+         */
+        public Writer add(long stableId, String defaultTranslation, String miwokTranslation,
+                          String imageName, String audioName) {
+            if (mCategories.isEmpty()) {
+                throw new IllegalStateException("startCategory must be called first");
+            }
+            if (mEntryCount == mStableIds.length) {
+                mEntries = Arrays.copyOf(mEntries, mEntries.length * 2);
+                mStableIds = Arrays.copyOf(mStableIds, mStableIds.length * 2);
+            }
+            mStableIds[mEntryCount] = stableId;
+            int base = mEntryCount * 8;
+            setReference(base, addString(defaultTranslation));
+            setReference(base + 2, addString(miwokTranslation));
+            setReference(base + 4, addString(imageName != null ? imageName : ""));
+            setReference(base + 6, addString(audioName));
+            mEntryCount++;
+            return this;
+        }
+
+        /**
+         * Return the number of words added so far.
+         */
+        public int size() {
+            return mEntryCount;
+        }
+
+        /**
+         * Write the pack to a file, replacing it if it exists. The pack is written to a
+         * temporary file next to it, synced to the disk, then renamed over the file, so a
+         * crash leaves either the old pack or the new one, and a pack mapped by
+         * {@link #open(File)} keeps reading the old content.
+         */
+        public void writeTo(File file) throws IOException {
+            File temp = new File(file.getPath() + TEMP_EXTENSION);
+            try {
+                write(temp);
+            } catch (IOException e) {
+                temp.delete();
+                throw e;
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                throw new IOException("Unable to move " + temp + " to " + file);
+            }
+        }
+
+        private void write(File file) throws IOException {
+            int categoryCount = mCategories.size();
+
+            // Write the body after an empty header, computing its checksum, then the header
+            CRC32 crc = new CRC32();
+            BufferedOutputStream buffered =
+                    new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(buffered, crc));
+            try {
+                buffered.write(new byte[HEADER_SIZE]);
+                for (int c = 0; c < categoryCount; c++) {
+                    int[] category = mCategories.get(c);
+                    int next = c + 1 < categoryCount ? mCategories.get(c + 1)[1] : mEntryCount;
+                    out.writeInt(category[0]);
+                    out.writeInt(category[1]);
+                    out.writeInt(next - category[1]);
+                    out.writeInt(category[2]);
+                    out.writeInt(category[3]);
+                }
+                for (int e = 0; e < mEntryCount; e++) {
+                    for (int i = e * 8; i < e * 8 + 8; i++) {
+                        out.writeInt(mEntries[i]);
+                    }
+                    out.writeLong(mStableIds[e]);
+                }
+                for (byte[] string : mHeap) {
+                    out.write(string);
+                }
+            } finally {
+                out.close();
+            }
+
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.writeInt(MAGIC);
+                raf.writeInt(VERSION);
+                raf.writeInt(categoryCount);
+                raf.writeInt(mEntryCount);
+                raf.writeInt(mHeapSize);
+                raf.writeInt((int) crc.getValue());
+                raf.writeInt(mDataVersion);
+                // Sync the whole file before it is renamed into place
+                raf.getFD().sync();
+            } finally {
+                raf.close();
+            }
+        }
+
+        /**
+         * Add a string to the heap unless it is already there, and return its offset
+         * and length.
+         */
+        private int[] addString(String value) {
+            int[] reference = mHeapReferences.get(value);
+            if (reference == null) {
+                byte[] bytes = value.getBytes(UTF_8);
+                reference = new int[] {mHeapSize, bytes.length};
+                mHeap.add(bytes);
+                mHeapReferences.put(value, reference);
+                mHeapSize += bytes.length;
+            }
+            return reference;
+        }
+
+        private void setReference(int index, int[] reference) {
+            mEntries[index] = reference[0];
+            mEntries[index + 1] = reference[1];
+        }
+    }
+}
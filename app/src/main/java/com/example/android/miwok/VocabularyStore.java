@@ -0,0 +1,292 @@
+package com.example.android.miwok;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * {@link VocabularyStore} holds a list of words in a few primitive arrays instead of one
+ * {@link Word} object per entry. The translations of all the words share one char pool
+ * and are located with int offsets, and the image and audio resource IDs are kept in
+ * int arrays. The {@link WordAdapter} binds its rows straight from these columns, and
+ * {@link Word} objects are only created by {@link #get(int)} for the code that needs them.
+ */
+
+public class VocabularyStore {
+
+    /** Fields of {@link #getTextStart(int, int)} and {@link #getTextEnd(int, int)} */
+    static final int FIELD_DEFAULT = 0;
+    static final int FIELD_MIWOK = 1;
+
+    /** Store with no words */
+    public static final VocabularyStore EMPTY = new Builder(0).build();
+
+    /** Characters of all the translations, one after the other */
+    private final char[] mText;
+
+    /**
+     * Offsets of the translations in {@link #mText}. The default translation of word i goes
+     * from mTextOffsets[2 * i] to mTextOffsets[2 * i + 1], and its Miwok translation from
+     * mTextOffsets[2 * i + 1] to mTextOffsets[2 * i + 2].
+     */
+    private final int[] mTextOffsets;
+
+    /** Image resource IDs of the words, {@link Word#NO_IMAGE_PROVIDED} if there is none */
+    private final int[] mImageResourceIds;
+
+    /** Audio resource IDs of the words */
+    private final int[] mAudioResourceIds;
+
+    /** Number of words in the store */
+    private final int mSize;
+
+    private VocabularyStore(char[] text, int[] textOffsets, int[] imageResourceIds,
+                            int[] audioResourceIds, int size) {
+        mText = text;
+        mTextOffsets = textOffsets;
+        mImageResourceIds = imageResourceIds;
+        mAudioResourceIds = audioResourceIds;
+        mSize = size;
+    }
+
+    /**
+     * Create a store from tables generated at build time, without copying them word by word.
+     *
+     * @param text holds the translations of all the words, one after the other
+     * @param textOffsets are the offsets of the translations in the text, 2 per word plus 1
+     * @param imageResourceIds are the image resource IDs of the words
+     * @param audioResourceIds are the audio resource IDs of the words
+     */
+    static VocabularyStore fromTables(String text, int[] textOffsets, int[] imageResourceIds,
+                                      int[] audioResourceIds) {
+        int size = audioResourceIds.length;
+        if (textOffsets.length != 2 * size + 1 || imageResourceIds.length != size ||
+                textOffsets[2 * size] != text.length()) {
+            throw new IllegalArgumentException("Inconsistent vocabulary tables");
+        }
+        return new VocabularyStore(text.toCharArray(), textOffsets, imageResourceIds,
+                audioResourceIds, size);
+    }
+
+    /**
+     * Return the number of words in the store.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Return the default translation of the word at the given position.
+     */
+    public String getDefaultTranslation(int position) {
+        checkPosition(position);
+        int start = mTextOffsets[2 * position];
+        return new String(mText, start, mTextOffsets[2 * position + 1] - start);
+    }
+
+    /**
+     * Return the Miwok translation of the word at the given position.
+     */
+    public String getMiwokTranslation(int position) {
+        checkPosition(position);
+        int start = mTextOffsets[2 * position + 1];
+        return new String(mText, start, mTextOffsets[2 * position + 2] - start);
+    }
+
+    /**
+     * Return the image resource ID of the word at the given position.
+     */
+    public int getImageResourceId(int position) {
+        checkPosition(position);
+        return mImageResourceIds[position];
+    }
+
+    /**
+     * Return the audio resource ID of the word at the given position.
+     */
+    public int getAudioResourceId(int position) {
+        checkPosition(position);
+        return mAudioResourceIds[position];
+    }
+
+    /**
+     * Return the stable ID of the word at the given position, the same as
+     * {@link Word#getStableId()} but hashed straight from the char pool, without creating the
+     * word.
+     */
+    public long getStableId(int position) {
+        checkPosition(position);
+        return Word.stableId(mText, mTextOffsets[2 * position], mTextOffsets[2 * position + 1],
+                mTextOffsets[2 * position + 2]);
+    }
+
+    /**
+     * Return a new {@link Word} object for the word at the given position. The object and
+     * its translations are allocated on each call, so the lists don't use it.
+     */
+    public Word get(int position) {
+        return new Word(getDefaultTranslation(position), getMiwokTranslation(position),
+                getImageResourceId(position), getAudioResourceId(position));
+    }
+
+    /**
+     * Return a read only {@link List} view of the store. Each call to {@link List#get(int)}
+     * creates the {@link Word} object of the position from the arrays of the store.
+     */
+    public List<Word> asList() {
+        return new WordList();
+    }
+
+    /**
+     * Return the shared char pool of the translations. It must not be modified.
+     */
+    char[] getText() {
+        return mText;
+    }
+
+    /**
+     * Return the start offset in {@link #getText()} of the default translation
+     * ({@link #FIELD_DEFAULT}) or the Miwok translation ({@link #FIELD_MIWOK}) of the word.
+     */
+    int getTextStart(int position, int field) {
+        return mTextOffsets[2 * position + field];
+    }
+
+    /**
+     * Return the end offset in {@link #getText()} of the default translation
+     * ({@link #FIELD_DEFAULT}) or the Miwok translation ({@link #FIELD_MIWOK}) of the word.
+     */
+    int getTextEnd(int position, int field) {
+        return mTextOffsets[2 * position + field + 1];
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= mSize) {
+            throw new IndexOutOfBoundsException("Position " + position + ", size " + mSize);
+        }
+    }
+
+    /**
+     * Read only list of {@link Word} objects backed by the store
+     */
+    private class WordList extends AbstractList<Word> implements RandomAccess {
+        @Override
+        public Word get(int position) {
+            return VocabularyStore.this.get(position);
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+    }
+
+    /**
+     * {@link Builder} collects the words of a {@link VocabularyStore}.
+     */
+    public static class Builder {
+
+        private char[] mText;
+        private int mTextLength;
+        private int[] mTextOffsets;
+        private int[] mImageResourceIds;
+        private int[] mAudioResourceIds;
+        private int mSize;
+
+        /**
+         * Create a new {@link Builder} object
+         */
+        public Builder() {
+            this(16);
+        }
+
+        /**
+         * Create a new {@link Builder} object
+         *
+         * @param expectedSize is the number of words expected, used to size the arrays
+         */
+        public Builder(int expectedSize) {
+            int capacity = Math.max(expectedSize, 1);
+            mText = new char[capacity * 16];
+            mTextOffsets = new int[2 * capacity + 1];
+            mImageResourceIds = new int[capacity];
+            mAudioResourceIds = new int[capacity];
+        }
+
+        /**
+         * Add a word that has no image.
+         *
+         * @param defaultTranslation is the word in a language that the user is already
+         *                           familiar with (such as English)
+         * @param miwokTranslation is the word in the Miwok language
+         * @param audioResourceId is the resource ID for the audio file associated with the word
+         */
+        public Builder add(String defaultTranslation, String miwokTranslation,
+                           int audioResourceId) {
+            return add(defaultTranslation, miwokTranslation, Word.NO_IMAGE_PROVIDED,
+                    audioResourceId);
+        }
+
+        /**
+         * Add a word.
+         *
+         * @param defaultTranslation is the word in a language that the user is already
+         *                           familiar with (such as English)
+         * @param miwokTranslation is the word in the Miwok language
+         * @param imageResourceId is the drawable resource ID for the image of the word
+         * @param audioResourceId is the resource ID for the audio file associated with the word
+         */
+        public Builder add(String defaultTranslation, String miwokTranslation,
+                           int imageResourceId, int audioResourceId) {
+            if (mSize == mImageResourceIds.length) {
+                int capacity = mSize * 2;
+                mTextOffsets = Arrays.copyOf(mTextOffsets, 2 * capacity + 1);
+                mImageResourceIds = Arrays.copyOf(mImageResourceIds, capacity);
+                mAudioResourceIds = Arrays.copyOf(mAudioResourceIds, capacity);
+            }
+            appendText(defaultTranslation);
+            mTextOffsets[2 * mSize + 1] = mTextLength;
+            appendText(miwokTranslation);
+            mTextOffsets[2 * mSize + 2] = mTextLength;
+            mImageResourceIds[mSize] = imageResourceId;
+            mAudioResourceIds[mSize] = audioResourceId;
+            mSize++;
+            return this;
+        }
+
+        /**
+         * Add a word.
+         */
+        public Builder add(Word word) {
+            return add(word.getDefaultTranslation(), word.getMiwokTranslation(),
+                    word.getImageResourceId(), word.getAudioResourceID());
+        }
+
+        /**
+         * Return the number of words added so far.
+         */
+        public int size() {
+            return mSize;
+        }
+
+        /**
+         * Create the {@link VocabularyStore} with the words added so far.
+         */
+        public VocabularyStore build() {
+            return new VocabularyStore(Arrays.copyOf(mText, mTextLength),
+                    Arrays.copyOf(mTextOffsets, 2 * mSize + 1),
+                    Arrays.copyOf(mImageResourceIds, mSize),
+                    Arrays.copyOf(mAudioResourceIds, mSize), mSize);
+        }
+
+        private void appendText(String text) {
+            int length = text.length();
+            if (mTextLength + length > mText.length) {
+                mText = Arrays.copyOf(mText, Math.max(mText.length * 2, mTextLength + length));
+            }
+            text.getChars(0, length, mText, mTextLength);
+            mTextLength += length;
+        }
+    }
+}
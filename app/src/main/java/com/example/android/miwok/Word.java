@@ -24,7 +24,7 @@ public class Word {
     private int mImageResourceId = NO_IMAGE_PROVIDED;
 
     /** Constant value that represents no image was provided for this work */
-    private static int NO_IMAGE_PROVIDED = -1;
+    static final int NO_IMAGE_PROVIDED = -1;
 
     /**
      * Create a new Word object. (constructor)
@@ -95,6 +95,56 @@ public class Word {
 
     public int getAudioResourceID () { return mAudioResourceId; }
 
+    /**
+     * Returns an id that identifies the word across app launches and builds. (method)
+     * It is computed from the translations only, because resource IDs can change
+     * between builds.
+     */
+
+    public long getStableId() {
+        return stableId(mDefaultTranslation, mMiwokTranslation);
+    }
+
+    /**
+     * Returns the stable id of a word with the given translations, without creating it.
+     */
+
+    static long stableId(String defaultTranslation, String miwokTranslation) {
+        // 64 bit FNV-1a hash of both translations
+        long hash = 0xcbf29ce484222325L;
+        hash = hash(hash, defaultTranslation);
+        // Hash a zero char between the translations, so "ab" + "c" differs from "a" + "bc"
+        hash *= 0x100000001b3L;
+        return hash(hash, miwokTranslation);
+    }
+
+    /**
+     * Returns the stable id of a word whose translations are slices of a char array, the
+     * default translation from defaultStart to miwokStart and the Miwok translation from
+     * miwokStart to miwokEnd. It is the same id as the one of the translations as Strings.
+     */
+
+    static long stableId(char[] text, int defaultStart, int miwokStart, int miwokEnd) {
+        long hash = 0xcbf29ce484222325L;
+        hash = hash(hash, text, defaultStart, miwokStart);
+        hash *= 0x100000001b3L;
+        return hash(hash, text, miwokStart, miwokEnd);
+    }
+
+    private static long hash(long hash, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, char[] text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ text[i]) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
     /**
      * @return the string representation of the (@link word) object.
      */
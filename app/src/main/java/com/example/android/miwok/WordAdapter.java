@@ -1,44 +1,171 @@
 package com.example.android.miwok;
 
 import android.app.Activity;
+import android.content.Context;
+import android.graphics.Bitmap;
 import android.support.v4.content.ContextCompat;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.BaseAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import java.util.ArrayList;
+import java.util.List;
 
 /**
- * {@link WordAdapter} is an {@link ArrayAdapter} that can provide the layout for each list
- * based on a data source, which is a list of {@link Word} object.
+ * {@link WordAdapter} is a {@link BaseAdapter} that can provide the layout for each list
+ * based on a data source, which is a {@link VocabularyStore}.
+ * The rows are bound straight from the columns of the store: the translations are set on
+ * the TextViews as slices of its shared char pool, so binding a row doesn't create any
+ * {@link Word} or String.
+ * It used to be an ArrayAdapter of {@link Word} objects. The store can't be changed, so
+ * add() and clear() are gone: a list of other words gets a new adapter. The lookups of the
+ * ArrayAdapter, {@link #getContext()} and {@link #getPosition(Word)}, are still available.
  */
 
-public class WordAdapter extends ArrayAdapter<Word> {
+public class WordAdapter extends BaseAdapter {
 
-    /** Resource ID for the background color for this list of words */
-    private int mColorResourceId;
+    /**
+     * {@link OnBindListener} is told how long each row took to be bound.
+     */
+    public interface OnBindListener {
+
+        /**
+         * Called after a row was bound by {@link #getView(int, View, ViewGroup)}.
+         *
+         * @param bindNanos is the time getView took, in nanoseconds
+         */
+        void onBind(long bindNanos);
+    }
+
+    /** Context used to inflate the rows */
+    private final Activity mContext;
+
+    /** Words displayed by the list */
+    private final VocabularyStore mWords;
+
+    /** Background color for this list of words, resolved once from its resource ID */
+    private int mColor;
+
+    /** Decodes the icons of the words at the size of the rows */
+    private IconCache mIconCache;
+
+    /** Whether the rows are drawn by a single {@link WordItemView} instead of list_item.xml */
+    private boolean mFlatRows;
+
+    /** Told how long each row took to be bound, may be null */
+    private OnBindListener mOnBindListener;
+
+    /**
+     * Create a new {@link WordAdapter} object. This is our own custom constructor (it doesn't
+     * mirror a superclass constructor): the context is used to inflate the layout file, and
+     * the store holds the words we want to populate into the list.
+     *
+     * @param context The current context. Used to inflate the layout file.
+     * @param words The words to display in a list.
+     * @param colorResourceId is the resource ID for the background color for this list of words
+     */
+
+    public WordAdapter (Activity context, VocabularyStore words, int colorResourceId) {
+        mContext = context;
+        mWords = words;
+        // Find the color that the resource ID map to, once for the whole list
+        mColor = ContextCompat.getColor(context, colorResourceId);
+        mIconCache = IconCache.getInstance(context);
+    }
 
     /**
-     * This is our own custom constructor (it doesn't mirror a superclass constructor).
-     * The context is used to inflate the layout file, and the list is the data we want
-     * to populate into the lists
      * Create a new {@link WordAdapter} object
      *
      * @param context The current context. Used to inflate the layout file.
-     * @param word A List of AndroidFlavor objects to display in a list.
-     * @param colorResourceId is the resource ID for the background color for this ist of words
+     * @param words The words to display in a list.
+     * @param colorResourceId is the resource ID for the background color for this list of words
+     * @param flatRows is true to draw each row with a single {@link WordItemView} instead of
+     *                 inflating the list_item.xml layout
      */
 
-    public WordAdapter (Activity context, ArrayList<Word> word, int colorResourceId) {
-        // Here, we initialize the ArrayAdapter's internal storage for the context and the list.
-        // the second argument is used when the ArrayAdapter is populating a single TextView.
-        // Because this is a custom adapter for two TextViews, the adapter is not
-        // going to use this second argument, so it can be any value. Here, we used 0.
-        super(context, 0 , word);
-        mColorResourceId = colorResourceId;
+    public WordAdapter (Activity context, VocabularyStore words, int colorResourceId,
+                        boolean flatRows) {
+        this(context, words, colorResourceId);
+        mFlatRows = flatRows;
+    }
+
+    /**
+     * Create a new {@link WordAdapter} object from a list of {@link Word} objects, which are
+     * copied into a {@link VocabularyStore}.
+     *
+     * @param context The current context. Used to inflate the layout file.
+     * @param word A List of Word objects to display in a list.
+     * @param colorResourceId is the resource ID for the background color for this list of words
+     */
+
+    public WordAdapter (Activity context, List<Word> word, int colorResourceId) {
+        this(context, toStore(word), colorResourceId);
+    }
+
+    private static VocabularyStore toStore(List<Word> words) {
+        VocabularyStore.Builder builder = new VocabularyStore.Builder(words.size());
+        for (Word word : words) {
+            builder.add(word);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Set the listener told how long each row takes to be bound, or null for none.
+     */
+    public void setOnBindListener(OnBindListener listener) {
+        mOnBindListener = listener;
+    }
+
+    @Override
+    public int getCount() {
+        return mWords.size();
+    }
+
+    /**
+     * Return the {@link Word} at the position. It is created on each call, the rows don't
+     * use it.
+     */
+    @Override
+    public Word getItem(int position) {
+        return mWords.get(position);
+    }
+
+    /**
+     * Return the position of the word with the same translations, or -1 if it isn't in the
+     * list, like ArrayAdapter.getPosition().
+     */
+    public int getPosition(Word word) {
+        for (int position = 0; position < mWords.size(); position++) {
+            if (mWords.getMiwokTranslation(position).equals(word.getMiwokTranslation()) &&
+                    mWords.getDefaultTranslation(position).equals(
+                            word.getDefaultTranslation())) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return the context the rows are inflated with, like ArrayAdapter.getContext().
+     */
+    public Context getContext() {
+        return mContext;
+    }
+
+    /**
+     * Return the stable ID of the word, see {@link Word#getStableId()}.
+     */
+    @Override
+    public long getItemId(int position) {
+        return mWords.getStableId(position);
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
     }
 
     /**
@@ -53,47 +180,103 @@ public class WordAdapter extends ArrayAdapter<Word> {
 
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
+        if (mOnBindListener == null) {
+            return bindView(position, convertView, parent);
+        }
+        long start = System.nanoTime();
+        View view = bindView(position, convertView, parent);
+        mOnBindListener.onBind(System.nanoTime() - start);
+        return view;
+    }
+
+    /**
+     * Provides the view of a row, with the word at the position.
+     */
+    private View bindView(int position, View convertView, ViewGroup parent) {
+        if (mFlatRows) {
+            return getFlatView(position, convertView);
+        }
+
         // Check if the existing view is being reused, otherwise inflate the view
         View listItemView = convertView;
+        ViewHolder holder;
         if(listItemView == null) {
-            listItemView = LayoutInflater.from(getContext()).inflate(
+            listItemView = LayoutInflater.from(mContext).inflate(
                     R.layout.list_item, parent, false);
+            // Find the views of the list_item.xml layout only once, and keep them with the view
+            holder = new ViewHolder(listItemView);
+            listItemView.setTag(holder);
+            // Set the theme color for the list view, it is the same for every row
+            holder.mTextContainer.setBackgroundColor(mColor);
+        } else {
+            holder = (ViewHolder) listItemView.getTag();
         }
 
-        // Get {@link Word} object located at this position in the list
-        Word currentWord = getItem(position);
-
-        // Find the TextView in the list_item.xml layout with the id version name
-        TextView defaultTextView = (TextView) listItemView.findViewById(R.id.default_text_view);
-        // Get the version name from the current Word object and set this text on the same TextView
-        defaultTextView.setText(currentWord.getDefaultTranslation());
-
-        // Find the TextView in the list_item.xml layout with the id version name
-        TextView miwokTextView = (TextView) listItemView.findViewById(R.id.miwok_text_view);
-        // Get the version name from the current Word object and set this text on the same TextView
-        miwokTextView.setText(currentWord.getMiwokTranslation());
+        // Set the translations of the word at this position on the TextViews, as slices of
+        // the char pool of the store
+        char[] text = mWords.getText();
+        int defaultStart = mWords.getTextStart(position, VocabularyStore.FIELD_DEFAULT);
+        holder.mDefaultTextView.setText(text, defaultStart,
+                mWords.getTextEnd(position, VocabularyStore.FIELD_DEFAULT) - defaultStart);
+        int miwokStart = mWords.getTextStart(position, VocabularyStore.FIELD_MIWOK);
+        holder.mMiwokTextView.setText(text, miwokStart,
+                mWords.getTextEnd(position, VocabularyStore.FIELD_MIWOK) - miwokStart);
 
-        // Find the ImageView in the list_item.xml layout with the id version name
-        ImageView iconView = (ImageView) listItemView.findViewById(R.id.icone_view);
         // Check if an ImageView is provided for this word or not
-        if (currentWord.hasImage()) {
-            // If an image is available, display the provided image based on resource id
-            iconView.setImageResource(currentWord.getImageResourceId());
+        int imageResourceId = mWords.getImageResourceId(position);
+        if (imageResourceId != Word.NO_IMAGE_PROVIDED) {
+            // If an image is available, display the provided image based on resource id.
+            // It is decoded in the background if it isn't cached yet, so clear the icon of
+            // the recycled row until it is ready.
+            if (!mIconCache.load(holder.mIconView, imageResourceId, holder)) {
+                holder.mIconView.setImageDrawable(null);
+            }
             // Make sure the image is visible
-            iconView.setVisibility(View.VISIBLE);
+            holder.mIconView.setVisibility(View.VISIBLE);
         } else {
             // Otherwise hide the ImageView (set visibility to GONE
-            iconView.setVisibility(View.GONE);
+            mIconCache.cancel(holder.mIconView);
+            holder.mIconView.setVisibility(View.GONE);
         }
 
-        // Set the theme color for the list view
-        View textContainer = listItemView.findViewById(R.id.text_container);
-        // Find the color that the resource ID map to
-        int color = ContextCompat.getColor(getContext(), mColorResourceId);
-        // Set the background color of the container View
-        textContainer.setBackgroundColor(color);
-
         // Return the whole list item layout so that it can be shown in the LIstView
         return listItemView;
     }
+
+    /**
+     * Provides a {@link WordItemView} for the word, reusing the recycled one if any.
+     */
+    private View getFlatView(int position, View convertView) {
+        WordItemView itemView;
+        if (convertView instanceof WordItemView) {
+            itemView = (WordItemView) convertView;
+        } else {
+            itemView = new WordItemView(mContext);
+            itemView.setCategoryColor(mColor);
+        }
+        itemView.setWord(mWords, position);
+        return itemView;
+    }
+
+    /**
+     * Keeps the views of a list item, so they are found only once per recycled view
+     */
+    private static class ViewHolder implements IconCache.Callback {
+        final TextView mDefaultTextView;
+        final TextView mMiwokTextView;
+        final ImageView mIconView;
+        final View mTextContainer;
+
+        ViewHolder(View listItemView) {
+            mDefaultTextView = (TextView) listItemView.findViewById(R.id.default_text_view);
+            mMiwokTextView = (TextView) listItemView.findViewById(R.id.miwok_text_view);
+            mIconView = (ImageView) listItemView.findViewById(R.id.icone_view);
+            mTextContainer = listItemView.findViewById(R.id.text_container);
+        }
+
+        @Override
+        public void onIconReady(Bitmap icon) {
+            mIconView.setImageBitmap(icon);
+        }
+    }
 }
@@ -0,0 +1,219 @@
+package com.example.android.miwok;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.support.v4.content.ContextCompat;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.view.View;
+
+import java.nio.CharBuffer;
+
+/**
+ * {@link WordItemView} draws a whole word row in one view: the icon, the category colored
+ * background, the Miwok and default translations and the play icon. It looks like the
+ * list_item.xml layout, but has no child views, so a row is measured, laid out and drawn
+ * in a single pass. The text layouts are cached and only built again when the word or the
+ * width of the row changes, and the icon comes from the {@link IconCache}.
+ */
+
+public class WordItemView extends View {
+
+    /** Size of the translations, same as ?android:textAppearanceMedium */
+    private static final float TEXT_SIZE_SP = 18;
+
+    /** Space on the left of the translations, in dp */
+    private static final float TEXT_PADDING_DP = 16;
+
+    /** Space on the right of the play icon, in dp */
+    private static final float PLAY_MARGIN_DP = 16;
+
+    /** Height of the row, also the size of the icon */
+    private final int mHeight;
+
+    /** Size of the play icon */
+    private final int mPlayIconSize;
+
+    private final int mTextPadding;
+    private final int mPlayMargin;
+
+    private final TextPaint mMiwokPaint;
+    private final TextPaint mDefaultPaint;
+    private final Paint mBackgroundPaint = new Paint();
+    private final Drawable mPlayIcon;
+
+    /** Background color of the row behind the icon */
+    private final int mTanColor;
+
+    /** Decodes the icons of the words at the size of the rows */
+    private final IconCache mIconCache;
+
+    /** Whether the word has an icon, the translations are then drawn on its right */
+    private boolean mHasIcon;
+
+    /** Decoded icon of the word, or null if it has none or it isn't decoded yet */
+    private Bitmap mIcon;
+
+    /** Where the icon is drawn */
+    private final Rect mIconBounds = new Rect();
+
+    private final Paint mIconPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    /** Receives the icon of the word once it is decoded */
+    private final IconCache.Callback mIconCallback = new IconCache.Callback() {
+        @Override
+        public void onIconReady(Bitmap icon) {
+            mIcon = icon;
+            invalidate();
+        }
+    };
+
+    private CharSequence mMiwokText = "";
+    private CharSequence mDefaultText = "";
+
+    /** Cached layouts of the translations, null when they must be built again */
+    private Layout mMiwokLayout;
+    private Layout mDefaultLayout;
+
+    /** Width the cached layouts were built for */
+    private int mLayoutWidth = -1;
+
+    public WordItemView(Context context) {
+        this(context, null);
+    }
+
+    public WordItemView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        float density = getResources().getDisplayMetrics().density;
+        float scaledDensity = getResources().getDisplayMetrics().scaledDensity;
+        mHeight = getResources().getDimensionPixelSize(R.dimen.list_item_height);
+        mPlayIconSize = getResources().getDimensionPixelSize(R.dimen.ic_height);
+        mTextPadding = Math.round(TEXT_PADDING_DP * density);
+        mPlayMargin = Math.round(PLAY_MARGIN_DP * density);
+
+        mMiwokPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        mMiwokPaint.setColor(Color.WHITE);
+        mMiwokPaint.setTextSize(TEXT_SIZE_SP * scaledDensity);
+        mMiwokPaint.setTypeface(Typeface.DEFAULT_BOLD);
+
+        mDefaultPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        mDefaultPaint.setColor(Color.WHITE);
+        mDefaultPaint.setTextSize(TEXT_SIZE_SP * scaledDensity);
+
+        mTanColor = ContextCompat.getColor(context, R.color.tan_background);
+        mPlayIcon = ContextCompat.getDrawable(context, R.drawable.ic_play_arrow_white_24dp);
+        mIconCache = IconCache.getInstance(context);
+        mIconBounds.set(0, 0, mHeight, mHeight);
+    }
+
+    /**
+     * Set the background color of the translations.
+     *
+     * @param color is the color itself, not its resource ID
+     */
+    public void setCategoryColor(int color) {
+        mBackgroundPaint.setColor(color);
+        invalidate();
+    }
+
+    /**
+     * Display a word of a store in the row. The translations are read as slices of the char
+     * pool of the store, without copying them.
+     *
+     * @param words is the store holding the word
+     * @param position is the position of the word in the store
+     */
+    public void setWord(VocabularyStore words, int position) {
+        char[] text = words.getText();
+        int miwokStart = words.getTextStart(position, VocabularyStore.FIELD_MIWOK);
+        mMiwokText = CharBuffer.wrap(text, miwokStart,
+                words.getTextEnd(position, VocabularyStore.FIELD_MIWOK) - miwokStart);
+        int defaultStart = words.getTextStart(position, VocabularyStore.FIELD_DEFAULT);
+        mDefaultText = CharBuffer.wrap(text, defaultStart,
+                words.getTextEnd(position, VocabularyStore.FIELD_DEFAULT) - defaultStart);
+        int imageResourceId = words.getImageResourceId(position);
+        mHasIcon = imageResourceId != Word.NO_IMAGE_PROVIDED;
+        mIcon = null;
+        if (mHasIcon) {
+            // Draws the icon right away when it is cached, or later once it is decoded
+            mIconCache.load(this, imageResourceId, mIconCallback);
+        } else {
+            mIconCache.cancel(this);
+        }
+        mMiwokLayout = null;
+        mDefaultLayout = null;
+        setContentDescription(mMiwokText + ", " + mDefaultText);
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        setMeasuredDimension(MeasureSpec.getSize(widthMeasureSpec), mHeight);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        int width = getWidth();
+        int textLeft = mHasIcon ? mHeight : 0;
+
+        // Icon on the tan background, then the category colored text container
+        if (mHasIcon) {
+            canvas.drawColor(mTanColor);
+            if (mIcon != null) {
+                canvas.drawBitmap(mIcon, null, mIconBounds, mIconPaint);
+            }
+        }
+        canvas.drawRect(textLeft, 0, width, mHeight, mBackgroundPaint);
+
+        // Play icon, centered vertically on the right
+        int playLeft = width - mPlayMargin - mPlayIconSize;
+        int playTop = (mHeight - mPlayIconSize) / 2;
+        mPlayIcon.setBounds(playLeft, playTop, playLeft + mPlayIconSize, playTop + mPlayIconSize);
+        mPlayIcon.draw(canvas);
+
+        // Translations: the Miwok one at the bottom of the upper half of the row,
+        // the default one at the top of the lower half
+        int textWidth = Math.max(0, width - textLeft - mTextPadding);
+        buildLayouts(textWidth);
+        int half = mHeight / 2;
+        canvas.save();
+        canvas.translate(textLeft + mTextPadding, half - mMiwokLayout.getHeight());
+        mMiwokLayout.draw(canvas);
+        canvas.restore();
+        canvas.save();
+        canvas.translate(textLeft + mTextPadding, half);
+        mDefaultLayout.draw(canvas);
+        canvas.restore();
+    }
+
+    /**
+     * Build the text layouts, unless the cached ones fit the width.
+     */
+    private void buildLayouts(int width) {
+        if (width != mLayoutWidth) {
+            mMiwokLayout = null;
+            mDefaultLayout = null;
+            mLayoutWidth = width;
+        }
+        if (mMiwokLayout == null) {
+            mMiwokLayout = singleLine(mMiwokText, mMiwokPaint, width);
+        }
+        if (mDefaultLayout == null) {
+            mDefaultLayout = singleLine(mDefaultText, mDefaultPaint, width);
+        }
+    }
+
+    private static Layout singleLine(CharSequence text, TextPaint paint, int width) {
+        CharSequence line = TextUtils.ellipsize(text, paint, width, TextUtils.TruncateAt.END);
+        return new StaticLayout(line, paint, width, Layout.Alignment.ALIGN_NORMAL, 1f, 0f, false);
+    }
+}
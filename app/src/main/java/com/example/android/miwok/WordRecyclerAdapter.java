@@ -0,0 +1,221 @@
+package com.example.android.miwok;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.v4.content.ContextCompat;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+/**
+ * {@link WordRecyclerAdapter} is a {@link RecyclerView.Adapter} that provides the layout for
+ * each word of a list, like the {@link WordAdapter} does for a ListView.
+ * The views of a row are found once when the row is created and kept in its view holder,
+ * the category color is resolved once for the whole list, and the rows are bound straight
+ * from the columns of the {@link VocabularyStore}. The words have stable IDs, so a new
+ * store of words is applied with a computed diff instead of rebinding every row.
+ */
+
+public class WordRecyclerAdapter
+        extends RecyclerView.Adapter<WordRecyclerAdapter.WordViewHolder> {
+
+    /**
+     * Listener triggered when the user taps a word
+     */
+    public interface OnWordClickListener {
+
+        /**
+         * Called when the user taps the word at the given position of the store.
+         */
+        void onWordClick(VocabularyStore words, int position);
+    }
+
+    /** Used to inflate the layout of the rows */
+    private final LayoutInflater mInflater;
+
+    /** Background color for this list of words, resolved once */
+    private final int mColor;
+
+    /** Decodes the icons of the words at the size of the rows */
+    private final IconCache mIconCache;
+
+    /** Words displayed by the list */
+    private VocabularyStore mWords;
+
+    /** Listener triggered when the user taps a word, or null */
+    private OnWordClickListener mOnWordClickListener;
+
+    /** Told how long each row took to be bound, may be null */
+    private WordAdapter.OnBindListener mOnBindListener;
+
+    /**
+     * Create a new {@link WordRecyclerAdapter} object
+     *
+     * @param context The current context. Used to inflate the layout file.
+     * @param words The words to display in a list.
+     * @param colorResourceId is the resource ID for the background color for this list of words
+     */
+    public WordRecyclerAdapter(Context context, VocabularyStore words, int colorResourceId) {
+        mInflater = LayoutInflater.from(context);
+        mColor = ContextCompat.getColor(context, colorResourceId);
+        mIconCache = IconCache.getInstance(context);
+        mWords = words;
+        setHasStableIds(true);
+    }
+
+    /**
+     * Set the listener triggered when the user taps a word.
+     */
+    public void setOnWordClickListener(OnWordClickListener listener) {
+        mOnWordClickListener = listener;
+    }
+
+    /**
+     * Set the listener told how long each row takes to be bound, or null for none.
+     */
+    public void setOnBindListener(WordAdapter.OnBindListener listener) {
+        mOnBindListener = listener;
+    }
+
+    /**
+     * Return the words displayed by the list.
+     */
+    public VocabularyStore getWords() {
+        return mWords;
+    }
+
+    /**
+     * Replace the displayed words. Only the rows of the words that were added, removed,
+     * moved or changed are updated.
+     *
+     * @param words is the new store of words to display
+     */
+    public void setWords(final VocabularyStore words) {
+        if (words == mWords) {
+            return;
+        }
+        final VocabularyStore oldWords = mWords;
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldWords.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return words.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                return oldWords.getStableId(oldPosition) == words.getStableId(newPosition);
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                // The translations are part of the stable ID, so only the resources can differ
+                return oldWords.getImageResourceId(oldPosition) ==
+                        words.getImageResourceId(newPosition) &&
+                        oldWords.getAudioResourceId(oldPosition) ==
+                                words.getAudioResourceId(newPosition);
+            }
+        });
+        mWords = words;
+        diff.dispatchUpdatesTo(this);
+    }
+
+    @Override
+    public WordViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View itemView = mInflater.inflate(R.layout.list_item, parent, false);
+        WordViewHolder holder = new WordViewHolder(itemView);
+        // All the rows of the list have the same color, so set it once per row
+        holder.mTextContainer.setBackgroundColor(mColor);
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(WordViewHolder holder, int position) {
+        if (mOnBindListener == null) {
+            holder.bind(position);
+            return;
+        }
+        long start = System.nanoTime();
+        holder.bind(position);
+        mOnBindListener.onBind(System.nanoTime() - start);
+    }
+
+    @Override
+    public int getItemCount() {
+        return mWords.size();
+    }
+
+    /**
+     * Return the stable ID of the word, see {@link Word#getStableId()}.
+     */
+    @Override
+    public long getItemId(int position) {
+        return mWords.getStableId(position);
+    }
+
+    /**
+     * {@link WordViewHolder} keeps the views of a row, so they are found only once.
+     */
+    class WordViewHolder extends RecyclerView.ViewHolder
+            implements View.OnClickListener, IconCache.Callback {
+
+        final TextView mDefaultTextView;
+        final TextView mMiwokTextView;
+        final ImageView mIconView;
+        final View mTextContainer;
+
+        WordViewHolder(View itemView) {
+            super(itemView);
+            mDefaultTextView = (TextView) itemView.findViewById(R.id.default_text_view);
+            mMiwokTextView = (TextView) itemView.findViewById(R.id.miwok_text_view);
+            mIconView = (ImageView) itemView.findViewById(R.id.icone_view);
+            mTextContainer = itemView.findViewById(R.id.text_container);
+            itemView.setOnClickListener(this);
+        }
+
+        void bind(int position) {
+            // Set the translations on the TextViews as slices of the char pool of the store
+            char[] text = mWords.getText();
+            int defaultStart = mWords.getTextStart(position, VocabularyStore.FIELD_DEFAULT);
+            mDefaultTextView.setText(text, defaultStart,
+                    mWords.getTextEnd(position, VocabularyStore.FIELD_DEFAULT) - defaultStart);
+            int miwokStart = mWords.getTextStart(position, VocabularyStore.FIELD_MIWOK);
+            mMiwokTextView.setText(text, miwokStart,
+                    mWords.getTextEnd(position, VocabularyStore.FIELD_MIWOK) - miwokStart);
+
+            // Check if an image is provided for this word or not
+            int imageResourceId = mWords.getImageResourceId(position);
+            if (imageResourceId != Word.NO_IMAGE_PROVIDED) {
+                // Clear the icon of the recycled row until the icon of this word is decoded
+                if (!mIconCache.load(mIconView, imageResourceId, this)) {
+                    mIconView.setImageDrawable(null);
+                }
+                mIconView.setVisibility(View.VISIBLE);
+            } else {
+                mIconCache.cancel(mIconView);
+                mIconView.setVisibility(View.GONE);
+            }
+        }
+
+        @Override
+        public void onIconReady(Bitmap icon) {
+            mIconView.setImageBitmap(icon);
+        }
+
+        @Override
+        public void onClick(View v) {
+            int position = getAdapterPosition();
+            if (mOnWordClickListener != null && position != RecyclerView.NO_POSITION) {
+                mOnWordClickListener.onWordClick(mWords, position);
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.android.miwok;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link AudioBundleIndex} against a bundle packed from the sound files of the app,
+ * in the format written by the packAudioBundle task of audio.gradle.
+ */
+public class AudioBundleIndexTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    /** Sound files of the app, sorted by name like in the bundle */
+    private File[] mClips;
+
+    @Before
+    public void setUp() {
+        File rawDir = new File("src/main/res/raw");
+        if (!rawDir.isDirectory()) {
+            // Run from the root of the project instead of the app module
+            rawDir = new File("app/src/main/res/raw");
+        }
+        mClips = rawDir.listFiles();
+        assertTrue("No sound files in " + rawDir.getAbsolutePath(),
+                mClips != null && mClips.length > 0);
+        Arrays.sort(mClips);
+    }
+
+    @Test
+    public void readsEveryClipOfTheApp() throws IOException {
+        File bundle = pack(mClips, 0);
+        RandomAccessFile file = new RandomAccessFile(bundle, "r");
+        try {
+            AudioBundleIndex index = AudioBundleIndex.read(file.getChannel(), 0, file.length());
+
+            assertEquals(mClips.length, index.getClipCount());
+            for (int i = 0; i < mClips.length; i++) {
+                String name = nameOf(mClips[i]);
+                assertEquals(i, index.indexOf(name));
+                assertEquals(name, index.getName(i));
+                assertEquals(durationOf(i), index.getDurationMs(i));
+                assertEquals(i, index.getTrimStartMs(i));
+                assertEquals(2 * i, index.getTrimEndMs(i));
+                assertEquals(1000 + i, index.getPeak(i));
+
+                // The clip is served as a range of the bundle, it must hold the sound file
+                byte[] expected = Files.readAllBytes(mClips[i].toPath());
+                assertEquals(expected.length, index.getLength(i));
+                ByteBuffer data = ByteBuffer.allocate(index.getLength(i));
+                file.getChannel().read(data, index.getOffset(i));
+                assertArrayEquals(name, expected, data.array());
+            }
+            assertEquals(-1, index.indexOf("not_a_clip"));
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    public void offsetsAreAbsoluteWhenTheBundleIsInsideAFile() throws IOException {
+        // Assets are served from inside the apk, at an offset of a larger file
+        int start = 4321;
+        File bundle = pack(mClips, start);
+        RandomAccessFile file = new RandomAccessFile(bundle, "r");
+        try {
+            AudioBundleIndex index = AudioBundleIndex.read(file.getChannel(), start,
+                    file.length() - start);
+            int last = mClips.length - 1;
+            byte[] expected = Files.readAllBytes(mClips[last].toPath());
+            ByteBuffer data = ByteBuffer.allocate(index.getLength(last));
+            file.getChannel().read(data, index.getOffset(last));
+            assertArrayEquals(expected, data.array());
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    public void rejectsAFileThatIsNotABundle() throws IOException {
+        File file = mFolder.newFile();
+        Files.write(file.toPath(), new byte[64]);
+        assertUnreadable(file, file.length());
+    }
+
+    @Test
+    public void rejectsATruncatedIndex() throws IOException {
+        File bundle = pack(mClips, 0);
+        // Keep the header and a part of the first entry of the index only
+        assertUnreadable(bundle, AudioBundleIndex.HEADER_SIZE + 6);
+    }
+
+    @Test
+    public void rejectsAClipPastTheEndOfTheBundle() throws IOException {
+        File bundle = pack(mClips, 0);
+        // The bundle ends in the middle of the data of the last clip
+        assertUnreadable(bundle, bundle.length() - 1);
+    }
+
+    @Test
+    public void rejectsTrimsOverflowingTheDuration() throws IOException {
+        File bundle = pack(mClips, 0);
+        // Both trims are positive, but their sum overflows an int
+        RandomAccessFile file = new RandomAccessFile(bundle, "rw");
+        try {
+            file.seek(AudioBundleIndex.HEADER_SIZE + 2 +
+                    nameOf(mClips[0]).getBytes("UTF-8").length + 12);
+            file.writeInt(Integer.MAX_VALUE);
+            file.writeInt(Integer.MAX_VALUE);
+        } finally {
+            file.close();
+        }
+        assertUnreadable(bundle, bundle.length());
+    }
+
+    private void assertUnreadable(File bundle, long length) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(bundle, "r");
+        try {
+            AudioBundleIndex.read(file.getChannel(), 0, length);
+            fail("Read a broken bundle");
+        } catch (IOException expected) {
+            // The bundle is rejected
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Pack the clips like packAudioBundle does, after start bytes of padding. Each clip gets
+     * made up metadata derived from its index.
+     */
+    private File pack(File[] clips, int start) throws IOException {
+        List<String> names = new ArrayList<>();
+        int indexSize = AudioBundleIndex.HEADER_SIZE;
+        for (File clip : clips) {
+            String name = nameOf(clip);
+            names.add(name);
+            indexSize += 2 + name.getBytes("UTF-8").length + 24;
+        }
+        File bundle = mFolder.newFile();
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(bundle));
+        try {
+            out.write(new byte[start]);
+            out.writeInt(AudioBundleIndex.MAGIC);
+            out.writeInt(AudioBundleIndex.VERSION);
+            out.writeInt(clips.length);
+            int offset = indexSize;
+            for (int i = 0; i < clips.length; i++) {
+                byte[] name = names.get(i).getBytes("UTF-8");
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeInt(offset);
+                out.writeInt((int) clips[i].length());
+                out.writeInt(durationOf(i));
+                out.writeInt(i);
+                out.writeInt(2 * i);
+                out.writeInt(1000 + i);
+                offset += (int) clips[i].length();
+            }
+            for (File clip : clips) {
+                out.write(Files.readAllBytes(clip.toPath()));
+            }
+        } finally {
+            out.close();
+        }
+        return bundle;
+    }
+
+    private static int durationOf(int index) {
+        return 500 + 10 * index;
+    }
+
+    private static String nameOf(File clip) {
+        String name = clip.getName();
+        return name.substring(0, name.lastIndexOf('.'));
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.android.miwok;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the clip cache of {@link AudioEngine}, played through a fake {@link AudioSink}.
+ */
+public class AudioEngineTest {
+
+    private static final int MAX_CLIPS = 3;
+
+    private FakeSink mSink;
+    private AudioEngine mEngine;
+
+    @Before
+    public void setUp() {
+        mSink = new FakeSink();
+        mEngine = new AudioEngine(mSink, MAX_CLIPS);
+    }
+
+    @Test
+    public void playLoadsTheClipOnce() {
+        assertTrue(mEngine.play(1));
+        assertTrue(mEngine.play(1));
+
+        assertEquals(1, mSink.mLoadCount);
+        assertEquals(1, mEngine.getMissCount());
+        assertEquals(1, mEngine.getHitCount());
+        assertEquals(2, mSink.mPlayCount);
+    }
+
+    @Test
+    public void playFailsWhenTheClipCannotBeLoaded() {
+        mSink.mFailingResourceId = 7;
+
+        assertFalse(mEngine.play(7));
+        assertEquals(0, mEngine.getLoadedClipCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedClipIsUnloaded() {
+        mEngine.preload(1);
+        mEngine.preload(2);
+        mEngine.preload(3);
+        // Playing 1 makes 2 the least recently used clip
+        mEngine.play(1);
+        mEngine.stop();
+        mEngine.preload(4);
+
+        assertEquals(MAX_CLIPS, mEngine.getLoadedClipCount());
+        assertTrue(mEngine.isLoaded(1));
+        assertFalse(mEngine.isLoaded(2));
+        assertEquals(1, mSink.mUnloaded.size());
+        assertEquals(MAX_CLIPS, mSink.mLoaded.size());
+    }
+
+    @Test
+    public void playingClipIsNeverUnloaded() {
+        mEngine.play(1);
+        for (int id = 2; id <= 10; id++) {
+            mEngine.preload(id);
+            assertTrue(mEngine.isLoaded(1));
+            assertTrue(mEngine.getLoadedClipCount() <= MAX_CLIPS);
+        }
+        assertFalse(mSink.mUnloaded.contains(mSink.handleOf(1)));
+    }
+
+    @Test
+    public void cacheShrinksBackOnceProtectedClipsStop() {
+        AudioEngine engine = new AudioEngine(mSink, 1);
+        engine.play(1);
+        assertTrue(engine.setNextClip(2));
+        // Both clips are protected, so the cache stays over its maximum while they play
+        assertEquals(2, engine.getLoadedClipCount());
+
+        engine.stop();
+
+        assertEquals(1, engine.getLoadedClipCount());
+        assertEquals(1, mSink.mLoaded.size());
+    }
+
+    @Test
+    public void eldestProtectedClipDoesNotBlockEviction() {
+        // The oldest clip plays for the whole test, the others keep the cache at its size
+        mEngine.play(1);
+        for (int id = 2; id <= 50; id++) {
+            mEngine.preload(id);
+        }
+
+        assertEquals(MAX_CLIPS, mEngine.getLoadedClipCount());
+        assertEquals(MAX_CLIPS, mSink.mLoaded.size());
+        assertTrue(mEngine.isLoaded(1));
+        assertTrue(mEngine.isLoaded(50));
+    }
+
+    @Test
+    public void completionForgetsTheCurrentClip() {
+        final int[] completions = new int[1];
+        mEngine.setOnPlaybackCompletedListener(new AudioEngine.OnPlaybackCompletedListener() {
+            @Override
+            public void onPlaybackCompleted() {
+                completions[0]++;
+            }
+        });
+        mEngine.play(1);
+        mSink.complete(mSink.handleOf(1));
+        // A late completion of an older clip is ignored
+        mSink.complete(mSink.handleOf(1));
+
+        assertEquals(1, completions[0]);
+    }
+
+    @Test
+    public void firstAudioIsOnlyReportedForTheCurrentClip() {
+        final List<Long> reports = new ArrayList<>();
+        mEngine.setOnFirstAudioListener(new AudioEngine.OnFirstAudioListener() {
+            @Override
+            public void onFirstAudio(long renderNanos) {
+                reports.add(renderNanos);
+            }
+        });
+        mEngine.play(1);
+        mEngine.play(2);
+        // The first audio of the clip stopped by the second play comes too late
+        mSink.renderFirstAudio(mSink.handleOf(1), 10);
+        mSink.renderFirstAudio(mSink.handleOf(2), 20);
+
+        assertEquals("[20]", reports.toString());
+    }
+
+    @Test
+    public void releaseAllUnloadsEveryClip() {
+        mEngine.preload(1);
+        mEngine.preload(2);
+        mEngine.play(3);
+
+        mEngine.releaseAll();
+
+        assertEquals(0, mEngine.getLoadedClipCount());
+        assertTrue(mSink.mLoaded.isEmpty());
+    }
+
+    /**
+     * {@link AudioSink} that only keeps track of its clips.
+     */
+    private static class FakeSink implements AudioSink {
+
+        final Set<Integer> mLoaded = new HashSet<>();
+        final List<Integer> mUnloaded = new ArrayList<>();
+        int mFailingResourceId;
+        int mLoadCount;
+        int mPlayCount;
+        private OnCompletionListener mOnCompletionListener;
+        private OnFirstAudioListener mOnFirstAudioListener;
+
+        /** Handles are the resource IDs plus an offset, so each clip has a known handle */
+        int handleOf(int audioResourceId) {
+            return audioResourceId + 1000;
+        }
+
+        void complete(int clipHandle) {
+            mOnCompletionListener.onCompletion(clipHandle);
+        }
+
+        void renderFirstAudio(int clipHandle, long renderNanos) {
+            mOnFirstAudioListener.onFirstAudio(clipHandle, renderNanos);
+        }
+
+        @Override
+        public int load(int audioResourceId) {
+            if (audioResourceId == mFailingResourceId) {
+                return NO_CLIP;
+            }
+            mLoadCount++;
+            mLoaded.add(handleOf(audioResourceId));
+            return handleOf(audioResourceId);
+        }
+
+        @Override
+        public void play(int clipHandle) {
+            assertTrue(mLoaded.contains(clipHandle));
+            mPlayCount++;
+        }
+
+        @Override
+        public void pause(int clipHandle) {
+        }
+
+        @Override
+        public void resume(int clipHandle) {
+        }
+
+        @Override
+        public void stop(int clipHandle) {
+        }
+
+        @Override
+        public void unload(int clipHandle) {
+            assertTrue(mLoaded.remove(clipHandle));
+            mUnloaded.add(clipHandle);
+        }
+
+        @Override
+        public void setNextClip(int clipHandle, int nextClipHandle) {
+        }
+
+        @Override
+        public void setOnCompletionListener(OnCompletionListener listener) {
+            mOnCompletionListener = listener;
+        }
+
+        @Override
+        public void setOnHandoffListener(OnHandoffListener listener) {
+        }
+
+        @Override
+        public void setOnFirstAudioListener(OnFirstAudioListener listener) {
+            mOnFirstAudioListener = listener;
+        }
+    }
+}
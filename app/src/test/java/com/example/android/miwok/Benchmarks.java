@@ -0,0 +1,56 @@
+package com.example.android.miwok;
+
+import org.junit.Assume;
+
+/**
+ * Helpers of the benchmarks of the unit tests. The benchmarks are slow, so they are skipped
+ * unless the build is run with -Dmiwok.benchmark=true, for instance:
+ *
+ *     ./gradlew testDebugUnitTest -Dmiwok.benchmark=true --tests '*Benchmark'
+ *
+ * Their results are printed to the standard output of the tests.
+ */
+final class Benchmarks {
+
+    /** System property enabling the benchmarks */
+    static final String PROPERTY = "miwok.benchmark";
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Skip the calling test unless the benchmarks are enabled.
+     */
+    static void assumeEnabled() {
+        Assume.assumeTrue("Benchmark skipped, run with -D" + PROPERTY + "=true",
+                Boolean.getBoolean(PROPERTY));
+    }
+
+    /**
+     * Print a result of a benchmark.
+     */
+    static void report(String benchmark, String result) {
+        System.out.println(benchmark + ": " + result);
+    }
+
+    /**
+     * Return the heap used once the garbage is collected, in bytes.
+     */
+    static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // A single gc() call is only a hint, take the lowest of a few attempts
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    /**
+     * Return nanoseconds as microseconds with one decimal, for the reports.
+     */
+    static String micros(double nanos) {
+        return String.format("%.1f us", nanos / 1000);
+    }
+}
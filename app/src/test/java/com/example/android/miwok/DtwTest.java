@@ -0,0 +1,134 @@
+package com.example.android.miwok;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the banded dynamic time warping of {@link Dtw}, on made up coefficients.
+ */
+public class DtwTest {
+
+    /**
+     * Return features whose frames are random points, the same seed giving the same points.
+     */
+    private static Mfcc.Features features(long seed, int frameCount) {
+        Random random = new Random(seed);
+        Mfcc.Features features = new Mfcc.Features();
+        features.reset(frameCount);
+        float[] data = features.getData();
+        for (int i = 0; i < frameCount * Mfcc.COEFFICIENT_COUNT; i++) {
+            data[i] = (float) random.nextGaussian();
+        }
+        return features;
+    }
+
+    /**
+     * Return the features of a, with each frame repeated the given number of times.
+     */
+    private static Mfcc.Features stretch(Mfcc.Features a, int times) {
+        Mfcc.Features stretched = new Mfcc.Features();
+        stretched.reset(a.getFrameCount() * times);
+        for (int i = 0; i < stretched.getFrameCount(); i++) {
+            System.arraycopy(a.getData(), i / times * Mfcc.COEFFICIENT_COUNT,
+                    stretched.getData(), i * Mfcc.COEFFICIENT_COUNT, Mfcc.COEFFICIENT_COUNT);
+        }
+        return stretched;
+    }
+
+    /**
+     * Return the distance of the full cost matrix, without a band.
+     */
+    private static float fullDistance(Mfcc.Features a, Mfcc.Features b) {
+        int n = a.getFrameCount();
+        int m = b.getFrameCount();
+        float[][] cost = new float[n][m];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < m; j++) {
+                float sum = 0;
+                for (int c = 0; c < Mfcc.COEFFICIENT_COUNT; c++) {
+                    float difference = a.getData()[i * Mfcc.COEFFICIENT_COUNT + c] -
+                            b.getData()[j * Mfcc.COEFFICIENT_COUNT + c];
+                    sum += difference * difference;
+                }
+                float best = Float.POSITIVE_INFINITY;
+                if (i == 0 && j == 0) {
+                    best = 0;
+                }
+                if (i > 0) {
+                    best = Math.min(best, cost[i - 1][j]);
+                }
+                if (j > 0) {
+                    best = Math.min(best, cost[i][j - 1]);
+                }
+                if (i > 0 && j > 0) {
+                    best = Math.min(best, cost[i - 1][j - 1]);
+                }
+                cost[i][j] = best + (float) Math.sqrt(sum);
+            }
+        }
+        return cost[n - 1][m - 1] / (n + m);
+    }
+
+    @Test
+    public void sameFeaturesAreAtNoDistance() {
+        Mfcc.Features a = features(1, 40);
+
+        assertEquals(0, new Dtw(0.2f).distance(a, a), 0);
+    }
+
+    @Test
+    public void slowerFeaturesAreCloserThanOtherOnes() {
+        Mfcc.Features a = features(1, 30);
+        Dtw dtw = new Dtw(0.2f);
+
+        float slower = dtw.distance(a, stretch(a, 2));
+        float other = dtw.distance(a, features(2, 60));
+
+        assertTrue(slower + " < " + other, slower < other / 2);
+    }
+
+    @Test
+    public void fullBandIsTheUnconstrainedDistance() {
+        Dtw dtw = new Dtw(1);
+        for (int seed = 0; seed < 10; seed++) {
+            Mfcc.Features a = features(seed, 5 + seed * 3);
+            Mfcc.Features b = features(seed + 100, 20);
+            assertEquals(fullDistance(a, b), dtw.distance(a, b), 1e-4f);
+        }
+    }
+
+    @Test
+    public void narrowBandIsNeverShorterThanTheFullDistance() {
+        Dtw dtw = new Dtw(0.1f);
+        for (int seed = 0; seed < 10; seed++) {
+            Mfcc.Features a = features(seed, 30);
+            Mfcc.Features b = features(seed + 100, 45);
+            assertTrue(dtw.distance(a, b) >= fullDistance(a, b) - 1e-4f);
+        }
+    }
+
+    @Test
+    public void veryDifferentLengthsStayConnected() {
+        Dtw dtw = new Dtw(PronunciationScorer.BAND_FRACTION);
+        int[][] lengths = {{2, 100}, {100, 2}, {1, 100}, {3, 250}, {10, 200}};
+        for (int[] length : lengths) {
+            Mfcc.Features a = features(1, length[0]);
+            Mfcc.Features b = features(2, length[1]);
+            float distance = dtw.distance(a, b);
+            assertFalse(length[0] + " vs " + length[1], Float.isInfinite(distance));
+            assertTrue(distance >= fullDistance(a, b) - 1e-4f);
+        }
+    }
+
+    @Test
+    public void emptyFeaturesAreInfinitelyFar() {
+        Mfcc.Features empty = new Mfcc.Features();
+
+        assertTrue(Float.isInfinite(new Dtw(0.2f).distance(empty, features(1, 10))));
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.android.miwok;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Measures the time of the queries of a {@link FuzzyMatcher} of 100k words, against a scan
+ * comparing the query with every folded translation.
+ */
+public class FuzzyMatcherBenchmark {
+
+    private static final int WORD_COUNT = 100000;
+
+    private static final int MAX_MATCHES = 20;
+
+    private static final int ITERATIONS = 200;
+
+    private static final String[] QUERIES = {"kalota", "ka", "wiitәm", "brother", "tikoo",
+            "chokokki", "yellow dog"};
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+    }
+
+    @Test
+    public void queries() {
+        VocabularyStore[] categories = TestVocabulary.createCategories(new Random(1),
+                WORD_COUNT, 4);
+        FuzzyMatcher.Builder builder = new FuzzyMatcher.Builder();
+        for (int c = 0; c < categories.length; c++) {
+            builder.addCategory(c, categories[c]);
+        }
+        long start = System.nanoTime();
+        FuzzyMatcher matcher = builder.build();
+        Benchmarks.report("build of " + WORD_COUNT + " words",
+                (System.nanoTime() - start) / 1000000 + " ms");
+
+        // The scan compares with the same folded terms, folded once as the matcher does
+        int termCount = 0;
+        String[] terms = new String[WORD_COUNT * 2];
+        for (VocabularyStore words : categories) {
+            for (int i = 0; i < words.size(); i++) {
+                terms[termCount++] = TextFolder.DEFAULT.fold(words.getDefaultTranslation(i));
+                terms[termCount++] = TextFolder.MIWOK.fold(words.getMiwokTranslation(i));
+            }
+        }
+        int[] previous = new int[256];
+        int[] current = new int[256];
+
+        for (String query : QUERIES) {
+            long findNanos = Long.MAX_VALUE;
+            long scanNanos = Long.MAX_VALUE;
+            int matches = 0;
+            int scanned = 0;
+            // Best of a few rounds, the first ones warm the JIT up
+            for (int round = 0; round < 5; round++) {
+                start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    matches += matcher.find(query, FuzzyMatcher.DEFAULT_MAX_DISTANCE,
+                            MAX_MATCHES).size();
+                }
+                findNanos = Math.min(findNanos, System.nanoTime() - start);
+                start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    String key = TextFolder.MIWOK.fold(query);
+                    for (int t = 0; t < termCount; t++) {
+                        if (FuzzyMatcher.levenshtein(key, terms[t],
+                                FuzzyMatcher.DEFAULT_MAX_DISTANCE, previous, current)
+                                <= FuzzyMatcher.DEFAULT_MAX_DISTANCE) {
+                            scanned++;
+                        }
+                    }
+                }
+                scanNanos = Math.min(scanNanos, System.nanoTime() - start);
+            }
+            Benchmarks.report("query \"" + query + "\"", "find " +
+                    Benchmarks.micros((double) findNanos / ITERATIONS) + ", scan " +
+                    Benchmarks.micros((double) scanNanos / ITERATIONS) + " (" +
+                    matches / (5 * ITERATIONS) + " matches, " + scanned / (5 * ITERATIONS) +
+                    " by the scan)");
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.android.miwok;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link FuzzyMatcher}, checked against a scan of the words.
+ */
+public class FuzzyMatcherTest {
+
+    @Test
+    public void findsWordsWithTyposAndWithoutMiwokLetters() {
+        FuzzyMatcher matcher = new FuzzyMatcher.Builder()
+                .addCategory(0, new VocabularyStore.Builder()
+                        .add("one", "lutti", 1)
+                        .add("two", "otiiko", 2)
+                        .add("red", "weṭeṭṭi", 3)
+                        .add("green", "chokokki", 4)
+                        .build())
+                .build();
+
+        List<FuzzyMatcher.Match> matches = matcher.find("otikko", 2, 10);
+        assertEquals(1, matches.size());
+        assertEquals(1, matches.get(0).position);
+        assertEquals(SearchIndex.FIELD_MIWOK, matches.get(0).field);
+        assertEquals(1, matches.get(0).distance);
+
+        matches = matcher.find("weteti", 1, 10);
+        assertEquals(1, matches.size());
+        assertEquals(2, matches.get(0).position);
+        assertEquals(1, matches.get(0).distance);
+
+        assertEquals(0, matcher.find("otikko", 0, 10).size());
+    }
+
+    @Test
+    public void closestMatchesComeFirst() {
+        FuzzyMatcher matcher = new FuzzyMatcher.Builder()
+                .addCategory(0, new VocabularyStore.Builder()
+                        .add("kalota", "kalota", 1)
+                        .add("kalata", "kalata", 2)
+                        .add("kolata", "kalat", 3)
+                        .build())
+                .build();
+
+        List<FuzzyMatcher.Match> matches = matcher.find("kalota", 2, 10);
+        assertTrue(matches.size() >= 5);
+        int previous = 0;
+        for (FuzzyMatcher.Match match : matches) {
+            assertTrue(match.distance >= previous);
+            previous = match.distance;
+        }
+        assertEquals(0, matches.get(0).distance);
+        assertEquals(0, matches.get(0).position);
+        assertEquals(2, matcher.find("kalota", 2, 2).size());
+    }
+
+    @Test
+    public void shortQueriesAndLongTermsAreFound() {
+        StringBuilder longTerm = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longTerm.append((char) ('a' + i % 26));
+        }
+        String longQuery = longTerm.substring(0, 70) + "x" + longTerm.substring(71);
+        FuzzyMatcher matcher = new FuzzyMatcher.Builder()
+                .addCategory(0, new VocabularyStore.Builder()
+                        .add("a", "b", 1)
+                        .add(longTerm.toString(), "ab", 2)
+                        .build())
+                .build();
+
+        assertEquals(2, matcher.find("c", 1, 10).size());
+        assertEquals(0, matcher.find("c", 0, 10).size());
+        List<FuzzyMatcher.Match> matches = matcher.find(longQuery, 1, 10);
+        assertEquals(1, matches.size());
+        assertEquals(1, matches.get(0).distance);
+    }
+
+    @Test
+    public void emptyQueryFindsNothing() {
+        FuzzyMatcher matcher = new FuzzyMatcher.Builder()
+                .addCategory(0, new VocabularyStore.Builder().add("one", "lutti", 1).build())
+                .build();
+
+        assertEquals(0, matcher.find("", 2, 10).size());
+        assertEquals(0, matcher.find("  ", 2, 10).size());
+        assertEquals(0, new FuzzyMatcher.Builder().build().find("lutti", 2, 10).size());
+    }
+
+    @Test
+    public void findsTheSameWordsAsAScan() {
+        Random random = new Random(7);
+        VocabularyStore[] categories = TestVocabulary.createCategories(random, 3000, 3);
+        FuzzyMatcher.Builder builder = new FuzzyMatcher.Builder();
+        for (int c = 0; c < categories.length; c++) {
+            builder.addCategory(c, categories[c]);
+        }
+        FuzzyMatcher matcher = builder.build();
+
+        for (int q = 0; q < 300; q++) {
+            // Queries close to a word, and random ones
+            VocabularyStore words = categories[random.nextInt(categories.length)];
+            String query;
+            if (q % 3 == 0) {
+                query = TestVocabulary.miwokWord(random);
+            } else {
+                String source = q % 3 == 1
+                        ? words.getMiwokTranslation(random.nextInt(words.size()))
+                        : words.getDefaultTranslation(random.nextInt(words.size()));
+                query = addTypos(random, TextFolder.MIWOK.fold(source), random.nextInt(3));
+            }
+            for (int maxDistance = 0; maxDistance <= 3; maxDistance++) {
+                List<String> expected = scan(categories, query, maxDistance);
+                List<String> actual = new ArrayList<>();
+                for (FuzzyMatcher.Match match : matcher.find(query, maxDistance,
+                        Integer.MAX_VALUE)) {
+                    actual.add(key(match.category, match.position, match.field,
+                            match.distance));
+                }
+                assertEquals("\"" + query + "\" within " + maxDistance, expected, actual);
+            }
+        }
+    }
+
+    private static String addTypos(Random random, String text, int count) {
+        StringBuilder builder = new StringBuilder(text);
+        for (int i = 0; i < count && builder.length() > 1; i++) {
+            int at = random.nextInt(builder.length());
+            switch (random.nextInt(3)) {
+                case 0:
+                    builder.deleteCharAt(at);
+                    break;
+                case 1:
+                    builder.insert(at, (char) ('a' + random.nextInt(26)));
+                    break;
+                default:
+                    builder.setCharAt(at, (char) ('a' + random.nextInt(26)));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Return the matches of a scan of all the words, in the order of {@link FuzzyMatcher}.
+     */
+    private static List<String> scan(VocabularyStore[] categories, String query,
+                                     int maxDistance) {
+        String key = TextFolder.MIWOK.fold(query);
+        List<String> matches = new ArrayList<>();
+        if (key.isEmpty()) {
+            return matches;
+        }
+        int[] previous = new int[256];
+        int[] current = new int[256];
+        for (int distance = 0; distance <= maxDistance; distance++) {
+            for (int c = 0; c < categories.length; c++) {
+                VocabularyStore words = categories[c];
+                for (int i = 0; i < words.size(); i++) {
+                    String[] terms = {TextFolder.DEFAULT.fold(words.getDefaultTranslation(i)),
+                            TextFolder.MIWOK.fold(words.getMiwokTranslation(i))};
+                    int[] fields = {SearchIndex.FIELD_DEFAULT, SearchIndex.FIELD_MIWOK};
+                    for (int f = 0; f < 2; f++) {
+                        if (!terms[f].isEmpty() && FuzzyMatcher.levenshtein(key, terms[f],
+                                Integer.MAX_VALUE - 1, previous, current) == distance) {
+                            matches.add(key(c, i, fields[f], distance));
+                        }
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static String key(int category, int position, int field, int distance) {
+        return category + "/" + position + "/" + field + "/" + distance;
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.android.miwok;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the file format and the least recently used eviction of {@link PcmCache}.
+ */
+public class PcmCacheTest {
+
+    /** Size of a cache file holding 50 mono frames */
+    private static final long CLIP_SIZE = PcmCache.HEADER_SIZE + 50 * PcmCache.BYTES_PER_SAMPLE;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() {
+        mDirectory = new File(mFolder.getRoot(), "pcm");
+    }
+
+    /**
+     * Return 16 bit little endian samples counting from the first one.
+     */
+    private static ByteBuffer samples(int first, int count) {
+        ByteBuffer buffer = ByteBuffer.allocate(count * PcmCache.BYTES_PER_SAMPLE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < count; i++) {
+            buffer.putShort((short) (first + i));
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static PcmCache.Clip put(PcmCache cache, String key) throws IOException {
+        PcmCache.Editor editor = cache.edit(key);
+        editor.write(samples(0, 50));
+        return editor.commit(16000, 1);
+    }
+
+    @Test
+    public void commitWritesTheHeaderAndTheSamples() throws IOException {
+        PcmCache cache = new PcmCache(mDirectory, 1 << 20);
+        PcmCache.Editor editor = cache.edit("number_one");
+        editor.write(samples(-2, 3));
+        editor.write(samples(100, 5));
+        // A partial frame at the end is dropped
+        editor.write(ByteBuffer.wrap(new byte[] {7, 7, 7, 7, 7, 7}));
+
+        PcmCache.Clip clip = editor.commit(22050, 2);
+
+        assertEquals(5, clip.getFrameCount());
+        assertEquals(4, clip.getFrameSize());
+        assertEquals(22050, clip.getSampleRate());
+        ByteBuffer data = clip.getData();
+        assertEquals(20, data.remaining());
+        assertEquals(-2, data.getShort());
+        assertEquals(-1, data.getShort(2));
+        assertEquals(104, data.getShort(14));
+
+        RandomAccessFile file = new RandomAccessFile(new File(mDirectory, "number_one.pcm"),
+                "r");
+        try {
+            assertEquals(PcmCache.HEADER_SIZE + 20, file.length());
+            byte[] header = new byte[PcmCache.HEADER_SIZE];
+            file.readFully(header);
+            ByteBuffer expected = ByteBuffer.allocate(PcmCache.HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            expected.putInt(PcmCache.MAGIC).putInt(PcmCache.VERSION).putInt(22050).putInt(2)
+                    .putInt(5);
+            assertArrayEquals(expected.array(), header);
+            assertEquals('P', header[0]);
+            assertEquals(file.length(), cache.getSize());
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    public void clipsAreReadBackAfterARestart() throws IOException {
+        put(new PcmCache(mDirectory, 1 << 20), "a");
+
+        PcmCache cache = new PcmCache(mDirectory, 1 << 20);
+        PcmCache.Clip clip = cache.get("a");
+
+        assertNotNull(clip);
+        assertEquals(50, clip.getFrameCount());
+        assertEquals(3, clip.getDurationMs());
+        assertEquals(49, clip.getData().getShort(98));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedClipIsEvicted() throws IOException {
+        PcmCache cache = new PcmCache(mDirectory, 3 * CLIP_SIZE);
+        put(cache, "a");
+        put(cache, "b");
+        put(cache, "c");
+        // Reading a makes b the least recently used clip
+        assertNotNull(cache.get("a"));
+
+        put(cache, "d");
+
+        assertEquals(3, cache.getClipCount());
+        assertEquals(3 * CLIP_SIZE, cache.getSize());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get("b"));
+        assertFalse(new File(mDirectory, "b.pcm").exists());
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void restartKeepsTheOrderOfUse() throws IOException {
+        PcmCache cache = new PcmCache(mDirectory, 3 * CLIP_SIZE);
+        put(cache, "a");
+        put(cache, "b");
+        // The last use is the modification time, a is now the most recent
+        long now = System.currentTimeMillis();
+        assertTrue(new File(mDirectory, "b.pcm").setLastModified(now - 20000));
+        assertTrue(new File(mDirectory, "a.pcm").setLastModified(now - 10000));
+
+        // A smaller cache evicts the least recently used clip on open
+        cache = new PcmCache(mDirectory, 2 * CLIP_SIZE - 1);
+
+        assertEquals(1, cache.getClipCount());
+        assertNotNull(cache.get("a"));
+        assertFalse(new File(mDirectory, "b.pcm").exists());
+    }
+
+    @Test
+    public void clipLargerThanTheCacheIsPlayedButNotKept() throws IOException {
+        PcmCache cache = new PcmCache(mDirectory, CLIP_SIZE / 2);
+
+        PcmCache.Clip clip = put(cache, "a");
+
+        // The clip is evicted last, but it is still mapped
+        assertEquals(0, cache.getClipCount());
+        assertEquals(0, cache.getSize());
+        assertEquals(0, mDirectory.list().length);
+        assertEquals(49, clip.getData().getShort(98));
+    }
+
+    @Test
+    public void corruptedAndUnfinishedFilesAreDropped() throws IOException {
+        assertTrue(mDirectory.mkdirs());
+        FileOutputStream out = new FileOutputStream(new File(mDirectory, "bad.pcm"));
+        try {
+            out.write(new byte[PcmCache.HEADER_SIZE + 4]);
+        } finally {
+            out.close();
+        }
+        assertTrue(new File(mDirectory, "unfinished.tmp").createNewFile());
+
+        PcmCache cache = new PcmCache(mDirectory, 1 << 20);
+
+        assertFalse(new File(mDirectory, "unfinished.tmp").exists());
+        assertEquals(1, cache.getClipCount());
+        assertNull(cache.get("bad"));
+        assertEquals(0, cache.getClipCount());
+        assertEquals(0, cache.getSize());
+        assertFalse(new File(mDirectory, "bad.pcm").exists());
+    }
+
+    @Test
+    public void abortedClipIsNotAdded() throws IOException {
+        PcmCache cache = new PcmCache(mDirectory, 1 << 20);
+        PcmCache.Editor editor = cache.edit("a");
+        editor.write(samples(0, 10));
+
+        editor.abort();
+
+        assertNull(cache.get("a"));
+        assertEquals(0, mDirectory.list().length);
+    }
+
+    @Test
+    public void editorsOfTheSameKeyDontShareTheirFile() throws IOException {
+        PcmCache cache = new PcmCache(mDirectory, 1 << 20);
+        PcmCache.Editor first = cache.edit("a");
+        PcmCache.Editor second = cache.edit("a");
+        first.write(samples(0, 50));
+        second.write(samples(1000, 20));
+
+        PcmCache.Clip firstClip = first.commit(16000, 1);
+        PcmCache.Clip secondClip = second.commit(16000, 1);
+
+        assertEquals(50, firstClip.getFrameCount());
+        assertEquals(49, firstClip.getData().getShort(98));
+        assertEquals(20, secondClip.getFrameCount());
+        assertEquals(1000, secondClip.getData().getShort(0));
+        // The last commit replaced the first one
+        assertEquals(1, cache.getClipCount());
+        assertEquals(20, cache.get("a").getFrameCount());
+        assertEquals(cache.getSize(), new File(mDirectory, "a.pcm").length());
+        assertEquals(1, mDirectory.list().length);
+    }
+
+    @Test
+    public void concurrentLoadsOfAClipEachGetTheirSamples() throws Exception {
+        final PcmCache cache = new PcmCache(mDirectory, 1 << 20);
+        final int threadCount = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<PcmCache.Clip>> clips = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                final int first = 1000 * t;
+                clips.add(executor.submit(new Callable<PcmCache.Clip>() {
+                    @Override
+                    public PcmCache.Clip call() throws Exception {
+                        // Decode the same clip as the other threads, chunk by chunk
+                        PcmCache.Editor editor = cache.edit("number_one");
+                        start.await();
+                        for (int i = 0; i < 500; i += 50) {
+                            editor.write(samples(first + i, 50));
+                            Thread.yield();
+                        }
+                        return editor.commit(16000, 1);
+                    }
+                }));
+            }
+            start.countDown();
+            for (int t = 0; t < threadCount; t++) {
+                PcmCache.Clip clip = clips.get(t).get();
+                assertEquals(500, clip.getFrameCount());
+                ByteBuffer data = clip.getData();
+                for (int i = 0; i < 500; i++) {
+                    assertEquals((short) (1000 * t + i), data.getShort());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, cache.getClipCount());
+        assertEquals(PcmCache.HEADER_SIZE + 500 * PcmCache.BYTES_PER_SAMPLE, cache.getSize());
+        assertEquals(1, mDirectory.list().length);
+    }
+
+    @Test
+    public void keysMustBeFileNames() throws IOException {
+        PcmCache cache = new PcmCache(mDirectory, 1 << 20);
+        try {
+            cache.edit("../a");
+            fail("A key with a path was accepted");
+        } catch (IllegalArgumentException expected) {
+            // The key would name a file out of the cache
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.android.miwok;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link PcmSink.GapMeter} estimating the silence at a handoff, fed with made
+ * up positions of the playback head of a track of 1000 frames per second.
+ */
+public class PcmSinkTest {
+
+    private static final long MS = 1000000;
+
+    private PcmSink.GapMeter mMeter;
+
+    @Before
+    public void setUp() {
+        mMeter = new PcmSink.GapMeter();
+        mMeter.reset(1000);
+    }
+
+    @Test
+    public void aTrackPlayingOnHasNoGap() {
+        // 500 frames of the first clip written, 100 played at 1s: they run out at 1.4s
+        assertEquals(-1, mMeter.onHead(100, 500, 1000 * MS));
+        mMeter.startHandoff(500);
+        assertTrue(mMeter.isHandoffPending());
+        assertEquals(-1, mMeter.onHead(400, 700, 1300 * MS));
+        assertEquals(-1, mMeter.onHead(500, 800, 1400 * MS));
+
+        // The head went on at the sample rate
+        assertEquals(0, mMeter.onHead(600, 900, 1500 * MS));
+        assertFalse(mMeter.isHandoffPending());
+    }
+
+    @Test
+    public void aTrackThatRanOutHasTheGapOfTheStall() {
+        assertEquals(-1, mMeter.onHead(450, 500, 1000 * MS));
+        // The writer drained the clip: the head stops at 500, at about 1.05s
+        assertEquals(-1, mMeter.onHead(500, 500, 1060 * MS));
+        assertEquals(-1, mMeter.onHead(500, 500, 1100 * MS));
+
+        // The next clip is written late, its 20th frame is heard at 1.2s
+        mMeter.startHandoff(500);
+        assertEquals(-1, mMeter.onHead(500, 600, 1150 * MS));
+        assertEquals(130 * MS, mMeter.onHead(520, 700, 1200 * MS));
+    }
+
+    @Test
+    public void aResetForgetsTheHandoff() {
+        mMeter.onHead(100, 500, 1000 * MS);
+        mMeter.startHandoff(500);
+
+        mMeter.reset(1000);
+        assertFalse(mMeter.isHandoffPending());
+        assertEquals(-1, mMeter.onHead(600, 900, 5000 * MS));
+    }
+
+    @Test
+    public void aHandoffWithoutSamplesHasNoGap() {
+        mMeter.startHandoff(0);
+        assertEquals(0, mMeter.onHead(10, 100, 1000 * MS));
+    }
+}
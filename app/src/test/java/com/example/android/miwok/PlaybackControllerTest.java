@@ -0,0 +1,372 @@
+package com.example.android.miwok;
+
+import android.media.AudioManager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the command queue and the audio focus handling of {@link PlaybackController}.
+ * The commands run when the test says so, which makes the tap storms and the races with
+ * the audio focus changes deterministic.
+ */
+public class PlaybackControllerTest {
+
+    private QueueExecutor mExecutor;
+    private FakeFocus mFocus;
+    private FakeSink mSink;
+    private PlaybackController mController;
+
+    @Before
+    public void setUp() {
+        mExecutor = new QueueExecutor();
+        mFocus = new FakeFocus();
+        mSink = new FakeSink();
+        mController = new PlaybackController(new AudioEngine(mSink, AudioEngine.DEFAULT_MAX_CLIPS),
+                mFocus, mExecutor);
+    }
+
+    @Test
+    public void tapStormOnlyPlaysTheLastTap() {
+        for (int id = 1; id <= 100; id++) {
+            mController.play(id);
+        }
+        mExecutor.runAll();
+
+        assertEquals("[100]", mSink.mPlayed.toString());
+        assertEquals(99, mController.getSkippedPlayCount());
+        assertEquals(1, mController.getStartedPlayCount());
+        assertEquals(1, mFocus.mRequestCount);
+        assertEquals(PlaybackController.State.PLAYING, mController.getState());
+    }
+
+    @Test
+    public void tapWhileLoadingSkipsTheLoadedSound() {
+        mSink.mOnLoad = new Runnable() {
+            @Override
+            public void run() {
+                mSink.mOnLoad = null;
+                mController.play(2);
+            }
+        };
+        mController.play(1);
+        mExecutor.runAll();
+
+        assertEquals("[2]", mSink.mPlayed.toString());
+        assertEquals(1, mController.getSkippedPlayCount());
+        assertEquals(mSink.handleOf(2), mSink.mPlaying);
+    }
+
+    @Test
+    public void stopCancelsTheQueuedTaps() {
+        mController.play(1);
+        mController.play(2);
+        mController.stop();
+        mExecutor.runAll();
+
+        assertTrue(mSink.mPlayed.isEmpty());
+        assertEquals(PlaybackController.State.IDLE, mController.getState());
+        assertEquals(mFocus.mRequestCount, mFocus.mAbandonCount);
+    }
+
+    @Test
+    public void firstAudioIsRecordedWhenTheSinkRendersIt() {
+        mController.play(1, 0);
+        mExecutor.runAll();
+
+        // The sound was asked to play, but it isn't heard yet
+        PlaybackMetrics.Snapshot metrics = mController.getMetrics().snapshot();
+        assertEquals(1, metrics.getCount(0, PlaybackMetrics.STAGE_PREPARED));
+        assertEquals(0, metrics.getCount(0, PlaybackMetrics.STAGE_FIRST_AUDIO));
+
+        mSink.renderFirstAudio(mSink.handleOf(1));
+        mExecutor.runAll();
+        metrics = mController.getMetrics().snapshot();
+        assertEquals(1, metrics.getCount(0, PlaybackMetrics.STAGE_FIRST_AUDIO));
+        assertEquals(1, metrics.getClipCount(1));
+
+        // Only the first report of a play counts, and only for the sound playing
+        mSink.renderFirstAudio(mSink.handleOf(1));
+        mController.play(2, 0);
+        mExecutor.runAll();
+        mSink.renderFirstAudio(mSink.handleOf(1));
+        mExecutor.runAll();
+        metrics = mController.getMetrics().snapshot();
+        assertEquals(1, metrics.getCount(0, PlaybackMetrics.STAGE_FIRST_AUDIO));
+        assertEquals(0, metrics.getClipCount(2));
+
+        mSink.renderFirstAudio(mSink.handleOf(2));
+        mExecutor.runAll();
+        metrics = mController.getMetrics().snapshot();
+        assertEquals(2, metrics.getCount(0, PlaybackMetrics.STAGE_FIRST_AUDIO));
+        assertEquals(1, metrics.getClipCount(2));
+    }
+
+    @Test
+    public void transientFocusLossPausesUntilTheFocusIsBack() {
+        mController.play(1);
+        mExecutor.runAll();
+
+        mFocus.change(AudioManager.AUDIOFOCUS_LOSS_TRANSIENT);
+        mExecutor.runAll();
+        assertEquals(PlaybackController.State.PAUSED, mController.getState());
+        assertTrue(mSink.mPaused);
+
+        // A sound paused for the focus doesn't resume without it
+        mController.resume();
+        mExecutor.runAll();
+        assertEquals(PlaybackController.State.PAUSED, mController.getState());
+
+        mFocus.change(AudioManager.AUDIOFOCUS_GAIN);
+        mExecutor.runAll();
+        assertEquals(PlaybackController.State.PLAYING, mController.getState());
+        assertFalse(mSink.mPaused);
+    }
+
+    @Test
+    public void focusLostWhilePreparingStartsTheSoundPaused() {
+        mSink.mOnLoad = new Runnable() {
+            @Override
+            public void run() {
+                mSink.mOnLoad = null;
+                // A tap overtakes the sound being loaded, and the focus is lost before the
+                // command of the tap is queued
+                mExecutor.hold();
+                mController.play(2);
+                mFocus.change(AudioManager.AUDIOFOCUS_LOSS_TRANSIENT);
+                mExecutor.release();
+            }
+        };
+        final List<PlaybackController.State> states = new ArrayList<>();
+        mController.setOnStateChangeListener(new PlaybackController.OnStateChangeListener() {
+            @Override
+            public void onStateChanged(PlaybackController.State state) {
+                states.add(state);
+            }
+        });
+        mController.play(1);
+        mExecutor.runAll();
+
+        // The focus change found the controller preparing the overtaken sound
+        assertEquals("[PREPARING, PAUSED]", states.toString());
+        assertEquals(mSink.handleOf(2), mSink.mPlaying);
+        assertTrue(mSink.mPaused);
+
+        mFocus.change(AudioManager.AUDIOFOCUS_GAIN);
+        mExecutor.runAll();
+        assertEquals(PlaybackController.State.PLAYING, mController.getState());
+        assertFalse(mSink.mPaused);
+    }
+
+    @Test
+    public void tapDuringTransientFocusLossWaitsForTheFocus() {
+        mController.play(1);
+        mExecutor.runAll();
+        mFocus.change(AudioManager.AUDIOFOCUS_LOSS_TRANSIENT);
+        mController.play(2);
+        mExecutor.runAll();
+
+        assertEquals(PlaybackController.State.PAUSED, mController.getState());
+        assertEquals(mSink.handleOf(2), mSink.mPlaying);
+        assertTrue(mSink.mPaused);
+
+        mFocus.change(AudioManager.AUDIOFOCUS_GAIN);
+        mExecutor.runAll();
+        assertEquals(PlaybackController.State.PLAYING, mController.getState());
+    }
+
+    @Test
+    public void focusLossStopsAndForgetsTheFocus() {
+        mController.play(1);
+        mExecutor.runAll();
+        mFocus.change(AudioManager.AUDIOFOCUS_LOSS);
+        // A change queued before the loss was handled is ignored once the focus is gone
+        mFocus.change(AudioManager.AUDIOFOCUS_GAIN);
+        mExecutor.runAll();
+
+        assertEquals(PlaybackController.State.IDLE, mController.getState());
+        assertEquals(AudioSink.NO_CLIP, mSink.mPlaying);
+        assertEquals(1, mFocus.mAbandonCount);
+
+        mController.play(2);
+        mExecutor.runAll();
+        assertEquals(2, mFocus.mRequestCount);
+        assertEquals(PlaybackController.State.PLAYING, mController.getState());
+    }
+
+    @Test
+    public void deniedFocusPlaysNothing() {
+        mFocus.mGranted = false;
+        mController.play(1);
+        mExecutor.runAll();
+
+        assertTrue(mSink.mPlayed.isEmpty());
+        assertEquals(PlaybackController.State.IDLE, mController.getState());
+    }
+
+    @Test
+    public void releasedControllerIgnoresTheCommands() {
+        mController.play(1);
+        mController.release();
+        mController.play(2);
+        mExecutor.runAll();
+
+        assertTrue(mSink.mPlayed.isEmpty());
+        assertEquals(PlaybackController.State.RELEASED, mController.getState());
+
+        // Releasing again does nothing
+        mController.release();
+        mExecutor.runAll();
+        assertEquals(1, mController.getMetrics().snapshot().getReleaseCount());
+    }
+
+    /**
+     * {@link Executor} running its commands when {@link #runAll()} is called. The command
+     * given right after {@link #hold()} is only queued by {@link #release()}.
+     */
+    private static class QueueExecutor implements Executor {
+
+        private final Queue<Runnable> mCommands = new ArrayDeque<>();
+        private boolean mHolding;
+        private Runnable mHeld;
+
+        @Override
+        public void execute(Runnable command) {
+            if (mHolding) {
+                mHolding = false;
+                mHeld = command;
+            } else {
+                mCommands.add(command);
+            }
+        }
+
+        void hold() {
+            mHolding = true;
+        }
+
+        void release() {
+            mCommands.add(mHeld);
+            mHeld = null;
+        }
+
+        void runAll() {
+            Runnable command;
+            while ((command = mCommands.poll()) != null) {
+                command.run();
+            }
+        }
+    }
+
+    /**
+     * {@link PlaybackController.AudioFocus} granted unless told otherwise, whose changes are
+     * sent by the test.
+     */
+    private static class FakeFocus implements PlaybackController.AudioFocus {
+
+        boolean mGranted = true;
+        int mRequestCount;
+        int mAbandonCount;
+        private AudioManager.OnAudioFocusChangeListener mListener;
+
+        void change(int focusChange) {
+            mListener.onAudioFocusChange(focusChange);
+        }
+
+        @Override
+        public boolean request(AudioManager.OnAudioFocusChangeListener listener) {
+            mRequestCount++;
+            mListener = listener;
+            return mGranted;
+        }
+
+        @Override
+        public void abandon(AudioManager.OnAudioFocusChangeListener listener) {
+            mAbandonCount++;
+        }
+    }
+
+    /**
+     * {@link AudioSink} that keeps track of the clip playing, and can run some code while a
+     * clip is loading.
+     */
+    private static class FakeSink implements AudioSink {
+
+        final List<Integer> mPlayed = new ArrayList<>();
+        int mPlaying = NO_CLIP;
+        boolean mPaused;
+        Runnable mOnLoad;
+        OnFirstAudioListener mOnFirstAudioListener;
+
+        /** Handles are the resource IDs plus an offset, so each clip has a known handle */
+        int handleOf(int audioResourceId) {
+            return audioResourceId + 1000;
+        }
+
+        @Override
+        public int load(int audioResourceId) {
+            if (mOnLoad != null) {
+                mOnLoad.run();
+            }
+            return handleOf(audioResourceId);
+        }
+
+        @Override
+        public void play(int clipHandle) {
+            mPlayed.add(clipHandle - 1000);
+            mPlaying = clipHandle;
+            mPaused = false;
+        }
+
+        @Override
+        public void pause(int clipHandle) {
+            mPaused = true;
+        }
+
+        @Override
+        public void resume(int clipHandle) {
+            mPaused = false;
+        }
+
+        @Override
+        public void stop(int clipHandle) {
+            mPlaying = NO_CLIP;
+            mPaused = false;
+        }
+
+        @Override
+        public void unload(int clipHandle) {
+        }
+
+        @Override
+        public void setNextClip(int clipHandle, int nextClipHandle) {
+        }
+
+        @Override
+        public void setOnCompletionListener(OnCompletionListener listener) {
+        }
+
+        @Override
+        public void setOnHandoffListener(OnHandoffListener listener) {
+        }
+
+        @Override
+        public void setOnFirstAudioListener(OnFirstAudioListener listener) {
+            mOnFirstAudioListener = listener;
+        }
+
+        /** Report the first audio of a clip, as the output does once the clip is heard */
+        void renderFirstAudio(int clipHandle) {
+            mOnFirstAudioListener.onFirstAudio(clipHandle, System.nanoTime());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.android.miwok;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the histograms and the counters of {@link PlaybackMetrics}, and of recording
+ * from several threads at once.
+ */
+public class PlaybackMetricsTest {
+
+    private static final long MS = 1000000;
+
+    @Test
+    public void bucketsArePowersOfTwoMicroseconds() {
+        assertEquals(0, PlaybackMetrics.bucketOf(0));
+        assertEquals(0, PlaybackMetrics.bucketOf(1));
+        assertEquals(1, PlaybackMetrics.bucketOf(2));
+        assertEquals(1, PlaybackMetrics.bucketOf(3));
+        assertEquals(10, PlaybackMetrics.bucketOf(1024));
+        assertEquals(PlaybackMetrics.BUCKET_COUNT - 1, PlaybackMetrics.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void stagesAreRecordedForAllThePlaysAndTheirCategory() {
+        PlaybackMetrics metrics = new PlaybackMetrics(3, 8);
+        for (int i = 0; i < 90; i++) {
+            metrics.recordStage(1, PlaybackMetrics.STAGE_FIRST_AUDIO, 10 * MS);
+        }
+        for (int i = 0; i < 10; i++) {
+            metrics.recordStage(2, PlaybackMetrics.STAGE_FIRST_AUDIO, 100 * MS);
+        }
+        // Unknown categories only count for all the plays
+        metrics.recordStage(PlaybackMetrics.NO_CATEGORY, PlaybackMetrics.STAGE_PREPARED, MS);
+        metrics.recordStage(7, PlaybackMetrics.STAGE_PREPARED, MS);
+
+        PlaybackMetrics.Snapshot snapshot = metrics.snapshot();
+        int all = PlaybackMetrics.NO_CATEGORY;
+        assertEquals(100, snapshot.getCount(all, PlaybackMetrics.STAGE_FIRST_AUDIO));
+        assertEquals(19000, snapshot.getMeanMicros(all, PlaybackMetrics.STAGE_FIRST_AUDIO));
+        // 10 ms is in [8192, 16384) us, 100 ms in [65536, 131072) us
+        assertEquals(16384, snapshot.getPercentileMicros(all,
+                PlaybackMetrics.STAGE_FIRST_AUDIO, 50));
+        assertEquals(16384, snapshot.getPercentileMicros(all,
+                PlaybackMetrics.STAGE_FIRST_AUDIO, 90));
+        assertEquals(131072, snapshot.getPercentileMicros(all,
+                PlaybackMetrics.STAGE_FIRST_AUDIO, 95));
+        assertEquals(90, snapshot.getCount(1, PlaybackMetrics.STAGE_FIRST_AUDIO));
+        assertEquals(131072, snapshot.getPercentileMicros(2,
+                PlaybackMetrics.STAGE_FIRST_AUDIO, 0));
+        assertEquals(0, snapshot.getCount(0, PlaybackMetrics.STAGE_FIRST_AUDIO));
+        assertEquals(0, snapshot.getPercentileMicros(0, PlaybackMetrics.STAGE_FIRST_AUDIO, 99));
+        assertEquals(2, snapshot.getCount(all, PlaybackMetrics.STAGE_PREPARED));
+        assertEquals(0, snapshot.getCount(all, PlaybackMetrics.STAGE_FOCUS_GRANTED));
+
+        try {
+            snapshot.getCount(3, PlaybackMetrics.STAGE_PREPARED);
+            fail("An unknown category was read");
+        } catch (IllegalArgumentException expected) {
+            // Only the categories 0 to 2 exist
+        }
+    }
+
+    @Test
+    public void clipsGetTheirHistogramUntilTheSlotsRunOut() {
+        PlaybackMetrics metrics = new PlaybackMetrics(0, 2);
+        metrics.recordClip(101, 2 * MS);
+        metrics.recordClip(102, 2 * MS);
+        metrics.recordClip(101, 2 * MS);
+        metrics.recordClip(103, 2 * MS);
+        // No sound file has the resource ID 0
+        metrics.recordClip(0, 2 * MS);
+
+        PlaybackMetrics.Snapshot snapshot = metrics.snapshot();
+        int[] clipIds = snapshot.getClipIds();
+        Arrays.sort(clipIds);
+        assertArrayEquals(new int[] {101, 102}, clipIds);
+        assertEquals(2, snapshot.getClipCount(101));
+        assertEquals(1, snapshot.getClipCount(102));
+        assertEquals(0, snapshot.getClipCount(103));
+        assertEquals(2048, snapshot.getClipPercentileMicros(101, 50));
+        assertEquals(0, snapshot.getClipPercentileMicros(103, 50));
+        assertEquals(2, snapshot.getDroppedClipCount());
+    }
+
+    @Test
+    public void countersAreKept() {
+        PlaybackMetrics metrics = new PlaybackMetrics(0, 1);
+        metrics.recordFocusRequest(true);
+        metrics.recordFocusRequest(false);
+        metrics.recordFocusAbandon();
+        metrics.recordFocusLoss();
+        metrics.recordRelease();
+        metrics.recordRelease();
+
+        PlaybackMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.getFocusRequestCount());
+        assertEquals(1, snapshot.getFocusDenialCount());
+        assertEquals(1, snapshot.getFocusAbandonCount());
+        assertEquals(1, snapshot.getFocusLossCount());
+        assertEquals(2, snapshot.getReleaseCount());
+        assertTrue(snapshot.toString(), snapshot.toString().endsWith(
+                "focus: 2 requests, 1 denials, 1 abandons, 1 losses, 2 releases"));
+    }
+
+    @Test
+    public void aSnapshotDoesntChangeAfterwards() {
+        PlaybackMetrics metrics = new PlaybackMetrics(1, 4);
+        metrics.recordClip(101, MS);
+        PlaybackMetrics.Snapshot snapshot = metrics.snapshot();
+
+        metrics.recordClip(101, MS);
+        metrics.recordRelease();
+
+        assertEquals(1, snapshot.getClipCount(101));
+        assertEquals(0, snapshot.getReleaseCount());
+        assertEquals(2, metrics.snapshot().getClipCount(101));
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws InterruptedException {
+        final PlaybackMetrics metrics = new PlaybackMetrics(4, 64);
+        final int perThread = 320 * 32;
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int category = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        metrics.recordStage(category, PlaybackMetrics.STAGE_FIRST_AUDIO,
+                                (i % 100) * MS);
+                        // The threads compete for the same clip slots
+                        metrics.recordClip(1 + i % 32, MS);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        PlaybackMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(threads.length * perThread, snapshot.getCount(PlaybackMetrics.NO_CATEGORY,
+                PlaybackMetrics.STAGE_FIRST_AUDIO));
+        for (int t = 0; t < threads.length; t++) {
+            assertEquals(perThread, snapshot.getCount(t, PlaybackMetrics.STAGE_FIRST_AUDIO));
+        }
+        assertEquals(32, snapshot.getClipIds().length);
+        for (int id = 1; id <= 32; id++) {
+            assertEquals(threads.length * perThread / 32, snapshot.getClipCount(id));
+        }
+        assertEquals(0, snapshot.getDroppedClipCount());
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.android.miwok;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Measures the sustained appends per second of a {@link ProgressLog}, with the background
+ * syncs and compactions it does on the way, and the time to load the progress back.
+ */
+public class ProgressLogBenchmark {
+
+    private static final int APPENDS = 1000000;
+
+    /** Number of different words the events are about */
+    private static final int WORD_COUNT = 10000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+    }
+
+    @Test
+    public void appends() throws IOException {
+        File directory = mFolder.newFolder("progress");
+        Random random = new Random(1);
+        ProgressLog log = new ProgressLog(directory, ReviewScheduler.SYSTEM_CLOCK);
+        try {
+            // Best of a few rounds, the first ones warm the JIT up
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < APPENDS; i++) {
+                    long wordId = random.nextInt(WORD_COUNT);
+                    switch (i % 3) {
+                        case 0:
+                            log.recordPlay(wordId);
+                            break;
+                        case 1:
+                            log.recordReview(wordId, i % 6);
+                            break;
+                        default:
+                            log.recordScore(wordId, i % 101);
+                            break;
+                    }
+                }
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            Benchmarks.report("appends", APPENDS * 1000000000L / best + " appends/s, " +
+                    log.getSyncCount() + " syncs, " + log.getCompactionCount() +
+                    " compactions");
+        } finally {
+            log.close();
+        }
+
+        long start = System.nanoTime();
+        log = new ProgressLog(directory, ReviewScheduler.SYSTEM_CLOCK);
+        try {
+            Benchmarks.report("load of " + log.getWordCount() + " words and " +
+                    log.getLogRecordCount() + " records",
+                    (System.nanoTime() - start) / 1000000 + " ms");
+        } finally {
+            log.close();
+        }
+    }
+}
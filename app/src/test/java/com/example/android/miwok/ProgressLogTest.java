@@ -0,0 +1,287 @@
+package com.example.android.miwok;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link ProgressLog} in a temporary directory: the progress read back after a
+ * restart, the recovery from writes torn by a crash, and compactions under sustained
+ * appends.
+ */
+public class ProgressLogTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private ReviewSchedulerTest.TestClock mClock;
+    private File mDirectory;
+    private ProgressLog mLog;
+
+    @Before
+    public void setUp() throws IOException {
+        mClock = new ReviewSchedulerTest.TestClock();
+        mDirectory = new File(mFolder.getRoot(), "progress");
+        mLog = new ProgressLog(mDirectory, mClock);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mLog.close();
+    }
+
+    /**
+     * Close the log, as a crash of the app after its last write would leave it, and open it
+     * again.
+     */
+    private void reopen() throws IOException {
+        mLog.close();
+        mLog = new ProgressLog(mDirectory, mClock);
+    }
+
+    private File logFile() {
+        return new File(mDirectory, ProgressLog.LOG_FILE);
+    }
+
+    private void recordThree() throws IOException {
+        mLog.recordPlay(1);
+        mClock.mNow += 1000;
+        mLog.recordReview(1, 4);
+        mClock.mNow += 1000;
+        mLog.recordScore(2, 80);
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += in.read(bytes, offset, bytes.length - offset);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    @Test
+    public void progressIsReadBackAfterARestart() throws IOException {
+        recordThree();
+        mLog.recordScore(2, 60);
+
+        reopen();
+
+        assertEquals(2, mLog.getWordCount());
+        assertEquals(1, mLog.getPlayCount(1));
+        assertEquals(1, mLog.getReviewCount(1));
+        assertEquals(4, mLog.getLastQuality(1));
+        assertEquals(80, mLog.getBestScore(2));
+        assertEquals(60, mLog.getLastScore(2));
+        assertEquals(ProgressLog.NO_VALUE, mLog.getBestScore(1));
+        assertEquals(mClock.mNow, mLog.getLastActivityTime(2));
+        assertEquals(4, mLog.getLogRecordCount());
+        assertEquals(0, mLog.getDiscardedByteCount());
+    }
+
+    @Test
+    public void truncatedLastRecordIsCut() throws IOException {
+        recordThree();
+        mLog.close();
+        // The last record was only partly written
+        RandomAccessFile file = new RandomAccessFile(logFile(), "rw");
+        try {
+            file.setLength(file.length() - 10);
+        } finally {
+            file.close();
+        }
+
+        mLog = new ProgressLog(mDirectory, mClock);
+
+        assertEquals(ProgressLog.RECORD_SIZE - 10, mLog.getDiscardedByteCount());
+        assertEquals(2, mLog.getLogRecordCount());
+        assertEquals(ProgressLog.NO_VALUE, mLog.getLastScore(2));
+        assertEquals(ProgressLog.LOG_HEADER_SIZE + 2 * ProgressLog.RECORD_SIZE,
+                logFile().length());
+
+        // The next record goes where the torn one was
+        mLog.recordScore(2, 90);
+        reopen();
+        assertEquals(90, mLog.getLastScore(2));
+        assertEquals(3, mLog.getLogRecordCount());
+        assertEquals(0, mLog.getDiscardedByteCount());
+    }
+
+    @Test
+    public void badChecksumCutsTheLogBeforeTheRecord() throws IOException {
+        recordThree();
+        mLog.close();
+        // A bit flipped in the value of the second record
+        byte[] bytes = read(logFile());
+        bytes[ProgressLog.LOG_HEADER_SIZE + ProgressLog.RECORD_SIZE + 26] ^= 1;
+        write(logFile(), bytes);
+
+        mLog = new ProgressLog(mDirectory, mClock);
+
+        // The third record is valid, but nothing after a torn one is trusted
+        assertEquals(2 * ProgressLog.RECORD_SIZE, mLog.getDiscardedByteCount());
+        assertEquals(1, mLog.getPlayCount(1));
+        assertEquals(0, mLog.getReviewCount(1));
+        assertEquals(ProgressLog.NO_VALUE, mLog.getLastScore(2));
+    }
+
+    @Test
+    public void compactionKeepsTheProgressAndEmptiesTheLog() throws IOException {
+        recordThree();
+
+        mLog.compact();
+
+        assertEquals(0, mLog.getLogRecordCount());
+        assertEquals(1, mLog.getCompactionCount());
+        mLog.recordPlay(1);
+        reopen();
+        assertEquals(2, mLog.getPlayCount(1));
+        assertEquals(80, mLog.getBestScore(2));
+        assertEquals(1, mLog.getLogRecordCount());
+    }
+
+    @Test
+    public void crashBetweenTheSnapshotAndTheLogTruncationCountsRecordsOnce()
+            throws IOException {
+        recordThree();
+        mLog.close();
+        byte[] logBeforeCompaction = read(logFile());
+        mLog = new ProgressLog(mDirectory, mClock);
+
+        mLog.compact();
+        mLog.close();
+        // The snapshot was renamed into place, but the log was not truncated yet
+        assertTrue(new File(mDirectory, ProgressLog.SNAPSHOT_FILE).exists());
+        write(logFile(), logBeforeCompaction);
+        mLog = new ProgressLog(mDirectory, mClock);
+
+        assertEquals(1, mLog.getPlayCount(1));
+        assertEquals(1, mLog.getReviewCount(1));
+        // The sequence numbers go on after the ones of the snapshot
+        mLog.recordPlay(1);
+        reopen();
+        assertEquals(2, mLog.getPlayCount(1));
+    }
+
+    @Test
+    public void unfinishedSnapshotIsIgnored() throws IOException {
+        recordThree();
+        mLog.close();
+        File temp = new File(mDirectory, ProgressLog.SNAPSHOT_FILE + ".tmp");
+        write(temp, new byte[] {1, 2, 3});
+
+        mLog = new ProgressLog(mDirectory, mClock);
+
+        assertFalse(temp.exists());
+        assertEquals(1, mLog.getPlayCount(1));
+    }
+
+    @Test
+    public void crashBeforeTheNewLogIsInPlaceKeepsTheOldOne() throws IOException {
+        recordThree();
+        mLog.close();
+        byte[] logBeforeCompaction = read(logFile());
+        mLog = new ProgressLog(mDirectory, mClock);
+
+        mLog.compact();
+        mLog.close();
+        // The new log was half written next to the old one when the app crashed
+        File temp = new File(mDirectory, ProgressLog.LOG_FILE + ".tmp");
+        byte[] newLog = read(logFile());
+        write(temp, Arrays.copyOf(newLog, newLog.length - 5));
+        write(logFile(), logBeforeCompaction);
+        mLog = new ProgressLog(mDirectory, mClock);
+
+        assertFalse(temp.exists());
+        assertEquals(1, mLog.getPlayCount(1));
+        assertEquals(80, mLog.getBestScore(2));
+    }
+
+    @Test
+    public void compactionKeepsTheRecordsAppendedMeanwhile() throws IOException {
+        recordThree();
+        mLog.compact();
+        mLog.recordPlay(3);
+        mLog.sync();
+
+        // The records after the compaction go to the new log, and are read back from it
+        assertEquals(1, mLog.getLogRecordCount());
+        assertEquals(ProgressLog.LOG_HEADER_SIZE + ProgressLog.RECORD_SIZE,
+                logFile().length());
+        reopen();
+        assertEquals(1, mLog.getPlayCount(3));
+        assertEquals(1, mLog.getPlayCount(1));
+        assertEquals(1, mLog.getLogRecordCount());
+    }
+
+    @Test
+    public void sustainedAppendsKeepEveryRecord() throws Exception {
+        mLog.close();
+        // A low threshold, so the background compactions run while the threads append
+        mLog = new ProgressLog(mDirectory, mClock, 500);
+        final long deadline = System.nanoTime() + 10000000000L;
+        final int[] counts = new int[4];
+        final IOException[] failure = new IOException[1];
+        Thread[] threads = new Thread[counts.length];
+        for (int t = 0; t < threads.length; t++) {
+            final int word = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        // Append until a few compactions ran in the background
+                        while (mLog.getCompactionCount() < 3 && System.nanoTime() < deadline) {
+                            mLog.recordPlay(word);
+                            counts[word]++;
+                        }
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure[0]);
+        assertTrue(mLog.getCompactionCount() + " compactions", mLog.getCompactionCount() >= 3);
+        mLog.recordPlay(0);
+
+        reopen();
+
+        assertEquals(counts.length, mLog.getWordCount());
+        assertEquals(counts[0] + 1, mLog.getPlayCount(0));
+        for (int t = 1; t < counts.length; t++) {
+            assertEquals(counts[t], mLog.getPlayCount(t));
+        }
+    }
+}
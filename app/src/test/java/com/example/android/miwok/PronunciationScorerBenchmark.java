@@ -0,0 +1,63 @@
+package com.example.android.miwok;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Measures the cost of scoring a recording per second of audio, for recordings of 1 to 8
+ * seconds made of the WAV fixtures played in a loop. A score extracts the coefficients of
+ * the recording and aligns them with the reference of the same length, which is the worst
+ * case for the band of the alignment.
+ */
+public class PronunciationScorerBenchmark {
+
+    private static final int[] SECONDS = {1, 2, 4, 8};
+
+    private static final int ITERATIONS = 20;
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+    }
+
+    /**
+     * Return the samples of a fixture repeated to the given number of seconds.
+     */
+    private static short[] loop(WavFixture fixture, int seconds) {
+        short[] clip = fixture.getMonoSamples();
+        short[] samples = new short[fixture.sampleRate * seconds];
+        for (int i = 0; i < samples.length; i += clip.length) {
+            System.arraycopy(clip, 0, samples, i, Math.min(clip.length, samples.length - i));
+        }
+        return samples;
+    }
+
+    @Test
+    public void score() throws IOException {
+        WavFixture reference = WavFixture.load(WavFixture.REFERENCE);
+        WavFixture recording = WavFixture.load(WavFixture.SAME_SLOWER);
+        PronunciationScorer scorer = new PronunciationScorer(reference.sampleRate,
+                recording.sampleRate);
+        for (int seconds : SECONDS) {
+            short[] referenceSamples = loop(reference, seconds);
+            short[] recordingSamples = loop(recording, seconds);
+            scorer.setReference(referenceSamples, 0, referenceSamples.length);
+            long best = Long.MAX_VALUE;
+            float score = 0;
+            // Best of a few rounds, the first ones warm the JIT up
+            for (int round = 0; round < 5; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    score += scorer.score(recordingSamples, 0, recordingSamples.length);
+                }
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            double nanosPerSecond = (double) best / ITERATIONS / seconds;
+            Benchmarks.report("score of " + seconds + " s", Benchmarks.micros(nanosPerSecond) +
+                    " per second of audio, " + String.format("%.0f", 1e9 / nanosPerSecond) +
+                    "x real time (score " + score / (5 * ITERATIONS) + ")");
+        }
+    }
+}
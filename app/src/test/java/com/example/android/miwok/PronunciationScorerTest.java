@@ -0,0 +1,86 @@
+package com.example.android.miwok;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link PronunciationScorer} on the WAV fixtures of the test resources.
+ */
+public class PronunciationScorerTest {
+
+    private PronunciationScorer mScorer;
+    private short[] mReference;
+
+    @Before
+    public void setUp() throws IOException {
+        WavFixture reference = WavFixture.load(WavFixture.REFERENCE);
+        mScorer = new PronunciationScorer(reference.sampleRate, reference.sampleRate);
+        mReference = reference.getMonoSamples();
+        mScorer.setReference(mReference, 0, mReference.length);
+    }
+
+    private float score(String fixture) throws IOException {
+        short[] samples = WavFixture.load(fixture).getMonoSamples();
+        return mScorer.score(samples, 0, samples.length);
+    }
+
+    @Test
+    public void referenceScoresFull() {
+        assertEquals(100, mScorer.score(mReference, 0, mReference.length), 0.01f);
+        assertEquals(0, mScorer.getLastDistance(), 0.01f);
+    }
+
+    @Test
+    public void sameWordSpokenSlowerScoresHigherThanAnotherWord() throws IOException {
+        float same = score(WavFixture.SAME_SLOWER);
+        float different = score(WavFixture.DIFFERENT);
+
+        assertTrue("same " + same + ", different " + different, same > different + 20);
+        assertTrue("same " + same, same > 50);
+    }
+
+    @Test
+    public void silenceScoresZero() throws IOException {
+        assertEquals(0, score(WavFixture.SILENCE), 0);
+        assertTrue(Float.isInfinite(mScorer.getLastDistance()));
+    }
+
+    @Test
+    public void stereoReferenceIsMixedDown() throws IOException {
+        WavFixture stereo = WavFixture.load(WavFixture.REFERENCE_STEREO);
+        assertEquals(2, stereo.channelCount);
+        mScorer.setReference(stereo.pcm, stereo.channelCount);
+
+        assertEquals(100, mScorer.score(mReference, 0, mReference.length), 0.01f);
+        // The buffer of the clip is left as it was
+        assertEquals(0, stereo.pcm.position());
+    }
+
+    @Test
+    public void scoringDoesNotAllocateOnceWarm() throws IOException {
+        short[] samples = WavFixture.load(WavFixture.SAME_SLOWER).getMonoSamples();
+        mScorer.score(samples, 0, samples.length);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        long thread = Thread.currentThread().getId();
+
+        long before = allocations.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 10; i++) {
+            mScorer.score(samples, 0, samples.length);
+        }
+        long allocated = allocations.getThreadAllocatedBytes(thread) - before;
+
+        // Only what measuring itself allocates
+        assertTrue(allocated + " bytes allocated", allocated < 1024);
+    }
+}
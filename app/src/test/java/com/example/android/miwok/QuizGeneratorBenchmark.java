@@ -0,0 +1,57 @@
+package com.example.android.miwok;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Measures the time to build a {@link QuizGenerator} of 100k words, and the time to generate
+ * 1M questions from it.
+ */
+public class QuizGeneratorBenchmark {
+
+    private static final int WORD_COUNT = 100000;
+
+    private static final int QUESTION_COUNT = 1000000;
+
+    private static final int OPTION_COUNT = 4;
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+    }
+
+    @Test
+    public void buildAndGenerate() {
+        VocabularyStore[] categories = TestVocabulary.createCategories(new Random(1),
+                WORD_COUNT, 4);
+        QuizGenerator.Builder builder = new QuizGenerator.Builder();
+        for (int c = 0; c < categories.length; c++) {
+            builder.addCategory(c, categories[c]);
+        }
+        long start = System.nanoTime();
+        QuizGenerator generator = builder.build();
+        Benchmarks.report("build of " + WORD_COUNT + " words",
+                (System.nanoTime() - start) / 1000000 + " ms");
+
+        QuizGenerator.Question question = new QuizGenerator.Question();
+        long bestNanos = Long.MAX_VALUE;
+        long checksum = 0;
+        // Best of a few rounds, the first ones warm the JIT up
+        for (int round = 0; round < 5; round++) {
+            Random random = new Random(2);
+            start = System.nanoTime();
+            for (int i = 0; i < QUESTION_COUNT; i++) {
+                generator.nextQuestion(QuizGenerator.ANY_CATEGORY, OPTION_COUNT, random,
+                        question);
+                checksum += question.getOptionWord(question.getCorrectOption());
+            }
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+        Benchmarks.report(QUESTION_COUNT + " questions of " + OPTION_COUNT + " options",
+                bestNanos / 1000000 + " ms, " +
+                        Benchmarks.micros((double) bestNanos / QUESTION_COUNT) +
+                        " per question (checksum " + checksum + ")");
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.android.miwok;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link QuizGenerator}, on a few words and on a made up vocabulary large enough to
+ * be indexed, checked against a ranking of all the words.
+ */
+public class QuizGeneratorTest {
+
+    /** Words of the large vocabulary, more than {@link QuizGenerator#CANDIDATE_COUNT} */
+    private static final int WORD_COUNT = 2000;
+
+    /**
+     * Return a generator of a few words, where the closest words of "kawa" are "kawu", then
+     * "kawi" of another category. "kawo" means the same as "kawa" and "tawaa" the same as
+     * "kawu".
+     */
+    private static QuizGenerator createSmall(int neighborCount) {
+        return new QuizGenerator.Builder()
+                .setNeighborCount(neighborCount)
+                .addCategory(10, new VocabularyStore.Builder()
+                        .add("one", "kawa", 0)
+                        .add("Two", "tawaa", 1)
+                        .add("two", "kawu", 2)
+                        .add("three", "tiiti", 3)
+                        .build())
+                .addCategory(20, new VocabularyStore.Builder()
+                        .add("four", "kawi", 4)
+                        .add("one", "kawo", 5)
+                        .build())
+                .build();
+    }
+
+    private static QuizGenerator createLarge() {
+        VocabularyStore[] categories = TestVocabulary.createCategories(new Random(1),
+                WORD_COUNT, 4);
+        QuizGenerator.Builder builder = new QuizGenerator.Builder();
+        for (int c = 0; c < categories.length; c++) {
+            builder.addCategory(c, categories[c]);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void neighborsAreTheClosestWordsOfDistinctMeanings() {
+        QuizGenerator generator = createSmall(3);
+
+        assertEquals(6, generator.getWordCount());
+        assertEquals(20, generator.getCategory(4));
+        assertEquals(1, generator.getPosition(5));
+        // "kawi" is as close as "kawu" but in another category, "tawaa" means the same as
+        // "kawu" and "kawo" the same as "kawa"
+        assertEquals(3, generator.getNeighborCount(0));
+        assertArrayEquals(new int[] {2, 4, 3}, neighbors(generator, 0));
+        assertEquals(3, generator.getNeighborCount(5));
+        for (int i = 0; i < generator.getNeighborCount(5); i++) {
+            assertNotEquals(0, generator.getNeighbor(5, i));
+        }
+    }
+
+    @Test
+    public void generatesTheOptionsAmongTheNeighbors() {
+        QuizGenerator generator = createSmall(2);
+        QuizGenerator.Question question = new QuizGenerator.Question();
+
+        generator.generate(0, 3, new Random(3), question);
+
+        assertEquals(0, question.getWord());
+        assertEquals(3, question.getOptionCount());
+        assertEquals(0, question.getOptionWord(question.getCorrectOption()));
+        Set<Integer> options = new HashSet<>();
+        for (int option = 0; option < 3; option++) {
+            options.add(question.getOptionWord(option));
+        }
+        assertEquals(new HashSet<>(Arrays.asList(0, 2, 4)), options);
+
+        // There are not enough neighbours for more options
+        generator.generate(0, 6, new Random(3), question);
+        assertEquals(3, question.getOptionCount());
+        try {
+            question.getOptionWord(3);
+            fail("Option 3 of 3 was returned");
+        } catch (IndexOutOfBoundsException expected) {
+            // The option doesn't exist
+        }
+    }
+
+    @Test
+    public void nextQuestionAsksAWordOfTheCategory() {
+        QuizGenerator generator = createSmall(3);
+        QuizGenerator.Question question = new QuizGenerator.Question();
+        Random random = new Random(5);
+
+        for (int i = 0; i < 100; i++) {
+            generator.nextQuestion(20, 2, random, question);
+            assertEquals(20, generator.getCategory(question.getWord()));
+        }
+        try {
+            generator.nextQuestion(30, 2, random, question);
+            fail("A question was made for an unknown category");
+        } catch (IllegalArgumentException expected) {
+            // The category was not added
+        }
+        try {
+            generator.nextQuestion(QuizGenerator.ANY_CATEGORY, 1, random, question);
+            fail("A question was made with one option");
+        } catch (IllegalArgumentException expected) {
+            // There must be a wrong option
+        }
+    }
+
+    @Test
+    public void theSameSeedGivesTheSameQuestions() {
+        QuizGenerator generator = createLarge();
+        QuizGenerator other = createLarge();
+        QuizGenerator.Question question = new QuizGenerator.Question();
+        QuizGenerator.Question otherQuestion = new QuizGenerator.Question();
+        Random random = new Random(7);
+        Random otherRandom = new Random(7);
+
+        for (int i = 0; i < 1000; i++) {
+            generator.nextQuestion(QuizGenerator.ANY_CATEGORY, 4, random, question);
+            other.nextQuestion(QuizGenerator.ANY_CATEGORY, 4, otherRandom, otherQuestion);
+            assertEquals(question.getWord(), otherQuestion.getWord());
+            assertEquals(question.getCorrectOption(), otherQuestion.getCorrectOption());
+            for (int option = 0; option < question.getOptionCount(); option++) {
+                assertEquals(question.getOptionWord(option), otherQuestion.getOptionWord(option));
+            }
+        }
+    }
+
+    @Test
+    public void noTwoOptionsShowTheSameText() {
+        // The made up words reuse a few English words, so many of them mean the same
+        QuizGenerator generator = createLarge();
+        QuizGenerator.Question question = new QuizGenerator.Question();
+        Random random = new Random(11);
+
+        for (int i = 0; i < 10000; i++) {
+            generator.nextQuestion(QuizGenerator.ANY_CATEGORY, 4, random, question);
+            assertEquals(4, question.getOptionCount());
+            Set<String> texts = new HashSet<>();
+            for (int option = 0; option < 4; option++) {
+                texts.add(TextFolder.DEFAULT.fold(
+                        generator.getDefaultTranslation(question.getOptionWord(option))));
+            }
+            assertEquals(4, texts.size());
+        }
+    }
+
+    @Test
+    public void indexedNeighborsAreMostlyTheClosestWords() {
+        QuizGenerator generator = createLarge();
+        int wordCount = generator.getWordCount();
+        String[] terms = new String[wordCount];
+        String[] meanings = new String[wordCount];
+        for (int word = 0; word < wordCount; word++) {
+            terms[word] = TextFolder.MIWOK.fold(generator.getMiwokTranslation(word));
+            meanings[word] = TextFolder.DEFAULT.fold(generator.getDefaultTranslation(word));
+        }
+        int[] costs = new int[wordCount];
+        int closest = 0;
+        int total = 0;
+        for (int word = 0; word < wordCount; word += 10) {
+            // Rank all the words that could be a distractor
+            int count = 0;
+            for (int other = 0; other < wordCount; other++) {
+                if (!terms[other].equals(terms[word]) && !meanings[other].equals(meanings[word])) {
+                    costs[count++] = cost(generator, terms, word, other);
+                }
+            }
+            Arrays.sort(costs, 0, count);
+            int neighborCount = generator.getNeighborCount(word);
+            assertEquals(QuizGenerator.DEFAULT_NEIGHBOR_COUNT, neighborCount);
+            int previous = 0;
+            for (int i = 0; i < neighborCount; i++) {
+                int cost = cost(generator, terms, word, generator.getNeighbor(word, i));
+                assertTrue(cost >= previous);
+                previous = cost;
+                if (cost <= costs[neighborCount - 1]) {
+                    closest++;
+                }
+                total++;
+            }
+        }
+        // The exact top words can be missed by the index, but rarely on a vocabulary this size
+        assertTrue(closest + " of " + total, closest >= total * 9 / 10);
+    }
+
+    private static int[] neighbors(QuizGenerator generator, int word) {
+        int[] neighbors = new int[generator.getNeighborCount(word)];
+        for (int i = 0; i < neighbors.length; i++) {
+            neighbors[i] = generator.getNeighbor(word, i);
+        }
+        return neighbors;
+    }
+
+    private static int cost(QuizGenerator generator, String[] terms, int word, int other) {
+        int distance = FuzzyMatcher.levenshtein(terms[word], terms[other], Integer.MAX_VALUE,
+                new int[64], new int[64]);
+        return 2 * distance + (generator.getCategory(other) == generator.getCategory(word)
+                ? 0 : 1);
+    }
+}
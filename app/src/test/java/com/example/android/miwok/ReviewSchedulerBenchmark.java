@@ -0,0 +1,66 @@
+package com.example.android.miwok;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures the reviews of a {@link ReviewScheduler} at deck sizes from 1k to 1M cards: each
+ * review takes the next due card and records an answer, which moves the card in the due
+ * queue. The time per review should grow with the logarithm of the size of the deck only.
+ */
+public class ReviewSchedulerBenchmark {
+
+    private static final int[] DECK_SIZES = {1000, 10000, 100000, 1000000};
+
+    private static final int REVIEWS = 200000;
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+    }
+
+    @Test
+    public void reviews() {
+        for (int deckSize : DECK_SIZES) {
+            ReviewSchedulerTest.TestClock clock = new ReviewSchedulerTest.TestClock();
+            Random random = new Random(deckSize);
+            long before = Benchmarks.usedMemory();
+            long start = System.nanoTime();
+            ReviewScheduler scheduler = new ReviewScheduler(clock, deckSize);
+            // Cards due over the last and the next 30 days, as a deck in use would be
+            for (int i = 0; i < deckSize; i++) {
+                scheduler.restoreCard(random.nextLong(),
+                        clock.mNow + (long) ((random.nextDouble() - 0.5) * 60 * DAY_MILLIS),
+                        1 + random.nextInt(30), 2500, 1, 0);
+            }
+            long loadNanos = System.nanoTime() - start;
+            long memory = Benchmarks.usedMemory() - before;
+
+            long best = Long.MAX_VALUE;
+            // Best of a few rounds, the first ones warm the JIT up
+            for (int round = 0; round < 5; round++) {
+                start = System.nanoTime();
+                for (int i = 0; i < REVIEWS; i++) {
+                    long id = scheduler.nextDueCard();
+                    if (id == ReviewScheduler.NO_CARD) {
+                        // Everything was reviewed, come back the next day
+                        clock.mNow += DAY_MILLIS;
+                        continue;
+                    }
+                    scheduler.recordAnswer(id, random.nextInt(6));
+                }
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            assertEquals(deckSize, scheduler.size());
+            Benchmarks.report("deck of " + deckSize, "review " +
+                    Benchmarks.micros((double) best / REVIEWS) + ", load " +
+                    loadNanos / 1000000 + " ms, " + memory / deckSize + " bytes per card");
+        }
+    }
+}
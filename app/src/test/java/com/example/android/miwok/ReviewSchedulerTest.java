@@ -0,0 +1,173 @@
+package com.example.android.miwok;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the SM-2 intervals and of the due queue of {@link ReviewScheduler}, with a clock
+ * moved by the tests.
+ */
+public class ReviewSchedulerTest {
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    /** Some time in 2017, the clock starts there */
+    private static final long START_MILLIS = 1500000000000L;
+
+    /**
+     * {@link ReviewScheduler.Clock} whose time only moves when the test says so.
+     */
+    static class TestClock implements ReviewScheduler.Clock {
+
+        long mNow = START_MILLIS;
+
+        @Override
+        public long currentTimeMillis() {
+            return mNow;
+        }
+    }
+
+    private TestClock mClock;
+    private ReviewScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mClock = new TestClock();
+        mScheduler = new ReviewScheduler(mClock, 4);
+    }
+
+    @Test
+    public void newCardIsDueNow() {
+        assertEquals(ReviewScheduler.NO_CARD, mScheduler.nextDueCard());
+        assertEquals(Long.MAX_VALUE, mScheduler.nextDueTime());
+
+        assertTrue(mScheduler.addCard(7));
+        assertFalse(mScheduler.addCard(7));
+
+        assertEquals(1, mScheduler.size());
+        assertEquals(7, mScheduler.nextDueCard());
+        assertEquals(START_MILLIS, mScheduler.getDueTime(7));
+    }
+
+    @Test
+    public void rememberedWordsComeBackLaterAndLater() {
+        mScheduler.addCard(7);
+
+        assertEquals(START_MILLIS + DAY_MILLIS,
+                mScheduler.recordAnswer(7, ReviewScheduler.QUALITY_PERFECT));
+        assertEquals(ReviewScheduler.NO_CARD, mScheduler.nextDueCard());
+
+        mClock.mNow += DAY_MILLIS;
+        assertEquals(7, mScheduler.nextDueCard());
+        mScheduler.recordAnswer(7, ReviewScheduler.QUALITY_PERFECT);
+        assertEquals(6, mScheduler.getIntervalDays(7));
+
+        mClock.mNow += 6 * DAY_MILLIS;
+        long due = mScheduler.recordAnswer(7, ReviewScheduler.QUALITY_PERFECT);
+        // 6 days times the ease of 2.7 reached after two perfect answers
+        assertEquals(16, mScheduler.getIntervalDays(7));
+        assertEquals(mClock.mNow + 16 * DAY_MILLIS, due);
+        assertEquals(2800, mScheduler.getEase(7));
+        assertEquals(3, mScheduler.getRepetitions(7));
+    }
+
+    @Test
+    public void forgottenWordComesBackTheNextDay() {
+        mScheduler.restoreCard(7, START_MILLIS, 30, 2500, 5, 0);
+
+        mScheduler.recordAnswer(7, ReviewScheduler.QUALITY_BLACKOUT);
+
+        assertEquals(1, mScheduler.getIntervalDays(7));
+        assertEquals(0, mScheduler.getRepetitions(7));
+        assertEquals(1, mScheduler.getLapses(7));
+        assertEquals(1700, mScheduler.getEase(7));
+        assertEquals(START_MILLIS + DAY_MILLIS, mScheduler.getDueTime(7));
+
+        // The ease never goes under 1.3
+        mScheduler.recordAnswer(7, ReviewScheduler.QUALITY_BLACKOUT);
+        assertEquals(1300, mScheduler.getEase(7));
+    }
+
+    @Test
+    public void restoreCardReplacesTheState() {
+        mScheduler.addCard(7);
+        mScheduler.addCard(8);
+
+        mScheduler.restoreCard(7, START_MILLIS + DAY_MILLIS, 3, 2000, 2, 1);
+
+        assertEquals(2, mScheduler.size());
+        assertEquals(8, mScheduler.nextDueCard());
+        assertEquals(3, mScheduler.getIntervalDays(7));
+        assertEquals(2000, mScheduler.getEase(7));
+        assertEquals(1, mScheduler.getLapses(7));
+    }
+
+    @Test
+    public void invalidAnswersAreRejected() {
+        mScheduler.addCard(7);
+        try {
+            mScheduler.recordAnswer(7, ReviewScheduler.QUALITY_PERFECT + 1);
+            fail("A quality of 6 was accepted");
+        } catch (IllegalArgumentException expected) {
+            // Qualities go from 0 to 5
+        }
+        try {
+            mScheduler.recordAnswer(8, ReviewScheduler.QUALITY_PERFECT);
+            fail("An answer for an unknown card was accepted");
+        } catch (IllegalArgumentException expected) {
+            // There is no card 8
+        }
+    }
+
+    @Test
+    public void dueQueueMatchesAScanOfTheDeck() {
+        // Random operations on a deck growing past its expected size, checked against a
+        // plain map of the due times
+        Random random = new Random(1);
+        Map<Long, Long> dueTimes = new HashMap<>();
+        for (int step = 0; step < 20000; step++) {
+            long id = random.nextInt(500);
+            int operation = random.nextInt(10);
+            if (operation < 3) {
+                if (mScheduler.addCard(id)) {
+                    dueTimes.put(id, mClock.mNow);
+                }
+            } else if (operation < 5) {
+                long dueTime = mClock.mNow + (random.nextInt(20) - 10) * DAY_MILLIS;
+                mScheduler.restoreCard(id, dueTime, 1, 2500, 1, 0);
+                dueTimes.put(id, dueTime);
+            } else if (operation < 6) {
+                assertEquals(dueTimes.remove(id) != null, mScheduler.removeCard(id));
+            } else if (operation < 9) {
+                long next = mScheduler.nextDueCard();
+                if (next != ReviewScheduler.NO_CARD) {
+                    dueTimes.put(next, mScheduler.recordAnswer(next, random.nextInt(6)));
+                }
+            } else {
+                mClock.mNow += random.nextInt(3) * DAY_MILLIS;
+            }
+
+            assertEquals(dueTimes.size(), mScheduler.size());
+            long earliest = Long.MAX_VALUE;
+            for (long dueTime : dueTimes.values()) {
+                earliest = Math.min(earliest, dueTime);
+            }
+            assertEquals(earliest, mScheduler.nextDueTime());
+            long next = mScheduler.nextDueCard();
+            if (earliest > mClock.mNow) {
+                assertEquals(ReviewScheduler.NO_CARD, next);
+            } else {
+                assertEquals(earliest, (long) dueTimes.get(next));
+            }
+        }
+    }
+}
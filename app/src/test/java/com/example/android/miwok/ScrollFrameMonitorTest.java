@@ -0,0 +1,119 @@
+package com.example.android.miwok;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link ScrollFrameMonitor} and of the {@link FrameStats} it fills, fed with made
+ * up scroll positions, frames and binds instead of a list.
+ */
+public class ScrollFrameMonitorTest {
+
+    private static final int CATEGORY = 1;
+
+    /** Time of the first event, frames at 0 are not timed */
+    private static final long START_NANOS = 1000000000L;
+
+    private FrameStats mStats;
+    private ScrollFrameMonitor mMonitor;
+    private long mNowNanos;
+    private float mPosition;
+
+    @Before
+    public void setUp() {
+        mStats = new FrameStats(2);
+        mMonitor = new ScrollFrameMonitor(mStats, CATEGORY, null);
+        mNowNanos = START_NANOS;
+        mMonitor.onScrollPosition(mPosition, mNowNanos);
+        mMonitor.onFrame(mNowNanos);
+    }
+
+    @Test
+    public void reportsThePercentilesOfAFastScroll() {
+        // One row per frame is fast, even for the slowest frames
+        for (int i = 0; i < 100; i++) {
+            frame(i < 90 ? 16000 : i < 95 ? 33000 : 50000, 1);
+            mMonitor.onBind((i < 90 ? 2000 : i < 98 ? 4000 : 12000) * 1000L);
+        }
+
+        FrameStats.Report report = mStats.getReport(CATEGORY, FrameStats.VELOCITY_FAST);
+        assertEquals(100, report.getFrameCount());
+        assertEquals(10, report.getJankCount());
+        assertWithinBucket(16000, report.getFrameP50Micros());
+        assertWithinBucket(33000, report.getFrameP95Micros());
+        assertWithinBucket(50000, report.getFrameP99Micros());
+        assertEquals(100, report.getBindCount());
+        assertWithinBucket(2000, report.getBindP50Micros());
+        assertWithinBucket(4000, report.getBindP95Micros());
+        assertWithinBucket(12000, report.getBindP99Micros());
+
+        // Nothing went to the other bands and categories
+        assertEquals(0, mStats.getReport(CATEGORY, FrameStats.VELOCITY_SLOW).getFrameCount());
+        assertEquals(0, mStats.getReport(0, FrameStats.ANY_VELOCITY).getFrameCount());
+        assertEquals(0, mStats.getReport(0, FrameStats.ANY_VELOCITY).getBindP99Micros());
+    }
+
+    @Test
+    public void sortsTheFramesByVelocity() {
+        // A bind before the list moves is counted as still
+        mMonitor.onBind(3000000);
+        for (int i = 0; i < 20; i++) {
+            frame(16000, 1);
+        }
+        // A row every 20 frames is about 3 rows per second
+        for (int i = 0; i < 40; i++) {
+            frame(i < 20 ? 16000 : 40000, 0.05f);
+        }
+
+        FrameStats.Report still = mStats.getReport(CATEGORY, FrameStats.VELOCITY_STILL);
+        assertEquals(1, still.getBindCount());
+        assertWithinBucket(3000, still.getBindP50Micros());
+        FrameStats.Report slow = mStats.getReport(CATEGORY, FrameStats.VELOCITY_SLOW);
+        assertEquals(40, slow.getFrameCount());
+        assertEquals(20, slow.getJankCount());
+        assertWithinBucket(16000, slow.getFrameP50Micros());
+        assertWithinBucket(40000, slow.getFrameP95Micros());
+        FrameStats.Report all = mStats.getReport(CATEGORY, FrameStats.ANY_VELOCITY);
+        assertEquals(60, all.getFrameCount());
+        assertWithinBucket(16000, all.getFrameP50Micros());
+        assertWithinBucket(40000, all.getFrameP99Micros());
+    }
+
+    @Test
+    public void aListLaidOutAgainWithoutMovingKeepsItsVelocity() {
+        frame(16000, 1);
+        assertEquals(FrameStats.VELOCITY_FAST, mMonitor.getVelocityBand());
+
+        mNowNanos += 10000000;
+        mMonitor.onScrollPosition(mPosition, mNowNanos);
+        assertEquals(FrameStats.VELOCITY_FAST, mMonitor.getVelocityBand());
+
+        // Without moving for long, the list is still
+        mNowNanos += 200000000;
+        mMonitor.onScrollPosition(mPosition, mNowNanos);
+        assertEquals(FrameStats.VELOCITY_STILL, mMonitor.getVelocityBand());
+    }
+
+    /**
+     * Move the list by the given number of rows, then draw a frame of the given duration.
+     */
+    private void frame(long durationMicros, float rows) {
+        mNowNanos += durationMicros * 1000;
+        mPosition += rows;
+        mMonitor.onScrollPosition(mPosition, mNowNanos);
+        mMonitor.onFrame(mNowNanos);
+    }
+
+    /**
+     * Check that a percentile is the end of the bucket of the expected time, which is at
+     * most 12.5% above it.
+     */
+    private static void assertWithinBucket(long expectedMicros, long actualMicros) {
+        assertTrue(actualMicros + " < " + expectedMicros, actualMicros > expectedMicros);
+        assertTrue(actualMicros + " is more than 12.5% above " + expectedMicros,
+                actualMicros <= expectedMicros + expectedMicros / 8);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.android.miwok;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Measures the time of the prefix and substring queries of a {@link SearchIndex} of 100k
+ * words, and the time to build it.
+ */
+public class SearchIndexBenchmark {
+
+    private static final int WORD_COUNT = 100000;
+
+    private static final int MAX_HITS = 20;
+
+    private static final int ITERATIONS = 2000;
+
+    private static final String[] QUERIES = {"a", "e", "ka", "wi", "kawi", "yel", "brother",
+            "ee", "tiko", "zz"};
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+    }
+
+    @Test
+    public void queries() {
+        VocabularyStore[] categories = TestVocabulary.createCategories(new Random(1),
+                WORD_COUNT, 4);
+        SearchIndex.Builder builder = new SearchIndex.Builder();
+        for (int c = 0; c < categories.length; c++) {
+            builder.addCategory(c, categories[c]);
+        }
+        long start = System.nanoTime();
+        SearchIndex index = builder.build();
+        Benchmarks.report("build of " + WORD_COUNT + " words",
+                (System.nanoTime() - start) / 1000000 + " ms");
+
+        for (String query : QUERIES) {
+            long prefixNanos = Long.MAX_VALUE;
+            long substringNanos = Long.MAX_VALUE;
+            int hits = 0;
+            // Best of a few rounds, the first ones warm the JIT up
+            for (int round = 0; round < 5; round++) {
+                start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    hits += index.findPrefix(query, MAX_HITS).size();
+                }
+                prefixNanos = Math.min(prefixNanos, System.nanoTime() - start);
+                start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    hits += index.findSubstring(query, MAX_HITS).size();
+                }
+                substringNanos = Math.min(substringNanos, System.nanoTime() - start);
+            }
+            Benchmarks.report("query \"" + query + "\"", "prefix " +
+                    Benchmarks.micros((double) prefixNanos / ITERATIONS) + ", substring " +
+                    Benchmarks.micros((double) substringNanos / ITERATIONS) + " (" +
+                    hits / (10 * ITERATIONS) + " hits)");
+        }
+    }
+}
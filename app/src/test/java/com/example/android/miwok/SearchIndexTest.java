@@ -0,0 +1,174 @@
+package com.example.android.miwok;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link SearchIndex}, checked against a scan of the words.
+ */
+public class SearchIndexTest {
+
+    @Test
+    public void findsWordsByPrefixOfAnyWordOfATranslation() {
+        SearchIndex index = new SearchIndex.Builder()
+                .addCategory(0, new VocabularyStore.Builder()
+                        .add("dusty yellow", "peṭaṭә", 1)
+                        .add("yellow", "chiwiiṭә", 2)
+                        .add("red", "weṭeṭṭi", 3)
+                        .build())
+                .build();
+
+        List<SearchIndex.Hit> hits = index.findPrefix("yel", 10);
+
+        assertEquals(2, hits.size());
+        // Both words match "yellow" to the end of the field, so their order is not checked
+        Set<Integer> positions = new HashSet<>();
+        for (SearchIndex.Hit hit : hits) {
+            positions.add(hit.position);
+            assertEquals(SearchIndex.FIELD_DEFAULT, hit.field);
+        }
+        assertTrue(positions.contains(0));
+        assertTrue(positions.contains(1));
+        assertEquals(0, index.findPrefix("ellow", 10).size());
+        assertEquals(2, index.findSubstring("ellow", 10).size());
+    }
+
+    @Test
+    public void foldsTheQueryAndTheTranslations() {
+        SearchIndex index = new SearchIndex.Builder()
+                .addCategory(3, new VocabularyStore.Builder()
+                        .add("How are you feeling?", "michәksәs?", 1)
+                        .add("Let’s go.", "yoowutis", 2)
+                        .add("Are you coming?", "әәnәs'aa?", 3)
+                        .build())
+                .build();
+
+        List<SearchIndex.Hit> hits = index.findPrefix("michek", 10);
+        assertEquals(1, hits.size());
+        assertEquals(3, hits.get(0).category);
+        assertEquals(0, hits.get(0).position);
+        assertEquals(SearchIndex.FIELD_MIWOK, hits.get(0).field);
+
+        assertEquals(1, index.findPrefix("let's", 10).size());
+        assertEquals(2, index.findSubstring("eenes", 10).get(0).position);
+    }
+
+    @Test
+    public void eachWordIsFoundOnce() {
+        SearchIndex index = new SearchIndex.Builder()
+                .addCategory(0, new VocabularyStore.Builder().add("kaka", "kakaka", 1).build())
+                .build();
+
+        assertEquals(1, index.findSubstring("ka", 10).size());
+    }
+
+    @Test
+    public void emptyQueryFindsNothing() {
+        SearchIndex index = new SearchIndex.Builder()
+                .addCategory(0, new VocabularyStore.Builder().add("one", "lutti", 1).build())
+                .build();
+
+        assertEquals(0, index.findPrefix("", 10).size());
+        assertEquals(0, index.findPrefix("?", 10).size());
+        assertEquals(0, index.findPrefix("one", 0).size());
+    }
+
+    @Test
+    public void matchesAScanOfTheWords() {
+        Random random = new Random(42);
+        VocabularyStore[] categories = TestVocabulary.createCategories(random, 3000, 4);
+        SearchIndex.Builder builder = new SearchIndex.Builder();
+        for (int c = 0; c < categories.length; c++) {
+            builder.addCategory(c, categories[c]);
+        }
+        SearchIndex index = builder.build();
+
+        String[] queries = {"a", "ka", "wi", "ee", "kawi", "yel", "go", "brother", "'", "e",
+                "taka", "sister", "zzz"};
+        for (String query : queries) {
+            for (boolean prefix : new boolean[] {true, false}) {
+                Map<Long, String> expected = scan(categories, query, prefix);
+                // All the matches, then only the first ones
+                check(index, categories, query, prefix, expected, Integer.MAX_VALUE);
+                check(index, categories, query, prefix, expected, 20);
+            }
+        }
+    }
+
+    /**
+     * Check the hits of a query: the right number of distinct words, and no word left out
+     * that matched before one of the returned words.
+     */
+    private static void check(SearchIndex index, VocabularyStore[] categories, String query,
+                              boolean prefix, Map<Long, String> expected, int maxHits) {
+        List<SearchIndex.Hit> hits = prefix ? index.findPrefix(query, maxHits)
+                : index.findSubstring(query, maxHits);
+        String message = (prefix ? "prefix " : "substring ") + query;
+        assertEquals(message, Math.min(maxHits, expected.size()), hits.size());
+
+        Set<Long> returned = new HashSet<>();
+        String lastMatch = "";
+        for (SearchIndex.Hit hit : hits) {
+            long key = key(hit.category, hit.position);
+            assertTrue(message + " found " + hit, expected.containsKey(key));
+            assertTrue(message + " twice " + hit, returned.add(key));
+            String match = expected.get(key);
+            assertTrue(message + " out of order", match.compareTo(lastMatch) >= 0);
+            lastMatch = match;
+        }
+        for (Map.Entry<Long, String> entry : expected.entrySet()) {
+            if (!returned.contains(entry.getKey())) {
+                assertTrue(message + " left out " + entry.getValue(),
+                        entry.getValue().compareTo(lastMatch) >= 0);
+            }
+        }
+    }
+
+    /**
+     * Return the matching words, with the smallest text matched in each of them, from the
+     * match to the end of its translation.
+     */
+    private static Map<Long, String> scan(VocabularyStore[] categories, String query,
+                                          boolean prefix) {
+        TextFolder folder = TextFolder.MIWOK;
+        String key = folder.fold(query);
+        Map<Long, String> matches = new HashMap<>();
+        if (key.isEmpty()) {
+            return matches;
+        }
+        for (int c = 0; c < categories.length; c++) {
+            for (int i = 0; i < categories[c].size(); i++) {
+                List<String> fields = new ArrayList<>();
+                fields.add(folder.fold(categories[c].getDefaultTranslation(i)));
+                fields.add(folder.fold(categories[c].getMiwokTranslation(i)));
+                for (String field : fields) {
+                    for (int at = field.indexOf(key); at >= 0; at = field.indexOf(key, at + 1)) {
+                        if (prefix && at > 0 && Character.isLetterOrDigit(field.charAt(at - 1))) {
+                            continue;
+                        }
+                        String match = field.substring(at);
+                        String best = matches.get(key(c, i));
+                        if (best == null || match.compareTo(best) < 0) {
+                            matches.put(key(c, i), match);
+                        }
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static long key(int category, int position) {
+        return (long) category << 32 | position;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.android.miwok;
+
+import android.app.Activity;
+import android.view.View;
+import android.widget.LinearLayout;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link StartupTrace}, on cold starts of {@link MainActivity} run by Robolectric.
+ * Robolectric loads and instruments the framework classes the first time they are used, which
+ * took about 2s of the first setContentView, so a plain activity is laid out before each test
+ * and the phases only time the app. The budgets are about twice the slowest of six such cold
+ * starts, at most 265ms, 11ms, 113ms and 39ms, so a phase doubling its time goes over.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class StartupTraceTest {
+
+    /** Budgets of the phases on the JVM, in the order of the PHASE constants */
+    private static final long[] JVM_BUDGET_MILLIS = {500, 50, 200, 100};
+
+    private StartupTrace mTrace;
+
+    @Before
+    public void setUp() {
+        warmUpFramework();
+        StartupTrace.resetInstance();
+        mTrace = StartupTrace.getInstance();
+        for (int phase = 0; phase < StartupTrace.PHASE_COUNT; phase++) {
+            mTrace.setBudgetMillis(phase, JVM_BUDGET_MILLIS[phase]);
+        }
+    }
+
+    @Test
+    public void coldStartIsWithinBudget() {
+        startMainActivity();
+
+        StartupTrace.Report report = mTrace.getReport();
+        for (int phase = 0; phase < StartupTrace.PHASE_COUNT; phase++) {
+            assertTrue(StartupTrace.getPhaseName(phase) + " didn't run: " + report,
+                    report.isRecorded(phase));
+            assertEquals(JVM_BUDGET_MILLIS[phase], report.getBudgetMillis(phase));
+        }
+        assertTrue(report.toString(), report.isWithinBudget());
+    }
+
+    @Test
+    public void onlyTheFirstStartIsRecorded() {
+        startMainActivity();
+        StartupTrace.Report first = mTrace.getReport();
+
+        startMainActivity();
+
+        StartupTrace.Report second = mTrace.getReport();
+        for (int phase = 0; phase < StartupTrace.PHASE_COUNT; phase++) {
+            assertEquals(first.getDurationMillis(phase), second.getDurationMillis(phase));
+        }
+        assertEquals(first.getTotalMillis(), second.getTotalMillis());
+    }
+
+    @Test
+    public void aPhaseOverItsBudgetFailsTheReport() throws InterruptedException {
+        StartupTrace trace = new StartupTrace();
+        trace.setBudgetMillis(StartupTrace.PHASE_TABS, 0);
+
+        trace.beginPhase(StartupTrace.PHASE_TABS);
+        Thread.sleep(2);
+        trace.endPhase(StartupTrace.PHASE_TABS);
+
+        StartupTrace.Report report = trace.getReport();
+        assertTrue(report.isOverBudget(StartupTrace.PHASE_TABS));
+        assertFalse(report.isRecorded(StartupTrace.PHASE_CONTENT_VIEW));
+        assertFalse(report.isWithinBudget());
+        try {
+            trace.setBudgetMillis(StartupTrace.PHASE_TABS, -1);
+            fail("A negative budget was accepted");
+        } catch (IllegalArgumentException expected) {
+            // A phase can't take less than no time
+        }
+    }
+
+    /**
+     * Lay out a plain activity with the kinds of views of {@link MainActivity}, so their classes
+     * are loaded before the start is timed. It doesn't touch the words or the resources of the
+     * app.
+     */
+    private static void warmUpFramework() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        LinearLayout layout = new LinearLayout(activity);
+        layout.addView(new TextView(activity));
+        layout.addView(new ListView(activity));
+        activity.setContentView(layout);
+        layout.measure(View.MeasureSpec.makeMeasureSpec(480, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(800, View.MeasureSpec.EXACTLY));
+    }
+
+    /**
+     * Start a {@link MainActivity} and lay it out, which creates the page of the first
+     * category and loads its words.
+     */
+    private static void startMainActivity() {
+        MainActivity activity = Robolectric.setupActivity(MainActivity.class);
+        View content = activity.findViewById(android.R.id.content);
+        content.measure(View.MeasureSpec.makeMeasureSpec(480, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(800, View.MeasureSpec.EXACTLY));
+        content.layout(0, 0, 480, 800);
+    }
+}
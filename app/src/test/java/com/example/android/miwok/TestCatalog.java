@@ -0,0 +1,233 @@
+package com.example.android.miwok;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Keeps the expected words of a {@link VocabularyCatalog} in plain lists, for the tests and
+ * the benchmarks of large packs and long chains of {@link VocabularyDelta}s. It writes the
+ * pack of its words, makes up deltas of random adds, removals and corrections, applying
+ * them to its lists the way the catalog should, and checks a catalog against its lists.
+ */
+final class TestCatalog {
+
+    /** Made up resource IDs of the names, see {@link #RESOLVER} */
+    private static final int IMAGE_BASE = 1000;
+    private static final int AUDIO_BASE = 2000;
+
+    /** Resolves every name to its length, so the IDs can be checked */
+    static final VocabularyCatalog.ResourceResolver RESOLVER =
+            new VocabularyCatalog.ResourceResolver() {
+                @Override
+                public int getImageResourceId(String name) {
+                    return IMAGE_BASE + name.length();
+                }
+
+                @Override
+                public int getAudioResourceId(String name) {
+                    return AUDIO_BASE + name.length();
+                }
+            };
+
+    /** A word: stable ID, translations, image and audio names */
+    private static class Entry {
+        final long mStableId;
+        final String mDefaultTranslation;
+        final String mMiwokTranslation;
+        final String mImageName;
+        final String mAudioName;
+
+        Entry(long stableId, String defaultTranslation, String miwokTranslation,
+              String imageName, String audioName) {
+            mStableId = stableId;
+            mDefaultTranslation = defaultTranslation;
+            mMiwokTranslation = miwokTranslation;
+            mImageName = imageName;
+            mAudioName = audioName;
+        }
+    }
+
+    private final Random mRandom;
+
+    /** Words of each category, in the order the catalog should have them */
+    private final List<List<Entry>> mCategories = new ArrayList<>();
+
+    /** Category index of each word, by stable ID */
+    private final Map<Long, Integer> mCategoryById = new HashMap<>();
+
+    /** Number of words made up so far, appended to the translations to keep them unique */
+    private int mCreated;
+
+    private int mVersion = 1;
+
+    /**
+     * Create the words of a pack.
+     *
+     * @param random gives the words and the changes, the same seed gives the same ones
+     * @param size is the number of words, split evenly between the categories
+     * @param categoryCount is the number of categories
+     */
+    TestCatalog(Random random, int size, int categoryCount) {
+        mRandom = random;
+        for (int c = 0; c < categoryCount; c++) {
+            List<Entry> words = new ArrayList<>(size / categoryCount);
+            mCategories.add(words);
+            for (int i = 0; i < size / categoryCount; i++) {
+                Entry entry = newEntry();
+                words.add(entry);
+                mCategoryById.put(entry.mStableId, c);
+            }
+        }
+    }
+
+    /**
+     * Return the ID of the category at the given index, as written in the pack.
+     */
+    static int categoryId(int category) {
+        return 10 * (category + 1);
+    }
+
+    /**
+     * Return the version of the words, as they are after the deltas made so far.
+     */
+    int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Return the number of words, as they are after the deltas made so far.
+     */
+    int size() {
+        return mCategoryById.size();
+    }
+
+    /**
+     * Write the words, as they are now, as a pack of the current version.
+     */
+    void writePack(File file) throws IOException {
+        VocabularyPack.Writer writer = new VocabularyPack.Writer().setDataVersion(mVersion);
+        for (int c = 0; c < mCategories.size(); c++) {
+            writer.startCategory(categoryId(c), "category " + c);
+            for (Entry entry : mCategories.get(c)) {
+                writer.add(entry.mStableId, entry.mDefaultTranslation, entry.mMiwokTranslation,
+                        entry.mImageName, entry.mAudioName);
+            }
+        }
+        writer.writeTo(file);
+    }
+
+    /**
+     * Make up a delta of random operations from the current version, and apply it to the
+     * expected words. About a third of the operations add a word, a third remove one and a
+     * third correct one, sometimes a word added or corrected earlier in the same delta.
+     */
+    VocabularyDelta nextDelta(int operationCount) {
+        VocabularyDelta.Builder builder = new VocabularyDelta.Builder(mVersion, mVersion + 1);
+        List<Entry> touched = new ArrayList<>();
+        for (int i = 0; i < operationCount; i++) {
+            int kind = mRandom.nextInt(3);
+            if (kind == 0 || mCategoryById.isEmpty()) {
+                int category = mRandom.nextInt(mCategories.size());
+                Entry entry = newEntry();
+                builder.add(categoryId(category), entry.mDefaultTranslation,
+                        entry.mMiwokTranslation, entry.mImageName, entry.mAudioName);
+                mCategories.get(category).add(entry);
+                mCategoryById.put(entry.mStableId, category);
+                touched.add(entry);
+                continue;
+            }
+            Entry target = pickWord(touched);
+            int category = mCategoryById.get(target.mStableId);
+            List<Entry> words = mCategories.get(category);
+            int position = indexOf(words, target.mStableId);
+            if (kind == 1) {
+                builder.remove(target.mStableId);
+                words.remove(position);
+                mCategoryById.remove(target.mStableId);
+            } else {
+                // A correction keeps the ID, the category and the position of the word
+                Entry corrected = new Entry(target.mStableId,
+                        target.mDefaultTranslation + " fixed",
+                        TestVocabulary.miwokWord(mRandom), mRandom.nextBoolean() ? "" : "image",
+                        "audio_" + mRandom.nextInt(100));
+                builder.modify(corrected.mStableId, corrected.mDefaultTranslation,
+                        corrected.mMiwokTranslation, corrected.mImageName,
+                        corrected.mAudioName);
+                words.set(position, corrected);
+                touched.add(corrected);
+            }
+        }
+        mVersion++;
+        return builder.build();
+    }
+
+    /**
+     * Check that the catalog holds the expected words, in the expected order.
+     */
+    void assertMatches(VocabularyCatalog catalog) {
+        assertEquals(mVersion, catalog.getVersion());
+        assertEquals(mCategories.size(), catalog.getCategoryCount());
+        assertEquals(size(), catalog.size());
+        for (int c = 0; c < mCategories.size(); c++) {
+            List<Entry> expected = mCategories.get(c);
+            VocabularyStore words = catalog.getWords(c);
+            assertEquals(categoryId(c), catalog.getCategoryId(c));
+            assertEquals("category " + c, expected.size(), words.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Entry entry = expected.get(i);
+                assertEquals(entry.mStableId, catalog.getStableId(c, i));
+                assertEquals(entry.mDefaultTranslation, words.getDefaultTranslation(i));
+                assertEquals(entry.mMiwokTranslation, words.getMiwokTranslation(i));
+                assertEquals(entry.mImageName.isEmpty() ? Word.NO_IMAGE_PROVIDED
+                        : IMAGE_BASE + entry.mImageName.length(), words.getImageResourceId(i));
+                assertEquals(AUDIO_BASE + entry.mAudioName.length(),
+                        words.getAudioResourceId(i));
+            }
+        }
+    }
+
+    /**
+     * Return a word still in the catalog, often one already changed by the current delta.
+     */
+    private Entry pickWord(List<Entry> touched) {
+        if (!touched.isEmpty() && mRandom.nextInt(4) == 0) {
+            Entry entry = touched.get(mRandom.nextInt(touched.size()));
+            Integer category = mCategoryById.get(entry.mStableId);
+            if (category != null) {
+                // The entry may have been corrected again since
+                List<Entry> words = mCategories.get(category);
+                return words.get(indexOf(words, entry.mStableId));
+            }
+        }
+        while (true) {
+            List<Entry> words = mCategories.get(mRandom.nextInt(mCategories.size()));
+            if (!words.isEmpty()) {
+                return words.get(mRandom.nextInt(words.size()));
+            }
+        }
+    }
+
+    private Entry newEntry() {
+        String defaultTranslation = TestVocabulary.englishPhrase(mRandom) + ' ' + mCreated++;
+        String miwokTranslation = TestVocabulary.miwokWord(mRandom);
+        return new Entry(Word.stableId(defaultTranslation, miwokTranslation), defaultTranslation,
+                miwokTranslation, mRandom.nextBoolean() ? "" : "image_" + mRandom.nextInt(10),
+                "audio_" + mRandom.nextInt(1000));
+    }
+
+    private static int indexOf(List<Entry> words, long stableId) {
+        for (int i = words.size() - 1; i >= 0; i--) {
+            if (words.get(i).mStableId == stableId) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Word " + stableId + " not found");
+    }
+}
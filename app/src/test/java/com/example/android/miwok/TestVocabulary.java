@@ -0,0 +1,69 @@
+package com.example.android.miwok;
+
+import java.util.Random;
+
+/**
+ * Creates made up vocabularies for the tests and the benchmarks, with words that look like
+ * the real ones: short English phrases and Miwok words using ә and apostrophes.
+ */
+final class TestVocabulary {
+
+    private static final String[] SYLLABLES = {
+            "ka", "wi", "ta", "lu", "ti", "ko", "mә", "nә", "әә", "ch", "oy", "ye", "we",
+            "hә", "sa", "pu", "mi", "ṭa", "no", "'e", "li", "na", "ki", "ṭu"
+    };
+
+    private static final String[] ENGLISH = {
+            "red", "green", "brown", "gray", "black", "white", "dusty", "yellow", "mustard",
+            "father", "mother", "son", "daughter", "older", "younger", "brother", "sister",
+            "grand", "one", "two", "three", "four", "five", "six", "seven", "eight", "nine",
+            "ten", "where", "are", "you", "going", "what", "is", "your", "name", "my", "coming",
+            "let's", "go", "come", "here", "yes", "feeling", "good", "i'm"
+    };
+
+    private TestVocabulary() {
+    }
+
+    /**
+     * Return a store of made up words.
+     *
+     * @param random gives the words, the same seed gives the same store
+     * @param size is the number of words
+     */
+    static VocabularyStore create(Random random, int size) {
+        VocabularyStore.Builder builder = new VocabularyStore.Builder(size);
+        for (int i = 0; i < size; i++) {
+            builder.add(englishPhrase(random), miwokWord(random), i, i);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Return a store of made up words, split into categories of the same size.
+     */
+    static VocabularyStore[] createCategories(Random random, int size, int categoryCount) {
+        VocabularyStore[] categories = new VocabularyStore[categoryCount];
+        for (int c = 0; c < categoryCount; c++) {
+            categories[c] = create(random, size / categoryCount);
+        }
+        return categories;
+    }
+
+    static String englishPhrase(Random random) {
+        StringBuilder phrase = new StringBuilder(ENGLISH[random.nextInt(ENGLISH.length)]);
+        int words = random.nextInt(3);
+        for (int i = 0; i < words; i++) {
+            phrase.append(' ').append(ENGLISH[random.nextInt(ENGLISH.length)]);
+        }
+        return phrase.toString();
+    }
+
+    static String miwokWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int syllables = 2 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.android.miwok;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the time {@link VocabularyCatalog} takes to load a pack of 100k words and to
+ * apply a chain of {@link VocabularyDelta}s to it, with and without the search index.
+ */
+public class VocabularyCatalogBenchmark {
+
+    private static final int WORD_COUNT = 100000;
+
+    private static final int CATEGORY_COUNT = 10;
+
+    private static final int DELTA_COUNT = 20;
+
+    /** Operations of each delta, spread over the categories */
+    private static final int DELTA_SIZE = 500;
+
+    private static final int ROUNDS = 5;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+    }
+
+    @Test
+    public void applyDeltas() throws IOException {
+        File file = new File(mFolder.getRoot(), "words.pack");
+        TestCatalog expected = new TestCatalog(new Random(1), WORD_COUNT, CATEGORY_COUNT);
+        expected.writePack(file);
+        List<VocabularyDelta> deltas = new ArrayList<>();
+        for (int i = 0; i < DELTA_COUNT; i++) {
+            deltas.add(expected.nextDelta(DELTA_SIZE));
+        }
+
+        long loadNanos = Long.MAX_VALUE;
+        long applyNanos = Long.MAX_VALUE;
+        long indexedNanos = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            VocabularyCatalog catalog = VocabularyCatalog.load(VocabularyPack.open(file),
+                    TestCatalog.RESOLVER);
+            loadNanos = Math.min(loadNanos, System.nanoTime() - start);
+            applyNanos = Math.min(applyNanos, apply(catalog, deltas));
+            expected.assertMatches(catalog);
+
+            // The index segments of the changed categories are rebuilt too
+            catalog = VocabularyCatalog.load(VocabularyPack.open(file), TestCatalog.RESOLVER);
+            catalog.getSearchIndex();
+            indexedNanos = Math.min(indexedNanos, apply(catalog, deltas));
+        }
+        Benchmarks.report("catalog of " + WORD_COUNT + " words", "load " +
+                Benchmarks.micros(loadNanos) + ", " + DELTA_COUNT + " deltas of " + DELTA_SIZE +
+                " operations " + Benchmarks.micros(applyNanos) + " (" +
+                Benchmarks.micros((double) applyNanos / DELTA_COUNT) + " per delta), with " +
+                "the search index " + Benchmarks.micros(indexedNanos));
+    }
+
+    private static long apply(VocabularyCatalog catalog, List<VocabularyDelta> deltas)
+            throws IOException {
+        long start = System.nanoTime();
+        for (VocabularyDelta delta : deltas) {
+            catalog.applyDelta(delta);
+        }
+        return System.nanoTime() - start;
+    }
+}
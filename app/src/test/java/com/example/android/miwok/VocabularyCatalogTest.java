@@ -0,0 +1,206 @@
+package com.example.android.miwok;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link VocabularyCatalog} and of the writing of its {@link VocabularyPack}.
+ */
+public class VocabularyCatalogTest {
+
+    /** Resolves every name to its length, so the IDs can be checked */
+    private static final VocabularyCatalog.ResourceResolver RESOLVER =
+            new VocabularyCatalog.ResourceResolver() {
+                @Override
+                public int getImageResourceId(String name) {
+                    return 1000 + name.length();
+                }
+
+                @Override
+                public int getAudioResourceId(String name) {
+                    return 2000 + name.length();
+                }
+            };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = new File(mFolder.getRoot(), "words.pack");
+        new VocabularyPack.Writer()
+                .setDataVersion(1)
+                .startCategory(10, "numbers")
+                .add("one", "lutti", "number_one", "number_one")
+                .add("two", "otiiko", "number_two", "number_two")
+                .startCategory(20, "phrases")
+                .add("Let’s go.", "yoowutis", null, "phrase_lets_go")
+                .writeTo(mFile);
+    }
+
+    @Test
+    public void loadsTheWordsOfThePack() throws IOException {
+        VocabularyCatalog catalog = VocabularyCatalog.load(VocabularyPack.open(mFile), RESOLVER);
+
+        assertEquals(1, catalog.getVersion());
+        assertEquals(2, catalog.getCategoryCount());
+        assertEquals(3, catalog.size());
+        assertEquals(20, catalog.getCategoryId(1));
+        assertEquals(Word.stableId("two", "otiiko"), catalog.getStableId(0, 1));
+        VocabularyStore words = catalog.getWords(1);
+        assertEquals(1, words.size());
+        assertEquals("Let’s go.", words.getDefaultTranslation(0));
+        assertEquals(Word.NO_IMAGE_PROVIDED, words.getImageResourceId(0));
+        assertEquals(2000 + "phrase_lets_go".length(), words.getAudioResourceId(0));
+        // The store of a category is built once
+        assertEquals(words, catalog.getWords(1));
+    }
+
+    @Test
+    public void deltasOnlyChangeTheirWords() throws IOException {
+        VocabularyCatalog catalog = VocabularyCatalog.load(VocabularyPack.open(mFile), RESOLVER);
+        VocabularyStore phrases = catalog.getWords(1);
+        long one = Word.stableId("one", "lutti");
+
+        int[] changed = catalog.applyDelta(new VocabularyDelta.Builder(1, 2)
+                .modify(one, "one", "luuti", "number_one", "number_one")
+                .add(10, "three", "tolookosu", "number_three", "number_three")
+                .build());
+
+        assertArrayEquals(new int[] {10}, changed);
+        assertEquals(2, catalog.getVersion());
+        assertEquals(phrases, catalog.getWords(1));
+        VocabularyStore numbers = catalog.getWords(0);
+        assertEquals(3, numbers.size());
+        assertEquals("luuti", numbers.getMiwokTranslation(0));
+        assertEquals("otiiko", numbers.getMiwokTranslation(1));
+        assertEquals("tolookosu", numbers.getMiwokTranslation(2));
+        assertEquals(one, catalog.getStableId(0, 0));
+
+        // A second delta keeps the words of the first one
+        catalog.applyDelta(new VocabularyDelta.Builder(2, 3)
+                .remove(Word.stableId("two", "otiiko"))
+                .build());
+        numbers = catalog.getWords(0);
+        assertEquals(2, numbers.size());
+        assertEquals("luuti", numbers.getMiwokTranslation(0));
+        assertEquals("tolookosu", numbers.getMiwokTranslation(1));
+    }
+
+    @Test
+    public void writesOverThePackItReadsFrom() throws IOException {
+        VocabularyPack pack = VocabularyPack.open(mFile);
+        VocabularyCatalog catalog = VocabularyCatalog.load(pack, RESOLVER);
+        catalog.applyDelta(new VocabularyDelta.Builder(1, 2)
+                .add(20, "Come here.", "әnni'әm", null, "phrase_come_here")
+                .build());
+
+        catalog.writeTo(mFile);
+
+        // The pack mapped before the write still reads the old words, and so does the catalog
+        assertEquals("two", pack.getDefaultTranslation(1));
+        assertEquals(3, pack.getEntryCount());
+        assertEquals("otiiko", catalog.getWords(0).getMiwokTranslation(1));
+        assertEquals(2, catalog.getWords(1).size());
+
+        VocabularyPack written = VocabularyPack.open(mFile);
+        written.verify();
+        assertEquals(2, written.getDataVersion());
+        assertEquals(4, written.getEntryCount());
+        assertEquals("әnni'әm", written.getMiwokTranslation(3));
+        assertEquals(Word.stableId("one", "lutti"), written.getStableId(0));
+        assertArrayEquals(new String[] {"words.pack"}, mFolder.getRoot().list());
+    }
+
+    @Test
+    public void aFlippedByteFailsTheVerification() throws IOException {
+        // Flip a bit of the last byte, in the string heap, which is only read on demand
+        RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+        try {
+            raf.seek(raf.length() - 1);
+            int last = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(last ^ 1);
+        } finally {
+            raf.close();
+        }
+
+        VocabularyPack pack = VocabularyPack.open(mFile);
+        try {
+            pack.verify();
+            fail("A corrupted pack was verified");
+        } catch (IOException expected) {
+            // The checksum doesn't match
+        }
+    }
+
+    @Test
+    public void aChainOfDeltasGivesTheWordsOfTheLastVersion() throws IOException {
+        TestCatalog expected = new TestCatalog(new Random(1), 100000, 10);
+        expected.writePack(mFile);
+        VocabularyCatalog catalog = VocabularyCatalog.load(VocabularyPack.open(mFile),
+                TestCatalog.RESOLVER);
+        expected.assertMatches(catalog);
+
+        for (int i = 0; i < 10; i++) {
+            catalog.applyDelta(expected.nextDelta(1000));
+            expected.assertMatches(catalog);
+        }
+
+        // The rewritten pack holds the same words
+        File rewritten = new File(mFolder.getRoot(), "rewritten.pack");
+        catalog.writeTo(rewritten);
+        VocabularyPack pack = VocabularyPack.open(rewritten);
+        pack.verify();
+        expected.assertMatches(VocabularyCatalog.load(pack, TestCatalog.RESOLVER));
+    }
+
+    @Test
+    public void aTruncatedPackIsRejected() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+        try {
+            raf.setLength(raf.length() - 3);
+        } finally {
+            raf.close();
+        }
+
+        try {
+            VocabularyPack.open(mFile).verify();
+            fail("A truncated pack was opened");
+        } catch (IOException expected) {
+            // The sizes of the header don't add up to the size of the file
+        }
+    }
+
+    @Test
+    public void aFailedWriteLeavesThePackAsItWas() throws IOException {
+        // The temporary file can't be created where a directory is in the way
+        File temp = new File(mFile.getPath() + ".tmp");
+        assertTrue(new File(temp, "blocker").mkdirs());
+
+        try {
+            new VocabularyPack.Writer().startCategory(1, "c").add("a", "b", null, "c")
+                    .writeTo(mFile);
+            fail("The write succeeded");
+        } catch (IOException expected) {
+            // The pack is not half written
+        }
+        VocabularyPack pack = VocabularyPack.open(mFile);
+        pack.verify();
+        assertEquals(3, pack.getEntryCount());
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.android.miwok;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures the rows imported per second from a CSV file of a million lines, and the heap
+ * the importer keeps afterwards for the stable IDs of the words it stored.
+ */
+public class VocabularyImporterBenchmark {
+
+    private static final int LINE_COUNT = 1000000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+    }
+
+    @Test
+    public void importCsv() throws IOException {
+        File file = mFolder.newFile("words.csv");
+        Random random = new Random(1);
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                "UTF-8"));
+        try {
+            out.write("category,english,miwok,image,audio\n");
+            for (int i = 0; i < LINE_COUNT; i++) {
+                // The number makes every word new
+                out.write("numbers,\"" + TestVocabulary.englishPhrase(random) + ' ' + i + "\"," +
+                        TestVocabulary.miwokWord(random) + ",,audio_" + i + '\n');
+            }
+        } finally {
+            out.close();
+        }
+        Benchmarks.report("file of " + LINE_COUNT + " lines", file.length() / 1024 + " KB");
+
+        final AtomicLong stored = new AtomicLong();
+        VocabularyImporter.Storage storage = new VocabularyImporter.Storage() {
+            @Override
+            public void storeBatch(VocabularyImporter.Batch batch) {
+                stored.addAndGet(batch.size());
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // The first round warms the JIT up
+            for (int round = 0; round < 3; round++) {
+                VocabularyImporter importer = new VocabularyImporter(storage, executor,
+                        VocabularyImporter.DEFAULT_BATCH_SIZE);
+                long before = Benchmarks.usedMemory();
+                Reader in = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                        "UTF-8"));
+                VocabularyImporter.Stats stats;
+                try {
+                    stats = importer.importCsv(in);
+                } finally {
+                    in.close();
+                }
+                assertEquals(LINE_COUNT, stats.rowsStored);
+                Benchmarks.report("round " + round, stats.getRowsPerSecond() + " rows/s, " +
+                        stats.elapsedMs + " ms, heap kept for the known words " +
+                        (Benchmarks.usedMemory() - before) / 1024 + " KB");
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
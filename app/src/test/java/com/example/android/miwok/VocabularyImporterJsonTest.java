@@ -0,0 +1,98 @@
+package com.example.android.miwok;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the JSON import of {@link VocabularyImporter}. The JSON is read by the
+ * JsonReader of Android, so they are run by Robolectric.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class VocabularyImporterJsonTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /** Stores the categories and the Miwok translations of the batches */
+    private static class ListStorage implements VocabularyImporter.Storage {
+
+        final List<String> mWords = new ArrayList<>();
+        int mBatches;
+
+        @Override
+        public void storeBatch(VocabularyImporter.Batch batch) {
+            mBatches++;
+            for (int i = 0; i < batch.size(); i++) {
+                mWords.add(batch.getCategory(i) + '/' + batch.getMiwokTranslation(i) + '/' +
+                        batch.getImageName(i));
+            }
+        }
+    }
+
+    @Test
+    public void importsTheValidNewWords() throws IOException {
+        ListStorage storage = new ListStorage();
+        VocabularyImporter importer = new VocabularyImporter(storage, DIRECT, 2);
+        importer.addExistingWords(new VocabularyStore.Builder(1)
+                .add("two", "otiiko", Word.NO_IMAGE_PROVIDED, 0)
+                .build());
+
+        VocabularyImporter.Stats stats = importer.importJson(new StringReader("[" +
+                "{\"category\": \"numbers\", \"english\": \"one\", \"miwok\": \"lutti\"," +
+                " \"image\": \"number_one\", \"audio\": \"number_one\"}," +
+                "{\"english\": \"two\", \"miwok\": \"otiiko\", \"audio\": \"number_two\"}," +
+                // Unknown fields are skipped, a null field is missing
+                "{\"english\": \"Come here.\", \"miwok\": \"әnni'әm\", \"image\": null," +
+                " \"audio\": \"phrase_come_here\", \"level\": {\"rank\": [1, 2]}}," +
+                "{\"english\": \"three\", \"miwok\": null, \"audio\": \"number_three\"}," +
+                "{\"english\": \"one\", \"miwok\": \"lutti\", \"audio\": \"number_one\"}," +
+                "{\"category\": \"numbers\", \"english\": \"four\", \"miwok\": \"oyyisa\"," +
+                " \"audio\": \"number_four\"}" +
+                "]"));
+
+        assertEquals(6, stats.rowsRead);
+        assertEquals(3, stats.rowsStored);
+        assertEquals(2, stats.duplicates);
+        assertEquals(1, stats.rejected);
+        assertEquals("4: missing translation", stats.errors.get(0));
+        assertEquals("[numbers/lutti/number_one, /әnni'әm/, numbers/oyyisa/]",
+                storage.mWords.toString());
+        assertEquals(2, storage.mBatches);
+    }
+
+    @Test
+    public void aMalformedListIsReported() throws IOException {
+        ListStorage storage = new ListStorage();
+        VocabularyImporter importer = new VocabularyImporter(storage, DIRECT, 10);
+
+        try {
+            importer.importJson(new StringReader("[{\"english\": \"one\", " +
+                    "\"miwok\": \"lutti\", \"audio\": \"a\"}, {\"english\""));
+            fail("The truncated list was imported");
+        } catch (IOException expected) {
+            // The word read before the error is not stored
+        }
+        assertEquals(0, storage.mBatches);
+
+        // The word wasn't stored, so it is imported again
+        VocabularyImporter.Stats stats = importer.importJson(new StringReader(
+                "[{\"english\": \"one\", \"miwok\": \"lutti\", \"audio\": \"a\"}]"));
+
+        assertEquals(1, stats.rowsStored);
+        assertEquals("[/lutti/]", storage.mWords.toString());
+    }
+}
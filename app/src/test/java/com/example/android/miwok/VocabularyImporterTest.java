@@ -0,0 +1,171 @@
+package com.example.android.miwok;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the CSV import of {@link VocabularyImporter}, with a storage called on the
+ * importing thread or on a thread pool.
+ */
+public class VocabularyImporterTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final String CSV = "category,english,miwok,image,audio\n" +
+            "numbers,one,lutti,number_one,number_one\n" +
+            "numbers,two,otiiko,number_two,number_two\n" +
+            "phrases,\"Come here.\",\"әnni'әm\",,phrase_come_here\n" +
+            "numbers,three,tolookosu,number_three,number_three\n" +
+            "numbers,four,oyyisa,number_four,number_four\n";
+
+    /** Stores the words of the batches, and fails once the given number of batches is stored */
+    private static class ListStorage implements VocabularyImporter.Storage {
+
+        final List<String> mWords = new ArrayList<>();
+        int mBatchesBeforeFailure = Integer.MAX_VALUE;
+
+        @Override
+        public void storeBatch(VocabularyImporter.Batch batch) throws IOException {
+            if (mBatchesBeforeFailure-- == 0) {
+                throw new IOException("Disk full");
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                mWords.add(batch.getMiwokTranslation(i));
+            }
+        }
+    }
+
+    @Test
+    public void importsTheValidNewWords() throws IOException {
+        ListStorage storage = new ListStorage();
+        VocabularyImporter importer = new VocabularyImporter(storage, DIRECT, 2);
+        importer.addExistingWords(new VocabularyStore.Builder(1)
+                .add("two", "otiiko", Word.NO_IMAGE_PROVIDED, 0)
+                .build());
+
+        VocabularyImporter.Stats stats = importer.importCsv(new StringReader(CSV +
+                "numbers,one,lutti,number_one,number_one\n" +
+                "numbers,five,,number_five,number_five\n"));
+
+        assertEquals(7, stats.rowsRead);
+        assertEquals(4, stats.rowsStored);
+        assertEquals(2, stats.duplicates);
+        assertEquals(1, stats.rejected);
+        assertEquals("8: missing translation", stats.errors.get(0));
+        assertEquals("[lutti, әnni'әm, tolookosu, oyyisa]", storage.mWords.toString());
+    }
+
+    @Test
+    public void theWordsOfAFailedBatchCanBeImportedAgain() throws IOException {
+        ListStorage storage = new ListStorage();
+        storage.mBatchesBeforeFailure = 1;
+        VocabularyImporter importer = new VocabularyImporter(storage, DIRECT, 2);
+
+        try {
+            importer.importCsv(new StringReader(CSV));
+            fail("The storage error was not thrown");
+        } catch (IOException expected) {
+            // Only the first batch is stored
+        }
+        assertEquals("[lutti, otiiko]", storage.mWords.toString());
+
+        VocabularyImporter.Stats stats = importer.importCsv(new StringReader(CSV));
+
+        assertEquals(2, stats.duplicates);
+        assertEquals(3, stats.rowsStored);
+        assertEquals("[lutti, otiiko, әnni'әm, tolookosu, oyyisa]", storage.mWords.toString());
+    }
+
+    @Test
+    public void wordsRepeatedInTheListAreStoredOnce() throws IOException {
+        ListStorage storage = new ListStorage();
+        VocabularyImporter importer = new VocabularyImporter(storage, DIRECT, 10);
+
+        VocabularyImporter.Stats stats = importer.importCsv(new StringReader(
+                "english,miwok,audio\none,lutti,a\none,lutti,b\n\"one\",lutti,c\n"));
+
+        assertEquals(1, stats.rowsStored);
+        assertEquals(2, stats.duplicates);
+    }
+
+    @Test
+    public void theWordsOfAFailedParseCanBeImportedAgain() throws IOException {
+        ListStorage storage = new ListStorage();
+        VocabularyImporter importer = new VocabularyImporter(storage, DIRECT, 2);
+
+        try {
+            importer.importCsv(new StringReader(CSV + "numbers,\"five,kenekuk,,a\n"));
+            fail("The unterminated field was not reported");
+        } catch (IOException expected) {
+            // The last word was read but its batch wasn't full
+        }
+        assertEquals("[lutti, otiiko, әnni'әm, tolookosu]", storage.mWords.toString());
+
+        VocabularyImporter.Stats stats = importer.importCsv(new StringReader(CSV));
+
+        assertEquals(4, stats.duplicates);
+        assertEquals(1, stats.rowsStored);
+        assertEquals("oyyisa", storage.mWords.get(4));
+    }
+
+    @Test
+    public void aThreadPoolStoresOneBatchAtATime() throws IOException {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final List<String> words = new ArrayList<>();
+        VocabularyImporter.Storage storage = new VocabularyImporter.Storage() {
+            @Override
+            public void storeBatch(VocabularyImporter.Batch batch) {
+                int count = running.incrementAndGet();
+                maxRunning.set(Math.max(maxRunning.get(), count));
+                try {
+                    // Give another batch the time to start, if it could
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                synchronized (words) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        words.add(batch.getDefaultTranslation(i));
+                    }
+                }
+                running.decrementAndGet();
+            }
+        };
+        StringBuilder csv = new StringBuilder("english,miwok,audio\n");
+        for (int i = 0; i < 500; i++) {
+            csv.append(i).append(",word,a\n");
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            VocabularyImporter importer = new VocabularyImporter(storage, pool, 10);
+
+            VocabularyImporter.Stats stats = importer.importCsv(new StringReader(csv.toString()));
+
+            assertEquals(500, stats.rowsStored);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1, maxRunning.get());
+        assertEquals(500, words.size());
+        for (int i = 0; i < words.size(); i++) {
+            assertEquals(String.valueOf(i), words.get(i));
+        }
+    }
+}
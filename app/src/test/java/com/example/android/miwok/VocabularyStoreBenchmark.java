@@ -0,0 +1,99 @@
+package com.example.android.miwok;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the heap used and the cost of reading 100k words from a {@link VocabularyStore}
+ * and from an {@link ArrayList} of {@link Word} objects.
+ */
+public class VocabularyStoreBenchmark {
+
+    private static final int WORD_COUNT = 100000;
+
+    private static final int ROUNDS = 20;
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+    }
+
+    @Test
+    public void memory() {
+        long before = Benchmarks.usedMemory();
+        List<Word> list = createList();
+        long listBytes = Benchmarks.usedMemory() - before;
+
+        before = Benchmarks.usedMemory();
+        VocabularyStore store = createStore();
+        long storeBytes = Benchmarks.usedMemory() - before;
+
+        // Keep both alive until they are measured
+        assertEquals(list.size(), store.size());
+        Benchmarks.report("memory", "ArrayList<Word> " + listBytes / WORD_COUNT +
+                " bytes per word, VocabularyStore " + storeBytes / WORD_COUNT +
+                " bytes per word");
+    }
+
+    @Test
+    public void iteration() {
+        List<Word> list = createList();
+        VocabularyStore store = createStore();
+        long sum = 0;
+        long listNanos = Long.MAX_VALUE;
+        long storeNanos = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            // Read what a row shows: both translations and the resource IDs
+            long start = System.nanoTime();
+            for (int i = 0; i < WORD_COUNT; i++) {
+                Word word = list.get(i);
+                sum += word.getDefaultTranslation().length() +
+                        word.getMiwokTranslation().length() + word.getImageResourceId() +
+                        word.getAudioResourceID();
+            }
+            listNanos = Math.min(listNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < WORD_COUNT; i++) {
+                sum += store.getTextEnd(i, VocabularyStore.FIELD_DEFAULT) -
+                        store.getTextStart(i, VocabularyStore.FIELD_DEFAULT) +
+                        store.getTextEnd(i, VocabularyStore.FIELD_MIWOK) -
+                        store.getTextStart(i, VocabularyStore.FIELD_MIWOK) +
+                        store.getImageResourceId(i) + store.getAudioResourceId(i);
+            }
+            storeNanos = Math.min(storeNanos, System.nanoTime() - start);
+        }
+        Benchmarks.report("iteration of " + WORD_COUNT + " words", "ArrayList<Word> " +
+                Benchmarks.micros(listNanos) + ", VocabularyStore " +
+                Benchmarks.micros(storeNanos) + " (checksum " + sum + ")");
+    }
+
+    private static List<Word> createList() {
+        List<Word> list = new ArrayList<>();
+        for (int i = 0; i < WORD_COUNT; i++) {
+            list.add(new Word(defaultTranslation(i), miwokTranslation(i), i, i));
+        }
+        return list;
+    }
+
+    private static VocabularyStore createStore() {
+        VocabularyStore.Builder builder = new VocabularyStore.Builder(WORD_COUNT);
+        for (int i = 0; i < WORD_COUNT; i++) {
+            builder.add(defaultTranslation(i), miwokTranslation(i), i, i);
+        }
+        return builder.build();
+    }
+
+    private static String defaultTranslation(int i) {
+        return "word number " + i;
+    }
+
+    private static String miwokTranslation(int i) {
+        return "kawinta " + Integer.toString(i, 7);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.android.miwok;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Tests of {@link VocabularyStore}.
+ */
+public class VocabularyStoreTest {
+
+    @Test
+    public void columnsHoldTheWordsInOrder() {
+        VocabularyStore store = new VocabularyStore.Builder(1)
+                .add("one", "lutti", 11)
+                .add("two", "otiiko", 2, 12)
+                .add("", "әәnәm", 3, 13)
+                .build();
+
+        assertEquals(3, store.size());
+        assertEquals("otiiko", store.getMiwokTranslation(1));
+        assertEquals("two", store.getDefaultTranslation(1));
+        assertEquals(Word.NO_IMAGE_PROVIDED, store.getImageResourceId(0));
+        assertEquals(3, store.getImageResourceId(2));
+        assertEquals(13, store.getAudioResourceId(2));
+        assertEquals("", store.getDefaultTranslation(2));
+    }
+
+    @Test
+    public void textSlicesMatchTheTranslations() {
+        VocabularyStore store = new VocabularyStore.Builder()
+                .add("father", "әpә", 1)
+                .add("mother", "әṭa", 2)
+                .build();
+        char[] text = store.getText();
+        for (int i = 0; i < store.size(); i++) {
+            int start = store.getTextStart(i, VocabularyStore.FIELD_MIWOK);
+            int end = store.getTextEnd(i, VocabularyStore.FIELD_MIWOK);
+            assertEquals(store.getMiwokTranslation(i), new String(text, start, end - start));
+            start = store.getTextStart(i, VocabularyStore.FIELD_DEFAULT);
+            end = store.getTextEnd(i, VocabularyStore.FIELD_DEFAULT);
+            assertEquals(store.getDefaultTranslation(i), new String(text, start, end - start));
+        }
+    }
+
+    @Test
+    public void stableIdsAreTheIdsOfTheWords() {
+        VocabularyStore store = new VocabularyStore.Builder()
+                .add("ab", "c", 1)
+                .add("a", "bc", 2)
+                .add("", "әpә", 3, 4)
+                .build();
+
+        for (int i = 0; i < store.size(); i++) {
+            assertEquals(store.get(i).getStableId(), store.getStableId(i));
+        }
+        assertNotEquals(store.getStableId(0), store.getStableId(1));
+    }
+
+    @Test
+    public void fromTablesWrapsGeneratedTables() {
+        VocabularyStore store = VocabularyStore.fromTables("redchiwiitәblackkululli",
+                new int[] {0, 3, 11, 16, 23}, new int[] {5, 6}, new int[] {7, 8});
+
+        assertEquals(Arrays.asList("chiwiitә", "kululli"),
+                Arrays.asList(store.getMiwokTranslation(0), store.getMiwokTranslation(1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromTablesRejectsInconsistentTables() {
+        VocabularyStore.fromTables("abc", new int[] {0, 1, 2}, new int[] {1}, new int[] {1});
+    }
+
+    @Test
+    public void listViewCreatesTheWords() {
+        List<Word> words = new VocabularyStore.Builder().add("red", "chiwiiṭә", 4, 9).build()
+                .asList();
+
+        assertEquals(1, words.size());
+        assertEquals("chiwiiṭә", words.get(0).getMiwokTranslation());
+        assertEquals(9, words.get(0).getAudioResourceID());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void readingPastTheEndFails() {
+        VocabularyStore.EMPTY.getMiwokTranslation(0);
+    }
+}
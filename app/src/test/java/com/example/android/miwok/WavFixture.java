@@ -0,0 +1,112 @@
+package com.example.android.miwok;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A 16 bit PCM WAV file of the test resources, under src/test/resources/wav. The fixtures
+ * are made up vowels: harmonics of a voice shaped by two formants gliding from one vowel to
+ * another, with some silence and noise around them.
+ */
+final class WavFixture {
+
+    /** "a" gliding to "i", the word the other fixtures are compared to */
+    static final String REFERENCE = "reference.wav";
+
+    /** The reference, the same on both channels */
+    static final String REFERENCE_STEREO = "reference_stereo.wav";
+
+    /** The same glide, spoken slower, lower and quieter, with more noise and silence */
+    static final String SAME_SLOWER = "same_slower.wav";
+
+    /** "u" gliding to "o", with the timing of the reference */
+    static final String DIFFERENT = "different.wav";
+
+    /** Only noise, under the silence level of the scorer */
+    static final String SILENCE = "silence.wav";
+
+    final int sampleRate;
+    final int channelCount;
+
+    /** Little endian samples, interleaved if there are several channels */
+    final ByteBuffer pcm;
+
+    private WavFixture(int sampleRate, int channelCount, ByteBuffer pcm) {
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        this.pcm = pcm;
+    }
+
+    /**
+     * Read a fixture of the test resources.
+     */
+    static WavFixture load(String name) throws IOException {
+        InputStream in = WavFixture.class.getResourceAsStream("/wav/" + name);
+        if (in == null) {
+            throw new IOException("No WAV fixture " + name);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+
+        ByteBuffer file = ByteBuffer.wrap(bytes.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        if (file.getInt(0) != 0x46464952 || file.getInt(8) != 0x45564157) {
+            throw new IOException("Not a WAV file " + name);
+        }
+        int sampleRate = 0;
+        int channelCount = 0;
+        int position = 12;
+        while (position + 8 <= file.limit()) {
+            int id = file.getInt(position);
+            int size = file.getInt(position + 4);
+            int data = position + 8;
+            if (id == 0x20746d66) {
+                // "fmt ", only 16 bit PCM is used by the fixtures
+                if (file.getShort(data) != 1 || file.getShort(data + 14) != 16) {
+                    throw new IOException("Not 16 bit PCM " + name);
+                }
+                channelCount = file.getShort(data + 2);
+                sampleRate = file.getInt(data + 4);
+            } else if (id == 0x61746164) {
+                // "data"
+                if (sampleRate == 0) {
+                    throw new IOException("No format before the samples of " + name);
+                }
+                file.position(data);
+                file.limit(data + size);
+                return new WavFixture(sampleRate, channelCount,
+                        file.slice().order(ByteOrder.LITTLE_ENDIAN));
+            }
+            position = data + size + (size & 1);
+        }
+        throw new IOException("No samples in " + name);
+    }
+
+    /**
+     * Return the number of frames, one sample per channel.
+     */
+    int getFrameCount() {
+        return pcm.remaining() / (2 * channelCount);
+    }
+
+    /**
+     * Return the samples of the first channel.
+     */
+    short[] getMonoSamples() {
+        short[] samples = new short[getFrameCount()];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = pcm.getShort(i * 2 * channelCount);
+        }
+        return samples;
+    }
+}
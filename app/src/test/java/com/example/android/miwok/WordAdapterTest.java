@@ -0,0 +1,205 @@
+package com.example.android.miwok;
+
+import android.app.Activity;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link WordAdapter} and {@link WordRecyclerAdapter}, on the rows of the app
+ * inflated by Robolectric. Binding a recycled row must not allocate per word, the bytes
+ * allocated by the thread are counted with the {@link com.sun.management.ThreadMXBean} of
+ * the JVM.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class WordAdapterTest {
+
+    private static final int WORD_COUNT = 1000;
+
+    private static final int BINDS = 5000;
+
+    private Activity mActivity;
+    private ListView mParent;
+    private VocabularyStore mWords;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.setupActivity(Activity.class);
+        mParent = new ListView(mActivity);
+        Random random = new Random(3);
+        VocabularyStore.Builder builder = new VocabularyStore.Builder(WORD_COUNT);
+        for (int i = 0; i < WORD_COUNT; i++) {
+            builder.add(TestVocabulary.englishPhrase(random), TestVocabulary.miwokWord(random),
+                    R.raw.number_one);
+        }
+        mWords = builder.build();
+    }
+
+    @Test
+    public void bindsTheTranslationsOfTheWord() {
+        WordAdapter adapter = new WordAdapter(mActivity, mWords, R.color.category_numbers);
+
+        View row = adapter.getView(7, null, mParent);
+        assertEquals(mWords.getDefaultTranslation(7),
+                ((TextView) row.findViewById(R.id.default_text_view)).getText().toString());
+        assertEquals(mWords.getMiwokTranslation(7),
+                ((TextView) row.findViewById(R.id.miwok_text_view)).getText().toString());
+        assertEquals(View.GONE, row.findViewById(R.id.icone_view).getVisibility());
+
+        assertSame(row, adapter.getView(8, row, mParent));
+        assertEquals(mWords.getMiwokTranslation(8),
+                ((TextView) row.findViewById(R.id.miwok_text_view)).getText().toString());
+    }
+
+    @Test
+    public void itemIdsAreTheStableIdsOfTheWords() {
+        WordAdapter adapter = new WordAdapter(mActivity, mWords, R.color.category_numbers);
+        WordRecyclerAdapter recyclerAdapter = new WordRecyclerAdapter(mActivity, mWords,
+                R.color.category_numbers);
+
+        assertTrue(adapter.hasStableIds());
+        assertTrue(recyclerAdapter.hasStableIds());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(mWords.get(i).getStableId(), adapter.getItemId(i));
+            assertEquals(mWords.get(i).getStableId(), recyclerAdapter.getItemId(i));
+        }
+    }
+
+    @Test
+    public void newWordsAreAppliedAsADiff() {
+        WordRecyclerAdapter adapter = new WordRecyclerAdapter(mActivity, mWords,
+                R.color.category_numbers);
+        final int[] counts = new int[3];
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                throw new AssertionError("All the rows were changed");
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                counts[0] += itemCount;
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                counts[1] += itemCount;
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+                counts[2] += itemCount;
+            }
+        });
+
+        // Remove the word 3, play another sound for the word 5 and add a word at the end
+        VocabularyStore.Builder builder = new VocabularyStore.Builder(WORD_COUNT);
+        for (int i = 0; i < WORD_COUNT; i++) {
+            if (i != 3) {
+                builder.add(mWords.getDefaultTranslation(i), mWords.getMiwokTranslation(i),
+                        mWords.getImageResourceId(i),
+                        i == 5 ? R.raw.number_two : mWords.getAudioResourceId(i));
+            }
+        }
+        VocabularyStore words = builder.add("new", "word", R.raw.number_one).build();
+        adapter.setWords(words);
+
+        assertSame(words, adapter.getWords());
+        assertEquals(WORD_COUNT, adapter.getItemCount());
+        assertEquals(1, counts[0]);
+        assertEquals(1, counts[1]);
+        assertEquals(1, counts[2]);
+    }
+
+    @Test
+    public void recycledViewHoldersAllocateFarLessThanNewOnes() {
+        RecyclerView parent = new RecyclerView(mActivity);
+        WordRecyclerAdapter adapter = new WordRecyclerAdapter(mActivity, mWords,
+                R.color.category_numbers);
+        WordRecyclerAdapter.WordViewHolder holder = adapter.onCreateViewHolder(parent, 0);
+        adapter.onBindViewHolder(holder, 7);
+        assertEquals(mWords.getMiwokTranslation(7), holder.mMiwokTextView.getText().toString());
+        // Warm up, the first binds load classes and fill caches
+        for (int i = 0; i < BINDS; i++) {
+            adapter.onBindViewHolder(holder, i % WORD_COUNT);
+        }
+
+        long start = allocatedBytes();
+        for (int i = 0; i < BINDS; i++) {
+            adapter.onBindViewHolder(holder, i % WORD_COUNT);
+        }
+        long recycledBytes = (allocatedBytes() - start) / BINDS;
+
+        int newHolders = 200;
+        start = allocatedBytes();
+        for (int i = 0; i < newHolders; i++) {
+            adapter.onBindViewHolder(adapter.onCreateViewHolder(parent, 0), i);
+        }
+        long newHolderBytes = (allocatedBytes() - start) / newHolders;
+
+        String message = "recycler rows: " + recycledBytes + " bytes per recycled bind, " +
+                newHolderBytes + " per new view holder";
+        System.out.println(message);
+        assertTrue(message, recycledBytes * 10 < newHolderBytes);
+    }
+
+    @Test
+    public void keepsTheLookupsOfTheArrayAdapter() {
+        WordAdapter adapter = new WordAdapter(mActivity, mWords, R.color.category_numbers);
+
+        assertSame(mActivity, adapter.getContext());
+        assertEquals(7, adapter.getPosition(mWords.get(7)));
+        assertEquals(-1, adapter.getPosition(new Word("not", "in the list", R.raw.number_one)));
+    }
+
+    @Test
+    public void recycledRowsAllocateFarLessThanNewRows() {
+        for (boolean flatRows : new boolean[] {false, true}) {
+            WordAdapter adapter = new WordAdapter(mActivity, mWords, R.color.category_numbers,
+                    flatRows);
+            View row = adapter.getView(0, null, mParent);
+            // Warm up, the first binds load classes and fill caches
+            for (int i = 0; i < BINDS; i++) {
+                adapter.getView(i % WORD_COUNT, row, mParent);
+            }
+
+            long start = allocatedBytes();
+            for (int i = 0; i < BINDS; i++) {
+                assertSame(row, adapter.getView(i % WORD_COUNT, row, mParent));
+            }
+            long recycledBytes = (allocatedBytes() - start) / BINDS;
+
+            int newRows = 200;
+            start = allocatedBytes();
+            for (int i = 0; i < newRows; i++) {
+                adapter.getView(i, null, mParent);
+            }
+            long newRowBytes = (allocatedBytes() - start) / newRows;
+
+            String message = (flatRows ? "flat" : "inflated") + " rows: " + recycledBytes +
+                    " bytes per recycled bind, " + newRowBytes + " per new row";
+            System.out.println(message);
+            assertTrue(message, recycledBytes * 10 < newRowBytes);
+        }
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
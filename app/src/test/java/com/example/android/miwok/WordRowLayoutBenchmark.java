@@ -0,0 +1,89 @@
+package com.example.android.miwok;
+
+import android.app.Activity;
+import android.view.View;
+import android.widget.ListView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Random;
+
+/**
+ * Measures the measure and layout pass of a word row, inflated from list_item.xml and drawn
+ * by a single {@link WordItemView}, as selected by the flat_word_rows resource.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class WordRowLayoutBenchmark {
+
+    private static final int WORD_COUNT = 1000;
+
+    private static final int ITERATIONS = 2000;
+
+    /** Width of the rows, as on a phone in portrait */
+    private static final int ROW_WIDTH = 1080;
+
+    private Activity mActivity;
+    private VocabularyStore mWords;
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+        mActivity = Robolectric.setupActivity(Activity.class);
+        mWords = TestVocabulary.create(new Random(1), WORD_COUNT);
+    }
+
+    @Test
+    public void layoutPasses() {
+        long inflated = layoutNanos(false);
+        long flat = layoutNanos(true);
+        Benchmarks.report("layout pass of a list_item.xml row", Benchmarks.micros(
+                (double) inflated / ITERATIONS));
+        Benchmarks.report("layout pass of a WordItemView row", Benchmarks.micros(
+                (double) flat / ITERATIONS));
+    }
+
+    /**
+     * Return the best time of a few rounds of binding, measuring and laying out a recycled
+     * row, in nanoseconds for {@link #ITERATIONS} rows.
+     */
+    private long layoutNanos(boolean flatRows) {
+        ListView parent = new ListView(mActivity);
+        WordAdapter adapter = new WordAdapter(mActivity, withoutImages(mWords),
+                R.color.category_numbers, flatRows);
+        View row = adapter.getView(0, null, parent);
+        int height = mActivity.getResources().getDimensionPixelSize(R.dimen.list_item_height);
+        int widthSpec = View.MeasureSpec.makeMeasureSpec(ROW_WIDTH, View.MeasureSpec.EXACTLY);
+        int heightSpec = View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY);
+
+        long best = Long.MAX_VALUE;
+        // Best of a few rounds, the first ones warm the JIT up
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                adapter.getView(i % WORD_COUNT, row, parent);
+                // Binding a new word requests a new layout, as in a scrolling list
+                row.requestLayout();
+                row.measure(widthSpec, heightSpec);
+                row.layout(0, 0, row.getMeasuredWidth(), row.getMeasuredHeight());
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    /**
+     * Return a copy of the words without their images, which are made up resource IDs.
+     */
+    private static VocabularyStore withoutImages(VocabularyStore words) {
+        VocabularyStore.Builder builder = new VocabularyStore.Builder(words.size());
+        for (int i = 0; i < words.size(); i++) {
+            builder.add(words.getDefaultTranslation(i), words.getMiwokTranslation(i),
+                    R.raw.number_one);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.android.miwok.build
+
+/**
+ * Finds the silence at the start and at the end of a clip from its decoded PCM samples, so
+ * the app can start playing a clip at its first audible sound instead of its first sample.
+ *
+ * The loudness is measured on short windows. A window is audible when its RMS level is
+ * above the threshold, and a short guard is kept before the first audible window and after
+ * the last one, so the attack and the release of the sound are not cut.
+ *
+ * This class only works on arrays of samples, it doesn't depend on Gradle, so it can be run
+ * and tested on a plain JVM with synthetic input.
+ */
+class SilenceAnalyzer {
+
+    /**
+     * What was found in a clip. All the times are in milliseconds.
+     */
+    static class Result {
+        /** Duration of the whole clip */
+        int durationMs
+
+        /** Silence skipped at the start of the clip */
+        int trimStartMs
+
+        /** Silence after the end of the sound */
+        int trimEndMs
+
+        /** Highest absolute sample value, from 0 to 32767 */
+        int peak
+    }
+
+    /** Length of the windows the loudness is measured on */
+    static final int WINDOW_MS = 10
+
+    /** RMS level under which a window is silent, in dB below full scale */
+    final double thresholdDb
+
+    /** Audio kept before the first audible window and after the last one */
+    final int guardMs
+
+    SilenceAnalyzer(double thresholdDb = -45, int guardMs = 20) {
+        if (thresholdDb >= 0) {
+            throw new IllegalArgumentException("thresholdDb must be negative: $thresholdDb")
+        }
+        this.thresholdDb = thresholdDb
+        this.guardMs = guardMs
+    }
+
+    /**
+     * Analyze a clip of 16 bit samples.
+     *
+     * @param samples are the samples of the clip, interleaved if there are several channels
+     * @param sampleRate is the number of frames per second
+     * @param channels is the number of samples per frame
+     */
+    Result analyze(short[] samples, int sampleRate, int channels) {
+        if (sampleRate <= 0 || channels <= 0) {
+            throw new IllegalArgumentException("Invalid format: $sampleRate Hz, $channels channels")
+        }
+        int frames = samples.length.intdiv(channels)
+        int windowFrames = Math.max(1, (sampleRate * WINDOW_MS).intdiv(1000))
+        int windowCount = (frames + windowFrames - 1).intdiv(windowFrames)
+
+        // Compare squared levels, so there is no square root per window
+        double threshold = 32768 * Math.pow(10, thresholdDb / 20)
+        double thresholdSquared = threshold * threshold
+
+        int peak = 0
+        int firstAudible = -1
+        int lastAudible = -1
+        for (int w = 0; w < windowCount; w++) {
+            int start = w * windowFrames * channels
+            int end = Math.min(samples.length, start + windowFrames * channels)
+            double sumSquares = 0
+            for (int i = start; i < end; i++) {
+                int sample = samples[i]
+                sumSquares += sample * sample
+                int level = Math.abs(sample)
+                if (level > peak) {
+                    peak = level
+                }
+            }
+            if (sumSquares / (end - start) >= thresholdSquared) {
+                if (firstAudible == -1) {
+                    firstAudible = w
+                }
+                lastAudible = w
+            }
+        }
+
+        Result result = new Result(durationMs: toMillis(frames, sampleRate),
+                peak: Math.min(peak, Short.MAX_VALUE))
+        // A clip that is silent everywhere is left alone rather than trimmed to nothing
+        if (firstAudible != -1) {
+            int guardFrames = (sampleRate * guardMs).intdiv(1000)
+            int startFrame = Math.max(0, firstAudible * windowFrames - guardFrames)
+            int endFrame = Math.min(frames, (lastAudible + 1) * windowFrames + guardFrames)
+            result.trimStartMs = toMillis(startFrame, sampleRate)
+            result.trimEndMs = toMillis(frames - endFrame, sampleRate)
+        }
+        return result
+    }
+
+    /**
+     * Return the samples of raw signed 16 bit little endian PCM data.
+     */
+    static short[] readPcm16le(byte[] data) {
+        short[] samples = new short[data.length.intdiv(2)]
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) ((data[2 * i] & 0xff) | (data[2 * i + 1] << 8))
+        }
+        return samples
+    }
+
+    private static int toMillis(long frames, int sampleRate) {
+        return (int) (frames * 1000 / sampleRate)
+    }
+}
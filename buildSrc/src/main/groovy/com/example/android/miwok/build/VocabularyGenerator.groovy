@@ -0,0 +1,187 @@
+package com.example.android.miwok.build
+
+/**
+ * Turns the vocabulary definition files of the app into the source of a Java class holding
+ * the words as static tables, so the app does no parsing and builds no list at startup.
+ *
+ * A definition file has one word per line, with tab separated columns:
+ *   category  english  miwok  image  audio
+ * The image is the name of a drawable, or empty if the word has none, and the audio is the
+ * name of a raw resource. Empty lines and lines starting with '#' are ignored.
+ *
+ * The tables are sorted by category ID, which is how the app reads them. Within a category
+ * the words keep the order of the files, they are not sorted by translation: it is the
+ * order the lists show them in, such as the numbers from one to ten. The alphabetical order
+ * is only needed by the search, which sorts the suffixes of the words itself.
+ *
+ * This class only works on strings and sets of names, it doesn't depend on Gradle, so it
+ * can be run and tested on a plain JVM.
+ */
+class VocabularyGenerator {
+
+    /**
+     * A word read from a definition file.
+     */
+    static class Entry {
+        String category
+        String english
+        String miwok
+        String image
+        String audio
+
+        /** Where the word was defined, for the error messages */
+        String location
+    }
+
+    /** Names of the categories, in the order of their IDs in Categories.java */
+    final List<String> categories
+
+    VocabularyGenerator(List<String> categories) {
+        this.categories = categories
+    }
+
+    /**
+     * Read the words of a definition file.
+     *
+     * @param text is the content of the file
+     * @param sourceName is the name of the file, used in the error messages
+     */
+    List<Entry> parse(String text, String sourceName) {
+        List<Entry> entries = []
+        text.readLines().eachWithIndex { String line, int i ->
+            if (line.trim().isEmpty() || line.startsWith('#')) {
+                return
+            }
+            String location = "$sourceName:${i + 1}"
+            String[] columns = line.split('\t', -1)
+            if (columns.length != 5) {
+                throw new IllegalArgumentException(
+                        "$location: expected 5 tab separated columns, found ${columns.length}")
+            }
+            entries << new Entry(category: columns[0].trim(), english: columns[1].trim(),
+                    miwok: columns[2].trim(), image: columns[3].trim(), audio: columns[4].trim(),
+                    location: location)
+        }
+        return entries
+    }
+
+    /**
+     * Return the problems of the words: unknown categories, missing translations and
+     * references to drawables or raw resources that don't exist.
+     *
+     * @param drawables are the names of the drawables of the app
+     * @param raws are the names of the raw resources of the app
+     */
+    List<String> validate(List<Entry> entries, Set<String> drawables, Set<String> raws) {
+        List<String> problems = []
+        entries.each { Entry entry ->
+            if (!categories.contains(entry.category)) {
+                problems << "$entry.location: unknown category '$entry.category'"
+            }
+            if (entry.english.isEmpty() || entry.miwok.isEmpty()) {
+                problems << "$entry.location: missing translation"
+            }
+            if (!entry.image.isEmpty() && !drawables.contains(entry.image)) {
+                problems << "$entry.location: no drawable named '$entry.image'"
+            }
+            if (!raws.contains(entry.audio)) {
+                problems << "$entry.location: no raw resource named '$entry.audio'"
+            }
+        }
+        return problems
+    }
+
+    /**
+     * Return the words sorted in the order of the tables: by category ID, and in the order
+     * they were read within a category. The words of unknown categories are dropped, they
+     * are reported by {@link #validate}.
+     */
+    List<Entry> sort(List<Entry> entries) {
+        List<Entry> sorted = entries.findAll { categories.contains(it.category) }
+        // The sort of Groovy is stable, so the words of a category keep their order
+        return sorted.sort(false) { Entry entry -> categories.indexOf(entry.category) }
+    }
+
+    /**
+     * Return the source of the VocabularyTables class holding the words, in the order of
+     * {@link #sort}.
+     */
+    String generate(List<Entry> entries, String packageName) {
+        StringBuilder text = new StringBuilder()
+        StringBuilder offsets = new StringBuilder()
+        StringBuilder images = new StringBuilder()
+        StringBuilder audio = new StringBuilder()
+        Map<String, List<Entry>> byCategory = sort(entries).groupBy { it.category }
+        categories.each { String category ->
+            List<Entry> words = byCategory.get(category, [])
+            StringBuilder pool = new StringBuilder()
+            List<Integer> bounds = [0]
+            words.each { Entry entry ->
+                pool.append(entry.english)
+                bounds << pool.length()
+                pool.append(entry.miwok)
+                bounds << pool.length()
+            }
+            text.append("            // $category\n            ${javaString(pool.toString())},\n")
+            offsets.append("            {${bounds.join(', ')}},\n")
+            List<String> imageIds = words.collect { Entry entry ->
+                entry.image.isEmpty() ? 'Word.NO_IMAGE_PROVIDED' : "R.drawable.$entry.image".toString()
+            }
+            List<String> audioIds = words.collect { Entry entry -> "R.raw.$entry.audio".toString() }
+            images.append("            {${imageIds.join(', ')}},\n")
+            audio.append("            {${audioIds.join(', ')}},\n")
+        }
+
+        return """package $packageName;
+
+// Generated from src/main/vocabulary by vocabulary.gradle, do not edit.
+
+/**
+ * Words of each category, indexed by category ID. The translations of a category are
+ * stored one after the other in one string, delimited by the offsets of the category.
+ */
+final class VocabularyTables {
+
+    /** Number of categories */
+    static final int CATEGORY_COUNT = ${categories.size()};
+
+    /** Translations of the words of each category */
+    static final String[] TEXT = {
+$text    };
+
+    /** Offsets of the default and Miwok translations of each word in TEXT */
+    static final int[][] TEXT_OFFSETS = {
+$offsets    };
+
+    /** Image resource IDs of the words */
+    static final int[][] IMAGE_RESOURCE_IDS = {
+$images    };
+
+    /** Audio resource IDs of the words */
+    static final int[][] AUDIO_RESOURCE_IDS = {
+$audio    };
+
+    private VocabularyTables() {
+    }
+}
+"""
+    }
+
+    /**
+     * Return the string as a Java string literal, non ASCII characters are escaped.
+     */
+    static String javaString(String value) {
+        StringBuilder literal = new StringBuilder('"')
+        value.each { String s ->
+            char c = s.charAt(0)
+            if (c == '"' as char || c == '\\' as char) {
+                literal.append('\\').append(c)
+            } else if (c < (' ' as char) || c > ('~' as char)) {
+                literal.append(String.format('\\u%04x', (int) c))
+            } else {
+                literal.append(c)
+            }
+        }
+        return literal.append('"').toString()
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.android.miwok.build
+
+import org.junit.Test
+
+import static org.junit.Assert.assertArrayEquals
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertTrue
+import static org.junit.Assert.fail
+
+/**
+ * Tests of {@link SilenceAnalyzer} on synthetic PCM: silences, tones and noise of known
+ * lengths and levels.
+ */
+class SilenceAnalyzerTest {
+
+    private static final int RATE = 44100
+
+    private final SilenceAnalyzer analyzer = new SilenceAnalyzer()
+
+    /**
+     * Return a mono clip of the given parts, each a length in milliseconds and the amplitude
+     * of a 440 Hz tone, 0 for silence.
+     */
+    private static short[] clip(List<List<Integer>> parts) {
+        List<Short> samples = []
+        parts.each { part ->
+            int frames = (RATE * part[0]).intdiv(1000)
+            for (int i = 0; i < frames; i++) {
+                samples << (short) Math.round(part[1] * Math.sin(2 * Math.PI * 440 * i / RATE))
+            }
+        }
+        return samples as short[]
+    }
+
+    @Test
+    void trimsTheSilenceAroundTheSoundAndKeepsTheGuard() {
+        SilenceAnalyzer.Result result = analyzer.analyze(clip([[200, 0], [300, 10000],
+                [100, 0]]), RATE, 1)
+
+        assertEquals(600, result.durationMs)
+        // 20 ms of guard before the first audible window and after the last one
+        assertEquals(180, result.trimStartMs)
+        assertEquals(80, result.trimEndMs)
+        assertTrue("peak ${result.peak}", result.peak > 9900 && result.peak <= 10000)
+    }
+
+    @Test
+    void soundFromTheFirstSampleIsNotTrimmed() {
+        SilenceAnalyzer.Result result = analyzer.analyze(clip([[100, 8000], [50, 0]]), RATE, 1)
+
+        assertEquals(0, result.trimStartMs)
+        assertEquals(30, result.trimEndMs)
+    }
+
+    @Test
+    void silentClipIsLeftAlone() {
+        // Noise at about -60 dB, under the default threshold of -45 dB
+        Random random = new Random(1)
+        short[] samples = new short[RATE]
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (random.nextGaussian() * 32)
+        }
+
+        SilenceAnalyzer.Result result = analyzer.analyze(samples, RATE, 1)
+
+        assertEquals(1000, result.durationMs)
+        assertEquals(0, result.trimStartMs)
+        assertEquals(0, result.trimEndMs)
+    }
+
+    @Test
+    void thresholdDecidesWhatIsAudible() {
+        // A tone of amplitude 100 has an RMS level of about -53 dB
+        short[] samples = clip([[100, 0], [100, 100], [100, 0]])
+
+        assertEquals(0, analyzer.analyze(samples, RATE, 1).trimStartMs)
+        SilenceAnalyzer.Result result = new SilenceAnalyzer(-60, 0).analyze(samples, RATE, 1)
+        assertEquals(100, result.trimStartMs)
+        assertEquals(100, result.trimEndMs)
+    }
+
+    @Test
+    void stereoFramesAreTimedOnce() {
+        // The sound is only on the right channel
+        short[] mono = clip([[200, 0], [300, 10000], [100, 0]])
+        short[] stereo = new short[mono.length * 2]
+        for (int i = 0; i < mono.length; i++) {
+            stereo[2 * i + 1] = mono[i]
+        }
+
+        SilenceAnalyzer.Result result = analyzer.analyze(stereo, RATE, 2)
+
+        assertEquals(600, result.durationMs)
+        assertEquals(180, result.trimStartMs)
+        assertEquals(80, result.trimEndMs)
+    }
+
+    @Test
+    void readPcm16leReadsSignedLittleEndianSamples() {
+        byte[] data = [0x01, 0x00, 0xff, 0xff, 0x00, 0x80, 0xff, 0x7f] as byte[]
+
+        assertArrayEquals([1, -1, -32768, 32767] as short[], SilenceAnalyzer.readPcm16le(data))
+    }
+
+    @Test
+    void invalidParametersAreRejected() {
+        try {
+            new SilenceAnalyzer(0, 20)
+            fail('A threshold of 0 dB was accepted')
+        } catch (IllegalArgumentException expected) {
+            // The threshold is below full scale
+        }
+        try {
+            analyzer.analyze(new short[10], 0, 1)
+            fail('A sample rate of 0 was accepted')
+        } catch (IllegalArgumentException expected) {
+            // The format is checked
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.android.miwok.build
+
+import org.junit.Test
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertTrue
+import static org.junit.Assert.fail
+
+/**
+ * Tests of {@link VocabularyGenerator}, on small definition files and on the words of the
+ * app.
+ */
+class VocabularyGeneratorTest {
+
+    private final VocabularyGenerator generator =
+            new VocabularyGenerator(['colors', 'family', 'numbers', 'phrases'])
+
+    @Test
+    void parseSkipsCommentsAndEmptyLinesAndTrimsTheColumns() {
+        List<VocabularyGenerator.Entry> entries = generator.parse(
+                '# comment\n\nnumbers\t one \tlutti\tnumber_one\tnumber_one\n' +
+                        'phrases\tLet’s go.\tyoowutis\t\tphrase_lets_go\n', 'words.tsv')
+
+        assertEquals(2, entries.size())
+        assertEquals('one', entries[0].english)
+        assertEquals('words.tsv:3', entries[0].location)
+        assertEquals('', entries[1].image)
+        assertEquals('Let’s go.', entries[1].english)
+        assertEquals('words.tsv:4', entries[1].location)
+    }
+
+    @Test
+    void parseFailsOnAWrongNumberOfColumns() {
+        try {
+            generator.parse('numbers\tone\tlutti\tnumber_one\n', 'words.tsv')
+            fail('A line of 4 columns was accepted')
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.message, e.message.startsWith('words.tsv:1:'))
+        }
+    }
+
+    @Test
+    void validateReportsEveryProblemWithItsLocation() {
+        List<VocabularyGenerator.Entry> entries = generator.parse(
+                'numbers\tone\tlutti\tnumber_one\tnumber_one\n' +
+                        'animals\tdog\tchuku\t\tanimal_dog\n' +
+                        'numbers\ttwo\t\tnumber_two\tnumber_two\n', 'words.tsv')
+
+        List<String> problems = generator.validate(entries, ['number_one'] as Set,
+                ['number_one', 'number_two'] as Set)
+
+        assertEquals([
+                "words.tsv:2: unknown category 'animals'",
+                "words.tsv:2: no raw resource named 'animal_dog'",
+                'words.tsv:3: missing translation',
+                "words.tsv:3: no drawable named 'number_two'"
+        ], problems*.toString())
+    }
+
+    @Test
+    void sortOrdersByCategoryAndKeepsTheOrderOfTheFile() {
+        List<VocabularyGenerator.Entry> entries = generator.parse(
+                'phrases\tWhere are you going?\tminto wuksus\t\tp1\n' +
+                        'numbers\tone\tlutti\t\tn1\n' +
+                        'colors\tred\twetetti\t\tc1\n' +
+                        'numbers\ttwo\totiiko\t\tn2\n' +
+                        'numbers\tthree\ttolookosu\t\tn3\n' +
+                        'colors\tgreen\tchokokki\t\tc2\n', 'words.tsv')
+
+        assertEquals(['red', 'green', 'one', 'two', 'three', 'Where are you going?'],
+                generator.sort(entries)*.english)
+        // The entries given are left as they were
+        assertEquals('Where are you going?', entries[0].english)
+    }
+
+    @Test
+    void generateWritesTheTablesOfEachCategory() {
+        List<VocabularyGenerator.Entry> entries = generator.parse(
+                'numbers\ttwo\totiiko\tnumber_two\tnumber_two\n' +
+                        'colors\tred\tweṭeṭṭi\t\tcolor_red\n' +
+                        'numbers\tone\tlutti\tnumber_one\tnumber_one\n', 'words.tsv')
+
+        String source = generator.generate(entries, 'com.example.test')
+
+        assertTrue(source.startsWith('package com.example.test;'))
+        assertTrue(source.contains('static final int CATEGORY_COUNT = 4;'))
+        assertTrue(source.contains(
+                '            // colors\n            "redwe\\u1e6de\\u1e6d\\u1e6di",\n'))
+        assertTrue(source.contains('            // family\n            "",\n'))
+        assertTrue(source.contains('            // numbers\n            "twootiikoonelutti",\n'))
+        assertTrue(source.contains(
+                '            {0, 3, 10},\n            {0},\n            {0, 3, 9, 12, 17},\n'))
+        assertTrue(source.contains('            {Word.NO_IMAGE_PROVIDED},\n            {},\n' +
+                '            {R.drawable.number_two, R.drawable.number_one},\n'))
+        assertTrue(source.contains('            {R.raw.color_red},\n'))
+    }
+
+    @Test
+    void javaStringEscapesQuotesBackslashesAndNonAscii() {
+        assertEquals('"a\\"b\\\\c\\u2019d\\u04d9"', VocabularyGenerator.javaString('a"b\\c’dә'))
+    }
+
+    @Test
+    void theWordsOfTheAppAreValidAndKeepTheirOrder() {
+        File file = new File('../app/src/main/vocabulary/words.tsv')
+        if (!file.exists()) {
+            // Run from the root of the project
+            file = new File('app/src/main/vocabulary/words.tsv')
+        }
+        List<VocabularyGenerator.Entry> entries = generator.parse(file.getText('UTF-8'),
+                file.name)
+
+        List<VocabularyGenerator.Entry> numbers = generator.sort(entries).findAll {
+            it.category == 'numbers'
+        }
+        assertEquals(['one', 'two', 'three', 'four', 'five', 'six', 'seven', 'eight', 'nine',
+                'ten'].collect { 'number_' + it }, numbers*.audio)
+        Set<String> images = entries*.image.findAll { !it.isEmpty() } as Set
+        Set<String> audio = entries*.audio as Set
+        assertEquals([], generator.validate(entries, images, audio))
+    }
+}